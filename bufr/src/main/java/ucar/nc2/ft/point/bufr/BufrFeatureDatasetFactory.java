@@ -36,10 +36,13 @@ package ucar.nc2.ft.point.bufr;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Formatter;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import javax.annotation.Nonnull;
 import org.jdom2.Element;
 import thredds.client.catalog.Catalog;
@@ -157,6 +160,8 @@ public class BufrFeatureDatasetFactory implements FeatureDatasetFactory {
   private static class BufrStationDataset extends PointDatasetImpl {
     private Munge munger;
     private BufrCdmIndex index;
+    private BufrMessageIndex messageIndex; // made on first use; may be null
+    private boolean messageIndexDone;
     private SequenceDS obs;
 
     private BufrStationDataset(NetcdfDataset ncfile, BufrCdmIndex index) {
@@ -184,6 +189,33 @@ public class BufrFeatureDatasetFactory implements FeatureDatasetFactory {
     public void getDetailInfo(java.util.Formatter sf) {
       super.getDetailInfo(sf);
       index.showIndex(sf);
+      synchronized (this) {
+        if (messageIndex != null)
+          messageIndex.showIndex(sf);
+      }
+    }
+
+    // optional index of the messages, to read only the ones needed
+    private synchronized BufrMessageIndex getMessageIndex() {
+      if (!messageIndexDone) {
+        messageIndexDone = true;
+        try {
+          messageIndex = BufrMessageIndex.update(netcdfDataset);
+        } catch (IOException ioe) {
+          log.warn("Cant make BufrMessageIndex for {}: {}", netcdfDataset.getLocation(), ioe.getMessage());
+        }
+      }
+      return messageIndex;
+    }
+
+    // iterate over the obs in the messages that may match; all obs if theres no message index
+    private StructureDataIterator getObsIterator(LatLonRect bb, CalendarDateRange dateRange, Set<String> stns) throws IOException {
+      BufrMessageIndex messageIndex = getMessageIndex();
+      if (messageIndex == null)
+        return obs.getStructureIterator();
+      BufrIosp2 iosp = (BufrIosp2) netcdfDataset.getIosp();
+      long[] messagePos = messageIndex.findMessages(bb, dateRange, stns);
+      return obs.getStructureIterator(iosp.getStructureIterator(messagePos));
     }
 
     private class BufrStationCollection extends StationTimeSeriesCollectionImpl {
@@ -223,7 +255,7 @@ public class BufrFeatureDatasetFactory implements FeatureDatasetFactory {
 
         @Override
         public PointFeatureIterator getPointFeatureIterator() throws IOException {
-          return new BufrStationIterator(obs.getStructureIterator(), null);
+          return new BufrStationIterator(getObsIterator(null, null, Collections.singleton(getName())), null);
         }
 
         @Nonnull
@@ -287,10 +319,14 @@ public class BufrFeatureDatasetFactory implements FeatureDatasetFactory {
       private class BufrPointFeatureCollection extends PointCollectionImpl {
         StationHelper stationsWanted;
         PointFeatureIterator.Filter filter;
+        LatLonRect boundingBox;
+        CalendarDateRange dateRange;
 
         BufrPointFeatureCollection(LatLonRect boundingBox, CalendarDateRange dateRange) throws IOException {
           super("BufrPointFeatureCollection", bufrDateUnits, bufrAltUnits);
           setBoundingBox(boundingBox);
+          this.boundingBox = boundingBox;
+          this.dateRange = dateRange;
           if (dateRange != null) {
             getInfo();
             info.setCalendarDateRange(dateRange);
@@ -302,7 +338,10 @@ public class BufrFeatureDatasetFactory implements FeatureDatasetFactory {
 
         @Override
         public PointFeatureIterator getPointFeatureIterator() throws IOException {
-          return new BufrRecordIterator(obs.getStructureIterator(), filter);
+          Set<String> stns = new HashSet<>();
+          for (StationFeature s : stationsWanted.getStationFeatures())
+            stns.add(s.getName());
+          return new BufrRecordIterator(getObsIterator(boundingBox, dateRange, stns), filter);
         }
 
         // iterates once over all the records
@@ -0,0 +1,391 @@
+/*
+ * Copyright 1998-2013 University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.ft.point.bufr;
+
+import ucar.ma2.StructureData;
+import ucar.ma2.StructureDataIterator;
+import ucar.nc2.Attribute;
+import ucar.nc2.constants.CDM;
+import ucar.nc2.dataset.NetcdfDataset;
+import ucar.nc2.dataset.SequenceDS;
+import ucar.nc2.iosp.bufr.BufrIosp2;
+import ucar.nc2.iosp.bufr.Message;
+import ucar.nc2.iosp.bufr.MessageScanner;
+import ucar.nc2.stream.NcStream;
+import ucar.nc2.time.CalendarDate;
+import ucar.nc2.time.CalendarDateRange;
+import ucar.nc2.util.DiskCache2;
+import ucar.unidata.geoloc.LatLonRect;
+import ucar.unidata.io.RandomAccessFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Sidecar index for a Bufr file, with a summary of each data message:
+ * file position, time range, station ids and lat/lon bounding box.
+ * Used to read only the messages that can match a point query.
+ * The index is extended as messages are appended to the Bufr file, and rebuilt if the part already indexed has changed.
+ * The index file lives next to the Bufr file if that directory is writeable, otherwise in the DiskCache2.
+ * Files with embedded tables are not indexed.
+ *
+ * @since 10/19/2016
+ */
+public class BufrMessageIndex {
+  static private final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(BufrMessageIndex.class);
+
+  public static final String MAGIC_START = "BufrMessageIndex";
+  public static final String MSG_IDX = ".ncx.msg";
+  private static final int version = 2;
+  private static final int CHECK_SIZE = 8192; // bytes at each end of the indexed part that are checksummed
+
+  static private DiskCache2 diskCache;
+
+  static synchronized public void setDiskCache2(DiskCache2 dc) {
+    diskCache = dc;
+  }
+
+  static synchronized public DiskCache2 getDiskCache2() {
+    if (diskCache == null)
+      diskCache = DiskCache2.getDefault();
+    return diskCache;
+  }
+
+  /**
+   * Get the index file, may be in cache directory, may not exist
+   *
+   * @param bufrFilename full path of the Bufr file
+   * @return File, possibly in cache, may or may not exist
+   */
+  public static File calcIndexFile(String bufrFilename) {
+    String indexLocation = bufrFilename + MSG_IDX;
+    File result = getDiskCache2().getExistingFileOrCache(indexLocation);
+    if (result != null) return result;
+    return getDiskCache2().getFile(indexLocation);
+  }
+
+  /**
+   * Read the index for this dataset, and add any messages not yet in it. Write it back if it changed.
+   *
+   * @param ncd opened by BufrIosp2
+   * @return the index, or null if the file cant be indexed
+   * @throws IOException on read error
+   */
+  public static BufrMessageIndex update(NetcdfDataset ncd) throws IOException {
+    BufrIosp2 iosp = (BufrIosp2) ncd.getIosp();
+    SequenceDS obs = (SequenceDS) ncd.findVariable(BufrIosp2.obsRecord);
+    if (iosp == null || obs == null) return null;
+
+    Attribute centerAtt = ncd.findGlobalAttribute(BufrIosp2.centerId);
+    int center = (centerAtt == null) ? 0 : centerAtt.getNumericValue().intValue();
+    StandardFields.StandardFieldsFromStructure extract = new StandardFields.StandardFieldsFromStructure(center, obs);
+
+    File indexFile = calcIndexFile(ncd.getLocation());
+    BufrMessageIndex index = new BufrMessageIndex();
+    if (indexFile.exists() && !index.readIndex(indexFile))
+      index = new BufrMessageIndex();
+
+    if (!index.scan(ncd.getLocation(), iosp, obs, extract))
+      return null;
+
+    if (index.changed || !indexFile.exists()) {
+      try {
+        index.writeIndex(indexFile);
+      } catch (IOException ioe) {
+        log.warn("BufrMessageIndex cant write index file {}: {}", indexFile.getPath(), ioe.getMessage());
+      }
+    }
+    return index;
+  }
+
+  /////////////////////////////////////////////////////////////////////////////////
+
+  public static class MessageSummary {
+    public final long pos;  // Message.getStartPos()
+    public final int nobs;
+    public final long start, end;   // msecs since epoch; Long.MAX_VALUE, Long.MIN_VALUE if no times
+    public final double latMin, latMax, lonMin, lonMax; // NaN if no locations
+    public final Set<String> stations;
+
+    MessageSummary(long pos, int nobs, long start, long end, double latMin, double latMax, double lonMin, double lonMax, Set<String> stations) {
+      this.pos = pos;
+      this.nobs = nobs;
+      this.start = start;
+      this.end = end;
+      this.latMin = latMin;
+      this.latMax = latMax;
+      this.lonMin = lonMin;
+      this.lonMax = lonMax;
+      this.stations = stations;
+    }
+
+    boolean hasTime() {
+      return start <= end;
+    }
+
+    boolean hasLocation() {
+      return !Double.isNaN(latMin) && !Double.isNaN(lonMin);
+    }
+
+    // false only if it definitely cannot match
+    boolean canMatch(LatLonRect bb, CalendarDateRange dateRange, Set<String> stns) {
+      if (dateRange != null && hasTime() && !dateRange.intersects(CalendarDate.of(start), CalendarDate.of(end)))
+        return false;
+      if (bb != null && hasLocation() && !bb.intersects(latMin, latMax, lonMin, lonMax)) // box may be a single point
+        return false;
+      if (stns != null && !stations.isEmpty()) {
+        boolean found = false;
+        for (String stn : stations) {
+          if (stns.contains(stn)) {
+            found = true;
+            break;
+          }
+        }
+        if (!found) return false;
+      }
+      return true;
+    }
+  }
+
+  private final List<MessageSummary> messages = new ArrayList<>();
+  private long indexedLength;  // messages before this position in the Bufr file are in the index
+  private long fileLength, lastModified; // of the Bufr file when last indexed
+  private long headChecksum, tailChecksum; // of the first and last CHECK_SIZE bytes before indexedLength
+  private boolean changed;
+
+  public List<MessageSummary> getMessages() {
+    return messages;
+  }
+
+  /**
+   * Find the messages that may have observations matching the query.
+   *
+   * @param bb        lat/lon bounding box, may be null
+   * @param dateRange time range, may be null
+   * @param stns      station ids, may be null
+   * @return starting positions of the messages, for BufrIosp2.getStructureIterator(long[])
+   */
+  public long[] findMessages(LatLonRect bb, CalendarDateRange dateRange, Set<String> stns) {
+    long[] result = new long[messages.size()];
+    int count = 0;
+    for (MessageSummary ms : messages) {
+      if (ms.canMatch(bb, dateRange, stns))
+        result[count++] = ms.pos;
+    }
+    return Arrays.copyOf(result, count);
+  }
+
+  // summarize the messages past indexedLength; return false if the file cant be indexed
+  private boolean scan(String bufrFilename, BufrIosp2 iosp, SequenceDS obs, StandardFields.StandardFieldsFromStructure extract) throws IOException {
+    File bufrFile = new File(bufrFilename);
+    try (RandomAccessFile raf = new RandomAccessFile(bufrFilename, "r")) {
+      if (raf.length() == fileLength && bufrFile.lastModified() == lastModified)
+        return true; // unchanged since it was indexed
+
+      if (indexedLength > raf.length() || checksum(raf, 0) != headChecksum || checksum(raf, indexedLength - CHECK_SIZE) != tailChecksum) {
+        messages.clear(); // file was replaced or rewritten
+        indexedLength = 0;
+      }
+      changed = true;
+
+      MessageScanner scanner = new MessageScanner(raf, indexedLength, false);
+      while (scanner.hasNext()) {
+        Message m = scanner.next();
+        if (m == null) continue;
+        if (m.containsBufrTable()) return false; // cant read messages independently
+        long mpos = m.getStartPos();
+        long mend = mpos + m.getMessageSize();
+        if (m.getNumberDatasets() > 0)
+          messages.add(summarize(mpos, iosp, obs, extract));
+        indexedLength = mend;
+      }
+
+      fileLength = raf.length();
+      lastModified = bufrFile.lastModified();
+      headChecksum = checksum(raf, 0);
+      tailChecksum = checksum(raf, indexedLength - CHECK_SIZE);
+    }
+    return true;
+  }
+
+  // CRC32 of the CHECK_SIZE bytes starting at pos, clipped to [0, indexedLength)
+  private long checksum(RandomAccessFile raf, long pos) throws IOException {
+    pos = Math.max(pos, 0);
+    int n = (int) Math.min(CHECK_SIZE, indexedLength - pos);
+    CRC32 crc = new CRC32();
+    if (n > 0) {
+      byte[] b = new byte[n];
+      raf.seek(pos);
+      raf.readFully(b);
+      crc.update(b);
+    }
+    return crc.getValue();
+  }
+
+  private MessageSummary summarize(long pos, BufrIosp2 iosp, SequenceDS obs, StandardFields.StandardFieldsFromStructure extract) throws IOException {
+    int nobs = 0;
+    long start = Long.MAX_VALUE;
+    long end = Long.MIN_VALUE;
+    double latMin = Double.NaN, latMax = Double.NaN, lonMin = Double.NaN, lonMax = Double.NaN;
+    Set<String> stations = new HashSet<>();
+
+    try (StructureDataIterator iter = obs.getStructureIterator(iosp.getStructureIterator(new long[] {pos}))) {
+      while (iter.hasNext()) {
+        StructureData sdata = iter.next();
+        nobs++;
+        extract.extract(sdata);
+
+        CalendarDate date = extract.makeCalendarDate();
+        if (date != null) {
+          start = Math.min(start, date.getMillis());
+          end = Math.max(end, date.getMillis());
+        }
+
+        String stn = extract.getStationId();
+        if (stn != null) stations.add(stn);
+
+        double lat = extract.getFieldValueD(BufrCdmIndexProto.FldType.lat);
+        double lon = extract.getFieldValueD(BufrCdmIndexProto.FldType.lon);
+        if (!Double.isNaN(lat) && !Double.isNaN(lon)) {
+          latMin = Double.isNaN(latMin) ? lat : Math.min(latMin, lat);
+          latMax = Double.isNaN(latMax) ? lat : Math.max(latMax, lat);
+          lonMin = Double.isNaN(lonMin) ? lon : Math.min(lonMin, lon);
+          lonMax = Double.isNaN(lonMax) ? lon : Math.max(lonMax, lon);
+        }
+      }
+    }
+    return new MessageSummary(pos, nobs, start, end, latMin, latMax, lonMin, lonMax, stations);
+  }
+
+  /*
+   MAGIC_START
+   version
+   indexedLength, fileLength, lastModified, headChecksum, tailChecksum
+   nmessages
+   for each message:
+     pos, nobs, start, end, latMin, latMax, lonMin, lonMax, nstations, station ids
+  */
+  private void writeIndex(File indexFile) throws IOException {
+    if (indexFile.exists()) {
+      if (!indexFile.delete())
+        log.warn(" BufrMessageIndex cant delete index file {}", indexFile.getPath());
+    }
+
+    try (RandomAccessFile raf = new RandomAccessFile(indexFile.getPath(), "rw")) {
+      raf.order(RandomAccessFile.BIG_ENDIAN);
+      raf.write(MAGIC_START.getBytes(CDM.utf8Charset));
+      raf.writeInt(version);
+      raf.writeLong(indexedLength);
+      raf.writeLong(fileLength);
+      raf.writeLong(lastModified);
+      raf.writeLong(headChecksum);
+      raf.writeLong(tailChecksum);
+      raf.writeInt(messages.size());
+      for (MessageSummary ms : messages) {
+        raf.writeLong(ms.pos);
+        raf.writeInt(ms.nobs);
+        raf.writeLong(ms.start);
+        raf.writeLong(ms.end);
+        raf.writeDouble(ms.latMin);
+        raf.writeDouble(ms.latMax);
+        raf.writeDouble(ms.lonMin);
+        raf.writeDouble(ms.lonMax);
+        raf.writeInt(ms.stations.size());
+        for (String stn : ms.stations)
+          raf.writeUTF(stn);
+      }
+      log.debug("  BufrMessageIndex {} messages, file size = {} bytes", messages.size(), raf.length());
+    }
+  }
+
+  private boolean readIndex(File indexFile) {
+    try (RandomAccessFile raf = new RandomAccessFile(indexFile.getPath(), "r")) {
+      raf.order(RandomAccessFile.BIG_ENDIAN);
+      raf.seek(0);
+
+      if (!NcStream.readAndTest(raf, MAGIC_START.getBytes(CDM.utf8Charset))) {
+        log.error("BufrMessageIndex {}: invalid index", raf.getLocation());
+        return false;
+      }
+
+      int indexVersion = raf.readInt();
+      if (indexVersion != version) {
+        log.warn("BufrMessageIndex {}: index found version={}, want version= {}", raf.getLocation(), indexVersion, version);
+        return false;
+      }
+
+      indexedLength = raf.readLong();
+      fileLength = raf.readLong();
+      lastModified = raf.readLong();
+      headChecksum = raf.readLong();
+      tailChecksum = raf.readLong();
+      int n = raf.readInt();
+      for (int i = 0; i < n; i++) {
+        long pos = raf.readLong();
+        int nobs = raf.readInt();
+        long start = raf.readLong();
+        long end = raf.readLong();
+        double latMin = raf.readDouble();
+        double latMax = raf.readDouble();
+        double lonMin = raf.readDouble();
+        double lonMax = raf.readDouble();
+        int nstns = raf.readInt();
+        Set<String> stations = new HashSet<>(2 * nstns);
+        for (int j = 0; j < nstns; j++)
+          stations.add(raf.readUTF());
+        messages.add(new MessageSummary(pos, nobs, start, end, latMin, latMax, lonMin, lonMax, stations));
+      }
+
+    } catch (Throwable t) {
+      log.error("Error reading index " + indexFile.getPath(), t);
+      messages.clear();
+      indexedLength = 0;
+      fileLength = 0;
+      return false;
+    }
+
+    return true;
+  }
+
+  public void showIndex(Formatter f) {
+    f.format("BufrMessageIndex %n");
+    f.format("  indexedLength=%d%n", indexedLength);
+    f.format("  # messages=%d%n", messages.size());
+    int nobs = 0;
+    for (MessageSummary ms : messages)
+      nobs += ms.nobs;
+    f.format("  # obs=%d%n", nobs);
+  }
+}
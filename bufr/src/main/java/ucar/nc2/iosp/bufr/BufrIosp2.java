@@ -66,6 +66,14 @@ public class BufrIosp2 extends AbstractIOServiceProvider {
     debugIter = debugFlag.isSet("Bufr/iter");
   }
 
+  /**
+   * Messages with at least this many datasets are decoded in parallel, using the common ForkJoinPool.
+   * @param nsubsets minimum number of datasets; 0 to always decode sequentially
+   */
+  static public void setParallelDecodeThreshold(int nsubsets) {
+    DecodeTasks.setParallelThreshold(nsubsets);
+  }
+
   //static public final Set<NetcdfDataset.Enhance> enhance = Collections.unmodifiableSet(EnumSet.of(NetcdfDataset.Enhance.ScaleMissing));
 
 
@@ -157,6 +165,29 @@ public class BufrIosp2 extends AbstractIOServiceProvider {
     return isSingle ? new SeqIterSingle() : new SeqIter();
   }
 
+  /**
+   * Iterate over the observations in some of the data messages, eg found from an index.
+   * Messages that dont match the first data message are skipped. Embedded tables are not used.
+   *
+   * @param messagePos starting position of each message, from Message.getStartPos()
+   * @return iterator over the observations of those messages
+   */
+  public StructureDataIterator getStructureIterator(long[] messagePos) {
+    return new SeqIterSelected(messagePos);
+  }
+
+  private ArrayStructure readMessage(Message m) throws IOException {
+    ArrayStructure as;
+    if (m.dds.isCompressed()) {
+      MessageCompressedDataReader reader = new MessageCompressedDataReader();
+      as = reader.readEntireMessage(obsStructure, protoMessage, m, raf, null);
+    } else {
+      MessageUncompressedDataReader reader = new MessageUncompressedDataReader();
+      as = reader.readEntireMessage(obsStructure, protoMessage, m, raf, null);
+    }
+    return as;
+  }
+
   private class SeqIter implements StructureDataIterator {
     StructureDataIterator currIter;
     int recnum = 0;
@@ -221,16 +252,61 @@ public class BufrIosp2 extends AbstractIOServiceProvider {
       return as.getStructureDataIterator();
     }
 
-    private ArrayStructure readMessage(Message m) throws IOException {
-      ArrayStructure as;
-      if (m.dds.isCompressed()) {
-        MessageCompressedDataReader reader = new MessageCompressedDataReader();
-        as = reader.readEntireMessage(obsStructure, protoMessage, m, raf, null);
-      } else {
-        MessageUncompressedDataReader reader = new MessageUncompressedDataReader();
-        as = reader.readEntireMessage(obsStructure, protoMessage, m, raf, null);
+    @Override
+    public int getCurrentRecno() {
+      return recnum - 1;
+    }
+
+    @Override
+    public void close() {
+      if (currIter != null) currIter.close();
+      currIter = null;
+      if (debugIter) System.out.printf("BUFR read recnum %d%n", recnum);
+    }
+  }
+
+  private class SeqIterSelected implements StructureDataIterator {
+    long[] messagePos;
+    StructureDataIterator currIter;
+    int next = 0;
+    int recnum = 0;
+
+    SeqIterSelected(long[] messagePos) {
+      this.messagePos = messagePos;
+    }
+
+    @Override
+    public StructureDataIterator reset() {
+      next = 0;
+      recnum = 0;
+      currIter = null;
+      return this;
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+      while (currIter == null || !currIter.hasNext()) {
+        currIter = readNextMessage();
+        if (currIter == null) return false;
       }
-      return as;
+      return true;
+    }
+
+    @Override
+    public StructureData next() throws IOException {
+      recnum++;
+      return currIter.next();
+    }
+
+    private StructureDataIterator readNextMessage() throws IOException {
+      while (next < messagePos.length) {
+        MessageScanner scan = new MessageScanner(raf, messagePos[next++], false);
+        if (!scan.hasNext()) continue;
+        Message m = scan.next();
+        if (m == null || m.containsBufrTable() || !protoMessage.equals(m)) continue;
+        return readMessage(m).getStructureDataIterator();
+      }
+      return null;
     }
 
     @Override
@@ -242,7 +318,6 @@ public class BufrIosp2 extends AbstractIOServiceProvider {
     public void close() {
       if (currIter != null) currIter.close();
       currIter = null;
-      if (debugIter) System.out.printf("BUFR read recnum %d%n", recnum);
     }
   }
 
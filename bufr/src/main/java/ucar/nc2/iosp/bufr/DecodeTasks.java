@@ -0,0 +1,95 @@
+/*
+ * Copyright 1998-2013 University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package ucar.nc2.iosp.bufr;
+
+import ucar.unidata.io.RandomAccessFile;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Helper for decoding the subsets of a message in parallel.
+ *
+ * @since 10/19/2016
+ */
+class DecodeTasks {
+  static private int parallelThreshold = 1000;
+
+  // messages with at least this many subsets are decoded in parallel; 0 disables
+  static void setParallelThreshold(int nsubsets) {
+    parallelThreshold = nsubsets;
+  }
+
+  static boolean useParallel(int nsubsets) {
+    return (parallelThreshold > 0) && (nsubsets >= parallelThreshold) && (ForkJoinPool.getCommonPoolParallelism() > 1);
+  }
+
+  static int getParallelism() {
+    return ForkJoinPool.getCommonPoolParallelism();
+  }
+
+  /**
+   * Read the data section of the message into memory, so it can be shared by the decoding threads.
+   * Bit offsets are from the start of the data, as for a BitReader starting at getDataPos() + 4.
+   */
+  static byte[] readDataSection(Message m, RandomAccessFile raf) throws IOException {
+    byte[] data = new byte[m.dataSection.getDataLength() - 4];
+    raf.seek(m.dataSection.getDataPos() + 4);
+    raf.readFully(data);
+    return data;
+  }
+
+  // run the tasks on the common pool, wait for all to finish
+  static void invokeAll(List<Callable<Void>> tasks) throws IOException {
+    List<Future<Void>> results = ForkJoinPool.commonPool().invokeAll(tasks);
+    try {
+      for (Future<Void> result : results)
+        result.get();
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) throw (IOException) cause;
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      throw new IOException(cause);
+    }
+  }
+}
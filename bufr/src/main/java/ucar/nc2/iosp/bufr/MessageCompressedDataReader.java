@@ -42,9 +42,12 @@ import ucar.unidata.io.RandomAccessFile;
 
 import java.io.IOException;
 import java.util.Formatter;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.HashMap;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 /**
  * Reads through the data of a message.
@@ -101,6 +104,10 @@ import java.util.ArrayList;
    For Sequences, inner.length is the same for all datasets in the message. However, it may vary across messages. However, we
      only iterate over the inner sequence, never across all messages. So the implementation can be specific to the meassage.
 
+   When reading all datasets of a large message, the field headers (Ro, NBINC) are scanned sequentially, and the location
+     of each numeric column of increments is recorded. The columns are then decoded in parallel, one task for each
+     member iterator, since the values for an iterator must be set in order.
+
    */
 
 public class MessageCompressedDataReader {
@@ -161,6 +168,7 @@ public class MessageCompressedDataReader {
     Range r; // requested range
     DpiTracker dpiTracker; // may be null
     int outerRow; // if inner process needs to know what row its on
+    Map<IndexIterator, List<Column>> columns; // deferred numeric columns, for parallel decoding; may be null
 
     Request(ArrayStructureMA ama, HashMap<DataDescriptor, StructureMembers.Member> map, Range r) {
       this.ama = ama;
@@ -168,6 +176,15 @@ public class MessageCompressedDataReader {
       this.r = r;
     }
 
+    void addColumn(IndexIterator iter, Column col) {
+      List<Column> cols = columns.get(iter);
+      if (cols == null) {
+        cols = new ArrayList<>();
+        columns.put(iter, cols);
+      }
+      cols.add(col);
+    }
+
     boolean wantRow(int row) {
       if (ama == null) return false;
       if (r == null) return true;
@@ -175,6 +192,23 @@ public class MessageCompressedDataReader {
     }
   }
 
+  // location of the compressed increments of one numeric field
+  private static class Column {
+    final int bitStart; // start of the increments
+    final long dataMin;
+    final int dataWidth;
+    final int useBitWidth;
+    final int ndatasets;
+
+    Column(int bitStart, long dataMin, int dataWidth, int useBitWidth, int ndatasets) {
+      this.bitStart = bitStart;
+      this.dataMin = dataMin;
+      this.dataWidth = dataWidth;
+      this.useBitWidth = useBitWidth;
+      this.ndatasets = ndatasets;
+    }
+  }
+
   // An iterator is stored in member.getDataObject() which keeps track of where we are.
   // For fixed length nested Structures, we need fld(dataset, inner1, inner2,  ...) but we have fld(inner1, inner2, ... , dataset)
   //  so we permute the dimensions
@@ -238,14 +272,26 @@ public class MessageCompressedDataReader {
   // read / count the bits in a compressed message
   private int readData(Message m, RandomAccessFile raf, Formatter f, Request req) throws IOException {
     
-    BitReader reader = new BitReader(raf, m.dataSection.getDataPos() + 4);
     DataDescriptor root = m.getRootDataDescriptor();
     if (root.isBad) return 0;
 
+    byte[] data = null;
+    BitReader reader;
+    if (req.ama != null && req.r == null && f == null && DecodeTasks.useParallel(m.getNumberDatasets())) {
+      data = DecodeTasks.readDataSection(m, raf);
+      reader = new BitReader(data);
+      req.columns = new IdentityHashMap<>();
+    } else {
+      reader = new BitReader(raf, m.dataSection.getDataPos() + 4);
+    }
+
     DebugOut out = (f == null) ? null : new DebugOut(f);
     BitCounterCompressed[] counterFlds = new BitCounterCompressed[root.subKeys.size()]; // one for each field  LOOK why not m.counterFlds ?
     readData(out, reader, counterFlds, root, 0, m.getNumberDatasets(), req);
 
+    if (req.columns != null)
+      readColumns(data, req.columns);
+
     m.msg_nbits = 0;
     for (BitCounterCompressed counter : counterFlds)
       if (counter != null) m.msg_nbits += counter.getTotalBits();
@@ -419,24 +465,15 @@ public class MessageCompressedDataReader {
 
       // numeric fields
 
+      // defer to parallel decoding
+      if (req.columns != null && iter != null && !isDpi && !isDpiField && out == null) {
+        req.addColumn(iter, new Column(bitOffset - dataWidth * ndatasets, dataMin, dataWidth, useBitWidth, ndatasets));
+        continue;
+      }
+
       // if dataWidth == 0, just use min value, otherwise read the compressed value here
       for (int dataset = 0; dataset < ndatasets; dataset++) {
-        long value = dataMin;
-
-        if (dataWidth > 0) {
-          long cv = reader.bits2UInt(dataWidth);
-          if ( BufrNumbers.isMissing(cv, dataWidth))
-            value = BufrNumbers.missingValue(useBitWidth); // set to missing value
-          else // add to minimum
-            value += cv;
-        }
-
-        // workaround for malformed messages
-        if (dataWidth > useBitWidth) {
-          long missingVal = BufrNumbers.missingValue(useBitWidth);
-          if ((value & missingVal) != value) // overflow
-            value = missingVal;     // replace with missing value
-        }
+        long value = readValue(reader, dataMin, dataWidth, useBitWidth);
 
         if (req.wantRow(dataset)) {
           if (isDpiField) {
@@ -466,6 +503,46 @@ public class MessageCompressedDataReader {
     return bitOffset;
   }
 
+  // read the next compressed value; if dataWidth == 0, just use min value
+  private static long readValue(BitReader reader, long dataMin, int dataWidth, int useBitWidth) throws IOException {
+    long value = dataMin;
+
+    if (dataWidth > 0) {
+      long cv = reader.bits2UInt(dataWidth);
+      if ( BufrNumbers.isMissing(cv, dataWidth))
+        value = BufrNumbers.missingValue(useBitWidth); // set to missing value
+      else // add to minimum
+        value += cv;
+    }
+
+    // workaround for malformed messages
+    if (dataWidth > useBitWidth) {
+      long missingVal = BufrNumbers.missingValue(useBitWidth);
+      if ((value & missingVal) != value) // overflow
+        value = missingVal;     // replace with missing value
+    }
+    return value;
+  }
+
+  // decode the deferred columns, one task for each member iterator
+  private void readColumns(byte[] data, Map<IndexIterator, List<Column>> columns) throws IOException {
+    List<Callable<Void>> tasks = new ArrayList<>(columns.size());
+    for (Map.Entry<IndexIterator, List<Column>> entry : columns.entrySet()) {
+      IndexIterator iter = entry.getKey();
+      List<Column> cols = entry.getValue();
+      tasks.add(() -> {
+        BitReader reader = new BitReader(data);
+        for (Column col : cols) {
+          reader.setBitOffset(col.bitStart);
+          for (int dataset = 0; dataset < col.ndatasets; dataset++)
+            iter.setLongNext(readValue(reader, col.dataMin, col.dataWidth, col.useBitWidth));
+        }
+        return null;
+      });
+    }
+    DecodeTasks.invokeAll(tasks);
+  }
+
   // read in the data into an ArrayStructureMA, holding an ArrayObject() of ArraySequence
   private int makeArraySequenceCompressed(DebugOut out, BitReader reader, BitCounterCompressed bitCounterNested, DataDescriptor seqdd,
                          int bitOffset, int ndatasets, int count, Request req) throws IOException {
@@ -485,6 +562,7 @@ public class MessageCompressedDataReader {
       associateMessage2Members(members, seqdd, nmap);
     }
     Request nreq = new Request(ama, nmap, req.r);
+    nreq.columns = req.columns;
 
     // iterate over the number of replications, reading ndataset compressed values at each iteration
     if (out != null) out.indent.incr();
@@ -41,8 +41,10 @@ import ucar.nc2.constants.CDM;
 import ucar.nc2.iosp.BitReader;
 import ucar.unidata.io.RandomAccessFile;
 
+import java.util.ArrayList;
 import java.util.Formatter;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
@@ -102,9 +104,6 @@ public class MessageUncompressedDataReader {
    * @throws IOException on read error
    */
   public ArrayStructure readEntireMessage(Structure s, Message proto, Message m, RandomAccessFile raf, Formatter f) throws IOException {
-    // transfer info from proto message
-    DataDescriptor.transferInfo(proto.getRootDataDescriptor().getSubKeys(), m.getRootDataDescriptor().getSubKeys());
-
     // allocate ArrayStructureBB for outer structure
     // This assumes that all of the fields and all of the datasets are being read
     StructureMembers members = s.makeStructureMembers();
@@ -115,6 +114,16 @@ public class MessageUncompressedDataReader {
     ByteBuffer bb = abb.getByteBuffer();
     bb.order(ByteOrder.BIG_ENDIAN);
 
+    // use the compiled template if possible, then we dont need the tree for this message
+    if (f == null) {
+      TemplateDecoder decoder = TemplateDecoder.factory(proto, m);
+      if (decoder != null && readData(abb, m, raf, decoder))
+        return abb;
+    }
+
+    // transfer info from proto message
+    DataDescriptor.transferInfo(proto.getRootDataDescriptor().getSubKeys(), m.getRootDataDescriptor().getSubKeys());
+
     boolean addTime = false; // (s.findVariable(BufrIosp2.TIME_NAME) != null);
     readData(abb, m, raf, null, addTime, f);
 
@@ -137,13 +146,21 @@ public class MessageUncompressedDataReader {
    * @throws IOException on read error
    */
   public int readData(ArrayStructureBB abb, Message m, RandomAccessFile raf, Range r, boolean addTime, Formatter f) throws IOException {
-    BitReader reader = new BitReader(raf, m.dataSection.getDataPos() + 4);
     DataDescriptor root = m.getRootDataDescriptor();
     if (root.isBad) return 0;
 
+    int n = m.getNumberDatasets();
+    if (abb != null && r == null && f == null && !addTime && DecodeTasks.useParallel(n)) {
+      int[] startBits = getStartBits(m, root, n);
+      if (startBits != null) {
+        readDataParallel(abb, m, raf, root, startBits);
+        return 0;
+      }
+    }
+
+    BitReader reader = new BitReader(raf, m.dataSection.getDataPos() + 4);
     Request req = new Request(abb, r);
 
-    int n = m.getNumberDatasets();
     m.counterDatasets = new BitCounterUncompressed[n]; // one for each dataset
     m.msg_nbits = 0;
 
@@ -170,6 +187,114 @@ public class MessageUncompressedDataReader {
     return count;
   }
 
+  /*
+   * Read all datasets using a compiled template. Return false if the message size doesnt match the template.
+   */
+  private boolean readData(ArrayStructureBB abb, Message m, RandomAccessFile raf, TemplateDecoder decoder) throws IOException {
+    int n = m.getNumberDatasets();
+    int nbits = decoder.getDatasetBits();
+    long totalBits = (long) nbits * n;
+    long nbitsGiven = 8L * (m.dataSection.getDataLength() - 4);
+    if (nbits == 0 || totalBits > nbitsGiven || nbitsGiven - totalBits > 16) return false; // dont trust it
+    if (decoder.getDatasetBytes() != abb.getStructureSize()) return false;
+
+    byte[] data = DecodeTasks.readDataSection(m, raf);
+    ByteBuffer bb = abb.getByteBuffer();
+    if (DecodeTasks.useParallel(n)) {
+      int nblocks = Math.min(n, 4 * DecodeTasks.getParallelism());
+      List<Callable<Void>> tasks = new ArrayList<>(nblocks);
+      for (int b = 0; b < nblocks; b++) {
+        final int start = (int) ((long) n * b / nblocks);
+        final int end = (int) ((long) n * (b + 1) / nblocks);
+        tasks.add(() -> {
+          BitReader reader = new BitReader(data);
+          reader.setBitOffset(start * nbits);
+          ByteBuffer bbp = bb.duplicate();
+          bbp.order(ByteOrder.BIG_ENDIAN);
+          bbp.position(start * abb.getStructureSize());
+          for (int i = start; i < end; i++)
+            decoder.decode(reader, bbp);
+          return null;
+        });
+      }
+      DecodeTasks.invokeAll(tasks);
+
+    } else {
+      BitReader reader = new BitReader(data);
+      for (int i = 0; i < n; i++)
+        decoder.decode(reader, bb);
+    }
+
+    m.counterDatasets = null; // counted if needed by Message.getBitCounterUncompressed()
+    m.msg_nbits = (int) totalBits;
+    return true;
+  }
+
+  /*
+   * Find the starting bit of each dataset, so they can be decoded independently.
+   * Known if the datasets are fixed length, or if the message bits have already been counted.
+   * Return null if not known.
+   */
+  private int[] getStartBits(Message m, DataDescriptor root, int n) {
+    int[] startBits = new int[n];
+
+    if (!root.isVarLength) {
+      long nbits = (long) root.total_nbits * n;
+      long nbitsGiven = 8L * (m.dataSection.getDataLength() - 4);
+      if (root.total_nbits == 0 || nbits > nbitsGiven || nbitsGiven - nbits > 16) return null; // dont trust it
+      for (int i = 0; i < n; i++)
+        startBits[i] = i * root.total_nbits;
+      return startBits;
+    }
+
+    BitCounterUncompressed[] counters = m.counterDatasets;
+    if (counters == null || counters.length != n || m.msg_nbits == 0) return null;
+    for (int i = 0; i < n; i++) {
+      if (counters[i] == null) return null;
+      startBits[i] = counters[i].getStartBit(0);
+    }
+    return startBits;
+  }
+
+  /*
+   * Decode all the datasets of the message in parallel. Each dataset has its own BitReader, starting at its
+   * known bit offset, and writes into its own slice of the ArrayStructureBB.
+   */
+  private void readDataParallel(ArrayStructureBB abb, Message m, RandomAccessFile raf, DataDescriptor root, int[] startBits) throws IOException {
+    final byte[] data = DecodeTasks.readDataSection(m, raf);
+    final int n = startBits.length;
+    final int recsize = abb.getStructureSize();
+    final BitCounterUncompressed[] counters = new BitCounterUncompressed[n];
+
+    // split the datasets into contiguous blocks, a few per thread
+    int nblocks = Math.min(n, 4 * DecodeTasks.getParallelism());
+    List<Callable<Void>> tasks = new ArrayList<>(nblocks);
+    for (int b = 0; b < nblocks; b++) {
+      final int start = (int) ((long) n * b / nblocks);
+      final int end = (int) ((long) n * (b + 1) / nblocks);
+      tasks.add(() -> {
+        BitReader reader = new BitReader(data);
+        ByteBuffer bb = abb.getByteBuffer().duplicate();
+        bb.order(ByteOrder.BIG_ENDIAN);
+        Request req = new Request(abb, bb, null);
+        for (int i = start; i < end; i++) {
+          reader.setBitOffset(startBits[i]);
+          bb.position(i * recsize);
+          req.setRow(i);
+          counters[i] = new BitCounterUncompressed(root, 1, 0);
+          readData(null, reader, counters[i], root.subKeys, 0, req);
+        }
+        return null;
+      });
+    }
+    DecodeTasks.invokeAll(tasks);
+
+    m.counterDatasets = counters;
+    m.msg_nbits = 0;
+    for (BitCounterUncompressed counter : counters)
+      m.msg_nbits += counter.countBits(m.msg_nbits);
+  }
+
   private static class Request {
     ArrayStructureBB abb;
     ByteBuffer bb;
@@ -183,6 +308,14 @@ public class MessageUncompressedDataReader {
       this.row = 0;
     }
 
+    // use a private view of the ArrayStructureBB buffer
+    Request(ArrayStructureBB abb, ByteBuffer bb, Range r) {
+      this.abb = abb;
+      this.bb = bb;
+      this.r = r;
+      this.row = 0;
+    }
+
     Request setRow(int row) {
       this.row = row;
       return this;
@@ -232,7 +365,10 @@ public class MessageUncompressedDataReader {
         ArraySequence seq = makeArraySequenceUncompressed(out, reader, bitCounterNested, dkey, req);
 
         if (req.wantRow()) {
-          int index = req.abb.addObjectToHeap(seq);
+          int index;
+          synchronized (req.abb) { // heap may be shared by parallel decoding
+            index = req.abb.addObjectToHeap(seq);
+          }
           if (req.bb.position() >= req.bb.limit())
             System.out.println("Bufr HEY");
           req.bb.putInt(index); // an index into the Heap
@@ -0,0 +1,207 @@
+/*
+ * Copyright 1998-2013 University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package ucar.nc2.iosp.bufr;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import javax.annotation.concurrent.Immutable;
+import ucar.nc2.iosp.BitReader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A flat decoding program for uncompressed messages of one template, with no delayed replication.
+ * The DataDescriptor tree is walked once, and replicated structures are unrolled into a list of fields
+ * in the order they are stored in both the message and the ArrayStructureBB.
+ * Programs are cached by the section 3 descriptors and the table versions, so later messages
+ * of the same template dont need their own tree.
+ *
+ * @since 10/19/2016
+ */
+@Immutable
+class TemplateDecoder {
+  static private final TemplateDecoder NOT_COMPILABLE = new TemplateDecoder(null, null, null, 0, 0);
+  static private final Cache<String, TemplateDecoder> cache = CacheBuilder.newBuilder().maximumSize(1000).recordStats().build();
+  static private boolean enabled = true;
+
+  // turn off to always walk the DataDescriptor tree
+  static void setEnabled(boolean b) {
+    enabled = b;
+  }
+
+  /**
+   * Get the compiled program for this message, using the tree of a prototype message with the same template.
+   *
+   * @param proto prototype message, has been processed
+   * @param m     message to be read
+   * @return program, or null if m does not use the proto template, or the template cant be compiled.
+   */
+  static TemplateDecoder factory(Message proto, Message m) {
+    if (!enabled || proto.dds.isCompressed() || m.dds.isCompressed()) return null;
+    String key = makeKey(m);
+    if (!key.equals(makeKey(proto))) return null;
+
+    TemplateDecoder result;
+    try {
+      result = cache.get(key, () -> compile(proto.getRootDataDescriptor()));
+    } catch (ExecutionException e) {
+      return null;
+    }
+    return (result == NOT_COMPILABLE) ? null : result;
+  }
+
+  static void clearCache() {
+    cache.invalidateAll();
+  }
+
+  static void showCache(Formatter f) {
+    f.format("TemplateDecoder cache size=%d %s%n", cache.size(), cache.stats());
+  }
+
+  // the tree depends on the descriptors and the tables
+  static private String makeKey(Message m) {
+    BufrTableLookup lookup = m.getLookup();
+    Formatter f = new Formatter();
+    f.format("%d.%d.%d.%d.%d.%d:", lookup.getBufrEdition(), lookup.getCenter(), lookup.getSubCenter(), lookup.getMasterTableId(),
+            lookup.getMasterTableVersion(), lookup.getLocalTableVersion());
+    for (short fxy : m.dds.getDataDescriptors())
+      f.format("%d,", fxy);
+    return f.toString();
+  }
+
+  static private TemplateDecoder compile(DataDescriptor root) {
+    if (root.isBad) return NOT_COMPILABLE;
+    List<DataDescriptor> fields = new ArrayList<>();
+    if (!addFields(root.subKeys, fields)) return NOT_COMPILABLE;
+
+    int n = fields.size();
+    int[] bitWidth = new int[n];
+    int[] byteWidth = new int[n];
+    boolean[] isChar = new boolean[n];
+    int nbits = 0;
+    int nbytes = 0;
+    for (int i = 0; i < n; i++) {
+      DataDescriptor dkey = fields.get(i);
+      isChar[i] = (dkey.type == 1);
+      byteWidth[i] = dkey.getByteWidthCDM();
+      bitWidth[i] = isChar[i] ? 8 * byteWidth[i] : dkey.bitWidth;
+      nbits += bitWidth[i];
+      nbytes += (isChar[i] || byteWidth[i] == 1 || byteWidth[i] == 2 || byteWidth[i] == 4) ? byteWidth[i] : 8;
+    }
+    return new TemplateDecoder(bitWidth, byteWidth, isChar, nbits, nbytes);
+  }
+
+  // same order as MessageUncompressedDataReader.readData(); false if there is variable length data
+  static private boolean addFields(List<DataDescriptor> dkeys, List<DataDescriptor> fields) {
+    for (DataDescriptor dkey : dkeys) {
+      if (!dkey.isOkForVariable()) continue;
+      if (dkey.replication == 0) return false;
+
+      if (dkey.type == 3) {
+        for (int i = 0; i < dkey.replication; i++)
+          if (!addFields(dkey.subKeys, fields)) return false;
+        continue;
+      }
+      fields.add(dkey);
+    }
+    return true;
+  }
+
+  ////////////////////////////////////////////////////////////////////////////
+
+  private final int[] bitWidth;   // bits in the message
+  private final int[] byteWidth;  // bytes in the ArrayStructureBB
+  private final boolean[] isChar;
+  private final int nbits;        // total bits in one dataset
+  private final int nbytes;       // total bytes written for one dataset
+
+  private TemplateDecoder(int[] bitWidth, int[] byteWidth, boolean[] isChar, int nbits, int nbytes) {
+    this.bitWidth = bitWidth;
+    this.byteWidth = byteWidth;
+    this.isChar = isChar;
+    this.nbits = nbits;
+    this.nbytes = nbytes;
+  }
+
+  /**
+   * @return number of bits in each dataset
+   */
+  int getDatasetBits() {
+    return nbits;
+  }
+
+  /**
+   * @return number of bytes written for each dataset
+   */
+  int getDatasetBytes() {
+    return nbytes;
+  }
+
+  /**
+   * Decode one dataset.
+   *
+   * @param reader positioned at the start of the dataset
+   * @param bb     put the values here, as MessageUncompressedDataReader does
+   * @throws IOException on read error
+   */
+  void decode(BitReader reader, ByteBuffer bb) throws IOException {
+    for (int i = 0; i < bitWidth.length; i++) {
+      if (isChar[i]) {
+        for (int j = 0; j < byteWidth[i]; j++)
+          bb.put((byte) reader.bits2UInt(8));
+        continue;
+      }
+
+      long result = reader.bits2UInt(bitWidth[i]);
+      switch (byteWidth[i]) {
+        case 1:
+          bb.put((byte) result);
+          break;
+        case 2:
+          bb.putShort((short) result);
+          break;
+        case 4:
+          bb.putInt((int) result);
+          break;
+        default:
+          bb.putLong(result);
+      }
+    }
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 1998-2009 University Corporation for Atmospheric Research/Unidata
+ *
+ * Portions of this software were developed by the Unidata Program at the
+ * University Corporation for Atmospheric Research.
+ *
+ * Access and use of this software shall impose the following obligations
+ * and understandings on the user. The user is granted the right, without
+ * any fee or cost, to use, copy, modify, alter, enhance and distribute
+ * this software, and any derivative works thereof, and its supporting
+ * documentation for any purpose whatsoever, provided that this entire
+ * notice appears in all copies of the software, derivative works and
+ * supporting documentation.  Further, UCAR requests that the user credit
+ * UCAR/Unidata in any publications that result from the use of this
+ * software or in any product that includes this software. The names UCAR
+ * and/or Unidata, however, may not be used in any advertising or publicity
+ * to endorse or promote any products or commercial entity unless specific
+ * written permission is obtained from UCAR/Unidata. The user also
+ * understands that UCAR/Unidata is not obligated to provide the user with
+ * any support, consulting, training or assistance of any kind with regard
+ * to the use, operation and performance of this software nor to provide
+ * the user with any updates, revisions, new versions or "bug fixes."
+ *
+ * THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ * INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ * FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ * NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ * WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.dt.radial;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import ucar.ma2.Array;
+import ucar.nc2.constants.FeatureType;
+import ucar.nc2.dt.RadialDatasetSweep;
+import ucar.nc2.ft.FeatureDatasetFactoryManager;
+import ucar.unidata.geoloc.EarthLocation;
+import ucar.unidata.geoloc.projection.FlatEarth;
+import ucar.unidata.util.test.TestDir;
+import ucar.unidata.util.test.category.NeedsCdmUnitTest;
+
+import java.io.IOException;
+import java.util.Formatter;
+
+/**
+ * Test RadialResampler on a nexrad2 sweep
+ *
+ * @since 10/19/2016
+ */
+@Category(NeedsCdmUnitTest.class)
+public class TestRadialResampler {
+  private String location = TestDir.cdmUnitTestDir + "formats/nexrad/level2/Level2_KYUX_20060527_2335.ar2v";
+
+  @After
+  public void clear() {
+    RadialResampler.clearCache();
+  }
+
+  @Test
+  public void testResample() throws IOException {
+    Formatter errlog = new Formatter();
+    try (RadialDatasetSweep rds = (RadialDatasetSweep) FeatureDatasetFactoryManager.open(FeatureType.RADIAL, location, null, errlog)) {
+      Assert.assertNotNull(errlog.toString(), rds);
+      RadialDatasetSweep.RadialVariable rv = (RadialDatasetSweep.RadialVariable) rds.getDataVariable("Reflectivity");
+      Assert.assertNotNull(rv);
+      RadialDatasetSweep.Sweep sweep = rv.getSweep(0);
+
+      // 2 km grid centered on the radar
+      EarthLocation origin = sweep.getOrigin(0);
+      FlatEarth proj = new FlatEarth(origin.getLatitude(), origin.getLongitude());
+      RadialResampler.TargetGrid grid = new RadialResampler.TargetGrid(proj, -199, -199, 2, 2, 200, 200);
+
+      float[] data = sweep.readData();
+      double min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+      for (float v : data) {
+        if (Float.isNaN(v)) continue;
+        min = Math.min(min, v);
+        max = Math.max(max, v);
+      }
+
+      for (RadialResampler.Method method : RadialResampler.Method.values()) {
+        long start = System.nanoTime();
+        Array first = RadialResampler.resample(rds.getRadarID(), sweep, grid, method);
+        long took1 = System.nanoTime() - start;
+        start = System.nanoTime();
+        Array second = RadialResampler.resample(rds.getRadarID(), sweep, grid, method);
+        long took2 = System.nanoTime() - start;
+        System.out.printf("%s: first=%d msecs, cached=%d msecs%n", method, took1 / 1000 / 1000, took2 / 1000 / 1000);
+
+        Assert.assertArrayEquals(new int[]{200, 200}, first.getShape());
+        Assert.assertArrayEquals((float[]) first.getStorage(), (float[]) second.getStorage(), 0.0f);
+
+        int count = 0;
+        float[] result = (float[]) first.getStorage();
+        for (float v : result) {
+          if (Float.isNaN(v)) continue;
+          count++;
+          Assert.assertTrue(method + " " + v, v >= min - 1.0e-3 && v <= max + 1.0e-3);
+        }
+        Assert.assertTrue(method + " no data", count > 0);
+      }
+
+      Formatter f = new Formatter();
+      RadialResampler.showCache(f);
+      System.out.printf("%s", f);
+    }
+  }
+}
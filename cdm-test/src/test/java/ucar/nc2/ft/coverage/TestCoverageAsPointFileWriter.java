@@ -19,6 +19,7 @@ import ucar.nc2.ft2.coverage.CoverageDatasetFactory;
 import ucar.nc2.ft2.coverage.SubsetParams;
 import ucar.nc2.ft2.coverage.writer.CoverageAsPoint;
 import ucar.unidata.geoloc.LatLonPointImpl;
+import ucar.unidata.geoloc.StationImpl;
 import ucar.unidata.util.test.category.NeedsCdmUnitTest;
 import ucar.unidata.util.test.TestDir;
 
@@ -128,4 +129,47 @@ public class TestCoverageAsPointFileWriter {
       }
 
     }
+
+    @Test
+    public void batchMatchesSinglePoint() throws IOException, InvalidRangeException {
+      List<StationImpl> stations = Lists.newArrayList(
+              new StationImpl("A", "first", null, 35.0, -140.0, 0.0),
+              new StationImpl("B", "second", null, 40.0, -105.0, 0.0),
+              new StationImpl("outside", "not in the grid", null, -80.0, 0.0, 0.0));
+
+      try (FeatureDatasetCoverage cc = CoverageDatasetFactory.open(endpoint)) {
+        Assert.assertNotNull(endpoint, cc);
+        CoverageCollection gds = cc.getCoverageCollections().get(0);
+
+        SubsetParams params = new SubsetParams();
+        params.setVariables(covList);
+        CoverageAsPoint batch = new CoverageAsPoint(gds, covList, params, stations);
+        StationTimeSeriesFeatureCollection batchColl = (StationTimeSeriesFeatureCollection) batch.asFeatureDatasetPoint().getPointFeatureCollectionList().get(0);
+        Assert.assertEquals(2, batchColl.getStationFeatures().size());
+        Assert.assertNull(batchColl.findStationFeature("outside"));
+
+        for (StationImpl stn : stations.subList(0, 2)) {
+          SubsetParams one = new SubsetParams();
+          one.setVariables(covList);
+          one.setLatLonPoint(new LatLonPointImpl(stn.getLatitude(), stn.getLongitude()));
+          CoverageAsPoint single = new CoverageAsPoint(gds, covList, one);
+          StationTimeSeriesFeatureCollection singleColl = (StationTimeSeriesFeatureCollection) single.asFeatureDatasetPoint().getPointFeatureCollectionList().get(0);
+
+          List<PointFeature> want = new ArrayList<>();
+          for (StationTimeSeriesFeature stnFeature : singleColl)
+            for (PointFeature pf : stnFeature)
+              want.add(pf);
+
+          StationTimeSeriesFeature got = batchColl.getStationTimeSeriesFeature(batchColl.findStationFeature(stn.getName()));
+          int count = 0;
+          for (PointFeature pf : got) {
+            PointFeature wantPf = want.get(count++);
+            Assert.assertEquals(wantPf.getObservationTime(), pf.getObservationTime(), 1.0e-6);
+            for (String covName : covList)
+              Assert.assertEquals(covName, wantPf.getDataAll().convertScalarDouble(covName), pf.getDataAll().convertScalarDouble(covName), 1.0e-6);
+          }
+          Assert.assertEquals(want.size(), count);
+        }
+      }
+    }
 }
@@ -0,0 +1,216 @@
+/* Copyright Unidata */
+package ucar.nc2.ft.coverage;
+
+import com.google.common.collect.Lists;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.MAMath;
+import ucar.ma2.RangeIterator;
+import ucar.nc2.Attribute;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFileWriter;
+import ucar.nc2.Variable;
+import ucar.nc2.constants.CF;
+import ucar.nc2.constants.FeatureType;
+import ucar.nc2.ft2.coverage.*;
+import ucar.nc2.ft2.coverage.writer.CFGridCoverageWriter2;
+import ucar.nc2.ft2.coverage.writer.Regridder;
+import ucar.nc2.ft2.coverage.writer.TargetGrid;
+import ucar.nc2.util.Optional;
+import ucar.unidata.geoloc.LatLonPoint;
+import ucar.unidata.geoloc.LatLonPointImpl;
+import ucar.unidata.geoloc.LatLonRect;
+import ucar.unidata.geoloc.projection.Mercator;
+import ucar.unidata.util.test.TestDir;
+import ucar.unidata.util.test.category.NeedsCdmUnitTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Test regridding coverages onto a lat/lon or web mercator grid
+ *
+ * @since 10/19/2016
+ */
+@Category(NeedsCdmUnitTest.class)
+public class TestCoverageRegrid {
+  private String endpoint = TestDir.cdmUnitTestDir + "ft/coverage/03061219_ruc.nc";
+  private String covName = "P_sfc";
+  private LatLonRect bbox = new LatLonRect(new LatLonPointImpl(30.0, -110.0), 15.0, 20.0);
+
+  @Test
+  public void testNearestMatchesPointRead() throws IOException, InvalidRangeException {
+    try (FeatureDatasetCoverage cc = CoverageDatasetFactory.open(endpoint)) {
+      Assert.assertNotNull(endpoint, cc);
+      CoverageCollection gcs = cc.findCoverageDataset(FeatureType.GRID);
+      Coverage coverage = gcs.findCoverage(covName);
+      Assert.assertNotNull(covName, coverage);
+
+      TargetGrid target = TargetGrid.factory("EPSG:4326", bbox, 40, 30);
+      SubsetParams params = Regridder.makeSourceParams(new SubsetParams(), target, coverage.getCoordSys().getHorizCoordSys());
+      GeoReferencedArray source = coverage.readData(params);
+      GeoReferencedArray geo = Regridder.regrid(source, target, Regridder.Method.nearest);
+
+      int[] shape = geo.getData().getShape();
+      int rank = shape.length;
+      Assert.assertEquals(source.getData().getRank(), rank);
+      Assert.assertEquals(30, shape[rank - 2]);
+      Assert.assertEquals(40, shape[rank - 1]);
+      Assert.assertFalse(geo.getCoordSysForData().getHorizCoordSys().getIsProjection());
+
+      // compare some points with the value the point subset finds
+      Array data = geo.getData();
+      for (int j = 3; j < 30; j += 9) {
+        for (int i = 5; i < 40; i += 11) {
+          double lat = target.getY(j);
+          double lon = target.getX(i);
+          GeoReferencedArray pt = coverage.readData(new SubsetParams().setLatLonPoint(new LatLonPointImpl(lat, lon)));
+          double want = pt.getData().getDouble(0);
+          double got = data.getDouble(j * 40 + i);  // first slice
+          Assert.assertEquals(lat + " " + lon, want, got, 1.0e-6);
+        }
+      }
+
+      // a second request with the same grids uses the cached map, and gives the same answer
+      GeoReferencedArray geo2 = Regridder.regrid(coverage.readData(params), target, Regridder.Method.nearest);
+      Array data2 = geo2.getData();
+      Assert.assertEquals(data.getSize(), data2.getSize());
+      for (int k = 0; k < data.getSize(); k++)
+        Assert.assertEquals(data.getDouble(k), data2.getDouble(k), 0.0);
+    }
+  }
+
+  @Test
+  public void testBilinearInRange() throws IOException, InvalidRangeException {
+    try (FeatureDatasetCoverage cc = CoverageDatasetFactory.open(endpoint)) {
+      Assert.assertNotNull(endpoint, cc);
+      CoverageCollection gcs = cc.findCoverageDataset(FeatureType.GRID);
+      Coverage coverage = gcs.findCoverage(covName);
+
+      TargetGrid target = TargetGrid.factory("EPSG:4326", bbox, 40, 30);
+      GeoReferencedArray source = coverage.readData(Regridder.makeSourceParams(new SubsetParams(), target, coverage.getCoordSys().getHorizCoordSys()));
+      GeoReferencedArray geo = Regridder.regrid(source, target, Regridder.Method.bilinear);
+
+      MAMath.MinMax want = MAMath.getMinMaxSkipMissingData(source.getData(), source);
+      MAMath.MinMax got = MAMath.getMinMaxSkipMissingData(geo.getData(), geo);
+      Assert.assertTrue(got.min >= want.min);
+      Assert.assertTrue(got.max <= want.max);
+    }
+  }
+
+  @Test
+  public void testWriteWebMercator() throws IOException, InvalidRangeException {
+    File tempFile = TestDir.getTempFile();
+
+    try (FeatureDatasetCoverage cc = CoverageDatasetFactory.open(endpoint)) {
+      Assert.assertNotNull(endpoint, cc);
+      CoverageCollection gcs = cc.findCoverageDataset(FeatureType.GRID);
+
+      SubsetParams params = new SubsetParams();
+      params.set(SubsetParams.regrid, TargetGrid.factory("EPSG:3857", bbox, 64, 48));
+      params.set(SubsetParams.regridMethod, "bilinear");
+
+      NetcdfFileWriter writer = NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3, tempFile.getPath(), null);
+      Optional<Long> opt = CFGridCoverageWriter2.writeOrTestSize(gcs, Lists.newArrayList(covName), params, false, false, writer);
+      Assert.assertTrue(opt.getErrorMessage(), opt.isPresent());
+    }
+
+    try (FeatureDatasetCoverage cc = CoverageDatasetFactory.open(tempFile.getPath())) {
+      Assert.assertNotNull(tempFile.getPath(), cc);
+      CoverageCollection gcs = cc.findCoverageDataset(FeatureType.GRID);
+      Coverage coverage = gcs.findCoverage(covName);
+      Assert.assertNotNull(covName, coverage);
+
+      HorizCoordSys hcs = coverage.getCoordSys().getHorizCoordSys();
+      Assert.assertTrue(hcs.getIsProjection());
+      Assert.assertTrue(hcs.getTransform().getProjection() instanceof Mercator);
+      Assert.assertEquals(64, hcs.getXAxis().getNcoords());
+      Assert.assertEquals(48, hcs.getYAxis().getNcoords());
+    }
+  }
+
+  @Test
+  public void testLatLonsProjection() throws IOException {
+    try (FeatureDatasetCoverage cc = CoverageDatasetFactory.open(endpoint)) {
+      Assert.assertNotNull(endpoint, cc);
+      HorizCoordSys hcs = cc.findCoverageDataset(FeatureType.GRID).getHorizCoordSys();
+      Assert.assertTrue(hcs.getIsProjection());
+      checkLatLons(hcs);
+    }
+  }
+
+  @Test
+  public void testLatLonsCurvilinear() throws IOException {
+    String curvilinear = TestDir.cdmUnitTestDir + "transforms/UTM/artabro_20120425.nc";  // 2D lat/lon only
+    try (FeatureDatasetCoverage cc = CoverageDatasetFactory.open(curvilinear)) {
+      Assert.assertNotNull(curvilinear, cc);
+      HorizCoordSys hcs = cc.getCoverageCollections().get(0).getHorizCoordSys();
+      Assert.assertTrue(hcs instanceof HorizCoordSys2D);
+      checkLatLons(hcs);
+    }
+  }
+
+  // the cached 2D lat/lons must match the lat/lon of each point
+  private void checkLatLons(HorizCoordSys hcs) {
+    List<RangeIterator> ranges = hcs.getRanges();
+    int ny = ranges.get(0).length();
+    int nx = ranges.get(1).length();
+
+    double[][] latlons = hcs.getLatLons();
+    Assert.assertSame(latlons, hcs.getLatLons());  // computed once
+    Assert.assertEquals(ny * nx, latlons[0].length);
+    Assert.assertEquals(ny * nx, latlons[1].length);
+    for (int j = 0; j < ny; j++) {
+      for (int i = 0; i < nx; i++) {
+        LatLonPoint want = hcs.getLatLon(j, i);
+        int k = j * nx + i;
+        Assert.assertEquals(j + " " + i, want.getLatitude(), latlons[0][k], 1.0e-6);
+        Assert.assertEquals(j + " " + i, 0.0, LatLonPointImpl.lonNormal(want.getLongitude() - latlons[1][k]), 1.0e-6);
+      }
+    }
+  }
+
+  @Test
+  public void testWriteAddLatLon() throws IOException, InvalidRangeException {
+    File tempFile = TestDir.getTempFile();
+    HorizCoordSys hcs;
+
+    try (FeatureDatasetCoverage cc = CoverageDatasetFactory.open(endpoint)) {
+      Assert.assertNotNull(endpoint, cc);
+      CoverageCollection gcs = cc.findCoverageDataset(FeatureType.GRID);
+      hcs = gcs.getHorizCoordSys();
+
+      NetcdfFileWriter writer = NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3, tempFile.getPath(), null);
+      Optional<Long> opt = CFGridCoverageWriter2.writeOrTestSize(gcs, Lists.newArrayList(covName), new SubsetParams(), true, false, writer);
+      Assert.assertTrue(opt.getErrorMessage(), opt.isPresent());
+    }
+
+    try (NetcdfFile ncfile = NetcdfFile.open(tempFile.getPath())) {
+      Variable lat = ncfile.findVariable("lat");
+      Variable lon = ncfile.findVariable("lon");
+      Assert.assertNotNull("lat", lat);
+      Assert.assertNotNull("lon", lon);
+      int ny = hcs.getYAxis().getNcoords();
+      int nx = hcs.getXAxis().getNcoords();
+      Assert.assertArrayEquals(new int[]{ny, nx}, lat.getShape());
+
+      Array latData = lat.read();
+      Array lonData = lon.read();
+      for (int j = 0; j < ny; j += 7) {
+        for (int i = 0; i < nx; i += 7) {
+          LatLonPoint want = hcs.getLatLon(j, i);
+          Assert.assertEquals(want.getLatitude(), latData.getDouble(j * nx + i), 1.0e-6);
+          Assert.assertEquals(0.0, LatLonPointImpl.lonNormal(want.getLongitude() - lonData.getDouble(j * nx + i)), 1.0e-6);
+        }
+      }
+
+      Attribute coords = ncfile.findVariable(covName).findAttribute(CF.COORDINATES);
+      Assert.assertNotNull(coords);
+      Assert.assertTrue(coords.getStringValue(), coords.getStringValue().contains("lat lon"));
+    }
+  }
+}
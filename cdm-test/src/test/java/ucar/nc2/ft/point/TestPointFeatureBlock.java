@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 1998 - 2010. University Corporation for Atmospheric Research/Unidata
+ * Portions of this software were developed by the Unidata Program at the
+ * University Corporation for Atmospheric Research.
+ *
+ * Access and use of this software shall impose the following obligations
+ * and understandings on the user. The user is granted the right, without
+ * any fee or cost, to use, copy, modify, alter, enhance and distribute
+ * this software, and any derivative works thereof, and its supporting
+ * documentation for any purpose whatsoever, provided that this entire
+ * notice appears in all copies of the software, derivative works and
+ * supporting documentation.  Further, UCAR requests that the user credit
+ * UCAR/Unidata in any publications that result from the use of this
+ * software or in any product that includes this software. The names UCAR
+ * and/or Unidata, however, may not be used in any advertising or publicity
+ * to endorse or promote any products or commercial entity unless specific
+ * written permission is obtained from UCAR/Unidata. The user also
+ * understands that UCAR/Unidata is not obligated to provide the user with
+ * any support, consulting, training or assistance of any kind with regard
+ * to the use, operation and performance of this software nor to provide
+ * the user with any updates, revisions, new versions or "bug fixes."
+ *
+ * THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ * INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ * FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ * NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ * WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package ucar.nc2.ft.point;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Formatter;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import ucar.ma2.DataType;
+import ucar.ma2.StructureData;
+import ucar.ma2.StructureDataScalar;
+import ucar.nc2.Attribute;
+import ucar.nc2.VariableSimpleImpl;
+import ucar.nc2.constants.CDM;
+import ucar.nc2.constants.FeatureType;
+import ucar.nc2.iosp.netcdf3.N3iosp;
+import ucar.nc2.ft.*;
+import ucar.nc2.time.CalendarDate;
+import ucar.nc2.time.CalendarDateRange;
+import ucar.unidata.geoloc.LatLonPointImpl;
+import ucar.unidata.geoloc.LatLonRect;
+import ucar.unidata.util.test.TestDir;
+
+/**
+ * Check PointFeatureIterator.readBlock() against hasNext()/next()
+ *
+ * @since 10/19/2016
+ */
+public class TestPointFeatureBlock {
+
+  @Test
+  public void testPoint() throws IOException {
+    String location = TestDir.cdmLocalTestDataDir + "cfDocDsgExamples/H.1.1.ncml";
+    try (FeatureDatasetPoint fdp = open(location, FeatureType.POINT)) {
+      PointFeatureCollection pfc = (PointFeatureCollection) fdp.getPointFeatureCollectionList().get(0);
+      Assert.assertEquals(12, compare(pfc, Arrays.asList("humidity", "temp"), 5));
+      Assert.assertEquals(12, compare(pfc, new ArrayList<>(), 100));
+    }
+  }
+
+  @Test
+  public void testPointSubset() throws IOException {
+    String location = TestDir.cdmLocalTestDataDir + "cfDocDsgExamples/H.1.1.ncml";
+    try (FeatureDatasetPoint fdp = open(location, FeatureType.POINT)) {
+      PointFeatureCollection pfc = (PointFeatureCollection) fdp.getPointFeatureCollectionList().get(0);
+      LatLonRect bb = new LatLonRect(new LatLonPointImpl(10, 5), new LatLonPointImpl(30, 20));
+      CalendarDateRange dateRange = CalendarDateRange.of(CalendarDate.parseISOformat(null, "1970-01-05T00:00:00Z"),
+              CalendarDate.parseISOformat(null, "1970-01-12T00:00:00Z"));
+
+      PointFeatureCollection subset = pfc.subset(bb, dateRange);
+      int n = compare(subset, Arrays.asList("humidity", "temp"), 2);
+      Assert.assertTrue(n > 0);
+      Assert.assertTrue(n < 12);
+    }
+  }
+
+  @Test
+  public void testStation() throws IOException {
+    String location = TestDir.cdmLocalTestDataDir + "cfDocDsgExamples/H.2.4.1.ncml";
+    try (FeatureDatasetPoint fdp = open(location, FeatureType.STATION)) {
+      StationTimeSeriesFeatureCollection stsfc = (StationTimeSeriesFeatureCollection) fdp.getPointFeatureCollectionList().get(0);
+      List<String> members = new ArrayList<>();
+      for (ucar.nc2.VariableSimpleIF v : fdp.getDataVariables())
+        members.add(v.getShortName());
+
+      int total = 0;
+      for (StationTimeSeriesFeature stsf : stsfc)
+        total += compare(stsf, members, 7);
+      Assert.assertEquals(100, total);
+    }
+  }
+
+  // members missing from a row get the variable's missing value, or else the default fill, not 0
+  @Test
+  public void testMissingMember() throws IOException {
+    List<String> members = Arrays.asList("temp", "count", "flag");
+    PointFeatureBlock noVars = new PointFeatureBlock(2, members);
+    PointFeatureBlock withVars = new PointFeatureBlock(2, members);
+    withVars.setDataVariables(Arrays.asList(
+            VariableSimpleImpl.makeScalar("temp", null, "K", DataType.FLOAT).add(new Attribute(CDM.FILL_VALUE, -999.0f)),
+            VariableSimpleImpl.makeScalar("count", null, null, DataType.INT).add(new Attribute(CDM.FILL_VALUE, -99)),
+            VariableSimpleImpl.makeScalar("flag", null, null, DataType.SHORT).add(new Attribute(CDM.MISSING_VALUE, (short) -1))));
+
+    StructureDataScalar full = new StructureDataScalar("obs");
+    full.addMember("temp", null, "K", DataType.FLOAT, 273.15f);
+    full.addMember("count", null, null, DataType.INT, 7);
+    full.addMember("flag", null, null, DataType.SHORT, (short) 3);
+    StructureDataScalar partial = new StructureDataScalar("obs");
+    partial.addMember("temp", null, "K", DataType.FLOAT, 280.0f);
+
+    for (PointFeatureBlock block : new PointFeatureBlock[] {noVars, withVars}) {
+      block.add(0, 0, 40, -105, 0, full);
+      block.add(1, 1, 40, -105, 0, partial);
+      Assert.assertEquals(7, block.getData("count").getInt(0));
+      Assert.assertEquals(3, block.getData("flag").getShort(0));
+      Assert.assertEquals(280.0f, block.getData("temp").getFloat(1), 0);
+    }
+
+    Assert.assertEquals(N3iosp.NC_FILL_INT, noVars.getData("count").getInt(1));
+    Assert.assertEquals(N3iosp.NC_FILL_SHORT, noVars.getData("flag").getShort(1));
+    Assert.assertEquals(-99, withVars.getData("count").getInt(1));
+    Assert.assertEquals(-1, withVars.getData("flag").getShort(1));
+  }
+
+  private FeatureDatasetPoint open(String location, FeatureType wantType) throws IOException {
+    Formatter errlog = new Formatter();
+    FeatureDatasetPoint fdp = (FeatureDatasetPoint) FeatureDatasetFactoryManager.open(wantType, location, null, errlog);
+    Assert.assertNotNull(errlog.toString(), fdp);
+    return fdp;
+  }
+
+  // read the collection both ways and check that the blocks hold the same features
+  private int compare(PointFeatureCollection pfc, List<String> members, int blockSize) throws IOException {
+    List<PointFeature> features = new ArrayList<>();
+    try (PointFeatureIterator iter = pfc.getPointFeatureIterator()) {
+      while (iter.hasNext())
+        features.add(iter.next());
+    }
+
+    PointFeatureBlock block = new PointFeatureBlock(blockSize, members);
+    int count = 0;
+    try (PointFeatureIterator iter = pfc.getPointFeatureIterator()) {
+      while (iter.readBlock(block) > 0) {
+        Assert.assertTrue(block.getCount() <= blockSize);
+        for (int row = 0; row < block.getCount(); row++) {
+          PointFeature pf = features.get(count++);
+          Assert.assertEquals(pf.getObservationTime(), block.getObservationTimes()[row], 0);
+          Assert.assertEquals(pf.getNominalTime(), block.getNominalTimes()[row], 0);
+          Assert.assertEquals(pf.getObservationTimeAsCalendarDate(), block.getObservationTimeAsCalendarDate(row));
+          Assert.assertEquals(pf.getLocation().getLatitude(), block.getLatitudes()[row], 0);
+          Assert.assertEquals(pf.getLocation().getLongitude(), block.getLongitudes()[row], 0);
+          Assert.assertEquals(pf.getLocation().getAltitude(), block.getAltitudes()[row], 0);
+
+          StructureData sdata = pf.getDataAll();
+          for (String member : members)
+            Assert.assertEquals(member, sdata.getArray(member).toString(), block.getData(member, row).toString());
+        }
+      }
+    }
+    Assert.assertEquals(features.size(), count);
+    return count;
+  }
+}
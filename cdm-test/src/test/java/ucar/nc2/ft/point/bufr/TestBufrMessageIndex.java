@@ -0,0 +1,150 @@
+/* Copyright 1998-2009 University Corporation for Atmospheric Research/Unidata
+ *
+ * Portions of this software were developed by the Unidata Program at the
+ * University Corporation for Atmospheric Research.
+ *
+ * Access and use of this software shall impose the following obligations
+ * and understandings on the user. The user is granted the right, without
+ * any fee or cost, to use, copy, modify, alter, enhance and distribute
+ * this software, and any derivative works thereof, and its supporting
+ * documentation for any purpose whatsoever, provided that this entire
+ * notice appears in all copies of the software, derivative works and
+ * supporting documentation.  Further, UCAR requests that the user credit
+ * UCAR/Unidata in any publications that result from the use of this
+ * software or in any product that includes this software. The names UCAR
+ * and/or Unidata, however, may not be used in any advertising or publicity
+ * to endorse or promote any products or commercial entity unless specific
+ * written permission is obtained from UCAR/Unidata. The user also
+ * understands that UCAR/Unidata is not obligated to provide the user with
+ * any support, consulting, training or assistance of any kind with regard
+ * to the use, operation and performance of this software nor to provide
+ * the user with any updates, revisions, new versions or "bug fixes."
+ *
+ * THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ * INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ * FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ * NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ * WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package ucar.nc2.ft.point.bufr;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+import ucar.nc2.dataset.NetcdfDataset;
+import ucar.nc2.time.CalendarDate;
+import ucar.nc2.time.CalendarDateRange;
+import ucar.unidata.geoloc.LatLonPointImpl;
+import ucar.unidata.geoloc.LatLonRect;
+import ucar.unidata.util.test.TestDir;
+import ucar.unidata.util.test.category.NeedsCdmUnitTest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Test BufrMessageIndex message pruning and rebuilding
+ *
+ * @since 10/19/2016
+ */
+public class TestBufrMessageIndex {
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static final long hour = 3600 * 1000;
+  private final long t0 = CalendarDate.parseISOformat(null, "2016-10-19T00:00:00Z").getMillis();
+
+  private CalendarDateRange hours(long start, long end) {
+    return CalendarDateRange.of(CalendarDate.of(t0 + start * hour), CalendarDate.of(t0 + end * hour));
+  }
+
+  // three messages: one station near Denver, stations along the equator, and one with no locations
+  private BufrMessageIndex makeIndex() {
+    BufrMessageIndex index = new BufrMessageIndex();
+    index.getMessages().add(new BufrMessageIndex.MessageSummary(100, 3, t0, t0 + 2 * hour,
+            39.8, 39.8, -104.7, -104.7, Collections.singleton("DEN")));
+    index.getMessages().add(new BufrMessageIndex.MessageSummary(200, 5, t0 + 6 * hour, t0 + 8 * hour,
+            -1, 1, 10, 40, Collections.emptySet()));
+    index.getMessages().add(new BufrMessageIndex.MessageSummary(300, 1, t0 + 12 * hour, t0 + 12 * hour,
+            Double.NaN, Double.NaN, Double.NaN, Double.NaN, Collections.singleton("XYZ")));
+    return index;
+  }
+
+  @Test
+  public void testSingleStationMessage() {
+    BufrMessageIndex index = makeIndex();
+    BufrMessageIndex.MessageSummary denver = index.getMessages().get(0);
+    Assert.assertTrue(denver.canMatch(new LatLonRect(new LatLonPointImpl(39, -106), 2, 2), null, null));
+    Assert.assertTrue(denver.canMatch(new LatLonRect(new LatLonPointImpl(39.8, -104.7), 1, 1), null, null));
+    Assert.assertFalse(denver.canMatch(new LatLonRect(new LatLonPointImpl(39, -104), 2, 2), null, null));
+    Assert.assertTrue(denver.canMatch(null, null, Collections.singleton("DEN")));
+    Assert.assertFalse(denver.canMatch(null, null, Collections.singleton("BOU")));
+  }
+
+  @Test
+  public void testTimeOnly() {
+    BufrMessageIndex index = makeIndex();
+    Assert.assertArrayEquals(new long[] {100, 200, 300}, index.findMessages(null, null, null));
+    Assert.assertArrayEquals(new long[] {100}, index.findMessages(null, hours(1, 3), null));
+    Assert.assertArrayEquals(new long[] {200}, index.findMessages(null, hours(7, 7), null));
+    Assert.assertArrayEquals(new long[] {300}, index.findMessages(null, hours(10, 20), null));
+    Assert.assertArrayEquals(new long[0], index.findMessages(null, hours(3, 5), null));
+  }
+
+  @Test
+  public void testBoundingBoxOnly() {
+    BufrMessageIndex index = makeIndex();
+    // messages with no locations cant be ruled out
+    Assert.assertArrayEquals(new long[] {100, 300}, index.findMessages(new LatLonRect(new LatLonPointImpl(30, -110), 20, 20), null, null));
+    Assert.assertArrayEquals(new long[] {200, 300}, index.findMessages(new LatLonRect(new LatLonPointImpl(-5, 0), 10, 15), null, null));
+    Assert.assertArrayEquals(new long[] {300}, index.findMessages(new LatLonRect(new LatLonPointImpl(50, 100), 10, 10), null, null));
+  }
+
+  @Test
+  @Category(NeedsCdmUnitTest.class)
+  public void testStaleIndex() throws IOException {
+    File first = new File(TestDir.cdmLocalTestDataDir + "dataset/nestedTable.bufr");
+    File second = new File(TestDir.cdmUnitTestDir + "formats/bufr/userExamples/5900.20030601.rass");
+
+    File bufr = tempFolder.newFile("stale.bufr");
+    Files.copy(first.toPath(), bufr.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    List<BufrMessageIndex.MessageSummary> before = index(bufr);
+    Assert.assertTrue(BufrMessageIndex.calcIndexFile(bufr.getPath()).exists());
+
+    // replace the file in place; the index on disk no longer describes it
+    long lastModified = bufr.lastModified();
+    Files.copy(second.toPath(), bufr.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    Assert.assertTrue(bufr.setLastModified(lastModified + 2000));
+    List<BufrMessageIndex.MessageSummary> after = index(bufr);
+
+    File fresh = tempFolder.newFile("fresh.bufr");
+    Files.copy(second.toPath(), fresh.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    List<BufrMessageIndex.MessageSummary> expected = index(fresh);
+
+    Assert.assertNotEquals(before.size(), 0);
+    Assert.assertEquals(expected.size(), after.size());
+    for (int i = 0; i < expected.size(); i++) {
+      Assert.assertEquals(expected.get(i).pos, after.get(i).pos);
+      Assert.assertEquals(expected.get(i).nobs, after.get(i).nobs);
+    }
+  }
+
+  private List<BufrMessageIndex.MessageSummary> index(File bufr) throws IOException {
+    try (NetcdfDataset ncd = NetcdfDataset.openDataset(bufr.getPath())) {
+      BufrMessageIndex index = BufrMessageIndex.update(ncd);
+      Assert.assertNotNull(bufr.getPath(), index);
+      return index.getMessages();
+    }
+  }
+
+}
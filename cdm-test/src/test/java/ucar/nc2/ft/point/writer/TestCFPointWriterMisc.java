@@ -44,13 +44,16 @@ import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import ucar.ma2.DataType;
 import ucar.ma2.StructureData;
+import ucar.ma2.StructureDataIterator;
 import ucar.ma2.StructureMembers;
 import ucar.nc2.NetcdfFile;
 import ucar.nc2.NetcdfFileWriter;
+import ucar.nc2.Structure;
 import ucar.nc2.Variable;
 import ucar.nc2.constants.FeatureType;
 import ucar.nc2.ft.*;
 import ucar.nc2.jni.netcdf.Nc4Iosp;
+import ucar.nc2.util.CompareNetcdf2;
 import ucar.unidata.util.test.category.NeedsCdmUnitTest;
 import ucar.unidata.util.test.TestDir;
 
@@ -233,6 +236,97 @@ public class TestCFPointWriterMisc {
   }
 
 
+  @Test
+  // buffered obs writes must give the same file as writing one obs at a time
+  public void testBufferedWrites() throws Exception {
+    compareBufferedWrites(NetcdfFileWriter.Version.netcdf3);
+  }
+
+  @Test
+  // the extended model buffers obs as a section of the record structure
+  public void testBufferedWritesNetcdf4() throws Exception {
+    // Ignore this test if NetCDF-4 isn't present.
+    Assume.assumeTrue("NetCDF-4 C library not present.", Nc4Iosp.isClibraryPresent());
+    compareBufferedWrites(NetcdfFileWriter.Version.netcdf4);
+  }
+
+  private void compareBufferedWrites(NetcdfFileWriter.Version version) throws Exception {
+    checkBufferedCounts(version);
+
+    for (String name : new String[] {"point/stationMultidim.ncml", "point/profileMultidim.ncml", "point/stationRaggedContig.ncml"}) {
+      String file = TestDir.cdmLocalTestDataDir + name;
+      Formatter buf = new Formatter();
+      try (FeatureDatasetPoint fdpoint = (FeatureDatasetPoint) FeatureDatasetFactoryManager.open(FeatureType.ANY_POINT, file, null, buf)) {
+        Assert.assertNotNull(file, fdpoint);
+        File unbuffered = TestDir.getTempFile();
+        File buffered = TestDir.getTempFile();
+        int count1 = CFPointWriter.writeFeatureCollection(fdpoint, unbuffered.getPath(),
+                new CFPointWriterConfig(version).setBufferSize(1));
+        int count2 = CFPointWriter.writeFeatureCollection(fdpoint, buffered.getPath(),
+                new CFPointWriterConfig(version).setBufferSize(3));  // not a divisor of the obs count
+        Assert.assertEquals(name, count1, count2);
+
+        try (NetcdfFile nc1 = NetcdfFile.open(unbuffered.getPath()); NetcdfFile nc2 = NetcdfFile.open(buffered.getPath())) {
+          Formatter f = new Formatter();
+          CompareNetcdf2 compare = new CompareNetcdf2(f, false, false, true);
+          for (Variable v1 : nc1.getVariables()) {
+            Variable v2 = nc2.findVariable(v1.getFullNameEscaped());
+            Assert.assertNotNull(v1.getFullName(), v2);
+            if (v1 instanceof Structure) {
+              Assert.assertTrue(v2 instanceof Structure);
+              int count = 0;
+              try (StructureDataIterator iter1 = ((Structure) v1).getStructureIterator();
+                   StructureDataIterator iter2 = ((Structure) v2).getStructureIterator()) {
+                while (iter1.hasNext()) {
+                  Assert.assertTrue(name + " " + v1.getFullName() + " " + count, iter2.hasNext());
+                  Assert.assertTrue(name + " " + v1.getFullName() + " " + count + "\n" + f,
+                          compare.compareStructureData(iter1.next(), iter2.next(), 0.0, false));
+                  count++;
+                }
+                Assert.assertFalse(name + " " + v1.getFullName(), iter2.hasNext());
+              }
+            } else {
+              Assert.assertTrue(name + " " + v1.getFullName() + "\n" + f, compare.compareData(v1.getFullName(), v1.read(), v2.read(), false));
+            }
+          }
+        }
+      }
+    }
+  }
+
+  // the point writer is used directly, so it can say how many obs went through the buffer
+  private void checkBufferedCounts(NetcdfFileWriter.Version version) throws Exception {
+    String file = TestDir.cdmLocalTestDataDir + "point/point.ncml";
+    Formatter buf = new Formatter();
+    try (FeatureDatasetPoint fdpoint = (FeatureDatasetPoint) FeatureDatasetFactoryManager.open(FeatureType.POINT, file, null, buf)) {
+      Assert.assertNotNull(file, fdpoint);
+      PointFeatureCollection pfc = (PointFeatureCollection) fdpoint.getPointFeatureCollectionList().get(0);
+
+      for (int bufferSize : new int[] {1, 2}) {  // 3 obs: one full buffer and one partial
+        File out = TestDir.getTempFile();
+        int count = 0;
+        try (WriterCFPointCollection writer = new WriterCFPointCollection(out.getPath(), fdpoint.getGlobalAttributes(),
+                fdpoint.getDataVariables(), pfc.getTimeUnit(), pfc.getAltUnits(), new CFPointWriterConfig(version).setBufferSize(bufferSize))) {
+          for (PointFeature pf : pfc) {
+            if (count == 0) writer.writeHeader(pf);
+            writer.writeRecord(pf, pf.getFeatureData());
+            count++;
+          }
+          writer.finish();
+
+          Assert.assertTrue(count > bufferSize);
+          if (bufferSize == 1) {
+            Assert.assertEquals(0, writer.getBufferedRecordCount());
+            Assert.assertEquals(0, writer.getBufferFlushCount());
+          } else {
+            Assert.assertEquals(count, writer.getBufferedRecordCount());
+            Assert.assertEquals((count + bufferSize - 1) / bufferSize, writer.getBufferFlushCount());
+          }
+        }
+      }
+    }
+  }
+
   FeatureDatasetPoint rewriteDataset(FeatureDatasetPoint fdpoint, String prefix, CFPointWriterConfig config) throws IOException {
     String location = fdpoint.getLocation();
     if (location.startsWith("file:")) location = location.substring(5);
@@ -0,0 +1,131 @@
+/*
+ * Copyright 1998-2015 John Caron and University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ *
+ */
+package ucar.nc2.ft2.coverage.remote;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.IndexIterator;
+import ucar.ma2.MAMath;
+import ucar.nc2.constants.FeatureType;
+import ucar.nc2.ft2.coverage.*;
+import ucar.nc2.stream.NcStream;
+import ucar.unidata.util.test.TestDir;
+import ucar.unidata.util.test.category.NeedsCdmUnitTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Round trip CdmrfWriter.sendChunkedData() through CdmrfReader.decodeDataResponse()
+ *
+ * @since 10/19/2016
+ */
+@Category(NeedsCdmUnitTest.class)
+public class TestCdmrfChunkedData {
+  // 231 elements, which no chunk of 40 bytes divides, whatever the element size
+  private static final int[] shape = new int[] {3, 7, 11};
+  private static final int chunkSize = 40;
+
+  @Test
+  public void testChunked() throws IOException {
+    checkRoundTrip(false);
+  }
+
+  @Test
+  public void testChunkedDeflate() throws IOException {
+    checkRoundTrip(true);
+  }
+
+  private void checkRoundTrip(boolean deflate) throws IOException {
+    String endpoint = TestDir.cdmUnitTestDir + "ft/coverage/testCFwriter.nc";
+    try (FeatureDatasetCoverage cc = CoverageDatasetFactory.open(endpoint)) {
+      Assert.assertNotNull(endpoint, cc);
+      CoverageCollection gcd = cc.findCoverageDataset(FeatureType.GRID);
+      Assert.assertNotNull(endpoint, gcd);
+      Coverage cover = gcd.findCoverage("Temperature");
+      Assert.assertNotNull("Temperature", cover);
+      CoverageCoordSys csys = cover.getCoordSys();
+
+      // only the coordsys is taken from the file, the data are made up
+      List<GeoReferencedArray> arrays = new ArrayList<>();
+      for (DataType dt : new DataType[] {DataType.DOUBLE, DataType.FLOAT, DataType.LONG, DataType.INT, DataType.SHORT, DataType.BYTE})
+        arrays.add(new GeoReferencedArray(dt.toString(), dt, makeData(dt, shape), csys));
+      arrays.add(new GeoReferencedArray("flipped", DataType.FLOAT, makeData(DataType.FLOAT, shape).flip(2), csys)); // not in canonical order
+      arrays.add(new GeoReferencedArray("empty", DataType.FLOAT, makeData(DataType.FLOAT, new int[] {0, 7, 11}), csys));
+
+      CdmrfWriter writer = new CdmrfWriter();
+      CdmrFeatureProto.CoverageDataResponse proto = writer.encodeDataResponse(csys.getAxes(), Collections.singletonList(csys),
+              csys.getTransforms(), arrays, deflate, true);
+      ByteArrayOutputStream bout = new ByteArrayOutputStream();
+      byte[] b = proto.toByteArray();
+      NcStream.writeVInt(bout, b.length);
+      bout.write(b);
+      for (GeoReferencedArray array : arrays)
+        writer.sendChunkedData(array.getData(), bout, chunkSize, deflate);
+
+      InputStream is = new ByteArrayInputStream(bout.toByteArray());
+      byte[] dp = new byte[NcStream.readVInt(is)];
+      NcStream.readFully(is, dp);
+      CoverageDataResponse response = new CdmrfReader(endpoint).decodeDataResponse(CdmrFeatureProto.CoverageDataResponse.parseFrom(dp), is);
+      Assert.assertEquals("all the chunks are read", -1, is.read());
+
+      Assert.assertEquals(arrays.size(), response.arrayResponse.size());
+      for (int i = 0; i < arrays.size(); i++) {
+        GeoReferencedArray org = arrays.get(i);
+        GeoReferencedArray got = response.arrayResponse.get(i);
+        Assert.assertEquals(org.getCoverageName(), got.getCoverageName());
+        Assert.assertEquals(org.getDataType(), got.getDataType());
+        Assert.assertTrue(org.getCoverageName(), MAMath.equals(org.getData(), got.getData()));
+      }
+    }
+  }
+
+  private Array makeData(DataType dt, int[] shape) {
+    Array data = Array.factory(dt, shape);
+    IndexIterator iter = data.getIndexIterator();
+    int count = 0;
+    while (iter.hasNext())
+      iter.setDoubleNext((count++ * 37) % 1000 - 500 + .25);
+    return data;
+  }
+
+}
@@ -54,10 +54,14 @@ import ucar.unidata.util.test.category.NeedsCdmUnitTest;
 import ucar.unidata.util.test.TestDir;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Formatter;
 import java.util.List;
+import java.util.zip.Inflater;
 
 /**
  * GeoTiffWriter2 writing geotiffs
@@ -173,4 +177,108 @@ public class TestGeoTiffWriter {
     }
   }
 
+  private GeoReferencedArray readCoverage() throws IOException, InvalidRangeException {
+    try (FeatureDatasetCoverage cc = CoverageDatasetFactory.open(filename)) {
+      assert cc != null;
+      CoverageCollection gcd = cc.findCoverageDataset(type);
+      Assert.assertNotNull(type.toString(), gcd);
+
+      int pos = field.indexOf("/");
+      String covName = (pos > 0) ? field.substring(pos+1) : field;
+
+      Coverage coverage = gcd.findCoverage(covName);
+      Assert.assertNotNull(covName, coverage);
+      CoverageCoordAxis1D z = (CoverageCoordAxis1D) coverage.getCoordSys().getZAxis();
+      SubsetParams params = new SubsetParams().set(SubsetParams.timePresent, true);
+      if (z != null) params.set(SubsetParams.vertCoord, z.getCoordMidpoint(0));
+      return coverage.readData(params);
+    }
+  }
+
+  @Test
+  public void testWriteCoverageTiled() throws Exception {
+    checkTiled(true, GeotiffWriter.Compression.deflate, true);
+  }
+
+  @Test
+  public void testWriteCoverageTiledFloat() throws Exception {
+    checkTiled(false, GeotiffWriter.Compression.none, false);
+  }
+
+  @Test
+  public void testWriteCoverageTiledFloatPredictor() throws Exception {
+    checkTiled(false, GeotiffWriter.Compression.deflate, true);
+  }
+
+  // the first tile must hold the same bytes as the start of the strips
+  private void checkTiled(boolean greyScale, GeotiffWriter.Compression compression, boolean predictor) throws Exception {
+    File f = new File(filename);
+    String suffix = (greyScale ? ".grey." : ".float.") + compression + (predictor ? ".pred" : "");
+    String stripOut = TestDir.temporaryLocalDataDir + f.getName() + suffix + ".strip.tif";
+    String tiledOut = TestDir.temporaryLocalDataDir + f.getName() + suffix + ".tiled.tif";
+
+    GeoReferencedArray covArray = readCoverage();
+    try (GeotiffWriter writer = new GeotiffWriter(stripOut)) {
+      writer.writeGrid(covArray, greyScale);
+    }
+    try (OutputStream os = new FileOutputStream(tiledOut);
+         GeotiffWriter writer = new GeotiffWriter(os)) {
+      writer.writeGridTiled(covArray, greyScale, compression, predictor, 64);
+    }
+
+    try (GeoTiff strip = new GeoTiff(stripOut);
+         GeoTiff tiled = new GeoTiff(tiledOut)) {
+      strip.read();
+      tiled.read();
+      Assert.assertArrayEquals(strip.findTag(Tag.ModelTiepointTag).valueD, tiled.findTag(Tag.ModelTiepointTag).valueD, 0.0);
+      Assert.assertArrayEquals(strip.findTag(Tag.ModelPixelScaleTag).valueD, tiled.findTag(Tag.ModelPixelScaleTag).valueD, 0.0);
+
+      int width = tiled.findTag(Tag.ImageWidth).value[0];
+      int height = tiled.findTag(Tag.ImageLength).value[0];
+      int tileSize = tiled.findTag(Tag.TileWidth).value[0];
+      int elemSize = greyScale ? 1 : 4;
+      int rowBytes = tileSize * elemSize;
+      Assert.assertEquals(strip.findTag(Tag.ImageWidth).value[0], width);
+      Assert.assertEquals(compression.code, tiled.findTag(Tag.Compression).value[0]);
+      Assert.assertEquals(predictor, tiled.findTag(Tag.Predictor) != null);
+
+      IFDEntry offsets = tiled.findTag(Tag.TileOffsets);
+      IFDEntry counts = tiled.findTag(Tag.TileByteCounts);
+      ByteBuffer bb = tiled.testReadData(offsets.value[0], counts.value[0]);
+      byte[] tile = new byte[tileSize * rowBytes];
+      if (compression == GeotiffWriter.Compression.deflate) {
+        Inflater inflater = new Inflater();
+        inflater.setInput(bb.array());
+        Assert.assertEquals(tile.length, inflater.inflate(tile));
+        inflater.end();
+      } else {
+        Assert.assertEquals(tile.length, counts.value[0]);
+        bb.get(tile);
+      }
+
+      if (predictor) {
+        byte[] row = new byte[rowBytes];
+        for (int start = 0; start < tile.length; start += rowBytes) {
+          for (int i = start + 1; i < start + rowBytes; i++)
+            tile[i] += tile[i - 1];
+          if (!greyScale) {
+            // the floating point predictor groups byte k of every sample together
+            for (int col = 0; col < tileSize; col++)
+              for (int b = 0; b < elemSize; b++)
+                row[col * elemSize + b] = tile[start + b * tileSize + col];
+            System.arraycopy(row, 0, tile, start, rowBytes);
+          }
+        }
+      }
+
+      // the strips are one row each
+      IFDEntry stripOffsets = strip.findTag(Tag.StripOffsets);
+      for (int row = 0; row < Math.min(tileSize, height); row++) {
+        ByteBuffer sb = strip.testReadData(stripOffsets.value[row], width * elemSize);
+        for (int i = 0; i < Math.min(tileSize, width) * elemSize; i++)
+          Assert.assertEquals(row + "," + i, sb.get(i), tile[row * rowBytes + i]);
+      }
+    }
+  }
+
 }
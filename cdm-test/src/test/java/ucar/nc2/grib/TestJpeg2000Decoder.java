@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 1998 - 2014. University Corporation for Atmospheric Research/Unidata
+ * Portions of this software were developed by the Unidata Program at the
+ * University Corporation for Atmospheric Research.
+ *
+ * Access and use of this software shall impose the following obligations
+ * and understandings on the user. The user is granted the right, without
+ * any fee or cost, to use, copy, modify, alter, enhance and distribute
+ * this software, and any derivative works thereof, and its supporting
+ * documentation for any purpose whatsoever, provided that this entire
+ * notice appears in all copies of the software, derivative works and
+ * supporting documentation.  Further, UCAR requests that the user credit
+ * UCAR/Unidata in any publications that result from the use of this
+ * software or in any product that includes this software. The names UCAR
+ * and/or Unidata, however, may not be used in any advertising or publicity
+ * to endorse or promote any products or commercial entity unless specific
+ * written permission is obtained from UCAR/Unidata. The user also
+ * understands that UCAR/Unidata is not obligated to provide the user with
+ * any support, consulting, training or assistance of any kind with regard
+ * to the use, operation and performance of this software nor to provide
+ * the user with any updates, revisions, new versions or "bug fixes."
+ *
+ * THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ * INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ * FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ * NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ * WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package ucar.nc2.grib;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import ucar.nc2.grib.grib2.*;
+import ucar.unidata.io.RandomAccessFile;
+import ucar.unidata.util.test.category.NeedsCdmUnitTest;
+import ucar.unidata.util.test.TestDir;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Compare the per-thread jpeg2000 decoder (template 5.40), which reads single-tile codestreams straight from the
+ * jj2000 chain, with a fresh decoder going through ImgWriterArray as before.
+ *
+ * @since 10/18/2016
+ */
+@Category(NeedsCdmUnitTest.class)
+public class TestJpeg2000Decoder {
+
+  @Test
+  public void testGfs() throws IOException {
+    doOne(TestDir.cdmUnitTestDir + "tds/ncep/GFS_Global_onedeg_20100913_0000.grib2");
+  }
+
+  private void doOne(String filename) throws IOException {
+    int nrecords = 0;
+
+    try (RandomAccessFile raf = new RandomAccessFile(filename, "r")) {
+      Grib2RecordScanner scanner = new Grib2RecordScanner(raf);
+      while (scanner.hasNext()) {
+        Grib2Record gr = scanner.next();
+        if (gr.getDataRepresentationSection().getDataTemplate() != 40) continue;
+        Grib2Drs.Type40 gdrs = (Grib2Drs.Type40) gr.getDataRepresentationSection().getDrs(raf);
+        if (gdrs.numberOfBits == 0) continue;
+
+        Grib2SectionData dataSection = gr.getDataSection();
+        raf.seek(dataSection.getStartingPosition() + 5);
+        byte[] buf = new byte[dataSection.getMsgLength() - 5];
+        raf.readFully(buf);
+
+        Grib2JpegDecoder fresh = new Grib2JpegDecoder(gdrs.numberOfBits, false);
+        fresh.setSingleTileShortcut(false);
+        fresh.decode(buf);
+        int[] expected = fresh.getGdata();
+        Assert.assertNotNull(gr.toString(), expected);
+        Assert.assertEquals(gr.toString(), gr.getDataRepresentationSection().getDataPoints(), expected.length);
+
+        Grib2JpegDecoder pooled = Grib2JpegDecoder.getThreadDecoder(gdrs.numberOfBits);
+        byte[] pbuf = pooled.getInputBuffer(buf.length);
+        System.arraycopy(buf, 0, pbuf, 0, buf.length);
+        pooled.decode(pbuf, buf.length);
+        int[] got = pooled.getGdata();
+
+        Assert.assertEquals(fresh.getPackBytes(), pooled.getPackBytes());
+        Assert.assertEquals(fresh.hasSignedProblem(), pooled.hasSignedProblem());
+        Assert.assertTrue(gr.toString(), Arrays.equals(expected, got));
+        nrecords++;
+      }
+    }
+
+    Assert.assertTrue(nrecords > 0);
+  }
+}
@@ -0,0 +1,114 @@
+/* Copyright 1998-2009 University Corporation for Atmospheric Research/Unidata
+ *
+ * Portions of this software were developed by the Unidata Program at the
+ * University Corporation for Atmospheric Research.
+ *
+ * Access and use of this software shall impose the following obligations
+ * and understandings on the user. The user is granted the right, without
+ * any fee or cost, to use, copy, modify, alter, enhance and distribute
+ * this software, and any derivative works thereof, and its supporting
+ * documentation for any purpose whatsoever, provided that this entire
+ * notice appears in all copies of the software, derivative works and
+ * supporting documentation.  Further, UCAR requests that the user credit
+ * UCAR/Unidata in any publications that result from the use of this
+ * software or in any product that includes this software. The names UCAR
+ * and/or Unidata, however, may not be used in any advertising or publicity
+ * to endorse or promote any products or commercial entity unless specific
+ * written permission is obtained from UCAR/Unidata. The user also
+ * understands that UCAR/Unidata is not obligated to provide the user with
+ * any support, consulting, training or assistance of any kind with regard
+ * to the use, operation and performance of this software nor to provide
+ * the user with any updates, revisions, new versions or "bug fixes."
+ *
+ * THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ * INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ * FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ * NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ * WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package ucar.nc2.iosp.bufr;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import ucar.ma2.StructureData;
+import ucar.ma2.StructureDataIterator;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Sequence;
+import ucar.nc2.util.CompareNetcdf2;
+import ucar.unidata.util.test.TestDir;
+import ucar.unidata.util.test.category.NeedsCdmUnitTest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.List;
+
+/**
+ * Compare parallel and compiled template decoding of bufr messages with sequential tree decoding
+ *
+ * @since 10/19/2016
+ */
+@Category(NeedsCdmUnitTest.class)
+public class TestBufrParallelDecode {
+  String unitDir = TestDir.cdmUnitTestDir + "formats/bufr/userExamples";
+
+  @After
+  public void reset() {
+    BufrIosp2.setParallelDecodeThreshold(1000);
+    TemplateDecoder.setEnabled(true);
+  }
+
+  @Test
+  public void compareParallel() throws IOException {
+    compareAll(() -> BufrIosp2.setParallelDecodeThreshold(0), () -> BufrIosp2.setParallelDecodeThreshold(1));
+  }
+
+  @Test
+  public void compareTemplateDecoder() throws IOException {
+    compareAll(() -> TemplateDecoder.setEnabled(false), () -> TemplateDecoder.setEnabled(true));
+  }
+
+  private void compareAll(Runnable expected, Runnable actual) throws IOException {
+    int count = TestDir.actOnAll(unitDir, pathname -> !pathname.getName().endsWith(".bfx"), new TestDir.Act() {
+      public int doAct(String filename) throws IOException {
+        compare(filename, expected, actual);
+        return 1;
+      }
+    }, true);
+    System.out.printf("***Compared %d files%n", count);
+  }
+
+  private void compare(String filename, Runnable expected, Runnable actual) throws IOException {
+    expected.run();
+    List<StructureData> want = readAll(filename);
+    actual.run();
+    List<StructureData> got = readAll(filename);
+
+    Assert.assertEquals(filename, want.size(), got.size());
+    Formatter f = new Formatter();
+    CompareNetcdf2 compare = new CompareNetcdf2(f);
+    for (int i = 0; i < want.size(); i++) {
+      boolean ok = compare.compareStructureData(want.get(i), got.get(i), 0.0, false);
+      Assert.assertTrue(filename + " obs " + i + "\n" + f, ok);
+    }
+  }
+
+  private List<StructureData> readAll(String filename) throws IOException {
+    List<StructureData> result = new ArrayList<>();
+    try (NetcdfFile ncfile = NetcdfFile.open(filename)) {
+      Sequence obs = (Sequence) ncfile.findVariable(BufrIosp2.obsRecord);
+      if (obs == null) return result;
+      try (StructureDataIterator iter = obs.getStructureIterator()) {
+        while (iter.hasNext())
+          result.add(iter.next());
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 1998-2009 University Corporation for Atmospheric Research/Unidata
+ *
+ * Portions of this software were developed by the Unidata Program at the
+ * University Corporation for Atmospheric Research.
+ *
+ * Access and use of this software shall impose the following obligations
+ * and understandings on the user. The user is granted the right, without
+ * any fee or cost, to use, copy, modify, alter, enhance and distribute
+ * this software, and any derivative works thereof, and its supporting
+ * documentation for any purpose whatsoever, provided that this entire
+ * notice appears in all copies of the software, derivative works and
+ * supporting documentation.  Further, UCAR requests that the user credit
+ * UCAR/Unidata in any publications that result from the use of this
+ * software or in any product that includes this software. The names UCAR
+ * and/or Unidata, however, may not be used in any advertising or publicity
+ * to endorse or promote any products or commercial entity unless specific
+ * written permission is obtained from UCAR/Unidata. The user also
+ * understands that UCAR/Unidata is not obligated to provide the user with
+ * any support, consulting, training or assistance of any kind with regard
+ * to the use, operation and performance of this software nor to provide
+ * the user with any updates, revisions, new versions or "bug fixes."
+ *
+ * THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ * INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ * FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ * NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ * WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.iosp.nexrad2;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.dataset.NetcdfDataset;
+import ucar.nc2.util.CompareNetcdf2;
+import ucar.unidata.util.test.TestDir;
+import ucar.unidata.util.test.category.NeedsCdmUnitTest;
+
+import java.io.IOException;
+import java.util.Formatter;
+
+/**
+ * Compare in-memory parallel uncompression with the DiskCache ".uncompress" file
+ *
+ * @since 10/19/2016
+ */
+@Category(NeedsCdmUnitTest.class)
+public class TestLevel2Uncompress {
+
+  @After
+  public void reset() {
+    Level2Uncompress.setUseDiskCache(false);
+    Level2Uncompress.clearCache();
+  }
+
+  @Test
+  public void compareWithDisk() throws IOException {
+    int count = TestDir.actOnAll(TestDir.cdmUnitTestDir + "formats/nexrad/level2/VCP11",
+            pathname -> !pathname.getName().endsWith(".uncompress"), this::compare);
+    Formatter f = new Formatter();
+    Level2Uncompress.showCache(f);
+    System.out.printf("compared %d files; %s", count, f);
+  }
+
+  private int compare(String filename) throws IOException {
+    System.out.printf("%s%n", filename);
+    Level2Uncompress.setUseDiskCache(true);
+    try (NetcdfFile disk = NetcdfDataset.openFile(filename, null)) {
+      Level2Uncompress.setUseDiskCache(false);
+      try (NetcdfFile mem = NetcdfDataset.openFile(filename, null)) {
+        Formatter f = new Formatter();
+        boolean ok = CompareNetcdf2.compareFiles(disk, mem, f, true, false, false);
+        Assert.assertTrue(filename + "\n" + f, ok);
+      }
+    }
+    return 1;
+  }
+}
@@ -137,6 +137,21 @@ public class TimedCollection {
     return new TimedCollection(this, range);
   }
 
+  /**
+   * Get persisted metadata for a dataset, from the collection manager's metadata store.
+   * @return null if there is no store or nothing stored under this key
+   */
+  public byte[] getMetadata(TimedCollection.Dataset d, String key) {
+    return manager.getMetadata(d.mfile, key);
+  }
+
+  /**
+   * Persist metadata for a dataset in the collection manager's metadata store; a no-op if there is no store.
+   */
+  public void putMetadata(TimedCollection.Dataset d, String key, byte[] value) {
+    manager.putMetadata(d.mfile, key, value);
+  }
+
   public CalendarDateRange getDateRange() {
     if (dateRange == null) try {
       update();
@@ -160,11 +175,13 @@ public class TimedCollection {
    ** The Dataset.getLocation() can be passed to FeatureDatasetFactoryManager.open().
    */
   public class Dataset {
+    MFile mfile;
     String location;
     CalendarDateRange dateRange;
     CalendarDate start;
 
     Dataset(MFile f) {
+      this.mfile = f;
       this.location = f.getPath();
       this.start = manager.extractDate(f);
     }
@@ -173,6 +190,10 @@ public class TimedCollection {
       return location;
     }
 
+    public long getLastModified() {
+      return mfile.getLastModified();
+    }
+
     public CalendarDateRange getDateRange() {
       return dateRange;
     }
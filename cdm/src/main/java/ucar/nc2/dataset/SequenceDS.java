@@ -58,6 +58,15 @@ public class SequenceDS extends StructureDS {
     return new StructureDataConverter(this, orgSeq.getStructureIterator(bufferSize));
   }
 
+  /**
+   * Enhance the data from an iterator over the original Sequence, eg one that reads only some of the records.
+   * @param orgIter iterator over the original Sequence
+   * @return iterator over the enhanced data
+   */
+  public StructureDataIterator getStructureIterator(StructureDataIterator orgIter) {
+    return new StructureDataConverter(this, orgIter);
+  }
+
   private static class StructureDataConverter implements StructureDataIterator {
     private StructureDataIterator orgIter;
     private SequenceDS newStruct;
@@ -1211,9 +1211,6 @@ public class GridCoordSys extends CoordinateSystem implements ucar.nc2.dt.GridCo
     } else if ((xaxis instanceof CoordinateAxis2D) && (yaxis instanceof CoordinateAxis2D) && isLatLon()) {
       CoordinateAxis2D lon_axis = (CoordinateAxis2D) xaxis;
       CoordinateAxis2D lat_axis = (CoordinateAxis2D) yaxis;
-      int shape[] = lon_axis.getShape();
-      int nj = shape[0];
-      int ni = shape[1];
 
       int mini = Integer.MAX_VALUE, minj = Integer.MAX_VALUE;
       int maxi = -1, maxj = -1;
@@ -1222,21 +1219,15 @@ public class GridCoordSys extends CoordinateSystem implements ucar.nc2.dt.GridCo
       //minx = LatLonPointImpl.lonNormal( minx ); // <-- THIS IS NEW
       //maxx = LatLonPointImpl.lonNormal( maxx ); // <-- THIS IS NEW
 
-      // brute force, examine every point LOOK BAD
-      for (int j = 0; j < nj; j++) {
-        for (int i = 0; i < ni; i++) {
-          double lat = lat_axis.getCoordValue(j, i);
-          double lon = lon_axis.getCoordValue(j, i);
-          //lon = LatLonPointImpl.lonNormal( lon ); // <-- THIS IS NEW      
-
-          if ((lat >= miny) && (lat <= maxy) && (lon >= minx) && (lon <= maxx)) {
-            if (i > maxi) maxi = i;
-            if (i < mini) mini = i;
-            if (j > maxj) maxj = j;
-            if (j < minj) minj = j;
-            //System.out.println(j+" "+i+" lat="+lat+" lon="+lon);
-          }
-        }
+      // the points inside the box, from the spatial index
+      if (g2d == null)
+        g2d = new GridCoordinate2D(lat_axis, lon_axis);
+      int[] bounds = g2d.findIndexRange(miny, maxy, minx, maxx);
+      if (bounds != null) {
+        minj = bounds[0];
+        maxj = bounds[1];
+        mini = bounds[2];
+        maxi = bounds[3];
       }
 
       // this is the case where no points are included
@@ -38,6 +38,7 @@ import ucar.nc2.dataset.CoordinateAxis;
 import ucar.nc2.dt.GridCoordSystem;
 import ucar.ma2.ArrayDouble;
 import ucar.ma2.MAMath;
+import ucar.unidata.geoloc.LatLonGridIndex;
 
 import java.io.IOException;
 
@@ -61,6 +62,8 @@ public class GridCoordinate2D {
   private final int nrows, ncols;
   private ArrayDouble.D2 latEdge, lonEdge;
   private MAMath.MinMax latMinMax, lonMinMax;
+  private LatLonGridIndex index;       // cells, made with the edges
+  private LatLonGridIndex coordIndex;  // coordinate values, made on first use
 
   GridCoordinate2D(CoordinateAxis2D latCoord, CoordinateAxis2D lonCoord) {
     this.latCoord = latCoord;
@@ -74,8 +77,8 @@ public class GridCoordinate2D {
     ncols = shape[1];
   }
 
-  private void findBounds() {
-    if (lonMinMax != null) return;
+  private synchronized void findBounds() {
+    if (index != null) return;
 
     lonEdge = lonCoord.getEdges();
     latEdge = latCoord.getEdges();
@@ -83,6 +86,7 @@ public class GridCoordinate2D {
     // assume missing values have been converted to NaNs
     latMinMax = MAMath.getMinMax(latEdge);
     lonMinMax = MAMath.getMinMax(lonEdge);
+    index = new LatLonGridIndex(latEdge, lonEdge);
 
     if (debug)
       System.out.printf("Bounds (%d %d): lat= (%f,%f) lon = (%f,%f) %n", nrows, ncols, latMinMax.min, latMinMax.max, lonMinMax.min, lonMinMax.max);
@@ -115,7 +119,25 @@ public class GridCoordinate2D {
   }
 
   public boolean findCoordElement(double wantLat, double wantLon, int[] rectIndex) {
-    return findCoordElementNoForce(wantLat, wantLon,rectIndex);
+    findBounds();
+    if (index.findCell(wantLat, wantLon, this::contains, rectIndex))
+      return true;
+    return findCoordElementNoForce(wantLat, wantLon,rectIndex); // leaves the best guess in rectIndex
+  }
+
+  /**
+   * Find the index range of the coordinate values inside a lat/lon box, including its edges.
+   *
+   * @return {minRow, maxRow, minCol, maxCol}, inclusive, or null if none are inside
+   */
+  public int[] findIndexRange(double minLat, double maxLat, double minLon, double maxLon) {
+    LatLonGridIndex useIndex;
+    synchronized (this) {
+      if (coordIndex == null)
+        coordIndex = new LatLonGridIndex(latCoord.getCoordValuesArray(), lonCoord.getCoordValuesArray());
+      useIndex = coordIndex;
+    }
+    return useIndex.findBounds(minLat, maxLat, minLon, maxLon);
   }  
 
 
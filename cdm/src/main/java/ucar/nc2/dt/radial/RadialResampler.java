@@ -0,0 +1,382 @@
+/*
+ * Copyright 1998-2015 John Caron and University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package ucar.nc2.dt.radial;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.nc2.dt.RadialDatasetSweep;
+import ucar.unidata.geoloc.Bearing;
+import ucar.unidata.geoloc.EarthLocation;
+import ucar.unidata.geoloc.LatLonPoint;
+import ucar.unidata.geoloc.ProjectionImpl;
+
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Formatter;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Resample a sweep onto a regular projected grid, using the nearest gate or bilinear interpolation.
+ * <p>
+ * The geometry (range and azimuth of each grid cell) depends only on the radar location, the sweep elevation,
+ * the gate geometry and the target grid, so it is computed once and cached as an index map.
+ * Each new volume then needs only a small azimuth table, built from the radials of the sweep, and a gather.
+ *
+ * @since 10/19/2016
+ */
+@ThreadSafe
+public class RadialResampler {
+  static private final double EARTH_RADIUS = 6371.0; // km
+  static private final double KE = 4.0 / 3.0; // effective earth radius for beam propagation
+  static private final int AZ_BINS = 3600;  // azimuth table resolution = .1 degree
+
+  public enum Method {nearest, bilinear}
+
+  static private final Cache<Key, IndexMap> cache = CacheBuilder.newBuilder()
+          .maximumWeight(250 * 1000 * 1000)
+          .weigher((Key key, IndexMap value) -> value.sizeBytes())
+          .recordStats()
+          .build();
+
+  static public void clearCache() {
+    cache.invalidateAll();
+  }
+
+  static public void showCache(Formatter f) {
+    f.format("RadialResampler cache size=%d %s%n", cache.size(), cache.stats());
+  }
+
+  /**
+   * A regular grid in projection coordinates.
+   */
+  @Immutable
+  static public class TargetGrid {
+    final ProjectionImpl proj;
+    final double startx, starty, dx, dy; // cell centers, projection units (km)
+    final int nx, ny;
+
+    public TargetGrid(ProjectionImpl proj, double startx, double starty, double dx, double dy, int nx, int ny) {
+      this.proj = proj;
+      this.startx = startx;
+      this.starty = starty;
+      this.dx = dx;
+      this.dy = dy;
+      this.nx = nx;
+      this.ny = ny;
+    }
+
+    public int getNx() {
+      return nx;
+    }
+
+    public int getNy() {
+      return ny;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      TargetGrid that = (TargetGrid) o;
+      return Double.compare(that.startx, startx) == 0 && Double.compare(that.starty, starty) == 0 &&
+              Double.compare(that.dx, dx) == 0 && Double.compare(that.dy, dy) == 0 &&
+              nx == that.nx && ny == that.ny && proj.equals(that.proj);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(proj, startx, starty, dx, dy, nx, ny);
+    }
+  }
+
+  /**
+   * Resample one sweep onto the target grid.
+   *
+   * @param stationId identifies the radar, eg RadialDatasetSweep.getRadarID()
+   * @param sweep     resample this sweep
+   * @param grid      onto this grid
+   * @param method    nearest gate or bilinear
+   * @return data of shape (ny, nx), NaN where there is no data
+   * @throws IOException on read error
+   */
+  static public Array resample(String stationId, RadialDatasetSweep.Sweep sweep, TargetGrid grid, Method method) throws IOException {
+    EarthLocation origin = sweep.getOrigin(0);
+    Key key = new Key(stationId, origin, sweep, grid, method);
+
+    IndexMap map;
+    try {
+      map = cache.get(key, () -> new IndexMap(key, grid));
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+
+    float[] azimuths = sweep.getAzimuth();
+    float[] data = sweep.readData();
+    float[] result = (method == Method.nearest) ? map.gatherNearest(azimuths, data) : map.gatherBilinear(azimuths, data);
+    return Array.factory(DataType.FLOAT, new int[]{grid.ny, grid.nx}, result);
+  }
+
+  /////////////////////////////////////////////////////////////////
+
+  @Immutable
+  static private class Key {
+    final String stationId;
+    final long lat, lon; // rounded to 1e-4 degrees
+    final int elev;      // rounded to .1 degrees
+    final float firstGate, gateSize;
+    final int ngates;
+    final TargetGrid grid;
+    final Method method;
+
+    Key(String stationId, EarthLocation origin, RadialDatasetSweep.Sweep sweep, TargetGrid grid, Method method) {
+      this.stationId = stationId;
+      this.lat = Math.round(origin.getLatitude() * 10000);
+      this.lon = Math.round(origin.getLongitude() * 10000);
+      this.elev = Math.round(sweep.getMeanElevation() * 10);
+      this.firstGate = sweep.getRangeToFirstGate();
+      this.gateSize = sweep.getGateSize();
+      this.ngates = sweep.getGateNumber();
+      this.grid = grid;
+      this.method = method;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      Key key = (Key) o;
+      return lat == key.lat && lon == key.lon && elev == key.elev && Float.compare(key.firstGate, firstGate) == 0 &&
+              Float.compare(key.gateSize, gateSize) == 0 && ngates == key.ngates && Objects.equals(stationId, key.stationId) &&
+              grid.equals(key.grid) && method == key.method;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(stationId, lat, lon, elev, firstGate, gateSize, ngates, grid, method);
+    }
+  }
+
+  /*
+   * For each grid cell, the azimuth bin and gate, or -1 if out of range.
+   */
+  @Immutable
+  static private class IndexMap {
+    final int ngates;
+    final int[] azBin;
+    final float[] azFrac;   // position within the bin, bilinear only
+    final int[] gate;       // nearest gate, or lower gate for bilinear
+    final float[] gateFrac; // bilinear only
+
+    IndexMap(Key key, TargetGrid grid) {
+      this.ngates = key.ngates;
+      boolean bilinear = (key.method == Method.bilinear);
+      int n = grid.nx * grid.ny;
+      azBin = new int[n];
+      gate = new int[n];
+      azFrac = bilinear ? new float[n] : null;
+      gateFrac = bilinear ? new float[n] : null;
+
+      double radarLat = key.lat / 10000.0;
+      double radarLon = key.lon / 10000.0;
+      double elev = Math.toRadians(key.elev / 10.0);
+      double keR = KE * EARTH_RADIUS;
+      double firstGate = key.firstGate / 1000.0; // km
+      double gateSize = key.gateSize / 1000.0;
+      Bearing bearing = new Bearing();
+
+      int idx = 0;
+      for (int j = 0; j < grid.ny; j++) {
+        double y = grid.starty + j * grid.dy;
+        for (int i = 0; i < grid.nx; i++, idx++) {
+          double x = grid.startx + i * grid.dx;
+          LatLonPoint llpt = grid.proj.projToLatLon(x, y);
+          Bearing.calculateBearing(radarLat, radarLon, llpt.getLatitude(), llpt.getLongitude(), bearing);
+
+          // slant range along the beam to the point above this ground distance
+          double phi = bearing.getDistance() / keR;
+          double cos = Math.cos(elev + phi);
+          double range = (cos > 0) ? keR * Math.sin(phi) / cos : Double.MAX_VALUE;
+          double g = (range - firstGate) / gateSize;
+
+          double az = bearing.getAngle();
+          if (az < 0) az += 360;
+          double b = az * AZ_BINS / 360.0;
+
+          if (bilinear) {
+            int g0 = (int) Math.floor(g);
+            if (g < 0 || g0 >= ngates - 1) {
+              gate[idx] = -1;
+              azBin[idx] = -1;
+              continue;
+            }
+            gate[idx] = g0;
+            gateFrac[idx] = (float) (g - g0);
+            int b0 = (int) Math.floor(b);
+            azBin[idx] = b0 % AZ_BINS;
+            azFrac[idx] = (float) (b - b0);
+
+          } else {
+            int g0 = (int) Math.round(g);
+            if (g0 < 0 || g0 >= ngates) {
+              gate[idx] = -1;
+              azBin[idx] = -1;
+              continue;
+            }
+            gate[idx] = g0;
+            azBin[idx] = ((int) Math.round(b)) % AZ_BINS;
+          }
+        }
+      }
+    }
+
+    int sizeBytes() {
+      int n = azBin.length;
+      return (azFrac == null) ? 8 * n : 16 * n;
+    }
+
+    float[] gatherNearest(float[] azimuths, float[] data) {
+      AzimuthTable table = new AzimuthTable(azimuths);
+      int ngatesData = data.length / azimuths.length;
+      float[] result = new float[azBin.length];
+      for (int i = 0; i < azBin.length; i++) {
+        int bin = azBin[i];
+        int radial = (bin < 0) ? -1 : table.nearest(bin);
+        result[i] = (radial < 0 || gate[i] >= ngatesData) ? Float.NaN : data[radial * ngatesData + gate[i]];
+      }
+      return result;
+    }
+
+    float[] gatherBilinear(float[] azimuths, float[] data) {
+      AzimuthTable table = new AzimuthTable(azimuths);
+      int ngatesData = data.length / azimuths.length;
+
+      float[] result = new float[azBin.length];
+      for (int i = 0; i < azBin.length; i++) {
+        int bin = azBin[i];
+        int g0 = gate[i];
+        if (bin < 0 || table.lower[bin] < 0 || g0 + 1 >= ngatesData) {
+          result[i] = Float.NaN;
+          continue;
+        }
+        float wa = table.weight(bin, azFrac[i]);
+        float wg = gateFrac[i];
+
+        int r0 = table.lower[bin] * ngatesData + g0;
+        int r1 = table.upper[bin] * ngatesData + g0;
+        float v00 = data[r0], v01 = data[r0 + 1], v10 = data[r1], v11 = data[r1 + 1];
+        if (Float.isNaN(v00) || Float.isNaN(v01) || Float.isNaN(v10) || Float.isNaN(v11)) {
+          // use the nearest
+          int r = (wa < 0.5f) ? r0 : r1;
+          result[i] = (wg < 0.5f) ? data[r] : data[r + 1];
+        } else {
+          float v0 = v00 + wg * (v01 - v00);
+          float v1 = v10 + wg * (v11 - v10);
+          result[i] = v0 + wa * (v1 - v0);
+        }
+      }
+      return result;
+    }
+  }
+
+  /*
+   * For each azimuth bin, the radials on either side of the start of the bin. Built for each sweep.
+   */
+  static private class AzimuthTable {
+    static private final float binWidth = 360.0f / AZ_BINS;
+    final int[] lower = new int[AZ_BINS];  // -1 if no data, eg a gap in the sweep
+    final int[] upper = new int[AZ_BINS];
+    final float[] offset = new float[AZ_BINS]; // degrees from the lower radial to the start of the bin
+    final float[] span = new float[AZ_BINS];   // degrees from the lower to the upper radial
+
+    AzimuthTable(float[] azimuths) {
+      int n = azimuths.length;
+      if (n == 0) {
+        Arrays.fill(lower, -1);
+        return;
+      }
+      int[] sorted = sortRadials(azimuths);
+      double maxGap = Math.max(2.0, 3 * 360.0 / n);
+
+      int k = -1; // last radial at or before the bin, in sorted order
+      for (int b = 0; b < AZ_BINS; b++) {
+        double az = b * binWidth;
+        while (k + 1 < n && azimuths[sorted[k + 1]] <= az) k++;
+        int lo = (k < 0) ? sorted[n - 1] : sorted[k];
+        int hi = (k < 0) ? sorted[0] : sorted[(k + 1) % n];
+        double gap = clockwise(azimuths[lo], azimuths[hi]);
+        if (n > 1 && gap > maxGap) {
+          lower[b] = -1;
+          continue;
+        }
+        lower[b] = lo;
+        upper[b] = hi;
+        offset[b] = (float) clockwise(azimuths[lo], az);
+        span[b] = (float) gap;
+      }
+    }
+
+    // weight of the upper radial
+    float weight(int bin, float frac) {
+      if (span[bin] <= 0) return 0;
+      float w = (offset[bin] + frac * binWidth) / span[bin];
+      return Math.min(w, 1.0f);
+    }
+
+    int nearest(int bin) {
+      if (lower[bin] < 0) return -1;
+      return (weight(bin, 0) < 0.5f) ? lower[bin] : upper[bin];
+    }
+  }
+
+  // sort the radials by azimuth
+  static private int[] sortRadials(float[] azimuths) {
+    Integer[] order = new Integer[azimuths.length];
+    for (int i = 0; i < order.length; i++) order[i] = i;
+    Arrays.sort(order, (a, b) -> Float.compare(azimuths[a], azimuths[b]));
+    int[] result = new int[order.length];
+    for (int i = 0; i < order.length; i++) result[i] = order[i];
+    return result;
+  }
+
+  // angular distance, going clockwise from a to b, in [0, 360)
+  static private double clockwise(double a, double b) {
+    double d = (b - a) % 360;
+    return (d < 0) ? d + 360 : d;
+  }
+}
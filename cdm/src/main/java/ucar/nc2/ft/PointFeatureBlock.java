@@ -0,0 +1,386 @@
+/*
+ * Copyright 1998-2015 John Caron and University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.ft;
+
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.IndexIterator;
+import ucar.ma2.StructureData;
+import ucar.ma2.StructureMembers;
+import ucar.nc2.Attribute;
+import ucar.nc2.VariableSimpleIF;
+import ucar.nc2.constants.CDM;
+import ucar.nc2.iosp.netcdf3.N3iosp;
+import ucar.nc2.time.CalendarDate;
+import ucar.nc2.time.CalendarDateUnit;
+import ucar.unidata.geoloc.EarthLocation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A block of point features stored by column: time, lat, lon and alt as primitive arrays, and each
+ * requested data member as an Array whose outer dimension is the row.
+ * Filled by {@link PointFeatureIterator#readBlock(PointFeatureBlock)}; reuse one block for the whole iteration.
+ * <pre>
+  PointFeatureBlock block = new PointFeatureBlock(1000, memberNames);
+  try (PointFeatureIterator iter = pfc.getPointFeatureIterator()) {
+    while (iter.readBlock(block) > 0) {
+      for (int row = 0; row < block.getCount(); row++)
+        process(block, row);
+    }
+  }
+  </pre>
+ *
+ * @since 10/19/2016
+ */
+public class PointFeatureBlock {
+  private final int capacity;
+  private final List<String> memberNames;
+  private final double[] obsTime, nomTime, lat, lon, alt;
+  private CalendarDateUnit timeUnit;
+  private List<? extends VariableSimpleIF> dataVariables;
+  private int count;
+
+  // made from the first row
+  private Column[] columns;
+
+  /**
+   * Constructor.
+   * @param capacity maximum number of rows
+   * @param memberNames names of the data members to keep, from PointFeature.getDataAll(); may be empty
+   */
+  public PointFeatureBlock(int capacity, List<String> memberNames) {
+    if (capacity <= 0) throw new IllegalArgumentException("capacity must be > 0");
+    this.capacity = capacity;
+    this.memberNames = new ArrayList<>(memberNames);
+    this.obsTime = new double[capacity];
+    this.nomTime = new double[capacity];
+    this.lat = new double[capacity];
+    this.lon = new double[capacity];
+    this.alt = new double[capacity];
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /** @return number of rows in the block */
+  public int getCount() {
+    return count;
+  }
+
+  public boolean isFull() {
+    return count >= capacity;
+  }
+
+  /** Empty the block, keeping the column arrays */
+  public void clear() {
+    count = 0;
+  }
+
+  public List<String> getMemberNames() {
+    return memberNames;
+  }
+
+  public CalendarDateUnit getTimeUnit() {
+    return timeUnit;
+  }
+
+  public void setTimeUnit(CalendarDateUnit timeUnit) {
+    this.timeUnit = timeUnit;
+  }
+
+  /**
+   * The data variables of the collection, whose _FillValue or missing_value is used for a member that is
+   * missing from a row. Otherwise floating point members are set to NaN, and others to the netCDF default fill.
+   * Set before the first row is added.
+   * @param dataVariables eg FeatureDatasetPoint.getDataVariables()
+   */
+  public void setDataVariables(List<? extends VariableSimpleIF> dataVariables) {
+    this.dataVariables = dataVariables;
+  }
+
+  // the arrays are length getCapacity(); only the first getCount() values are valid
+
+  public double[] getObservationTimes() {
+    return obsTime;
+  }
+
+  public double[] getNominalTimes() {
+    return nomTime;
+  }
+
+  public double[] getLatitudes() {
+    return lat;
+  }
+
+  public double[] getLongitudes() {
+    return lon;
+  }
+
+  public double[] getAltitudes() {
+    return alt;
+  }
+
+  public CalendarDate getObservationTimeAsCalendarDate(int row) {
+    return timeUnit.makeCalendarDate(obsTime[row]);
+  }
+
+  /**
+   * The values of a data member, shape (capacity, member shape). Row i starts at element i * getRowSize(name).
+   * @param memberName data member name
+   * @return column, or null if the member was not in the data
+   */
+  public Array getData(String memberName) {
+    Column col = findColumn(memberName);
+    return col == null ? null : col.data;
+  }
+
+  /**
+   * The values of a data member for one row, with the member's own shape. This is a view into the column, not a copy.
+   * @param memberName data member name
+   * @param row row index, less than getCount()
+   * @return member values, or null if the member was not in the data
+   */
+  public Array getData(String memberName, int row) {
+    Column col = findColumn(memberName);
+    return col == null ? null : col.data.slice(0, row);
+  }
+
+  /**
+   * Number of elements per row of a data member, ie the member size
+   * @param memberName data member name
+   * @return member size, or 0 if the member was not in the data
+   */
+  public int getRowSize(String memberName) {
+    Column col = findColumn(memberName);
+    return col == null ? 0 : col.size;
+  }
+
+  private Column findColumn(String memberName) {
+    if (columns == null) return null;
+    for (Column col : columns)
+      if (col.name.equals(memberName)) return col;
+    return null;
+  }
+
+  /**
+   * Add a PointFeature as the next row.
+   * @throws IllegalStateException if the block is full
+   */
+  public void add(PointFeature pf) throws IOException {
+    if (timeUnit == null) timeUnit = pf.getFeatureCollection().getTimeUnit();
+    EarthLocation loc = pf.getLocation();
+    add(pf.getObservationTime(), pf.getNominalTime(), loc.getLatitude(), loc.getLongitude(), loc.getAltitude(),
+            memberNames.isEmpty() ? null : pf.getDataAll());
+  }
+
+  /**
+   * Add a row.
+   * @param sdata holds the data members; may be null if there are none
+   * @throws IllegalStateException if the block is full
+   */
+  public void add(double obsTime, double nomTime, double lat, double lon, double alt, StructureData sdata) {
+    if (count >= capacity) throw new IllegalStateException("block is full");
+    int row = count;
+    this.obsTime[row] = obsTime;
+    this.nomTime[row] = nomTime;
+    this.lat[row] = lat;
+    this.lon[row] = lon;
+    this.alt[row] = alt;
+
+    if (sdata != null && !memberNames.isEmpty()) {
+      if (columns == null) makeColumns(sdata);
+      for (Column col : columns)
+        col.copy(row, sdata);
+    }
+    count++;
+  }
+
+  /**
+   * Keep only the rows for which want[row] is true, preserving order.
+   * @param want length at least getCount()
+   */
+  public void retain(boolean[] want) {
+    int to = 0;
+    for (int from = 0; from < count; from++) {
+      if (!want[from]) continue;
+      if (to != from) {
+        obsTime[to] = obsTime[from];
+        nomTime[to] = nomTime[from];
+        lat[to] = lat[from];
+        lon[to] = lon[from];
+        alt[to] = alt[from];
+        if (columns != null)
+          for (Column col : columns) col.move(from, to);
+      }
+      to++;
+    }
+    count = to;
+  }
+
+  private void makeColumns(StructureData sdata) {
+    List<Column> cols = new ArrayList<>();
+    for (String name : memberNames) {
+      StructureMembers.Member m = sdata.findMember(name);
+      if (m != null) cols.add(new Column(name, m, capacity, findMissingValue(name, m.getDataType())));
+    }
+    columns = cols.toArray(new Column[cols.size()]);
+  }
+
+  private Number findMissingValue(String name, DataType dataType) {
+    if (dataVariables != null) {
+      for (VariableSimpleIF v : dataVariables) {
+        if (!v.getShortName().equals(name)) continue;
+        Attribute att = v.findAttributeIgnoreCase(CDM.FILL_VALUE);
+        if (att == null || att.isString()) att = v.findAttributeIgnoreCase(CDM.MISSING_VALUE);
+        if (att != null && !att.isString()) return att.getNumericValue();
+        break;
+      }
+    }
+    if (dataType == DataType.DOUBLE || dataType == DataType.FLOAT) return Double.NaN;
+    return N3iosp.getFillValueDefault(dataType);
+  }
+
+  /**
+   * Fill a block from an iterator one PointFeature at a time.
+   * Used by iterators that have no cheaper way to do it.
+   * @return number of rows read, 0 when the iterator is done
+   */
+  public static int fill(PointFeatureIterator iter, PointFeatureBlock block) throws IOException {
+    block.clear();
+    while (!block.isFull() && iter.hasNext())
+      block.add(iter.next());
+    return block.getCount();
+  }
+
+  private static class Column {
+    final String name;
+    final DataType dataType;
+    final boolean isScalar;
+    final int size;
+    final Array data;
+    final Number missing; // null for non-numeric members
+
+    Column(String name, StructureMembers.Member m, int capacity, Number missing) {
+      this.name = name;
+      this.missing = missing;
+      this.dataType = m.getDataType();
+      this.size = m.getSize();
+      int[] mshape = m.getShape();
+      this.isScalar = (size == 1);
+      int[] shape = new int[mshape.length + 1];
+      shape[0] = capacity;
+      System.arraycopy(mshape, 0, shape, 1, mshape.length);
+      this.data = Array.factory(dataType, shape);
+    }
+
+    void copy(int row, StructureData sdata) {
+      int start = row * size;
+      StructureMembers.Member m = sdata.findMember(name);
+      if (m == null) {
+        for (int k = 0; k < size; k++) setMissing(start + k);
+        return;
+      }
+
+      if (isScalar && m.getDataType() == dataType) {
+        switch (dataType) {
+          case DOUBLE: data.setDouble(start, sdata.getScalarDouble(m)); return;
+          case FLOAT: data.setFloat(start, sdata.getScalarFloat(m)); return;
+          case LONG: case ULONG: data.setLong(start, sdata.getScalarLong(m)); return;
+          case INT: case UINT: data.setInt(start, sdata.getScalarInt(m)); return;
+          case SHORT: case USHORT: data.setShort(start, sdata.getScalarShort(m)); return;
+          case BYTE: case UBYTE: data.setByte(start, sdata.getScalarByte(m)); return;
+          case CHAR: data.setChar(start, sdata.getScalarChar(m)); return;
+        }
+      }
+
+      Array src = sdata.getArray(m);
+      IndexIterator ii = src.getIndexIterator();
+      for (int k = 0; k < size; k++) {
+        if (!ii.hasNext()) {
+          setMissing(start + k);
+          continue;
+        }
+        switch (dataType) {
+          case DOUBLE: data.setDouble(start + k, ii.getDoubleNext()); break;
+          case FLOAT: data.setFloat(start + k, ii.getFloatNext()); break;
+          case LONG: case ULONG: data.setLong(start + k, ii.getLongNext()); break;
+          case INT: case UINT: data.setInt(start + k, ii.getIntNext()); break;
+          case SHORT: case USHORT: data.setShort(start + k, ii.getShortNext()); break;
+          case BYTE: case UBYTE: data.setByte(start + k, ii.getByteNext()); break;
+          case CHAR: data.setChar(start + k, ii.getCharNext()); break;
+          default: data.setObject(start + k, ii.getObjectNext());
+        }
+      }
+    }
+
+    private void setMissing(int elem) {
+      if (dataType.isNumeric() && missing != null) {
+        switch (dataType) {
+          case DOUBLE: data.setDouble(elem, missing.doubleValue()); break;
+          case FLOAT: data.setFloat(elem, missing.floatValue()); break;
+          case LONG: case ULONG: data.setLong(elem, missing.longValue()); break;
+          case INT: case UINT: data.setInt(elem, missing.intValue()); break;
+          case SHORT: case USHORT: data.setShort(elem, missing.shortValue()); break;
+          case BYTE: case UBYTE: data.setByte(elem, missing.byteValue()); break;
+          default: data.setLong(elem, missing.longValue());
+        }
+      } else if (dataType == DataType.CHAR)
+        data.setChar(elem, (char) 0);
+      else if (dataType == DataType.STRING)
+        data.setObject(elem, "");
+      else
+        data.setObject(elem, null);
+    }
+
+    void move(int from, int to) {
+      for (int k = 0; k < size; k++) {
+        int src = from * size + k;
+        int dst = to * size + k;
+        switch (dataType) {
+          case DOUBLE: data.setDouble(dst, data.getDouble(src)); break;
+          case FLOAT: data.setFloat(dst, data.getFloat(src)); break;
+          case LONG: case ULONG: data.setLong(dst, data.getLong(src)); break;
+          case INT: case UINT: data.setInt(dst, data.getInt(src)); break;
+          case SHORT: case USHORT: data.setShort(dst, data.getShort(src)); break;
+          case BYTE: case UBYTE: data.setByte(dst, data.getByte(src)); break;
+          case CHAR: data.setChar(dst, data.getChar(src)); break;
+          default: data.setObject(dst, data.getObject(src));
+        }
+      }
+    }
+  }
+}
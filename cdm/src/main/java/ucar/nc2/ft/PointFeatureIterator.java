@@ -33,6 +33,7 @@
 package ucar.nc2.ft;
 
 import java.io.Closeable;
+import java.io.IOException;
 import java.util.Iterator;
 
 /**
@@ -76,6 +77,20 @@ public interface PointFeatureIterator extends Closeable, Iterator<PointFeature>
    */
   void close();
 
+  /**
+   * Read the next features into a column block, replacing what was there.
+   * Implementations that read from tables override this to avoid making a PointFeature for each row.
+   * Do not mix with hasNext()/next() on the same iterator, except that a feature already fetched by hasNext() is
+   * returned in the block.
+   *
+   * @param block put the features here; it is cleared first
+   * @return number of features read, 0 when the iteration is done
+   * @throws IOException on i/o error
+   */
+  default int readBlock(PointFeatureBlock block) throws IOException {
+    return PointFeatureBlock.fill(this, block);
+  }
+
   /**
    * A filter on PointFeatures
    */
@@ -64,16 +64,23 @@ public abstract class PointIteratorAbstract implements PointFeatureIterator, Ite
   }
 
   protected void calcBounds(PointFeature pf) {
+    if (pf == null) {
+      count++;
+      return;
+    }
+    calcBounds(pf.getObservationTime(), pf.getLocation().getLatitude(), pf.getLocation().getLongitude());
+  }
+
+  // same as calcBounds(PointFeature), for features read into a PointFeatureBlock
+  protected void calcBounds(double obsTime, double lat, double lon) {
     count++;
     if (!calcBounds) return;
-    if (pf == null) return;
 
     if (bb == null)
-      bb = new LatLonRect(pf.getLocation().getLatLon(), .001, .001);
+      bb = new LatLonRect(new LatLonPointImpl(lat, lon), .001, .001);
     else
-      bb.extend(pf.getLocation().getLatLon());
+      bb.extend(new LatLonPointImpl(lat, lon));
 
-    double obsTime = pf.getObservationTime();
     minTime = Math.min(minTime, obsTime);
     maxTime = Math.max(maxTime, obsTime);
   }
@@ -32,9 +32,11 @@
  */
 package ucar.nc2.ft.point;
 
+import java.io.IOException;
 import java.util.NoSuchElementException;
 import com.google.common.base.Preconditions;
 import ucar.nc2.ft.PointFeature;
+import ucar.nc2.ft.PointFeatureBlock;
 import ucar.nc2.ft.PointFeatureIterator;
 import ucar.nc2.time.CalendarDateRange;
 import ucar.unidata.geoloc.LatLonRect;
@@ -106,6 +108,36 @@ public class PointIteratorFiltered extends PointIteratorAbstract {
     return ret;
   }
   
+  // filter whole blocks from the original iterator when the filter only looks at space and time
+  @Override
+  public int readBlock(PointFeatureBlock block) throws IOException {
+    if (!(filter instanceof SpaceAndTimeFilter) || pointFeature != null)
+      return PointFeatureBlock.fill(this, block);
+    SpaceAndTimeFilter spaceAndTime = (SpaceAndTimeFilter) filter;
+
+    while (true) {
+      int n = origIter.readBlock(block);
+      if (n == 0) {
+        close();
+        return 0;
+      }
+
+      boolean[] want = new boolean[n];
+      for (int row = 0; row < n; row++)
+        want[row] = spaceAndTime.filter(block, row);
+      block.retain(want);
+
+      double[] obsTime = block.getObservationTimes();
+      double[] lat = block.getLatitudes();
+      double[] lon = block.getLongitudes();
+      for (int row = 0; row < block.getCount(); row++)
+        calcBounds(obsTime[row], lat[row], lon[row]);
+
+      if (block.getCount() > 0)
+        return block.getCount();
+    }
+  }
+
   @Override
   public void close() {
         origIter.close();
@@ -156,6 +188,19 @@ public class PointIteratorFiltered extends PointIteratorAbstract {
 
           return true;
         }
+
+        /**
+         * Same test as filter(PointFeature), for one row of a block
+         */
+        public boolean filter(PointFeatureBlock block, int row) {
+          if ((filter_date != null) && !filter_date.includes(block.getObservationTimeAsCalendarDate(row)))
+            return false;
+
+          if ((filter_bb != null) && !filter_bb.contains(block.getLatitudes()[row], block.getLongitudes()[row]))
+            return false;
+
+          return true;
+        }
     }
 
 }
@@ -37,6 +37,7 @@ import java.io.IOException;
 import ucar.ma2.StructureData;
 import ucar.ma2.StructureDataIterator;
 import ucar.nc2.ft.PointFeature;
+import ucar.nc2.ft.PointFeatureBlock;
 import ucar.nc2.ft.PointFeatureIterator;
 
 /**
@@ -56,6 +57,7 @@ public abstract class PointIteratorFromStructureData extends PointIteratorAbstra
   private PointFeatureIterator.Filter filter;
   private StructureDataIterator structIter;
   private PointFeature feature = null; // hasNext must cache
+  private boolean pending = false;    // feature was fetched by hasNext but not returned by next
   private boolean finished = false;
 
   /**
@@ -81,8 +83,10 @@ public abstract class PointIteratorFromStructureData extends PointIteratorAbstra
         if (feature.getLocation().isMissing()) {
           continue;
         }
-        if (filter == null || filter.filter(feature))
+        if (filter == null || filter.filter(feature)) {
+          pending = true;
           return true;
+        }
       }
 
       // all done
@@ -99,9 +103,49 @@ public abstract class PointIteratorFromStructureData extends PointIteratorAbstra
   public PointFeature next() {
     if (feature == null) return null;
     calcBounds(feature);
+    pending = false;
     return feature;
   }
 
+  @Override
+  public int readBlock(PointFeatureBlock block) throws IOException {
+    block.clear();
+    if (finished) return 0;
+
+    if (pending) {
+      calcBounds(feature);
+      block.add(feature);
+      pending = false;
+    }
+
+    while (!block.isFull()) {
+      StructureData sdata = nextStructureData();
+      if (sdata == null) {
+        feature = null;
+        close();
+        break;
+      }
+      addToBlock(block, structIter.getCurrentRecno(), sdata);
+    }
+    return block.getCount();
+  }
+
+  /**
+   * Add the feature for this StructureData to the block, if it passes the missing data check and the filter.
+   * Subclasses may override to fill the block without making a PointFeature.
+   */
+  protected void addToBlock(PointFeatureBlock block, int recnum, StructureData sdata) throws IOException {
+    PointFeature pf = makeFeature(recnum, sdata);
+    if (pf == null || pf.getLocation().isMissing()) return;
+    if (filter != null && !filter.filter(pf)) return;
+    calcBounds(pf);
+    block.add(pf);
+  }
+
+  protected boolean hasFilter() {
+    return filter != null;
+  }
+
   @Override
   public void close() {
     if (finished) return;
@@ -1,18 +1,34 @@
 package ucar.nc2.ft.point;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.*;
 
 import com.google.common.base.Preconditions;
+import ucar.ma2.StructureData;
 import ucar.nc2.constants.FeatureType;
+import ucar.nc2.ft.DsgFeatureCollection;
 import ucar.nc2.ft.FeatureDatasetFactoryManager;
 import ucar.nc2.ft.FeatureDatasetPoint;
 import ucar.nc2.ft.NoFactoryFoundException;
 import ucar.nc2.ft.PointFeatureIterator;
 import ucar.nc2.units.DateUnit;
+import ucar.nc2.util.DiskCache2;
 
 /**
+ * Sorts StationPointFeatures with a Comparator; features that compare equal keep the order they were added in.
+ * <p>
+ * By default everything is kept in memory. If made with a DiskCache2 and a memory limit, sorted runs are written
+ * to temporary files whenever the features held in memory would go over the limit, and the iterator merges the
+ * runs. Call close() to delete the temporary files.
  *
  * @author cwardgar
  * @since 2014/08/21
@@ -20,27 +36,60 @@ import ucar.nc2.units.DateUnit;
 // This class ought to be a PointFeatureCollection, by extending PointCollectionImpl.
 // However, we do not have the timeUnit and altUnits that the constructor requires. Does it really need
 // that info? Can't it calculate it from one of its features? That interface may need to be re-thought.
-public class SortingStationPointFeatureCache {
+public class SortingStationPointFeatureCache implements Closeable {
+    static private final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(SortingStationPointFeatureCache.class);
+
     public static final Comparator<StationPointFeature> stationNameComparator = (pointFeat1, pointFeat2) ->
             pointFeat1.getStation().getName().compareTo(pointFeat2.getStation().getName());
 
+    private final Comparator<StationPointFeature> comp;
     private final SortedMap<StationPointFeature, List<StationPointFeature>> inMemCache;
 
     private volatile StationFeatureCopyFactory stationFeatCopyFactory;
 
+    // spill to disk; diskCache == null means keep everything in memory
+    private final DiskCache2 diskCache;
+    private final long maxBytesInMemory;
+    private long bytesInMemory;
+    private boolean warnedCantWrite;
+    private final List<File> runs = new ArrayList<>();
+
+    // the stations and collections of the spilled features, written as an index into these lists
+    private final List<StationFeature> stations = new ArrayList<>();
+    private final List<DsgFeatureCollection> collections = new ArrayList<>();
+    private final Map<StationFeature, Integer> stationIndex = new IdentityHashMap<>();
+    private final Map<DsgFeatureCollection, Integer> collectionIndex = new IdentityHashMap<>();
+
     public SortingStationPointFeatureCache() {
         this(stationNameComparator);
     }
 
     // We're going to init stationFeatCopyFactory using the first feat that's add()ed.
     public SortingStationPointFeatureCache(Comparator<StationPointFeature> comp) {
-        this.inMemCache = new TreeMap<>(Preconditions.checkNotNull(comp, "comp == null"));
+        this(comp, null, 0);
+        // stationFeatCopyFactory remains null.
+    }
+
+    /**
+     * Sort with bounded memory.
+     *
+     * @param comp              sort order
+     * @param diskCache         make temporary files here; if null, everything is kept in memory
+     * @param maxBytesInMemory  write a sorted run to disk when the estimated size of the features in memory goes
+     *                          over this
+     */
+    public SortingStationPointFeatureCache(
+            Comparator<StationPointFeature> comp, DiskCache2 diskCache, long maxBytesInMemory) {
+        this.comp = Preconditions.checkNotNull(comp, "comp == null");
+        this.inMemCache = new TreeMap<>(comp);
+        this.diskCache = diskCache;
+        this.maxBytesInMemory = maxBytesInMemory;
         // stationFeatCopyFactory remains null.
     }
 
     public SortingStationPointFeatureCache(
             Comparator<StationPointFeature> comp, StationPointFeature proto, DateUnit dateUnit) throws IOException {
-        this.inMemCache = new TreeMap<>(Preconditions.checkNotNull(comp, "comp == null"));
+        this(comp);
 
         if (proto != null && dateUnit != null) {
             this.stationFeatCopyFactory = new StationFeatureCopyFactory(proto);
@@ -58,6 +107,73 @@ public class SortingStationPointFeatureCache {
         }
 
         bucket.add(featCopy);
+
+        if (diskCache != null) {
+            bytesInMemory += stationFeatCopyFactory.getSizeInBytes();
+            if (bytesInMemory > maxBytesInMemory) {
+                if (stationFeatCopyFactory.canWriteData()) {
+                    writeRun();
+                } else if (!warnedCantWrite) {
+                    logger.warn("Features have members that can't be written to disk; sorting in memory");
+                    warnedCantWrite = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of sorted runs written to disk so far.
+     * @return number of runs
+     */
+    public int getNumRuns() {
+        return runs.size();
+    }
+
+    // write the features in memory to a file, in sorted order, and empty the memory cache
+    private void writeRun() throws IOException {
+        File runFile = diskCache.createUniqueFile("sortRun", ".bin");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(runFile)))) {
+            for (List<StationPointFeature> bucket : inMemCache.values()) {
+                for (StationPointFeature feat : bucket) {
+                    out.writeInt(indexOf(feat.getStation(), stations, stationIndex));
+                    out.writeInt(indexOf(feat.getFeatureCollection(), collections, collectionIndex));
+                    out.writeDouble(feat.getObservationTime());
+                    out.writeDouble(feat.getNominalTime());
+                    stationFeatCopyFactory.writeData(feat.getFeatureData(), out);
+                }
+            }
+        } catch (IOException e) {
+            if (!runFile.delete())
+                logger.warn("Failed to delete {}", runFile);
+            throw e;
+        }
+
+        runs.add(runFile);
+        inMemCache.clear();
+        bytesInMemory = 0;
+        logger.debug("wrote sorted run {} to {}", runs.size(), runFile);
+    }
+
+    private static <T> int indexOf(T obj, List<T> list, Map<T, Integer> index) {
+        Integer idx = index.get(obj);
+        if (idx == null) {
+            idx = list.size();
+            list.add(obj);
+            index.put(obj, idx);
+        }
+        return idx;
+    }
+
+    /**
+     * Delete the temporary files of any runs written to disk.
+     */
+    @Override
+    public void close() {
+        for (File runFile : runs) {
+            if (runFile.exists() && !runFile.delete())
+                logger.warn("Failed to delete {}", runFile);
+        }
+        runs.clear();
     }
 
     public void addAll(File datasetFile) throws NoFactoryFoundException, IOException {
@@ -98,7 +214,17 @@ public class SortingStationPointFeatureCache {
 
     // TODO: Once this method is called, prohibit any further additions to cache.
     public PointFeatureIterator getPointFeatureIterator() throws IOException {
-        return new PointIteratorAdapter(new Iter());
+        if (runs.isEmpty())
+            return new PointIteratorAdapter(new Iter());
+
+        MergeIter mergeIter = new MergeIter();
+        return new PointIteratorAdapter(mergeIter) {
+            @Override
+            public void close() {
+                super.close();
+                mergeIter.close();
+            }
+        };
     }
 
     private class Iter implements Iterator<StationPointFeature> {
@@ -137,4 +263,112 @@ public class SortingStationPointFeatureCache {
             throw new UnsupportedOperationException("Operation not supported by this iterator.");
         }
     }
+
+    // reads back one run file, one feature ahead
+    private class RunReader implements Closeable {
+        private final int order;
+        private final DataInputStream in;
+        private StationPointFeature current;
+
+        RunReader(File runFile, int order) throws IOException {
+            this.order = order;
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(runFile)));
+        }
+
+        // returns false at the end of the run
+        boolean advance() throws IOException {
+            int station;
+            try {
+                station = in.readInt();
+            } catch (EOFException e) {
+                current = null;
+                return false;
+            }
+            int collection = in.readInt();
+            double obsTime = in.readDouble();
+            double nomTime = in.readDouble();
+            StructureData data = stationFeatCopyFactory.readData(in);
+            current = stationFeatCopyFactory.makeCopy(
+                    stations.get(station), collections.get(collection), obsTime, nomTime, data);
+            return true;
+        }
+
+        @Override
+        public void close() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close sorted run", e);
+            }
+        }
+    }
+
+    // k-way merge of the runs on disk and what is still in memory. Ties go to the earlier run, so the sort is stable.
+    private class MergeIter implements Iterator<StationPointFeature>, Closeable {
+        private final PriorityQueue<RunReader> heads;
+        private final List<RunReader> readers = new ArrayList<>();
+        private final Iter memIter = new Iter();
+        private StationPointFeature memHead;
+
+        MergeIter() throws IOException {
+            this.heads = new PriorityQueue<>(runs.size() + 1, (r1, r2) -> {
+                int c = comp.compare(r1.current, r2.current);
+                return (c != 0) ? c : Integer.compare(r1.order, r2.order);
+            });
+
+            try {
+                for (File runFile : runs) {
+                    RunReader reader = new RunReader(runFile, readers.size());
+                    readers.add(reader);
+                    if (reader.advance())
+                        heads.add(reader);
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+            memHead = memIter.hasNext() ? memIter.next() : null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty() || memHead != null;
+        }
+
+        @Override
+        public StationPointFeature next() {
+            if (!hasNext())
+                throw new NoSuchElementException("There are no more elements.");
+
+            // the features still in memory were added last, so they lose ties
+            RunReader first = heads.peek();
+            if (first == null || (memHead != null && comp.compare(memHead, first.current) < 0)) {
+                StationPointFeature result = memHead;
+                memHead = memIter.hasNext() ? memIter.next() : null;
+                return result;
+            }
+
+            heads.poll();
+            StationPointFeature result = first.current;
+            try {
+                if (first.advance())
+                    heads.add(first);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to read sorted run", e);
+            }
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Operation not supported by this iterator.");
+        }
+
+        @Override
+        public void close() {
+            for (RunReader reader : readers)
+                reader.close();
+            heads.clear();
+        }
+    }
 }
@@ -33,12 +33,18 @@
 
 package ucar.nc2.ft.point;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import ucar.ma2.Array;
+import ucar.ma2.IndexIterator;
 import ucar.ma2.StructureData;
 import ucar.ma2.StructureDataDeep;
+import ucar.ma2.StructureDataW;
 import ucar.ma2.StructureMembers;
+import ucar.nc2.ft.DsgFeatureCollection;
 import ucar.nc2.ft.PointFeature;
 import javax.annotation.Nonnull;
 
@@ -97,6 +103,87 @@ public class StationFeatureCopyFactory {
     return deep;
   }
 
+  /**
+   * Can the data of the copies be written with writeData()?
+   * True if every member is a fixed size array of numbers, chars, booleans or Strings.
+   * @return true if the copies can be written
+   */
+  public boolean canWriteData() {
+    for (StructureMembers.Member m : sm.getMembers()) {
+      if (m.isVariableLength()) return false;
+      Class c = m.getDataType().getPrimitiveClassType();
+      if (!c.isPrimitive() && c != String.class) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Write the data of a copy in a compact binary form, with no member descriptions.
+   * Only valid if canWriteData() is true.
+   * @param sdata data of a copy made by this factory
+   * @param out write to here
+   * @throws IOException on write error
+   */
+  public void writeData(StructureData sdata, DataOutput out) throws IOException {
+    for (StructureMembers.Member m : sm.getMembers()) {
+      Class c = m.getDataType().getPrimitiveClassType();
+      IndexIterator ii = sdata.getArray(m.getName()).getIndexIterator();
+      for (int i = 0; i < m.getSize(); i++) {
+        if (c == double.class) out.writeDouble(ii.getDoubleNext());
+        else if (c == float.class) out.writeFloat(ii.getFloatNext());
+        else if (c == long.class) out.writeLong(ii.getLongNext());
+        else if (c == int.class) out.writeInt(ii.getIntNext());
+        else if (c == short.class) out.writeShort(ii.getShortNext());
+        else if (c == byte.class) out.writeByte(ii.getByteNext());
+        else if (c == char.class) out.writeChar(ii.getCharNext());
+        else if (c == boolean.class) out.writeBoolean(ii.getBooleanNext());
+        else {
+          Object val = ii.getObjectNext();
+          out.writeUTF(val == null ? "" : val.toString());
+        }
+      }
+    }
+  }
+
+  /**
+   * Read data written by writeData().
+   * @param in read from here
+   * @return the data, using this factory's StructureMembers
+   * @throws IOException on read error
+   */
+  public StructureData readData(DataInput in) throws IOException {
+    StructureDataW sdata = new StructureDataW(sm);
+    for (StructureMembers.Member m : sm.getMembers()) {
+      Class c = m.getDataType().getPrimitiveClassType();
+      Array data = Array.factory(m.getDataType(), m.getShape());
+      IndexIterator ii = data.getIndexIterator();
+      for (int i = 0; i < m.getSize(); i++) {
+        if (c == double.class) ii.setDoubleNext(in.readDouble());
+        else if (c == float.class) ii.setFloatNext(in.readFloat());
+        else if (c == long.class) ii.setLongNext(in.readLong());
+        else if (c == int.class) ii.setIntNext(in.readInt());
+        else if (c == short.class) ii.setShortNext(in.readShort());
+        else if (c == byte.class) ii.setByteNext(in.readByte());
+        else if (c == char.class) ii.setCharNext(in.readChar());
+        else if (c == boolean.class) ii.setBooleanNext(in.readBoolean());
+        else ii.setObjectNext(in.readUTF());
+      }
+      sdata.setMemberData(m, data);
+    }
+    return sdata;
+  }
+
+  /**
+   * Remake a copy from its parts, eg after its data was read back with readData().
+   * The station is not counted again.
+   */
+  public StationPointFeature makeCopy(StationFeature station, DsgFeatureCollection dsg, double obsTime, double nomTime,
+                                      StructureData data) {
+    StationPointFeatureCopy copy = new StationPointFeatureCopy(station, dsg, obsTime, nomTime);
+    copy.data = data;
+    return copy;
+  }
+
   private class StationPointFeatureCopy extends PointFeatureImpl implements StationPointFeature {
 
     final StationFeature station;
@@ -108,6 +195,11 @@ public class StationFeatureCopyFactory {
       this.station = station;
     }
 
+    StationPointFeatureCopy(StationFeature station, DsgFeatureCollection dsg, double obsTime, double nomTime) {
+      super(dsg, station, obsTime, nomTime, dsg.getTimeUnit());
+      this.station = station;
+    }
+
     @Nonnull
     @Override
     public StructureData getDataAll() throws IOException {
@@ -32,6 +32,7 @@
  */
 package ucar.nc2.ft.point;
 
+import ucar.unidata.geoloc.LatLonPoint;
 import ucar.unidata.geoloc.LatLonPointImpl;
 import ucar.unidata.geoloc.LatLonRect;
 import ucar.unidata.geoloc.Station;
@@ -51,6 +52,7 @@ import java.util.Map;
 public class StationHelper {
   private List<StationFeature> stations;
   private Map<String, StationFeature> stationHash;
+  private volatile StationIndex index;  // built on first spatial query
   private static final boolean debug = false;
 
   public StationHelper() {
@@ -61,6 +63,7 @@ public class StationHelper {
   public void addStation( StationFeature s) {
     stations.add(s);
     stationHash.put(s.getName(), s);
+    index = null;
   }
 
   public void setStations( List<StationFeature> nstations) {
@@ -68,6 +71,19 @@ public class StationHelper {
     stationHash = new HashMap<>();
     for (StationFeature s : nstations)
       addStation(s);
+    index = new StationIndex(stations);
+  }
+
+  private StationIndex getIndex() {
+    StationIndex result = index;
+    if (result == null) {
+      synchronized (this) {
+        result = index;
+        if (result == null)
+          index = result = new StationIndex(stations);
+      }
+    }
+    return result;
   }
 
   private LatLonRect rect;
@@ -112,27 +128,48 @@ public class StationHelper {
 
   public List<Station> getStations(LatLonRect boundingBox) throws IOException {
     if (boundingBox == null) return getStations();
-    
-    LatLonPointImpl latlonPt = new LatLonPointImpl();
-    List<Station> result = new ArrayList<>();
-    for (StationFeature s : stations) {
-      latlonPt.set(s.getLatitude(), s.getLongitude());
-      if (boundingBox.contains(latlonPt))
-        result.add(s);
-    }
-    return result;
+    return new ArrayList<Station>(getStationFeatures(boundingBox));
   }
 
   public List<StationFeature> getStationFeatures(LatLonRect boundingBox) throws IOException {
     if (boundingBox == null) return stations;
+    return select(getIndex().find(boundingBox));
+  }
 
-    LatLonPointImpl latlonPt = new LatLonPointImpl();
-    List<StationFeature> result = new ArrayList<>();
-    for (StationFeature s : stations) {
-      latlonPt.set(s.getLatitude(), s.getLongitude());
-      if (boundingBox.contains(latlonPt))
-        result.add(s);
-    }
+  /**
+   * Find the stations within a great circle distance of a point.
+   * @param pt center point
+   * @param radius distance in km
+   * @return stations within radius, nearest first
+   */
+  public List<StationFeature> getStationFeatures(LatLonPoint pt, double radius) {
+    return select(getIndex().find(pt.getLatitude(), pt.getLongitude(), radius));
+  }
+
+  /**
+   * Find the k stations nearest a point, by great circle distance.
+   * @param pt center point
+   * @param k number of stations wanted
+   * @return at most k stations, nearest first
+   */
+  public List<StationFeature> getNearestStationFeatures(LatLonPoint pt, int k) {
+    return select(getIndex().findNearest(pt.getLatitude(), pt.getLongitude(), k));
+  }
+
+  /**
+   * Find the station nearest a point, by great circle distance.
+   * @param pt center point
+   * @return nearest station, or null if there are none
+   */
+  public StationFeature getNearestStationFeature(LatLonPoint pt) {
+    List<StationFeature> result = getNearestStationFeatures(pt, 1);
+    return result.isEmpty() ? null : result.get(0);
+  }
+
+  private List<StationFeature> select(int[] idx) {
+    List<StationFeature> result = new ArrayList<>(idx.length);
+    for (int i : idx)
+      result.add(stations.get(i));
     return result;
   }
 
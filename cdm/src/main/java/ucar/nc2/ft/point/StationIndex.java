@@ -0,0 +1,278 @@
+/*
+ * Copyright 1998-2015 John Caron and University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.ft.point;
+
+import ucar.unidata.geoloc.Earth;
+import ucar.unidata.geoloc.LatLonRect;
+import ucar.unidata.geoloc.Station;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * A lat/lon grid of buckets over a list of stations, for bounding box, radius and nearest queries.
+ * Results are indices into the original list. Bounding box results are in list order, so they match
+ * a linear scan; radius and nearest results are sorted by great circle distance.
+ *
+ * @since 10/19/2016
+ */
+@Immutable
+class StationIndex {
+  static private final int avgPerCell = 4;
+  static private final double minCellSize = 0.1;  // degrees
+  static private final double maxCellSize = 30.0;
+
+  private final double[] lats, lons;
+  private final double cellSize;
+  private final int nlat, nlon;
+  private final int[] cellStart;   // CSR layout: stations in cell c are ids[cellStart[c] .. cellStart[c+1])
+  private final int[] ids;
+  private final int[] irregular;   // lon outside [-180, 180] or missing: always checked linearly
+
+  StationIndex(List<? extends Station> stations) {
+    int n = stations.size();
+    lats = new double[n];
+    lons = new double[n];
+    for (int i = 0; i < n; i++) {
+      Station s = stations.get(i);
+      lats[i] = s.getLatitude();
+      lons[i] = s.getLongitude();
+    }
+
+    double size = Math.sqrt(360.0 * 180.0 * avgPerCell / Math.max(n, 1));
+    cellSize = Math.max(minCellSize, Math.min(maxCellSize, size));
+    nlat = (int) Math.ceil(180.0 / cellSize);
+    nlon = (int) Math.ceil(360.0 / cellSize);
+
+    int[] cellOf = new int[n];
+    int[] count = new int[nlat * nlon + 1];
+    List<Integer> odd = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      if (!isRegular(lats[i], lons[i])) {
+        cellOf[i] = -1;
+        odd.add(i);
+        continue;
+      }
+      cellOf[i] = latRow(lats[i]) * nlon + lonCol(lons[i]);
+      count[cellOf[i] + 1]++;
+    }
+    for (int c = 0; c < nlat * nlon; c++)
+      count[c + 1] += count[c];
+    cellStart = count.clone();
+
+    ids = new int[n - odd.size()];
+    int[] next = Arrays.copyOf(count, nlat * nlon);
+    for (int i = 0; i < n; i++)   // in list order, so each bucket is sorted
+      if (cellOf[i] >= 0) ids[next[cellOf[i]]++] = i;
+
+    irregular = new int[odd.size()];
+    for (int i = 0; i < irregular.length; i++)
+      irregular[i] = odd.get(i);
+  }
+
+  private static boolean isRegular(double lat, double lon) {
+    return lat >= -90.0 && lat <= 90.0 && lon >= -180.0 && lon <= 180.0;
+  }
+
+  private int latRow(double lat) {
+    return clamp((int) Math.floor((lat + 90.0) / cellSize), nlat);
+  }
+
+  private int lonCol(double lon) {
+    return clamp((int) Math.floor((lon + 180.0) / cellSize), nlon);
+  }
+
+  private static int clamp(int idx, int n) {
+    return Math.max(0, Math.min(n - 1, idx));
+  }
+
+  /**
+   * Stations contained in the bounding box, with the same test as LatLonRect.contains().
+   * @return indices in increasing order
+   */
+  int[] find(LatLonRect bb) {
+    Candidates cand = new Candidates();
+    int row0 = latRow(bb.getLatMin() - 1.0e-9);  // same slop as LatLonRect.contains()
+    int row1 = latRow(bb.getLatMax() + 1.0e-9);
+
+    double lonMin = bb.getLowerLeftPoint().getLongitude();
+    double lonMax = bb.getUpperRightPoint().getLongitude();
+    if (bb.getWidth() >= 360.0) {
+      addCells(cand, row0, row1, 0, nlon - 1);
+    } else if (bb.crossDateline()) {
+      addCells(cand, row0, row1, lonCol(lonMin), nlon - 1);
+      addCells(cand, row0, row1, 0, lonCol(lonMax));
+    } else {
+      addCells(cand, row0, row1, lonCol(lonMin), lonCol(lonMax));
+    }
+    cand.addAll(irregular);
+
+    int[] result = cand.filter(i -> bb.contains(lats[i], lons[i]));
+    Arrays.sort(result);
+    return result;
+  }
+
+  /**
+   * Stations within radius of the point, nearest first.
+   * @param radius in km
+   */
+  int[] find(double lat, double lon, double radius) {
+    Candidates cand = candidatesWithin(lat, lon, radius);
+    int[] result = cand.filter(i -> distance(lat, lon, lats[i], lons[i]) <= radius);
+    return sortByDistance(result, lat, lon);
+  }
+
+  /**
+   * The k stations nearest the point, nearest first.
+   */
+  int[] findNearest(double lat, double lon, int k) {
+    int n = lats.length;
+    k = Math.min(k, n);
+    if (k <= 0) return new int[0];
+
+    // grow the search radius until it holds k stations
+    double maxRadius = Math.PI * Earth.getRadius() / 1000.0;
+    double radius = Math.max(1.0, cellSize * 111.0 * Math.sqrt((double) k / avgPerCell));
+    while (true) {
+      int[] within = find(lat, lon, radius);
+      if (within.length >= k || radius >= maxRadius) {
+        if (within.length >= k)
+          return Arrays.copyOf(within, k);
+        // everything else is missing lat/lon
+        int[] all = new int[n];
+        for (int i = 0; i < n; i++) all[i] = i;
+        return Arrays.copyOf(sortByDistance(all, lat, lon), k);
+      }
+      radius = Math.min(2 * radius, maxRadius);
+    }
+  }
+
+  private Candidates candidatesWithin(double lat, double lon, double radius) {
+    Candidates cand = new Candidates();
+    double dlat = Math.toDegrees(radius / (Earth.getRadius() / 1000.0));
+    double latMin = lat - dlat;
+    double latMax = lat + dlat;
+    int row0 = latRow(latMin);
+    int row1 = latRow(latMax);
+
+    // the widest longitude extent of the circle is at the latitude nearest the pole
+    double maxAbsLat = Math.max(Math.abs(latMin), Math.abs(latMax));
+    double cos = Math.cos(Math.toRadians(maxAbsLat));
+    double dlon = (maxAbsLat >= 90.0 || cos <= 0.0) ? 360.0 : dlat / cos;
+    if (dlon >= 180.0) {
+      addCells(cand, row0, row1, 0, nlon - 1);
+    } else {
+      double lonc = lon - 360.0 * Math.floor((lon + 180.0) / 360.0); // into [-180, 180)
+      double lonMin = lonc - dlon;
+      double lonMax = lonc + dlon;
+      if (lonMin < -180.0) {
+        addCells(cand, row0, row1, lonCol(lonMin + 360.0), nlon - 1);
+        addCells(cand, row0, row1, 0, lonCol(lonMax));
+      } else if (lonMax > 180.0) {
+        addCells(cand, row0, row1, lonCol(lonMin), nlon - 1);
+        addCells(cand, row0, row1, 0, lonCol(lonMax - 360.0));
+      } else {
+        addCells(cand, row0, row1, lonCol(lonMin), lonCol(lonMax));
+      }
+    }
+    cand.addAll(irregular);
+    return cand;
+  }
+
+  private void addCells(Candidates cand, int row0, int row1, int col0, int col1) {
+    for (int row = row0; row <= row1; row++) {
+      int base = row * nlon;
+      for (int col = col0; col <= col1; col++) {
+        int c = base + col;
+        for (int j = cellStart[c]; j < cellStart[c + 1]; j++)
+          cand.add(ids[j]);
+      }
+    }
+  }
+
+  private int[] sortByDistance(int[] idx, double lat, double lon) {
+    int n = idx.length;
+    double[] dist = new double[n];
+    Integer[] order = new Integer[n];
+    for (int i = 0; i < n; i++) {
+      dist[i] = distance(lat, lon, lats[idx[i]], lons[idx[i]]);
+      if (Double.isNaN(dist[i])) dist[i] = Double.MAX_VALUE;
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> {
+      int c = Double.compare(dist[a], dist[b]);
+      return c != 0 ? c : Integer.compare(idx[a], idx[b]);
+    });
+    int[] result = new int[n];
+    for (int i = 0; i < n; i++)
+      result[i] = idx[order[i]];
+    return result;
+  }
+
+  /**
+   * Great circle distance in km (haversine)
+   */
+  static double distance(double lat1, double lon1, double lat2, double lon2) {
+    double phi1 = Math.toRadians(lat1);
+    double phi2 = Math.toRadians(lat2);
+    double sdlat = Math.sin((phi2 - phi1) / 2);
+    double sdlon = Math.sin(Math.toRadians(lon2 - lon1) / 2);
+    double a = sdlat * sdlat + Math.cos(phi1) * Math.cos(phi2) * sdlon * sdlon;
+    return 2 * Earth.getRadius() / 1000.0 * Math.asin(Math.min(1.0, Math.sqrt(a)));
+  }
+
+  private static class Candidates {
+    int[] idx = new int[16];
+    int n;
+
+    void add(int i) {
+      if (n == idx.length) idx = Arrays.copyOf(idx, 2 * n);
+      idx[n++] = i;
+    }
+
+    void addAll(int[] all) {
+      for (int i : all) add(i);
+    }
+
+    int[] filter(IntPredicate want) {
+      int[] result = new int[n];
+      int count = 0;
+      for (int j = 0; j < n; j++)
+        if (want.test(idx[j])) result[count++] = idx[j];
+      return Arrays.copyOf(result, count);
+    }
+  }
+}
@@ -47,6 +47,7 @@ import ucar.nc2.ft.StationTimeSeriesFeatureCollection;
 import ucar.nc2.time.CalendarDateRange;
 import ucar.nc2.time.CalendarDateUnit;
 import ucar.nc2.util.IOIterator;
+import ucar.unidata.geoloc.LatLonPoint;
 import ucar.unidata.geoloc.LatLonRect;
 
 /**
@@ -111,6 +112,26 @@ public abstract class StationTimeSeriesCollectionImpl extends PointFeatureCCImpl
     return getStationHelper().getStation(name);
   }
 
+  /**
+   * Find the stations within a great circle distance of a point.
+   * @param pt center point
+   * @param radius distance in km
+   * @return stations within radius, nearest first
+   */
+  public List<StationFeature> getStationFeatures(LatLonPoint pt, double radius) {
+    return getStationHelper().getStationFeatures(pt, radius);
+  }
+
+  /**
+   * Find the k stations nearest a point, by great circle distance.
+   * @param pt center point
+   * @param k number of stations wanted
+   * @return at most k stations, nearest first
+   */
+  public List<StationFeature> getNearestStationFeatures(LatLonPoint pt, int k) {
+    return getStationHelper().getNearestStationFeatures(pt, k);
+  }
+
   @Override
   public StationTimeSeriesFeature getStationTimeSeriesFeature(StationFeature s) {
     return (StationTimeSeriesFeature) s; // LOOK
@@ -34,7 +34,6 @@ package ucar.nc2.ft.point.collection;
 
 import java.io.IOException;
 import java.util.Formatter;
-import java.util.Iterator;
 import java.util.List;
 import javax.annotation.Nonnull;
 
@@ -62,12 +61,21 @@ import ucar.unidata.geoloc.LatLonRect;
  */
 public class CompositePointCollection extends PointCollectionImpl implements UpdateableCollection {
   private TimedCollection pointCollections;
+  private final PointFileSummaries summaries;
+  private LatLonRect wantBB;                // skip files with no obs in here
+  private CalendarDateRange wantDateRange;  // skip files with no obs in here
   protected List<VariableSimpleIF> dataVariables;
   protected List<Attribute> globalAttributes;
 
   protected CompositePointCollection(String name, CalendarDateUnit timeUnit, String altUnits, TimedCollection pointCollections) throws IOException {
+    this(name, timeUnit, altUnits, pointCollections, new PointFileSummaries(FeatureType.POINT));
+  }
+
+  CompositePointCollection(String name, CalendarDateUnit timeUnit, String altUnits, TimedCollection pointCollections,
+                           PointFileSummaries summaries) throws IOException {
     super(name, timeUnit, altUnits);
     this.pointCollections = pointCollections;
+    this.summaries = summaries;
   }
 
   private void readMetadata() {
@@ -102,12 +110,13 @@ public class CompositePointCollection extends PointCollectionImpl implements Upd
   public PointFeatureCollection subset(LatLonRect boundingBox, CalendarDateRange dateRange) throws IOException {
     if ((dateRange == null) && (boundingBox == null))
       return this;
-    else if (dateRange == null)
-      return new PointCollectionSubset(this, boundingBox, null);
-    else {
-      CompositePointCollection dateSubset = new CompositePointCollection(name, getTimeUnit(), getAltUnits(), pointCollections.subset(dateRange));
-      return new PointCollectionSubset(dateSubset, boundingBox, dateRange);
-    }
+
+    // the file dates narrow down the datasets, the file summaries then skip the ones that cant match
+    TimedCollection subsetCollection = (dateRange == null) ? pointCollections : pointCollections.subset(dateRange);
+    CompositePointCollection subset = new CompositePointCollection(name, getTimeUnit(), getAltUnits(), subsetCollection, summaries);
+    subset.wantBB = boundingBox;
+    subset.wantDateRange = dateRange;
+    return new PointCollectionSubset(subset, boundingBox, dateRange);
   }
 
   @Override
@@ -117,30 +126,34 @@ public class CompositePointCollection extends PointCollectionImpl implements Upd
 
   @Override
   public CalendarDateRange update() throws IOException {
-    return pointCollections.update();
+    CalendarDateRange result = pointCollections.update();
+    summaries.update(pointCollections);
+    return result;
   }
 
   private class CompositePointFeatureIterator extends PointIteratorAbstract {
     private boolean finished = false;
-    private Iterator<TimedCollection.Dataset> iter;
+    private PrefetchingDatasetIterator iter;
+    private TimedCollection.Dataset currentTd;
     private FeatureDatasetPoint currentDataset;
     private PointFeatureIterator pfIter = null;
+    private PointFileSummary.Builder summary;  // summarize the current file as we read it, if thats not known yet
 
     CompositePointFeatureIterator() {
-      iter = pointCollections.getDatasets().iterator();
+      iter = new PrefetchingDatasetIterator(summaries.select(pointCollections, wantBB, wantDateRange, null), FeatureType.POINT);
     }
 
     private PointFeatureIterator getNextIterator() throws IOException {
       if (!iter.hasNext()) return null;
-      TimedCollection.Dataset td = iter.next();
+      currentTd = iter.next();
 
-      Formatter errlog = new Formatter();
-      currentDataset = (FeatureDatasetPoint) FeatureDatasetFactoryManager.open(FeatureType.POINT, td.getLocation(), null, errlog);
+      currentDataset = iter.open();
       if (currentDataset == null)
-        throw new IllegalStateException("Cant open FeatureDatasetPoint " + td.getLocation());
+        throw new IllegalStateException("Cant open FeatureDatasetPoint " + currentTd.getLocation());
       if (CompositeDatasetFactory.debug)
-        System.out.printf("CompositePointFeatureIterator open dataset %s%n", td.getLocation());
+        System.out.printf("CompositePointFeatureIterator open dataset %s%n", currentTd.getLocation());
 
+      summary = (summaries.get(pointCollections, currentTd) == null) ? summaries.builder() : null;
       List<DsgFeatureCollection> fcList = currentDataset.getPointFeatureCollectionList();
       PointFeatureCollection pc = (PointFeatureCollection) fcList.get(0);
       return pc.getPointFeatureIterator();
@@ -159,6 +172,8 @@ public class CompositePointCollection extends PointCollectionImpl implements Upd
 
         if (!pfIter.hasNext()) {
           pfIter.close();
+          if (summary != null)  // read all the way through
+            summaries.put(pointCollections, currentTd, summary.build(currentTd.getLastModified()));
           if (CompositeDatasetFactory.debug)
             System.out.printf("CompositePointFeatureIterator open dataset %s%n", currentDataset.getLocation());
           currentDataset.close();
@@ -175,13 +190,16 @@ public class CompositePointCollection extends PointCollectionImpl implements Upd
 
     @Override
     public PointFeature next() {
-      return pfIter.next();
+      PointFeature pf = pfIter.next();
+      if (summary != null) summary.add(pf);
+      return pf;
     }
 
     @Override
     public void close() {
       if (finished) return;
 
+      iter.close();
       if (pfIter != null)
         pfIter.close();
       finishCalcBounds();
@@ -33,6 +33,7 @@
 package ucar.nc2.ft.point.collection;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Formatter;
 import java.util.Iterator;
 import java.util.List;
@@ -72,13 +73,20 @@ import ucar.unidata.geoloc.Station;
  */
 public class CompositeStationCollection extends StationTimeSeriesCollectionImpl implements UpdateableCollection {
   private TimedCollection dataCollection;
+  private final PointFileSummaries summaries;
   protected List<VariableSimpleIF> dataVariables;
   protected List<Attribute> globalAttributes;
 
   protected CompositeStationCollection(
           String name, CalendarDateUnit timeUnit, String altUnits, TimedCollection dataCollection) throws IOException {
+    this(name, timeUnit, altUnits, dataCollection, new PointFileSummaries(FeatureType.STATION));
+  }
+
+  CompositeStationCollection(String name, CalendarDateUnit timeUnit, String altUnits, TimedCollection dataCollection,
+                             PointFileSummaries summaries) throws IOException {
     super(name, timeUnit, altUnits);
     this.dataCollection = dataCollection;
+    this.summaries = summaries;
     TimedCollection.Dataset td = dataCollection.getPrototype();
     if (td == null)
       throw new RuntimeException("No datasets in the collection");
@@ -124,7 +132,9 @@ public class CompositeStationCollection extends StationTimeSeriesCollectionImpl
 
   @Override
   public CalendarDateRange update() throws IOException {
-    return dataCollection.update();
+    CalendarDateRange result = dataCollection.update();
+    summaries.update(dataCollection);
+    return result;
   }
 
   // Must override default subsetting implementation for efficiency
@@ -159,7 +169,7 @@ public class CompositeStationCollection extends StationTimeSeriesCollectionImpl
   @Override
   public PointFeatureCollection flatten(LatLonRect boundingBox, CalendarDateRange dateRange) throws IOException {
     TimedCollection subsetCollection = (dateRange != null) ? dataCollection.subset(dateRange) : dataCollection;
-    return new CompositeStationCollectionFlattened(getName(), getTimeUnit(), getAltUnits(), boundingBox, dateRange, subsetCollection);
+    return new CompositeStationCollectionFlattened(getName(), getTimeUnit(), getAltUnits(), boundingBox, dateRange, subsetCollection, summaries);
 
     //return flatten(stationHelper.getStations(boundingBox), dateRange, null);
   }
@@ -167,7 +177,7 @@ public class CompositeStationCollection extends StationTimeSeriesCollectionImpl
   @Override
   public PointFeatureCollection flatten(List<String> stations, CalendarDateRange dateRange, List<VariableSimpleIF> varList) throws IOException {
     TimedCollection subsetCollection = (dateRange != null) ? dataCollection.subset(dateRange) : dataCollection;
-    return new CompositeStationCollectionFlattened(getName(), getTimeUnit(), getAltUnits(), stations, dateRange, varList, subsetCollection);
+    return new CompositeStationCollectionFlattened(getName(), getTimeUnit(), getAltUnits(), stations, dateRange, varList, subsetCollection, summaries);
   }
 
 
@@ -177,7 +187,7 @@ public class CompositeStationCollection extends StationTimeSeriesCollectionImpl
 
     private CompositeStationCollectionSubset(CompositeStationCollection from, List<StationFeature> stationFeats)
             throws IOException {
-      super(from.getName(), from.getTimeUnit(), from.getAltUnits(), from.dataCollection);
+      super(from.getName(), from.getTimeUnit(), from.getAltUnits(), from.dataCollection, from.summaries);
       this.from = Preconditions.checkNotNull(from, "from == null");
 
       Preconditions.checkArgument(stationFeats != null && !stationFeats.isEmpty(),
@@ -310,20 +320,21 @@ public class CompositeStationCollection extends StationTimeSeriesCollectionImpl
     // the iterator over PointFeature - an iterator over iterators, one for each dataset
 
     private class CompositeStationFeatureIterator extends PointIteratorAbstract {
-      private Iterator<TimedCollection.Dataset> iter;
+      private PrefetchingDatasetIterator iter;
       private FeatureDatasetPoint currentDataset;
       private PointFeatureIterator pfIter = null;
       private boolean finished = false;
 
       CompositeStationFeatureIterator() {
-        iter = collForFeature.getDatasets().iterator();
+        // skip the files that dont have this station
+        List<TimedCollection.Dataset> datasets = summaries.select(collForFeature, null, null, Collections.singleton(getName()));
+        iter = new PrefetchingDatasetIterator(datasets, FeatureType.STATION);
       }
 
       private PointFeatureIterator getNextIterator() throws IOException {
         if (!iter.hasNext()) return null;
         TimedCollection.Dataset td = iter.next();
-        Formatter errlog = new Formatter();
-        currentDataset = (FeatureDatasetPoint) FeatureDatasetFactoryManager.open(FeatureType.STATION, td.getLocation(), null, errlog);
+        currentDataset = iter.open();
         if (currentDataset == null)
           throw new IllegalStateException("Cant open FeatureDatasetPoint " + td.getLocation());
 
@@ -333,6 +344,7 @@ public class CompositeStationCollection extends StationTimeSeriesCollectionImpl
         if (s == null) {
           System.out.printf("CompositeStationFeatureIterator dataset: %s missing station %s%n",
                   td.getLocation(), getName());
+          currentDataset.close();
           return getNextIterator();
         }
 
@@ -379,6 +391,7 @@ public class CompositeStationCollection extends StationTimeSeriesCollectionImpl
       public void close() {
         if (finished) return;
 
+        iter.close();
         if (pfIter != null)
           pfIter.close();
 
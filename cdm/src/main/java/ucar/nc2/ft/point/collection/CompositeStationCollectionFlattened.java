@@ -34,15 +34,12 @@ package ucar.nc2.ft.point.collection;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Formatter;
-import java.util.Iterator;
 import java.util.List;
 
 import thredds.inventory.TimedCollection;
 import ucar.nc2.VariableSimpleIF;
 import ucar.nc2.constants.FeatureType;
 import ucar.nc2.ft.DsgFeatureCollection;
-import ucar.nc2.ft.FeatureDatasetFactoryManager;
 import ucar.nc2.ft.FeatureDatasetPoint;
 import ucar.nc2.ft.PointFeature;
 import ucar.nc2.ft.PointFeatureCollection;
@@ -71,23 +68,36 @@ public class CompositeStationCollectionFlattened extends PointCollectionImpl {
   private CalendarDateRange dateRange;
   private List<VariableSimpleIF> varList;
   private boolean wantStationsubset = false;
+  private final PointFileSummaries summaries;
 
   protected CompositeStationCollectionFlattened(String name, CalendarDateUnit timeUnit, String altUnits, List<String> stations, CalendarDateRange dateRange,
                                                 List<VariableSimpleIF> varList, TimedCollection stnCollections) throws IOException {
+    this(name, timeUnit, altUnits, stations, dateRange, varList, stnCollections, new PointFileSummaries(FeatureType.STATION));
+  }
+
+  CompositeStationCollectionFlattened(String name, CalendarDateUnit timeUnit, String altUnits, List<String> stations, CalendarDateRange dateRange,
+                                      List<VariableSimpleIF> varList, TimedCollection stnCollections, PointFileSummaries summaries) throws IOException {
     super(name, timeUnit, altUnits);
     this.stationsSubset = stations; // note these will be from the original collection, must transfer
     this.dateRange = dateRange;
     this.varList = varList;
     this.stnCollections = stnCollections;
+    this.summaries = summaries;
 
     wantStationsubset = (stations != null) && (stations.size() > 0);
   }
 
   protected CompositeStationCollectionFlattened(String name, CalendarDateUnit timeUnit, String altUnits, LatLonRect bbSubset, CalendarDateRange dateRange, TimedCollection stnCollections) throws IOException {
+    this(name, timeUnit, altUnits, bbSubset, dateRange, stnCollections, new PointFileSummaries(FeatureType.STATION));
+  }
+
+  CompositeStationCollectionFlattened(String name, CalendarDateUnit timeUnit, String altUnits, LatLonRect bbSubset, CalendarDateRange dateRange,
+                                      TimedCollection stnCollections, PointFileSummaries summaries) throws IOException {
     super(name, timeUnit, altUnits);
     this.bbSubset = bbSubset;
     this.dateRange = dateRange;
     this.stnCollections = stnCollections;
+    this.summaries = summaries;
   }
 
   @Override
@@ -97,23 +107,27 @@ public class CompositeStationCollectionFlattened extends PointCollectionImpl {
 
   private class PointIterator extends PointIteratorAbstract {
     private boolean finished = false;
-    private Iterator<TimedCollection.Dataset> iter;
+    private PrefetchingDatasetIterator iter;
+    private TimedCollection.Dataset currentTd;
     private FeatureDatasetPoint currentDataset;
     private PointFeatureIterator pfIter = null;
+    private PointFileSummary.Builder summary;  // summarize the current file as we read it, if we read all of it
 
     PointIterator() {
-      iter = stnCollections.getDatasets().iterator();
+      // skip the files that cant have what we want
+      List<TimedCollection.Dataset> datasets = summaries.select(stnCollections, bbSubset, dateRange, wantStationsubset ? stationsSubset : null);
+      iter = new PrefetchingDatasetIterator(datasets, FeatureType.STATION);
     }
 
     private PointFeatureIterator getNextIterator() throws IOException {
       if (!iter.hasNext()) return null;
       TimedCollection.Dataset td = iter.next();
-      Formatter errlog = new Formatter();
+      currentTd = td;
 
       // open the next dataset
-      currentDataset = (FeatureDatasetPoint) FeatureDatasetFactoryManager.open(FeatureType.STATION, td.getLocation(), null, errlog);
+      currentDataset = iter.open();
       if (currentDataset == null) {
-        logger.error("FeatureDatasetFactoryManager failed to open: " + td.getLocation() + " \nerrlog = " + errlog);
+        logger.error("FeatureDatasetFactoryManager failed to open: " + td.getLocation() + " \nerrlog = " + iter.getErrlog());
         return getNextIterator();
       }
 
@@ -137,6 +151,8 @@ public class CompositeStationCollectionFlattened extends PointCollectionImpl {
         pc = stnCollection.flatten(names, dateRange, null);
       }
 
+      boolean readAll = !wantStationsubset && bbSubset == null && dateRange == null;
+      summary = (readAll && summaries.get(stnCollections, td) == null) ? summaries.builder() : null;
       return pc.getPointFeatureIterator();
     }
 
@@ -153,6 +169,8 @@ public class CompositeStationCollectionFlattened extends PointCollectionImpl {
 
         if (!pfIter.hasNext()) {
           pfIter.close();
+          if (summary != null)
+            summaries.put(stnCollections, currentTd, summary.build(currentTd.getLastModified()));
           currentDataset.close();
           if (CompositeDatasetFactory.debug)
             System.out.printf("CompositeStationCollectionFlattened.Iterator close dataset: %s%n", currentDataset.getLocation());
@@ -170,6 +188,7 @@ public class CompositeStationCollectionFlattened extends PointCollectionImpl {
     public PointFeature next() {
       PointFeature pf =  pfIter.next();
       calcBounds(pf);
+      if (summary != null) summary.add(pf);
       return pf;
     }
 
@@ -177,6 +196,7 @@ public class CompositeStationCollectionFlattened extends PointCollectionImpl {
     public void close() {
       if (finished) return;
 
+      iter.close();
       if (pfIter != null)
         pfIter.close();
       finishCalcBounds();
@@ -0,0 +1,165 @@
+/*
+ * Copyright 1998-2015 John Caron and University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.ft.point.collection;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import thredds.inventory.TimedCollection;
+import ucar.nc2.constants.FeatureType;
+import ucar.nc2.ft.*;
+import ucar.nc2.time.CalendarDateRange;
+import ucar.unidata.geoloc.LatLonRect;
+
+/**
+ * The PointFileSummary of each file in a composite point collection.
+ * Kept in memory and in the collection manager's metadata store, if it has one.
+ * Summaries are made when a file has been read all the way through, or by update().
+ *
+ * @since 10/19/2016
+ */
+class PointFileSummaries {
+  static private final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(PointFileSummaries.class);
+  static private final String KEY = "pointSummary";
+
+  private final FeatureType featureType;  // POINT or STATION
+  private final ConcurrentMap<String, PointFileSummary> cache = new ConcurrentHashMap<>();
+
+  PointFileSummaries(FeatureType featureType) {
+    this.featureType = featureType;
+  }
+
+  /**
+   * @return the summary of this dataset, or null if not known or the file changed since it was made
+   */
+  PointFileSummary get(TimedCollection collection, TimedCollection.Dataset td) {
+    PointFileSummary summary = cache.get(td.getLocation());
+    if (summary == null) {
+      byte[] bytes = collection.getMetadata(td, KEY);
+      if (bytes != null) {
+        try {
+          summary = PointFileSummary.fromBytes(bytes);
+        } catch (IOException e) {
+          logger.warn("Bad point summary for {}", td.getLocation(), e);
+        }
+        if (summary != null)
+          cache.put(td.getLocation(), summary);
+      }
+    }
+    return (summary != null && summary.lastModified == td.getLastModified()) ? summary : null;
+  }
+
+  void put(TimedCollection collection, TimedCollection.Dataset td, PointFileSummary summary) {
+    cache.put(td.getLocation(), summary);
+    collection.putMetadata(td, KEY, summary.toBytes());
+  }
+
+  PointFileSummary.Builder builder() {
+    return new PointFileSummary.Builder(featureType == FeatureType.STATION);
+  }
+
+  /**
+   * Read through a dataset to make its summary.
+   * @return null if it cant be opened as a point dataset
+   */
+  PointFileSummary summarize(TimedCollection.Dataset td) throws IOException {
+    Formatter errlog = new Formatter();
+    try (FeatureDatasetPoint fdp = (FeatureDatasetPoint) FeatureDatasetFactoryManager.open(featureType, td.getLocation(), null, errlog)) {
+      if (fdp == null) {
+        logger.warn("Cant open {} to summarize: {}", td.getLocation(), errlog);
+        return null;
+      }
+
+      DsgFeatureCollection fc = fdp.getPointFeatureCollectionList().get(0);
+      PointFeatureCollection pc = (featureType == FeatureType.STATION) ?
+              ((StationTimeSeriesFeatureCollection) fc).flatten(null, (CalendarDateRange) null, null) : (PointFeatureCollection) fc;
+
+      PointFileSummary.Builder builder = builder();
+      try (PointFeatureIterator iter = pc.getPointFeatureIterator()) {
+        while (iter.hasNext())
+          builder.add(iter.next());
+      }
+      return builder.build(td.getLastModified());
+    }
+  }
+
+  /**
+   * Call after the collection has been rescanned: summarize new or changed files, forget the ones that are gone.
+   */
+  void update(TimedCollection collection) {
+    Set<String> locations = new HashSet<>();
+    for (TimedCollection.Dataset td : collection.getDatasets()) {
+      locations.add(td.getLocation());
+      if (get(collection, td) != null) continue;
+      try {
+        PointFileSummary summary = summarize(td);
+        if (summary != null)
+          put(collection, td, summary);
+      } catch (IOException e) {
+        logger.warn("Cant summarize {}", td.getLocation(), e);
+      }
+    }
+    cache.keySet().retainAll(locations);
+  }
+
+  /**
+   * The datasets of the collection that may have obs matching the query.
+   * Datasets without a summary are always kept. If all are summarized, they are put in order of their first obs time.
+   *
+   * @param bb        want obs in this bounding box, or null for all
+   * @param dateRange want obs in this date range, or null for all
+   * @param stations  want obs from any of these stations, or null for all
+   */
+  List<TimedCollection.Dataset> select(TimedCollection collection, LatLonRect bb, CalendarDateRange dateRange, Collection<String> stations) {
+    List<TimedCollection.Dataset> result = new ArrayList<>();
+    Map<TimedCollection.Dataset, PointFileSummary> summaries = new HashMap<>();
+    boolean allKnown = true;
+    for (TimedCollection.Dataset td : collection.getDatasets()) {
+      PointFileSummary summary = get(collection, td);
+      if (summary == null) {
+        allKnown = false;
+        result.add(td);
+      } else if (summary.intersects(dateRange) && summary.intersects(bb) && summary.hasStation(stations)) {
+        result.add(td);
+        summaries.put(td, summary);
+      }
+    }
+
+    if (allKnown)
+      result.sort(Comparator.comparingLong(td -> summaries.get(td).minTime));  // stable, so ties keep file order
+    return result;
+  }
+
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 1998-2015 John Caron and University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.ft.point.collection;
+
+import java.io.*;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import ucar.nc2.ft.PointFeature;
+import ucar.nc2.ft.point.StationPointFeature;
+import ucar.nc2.time.CalendarDateRange;
+import ucar.unidata.geoloc.LatLonRect;
+
+/**
+ * What is actually in one file of a composite point collection: time range, bounding box, stations and number of obs.
+ * Lets the composite iterators skip files that cant match a query without opening them.
+ *
+ * @since 10/19/2016
+ */
+class PointFileSummary {
+  private static final int VERSION = 1;
+
+  final long lastModified;  // of the file when summarized
+  final long nobs;
+  final long minTime, maxTime;  // msecs
+  final double latMin, latMax, lonMin, lonMax; // NaN if some obs had no location
+  final Set<String> stations;  // null for point collections
+
+  private PointFileSummary(long lastModified, long nobs, long minTime, long maxTime,
+                           double latMin, double latMax, double lonMin, double lonMax, Set<String> stations) {
+    this.lastModified = lastModified;
+    this.nobs = nobs;
+    this.minTime = minTime;
+    this.maxTime = maxTime;
+    this.latMin = latMin;
+    this.latMax = latMax;
+    this.lonMin = lonMin;
+    this.lonMax = lonMax;
+    this.stations = stations;
+  }
+
+  boolean intersects(CalendarDateRange dateRange) {
+    if (nobs == 0) return false;
+    if (dateRange == null) return true;
+    return minTime <= dateRange.getEnd().getMillis() && maxTime >= dateRange.getStart().getMillis();
+  }
+
+  boolean intersects(LatLonRect bb) {
+    if (nobs == 0) return false;
+    if (bb == null || Double.isNaN(latMin)) return true;
+    return bb.intersects(latMin, latMax, lonMin, lonMax);  // works when all obs are at one station
+  }
+
+  // true if any of the named stations has obs in this file
+  boolean hasStation(Collection<String> names) {
+    if (nobs == 0) return false;
+    if (stations == null || names == null) return true;
+    for (String name : names)
+      if (stations.contains(name)) return true;
+    return false;
+  }
+
+  /////////////////////////////////////////////////////////
+  // persistence
+
+  byte[] toBytes() {
+    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bos)) {
+      out.writeInt(VERSION);
+      out.writeLong(lastModified);
+      out.writeLong(nobs);
+      out.writeLong(minTime);
+      out.writeLong(maxTime);
+      out.writeDouble(latMin);
+      out.writeDouble(latMax);
+      out.writeDouble(lonMin);
+      out.writeDouble(lonMax);
+      out.writeInt(stations == null ? -1 : stations.size());
+      if (stations != null)
+        for (String s : stations) out.writeUTF(s);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);  // cant happen
+    }
+    return bos.toByteArray();
+  }
+
+  /**
+   * @return null if bytes were written by a different version
+   */
+  static PointFileSummary fromBytes(byte[] bytes) throws IOException {
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+      if (in.readInt() != VERSION) return null;
+      long lastModified = in.readLong();
+      long nobs = in.readLong();
+      long minTime = in.readLong();
+      long maxTime = in.readLong();
+      double latMin = in.readDouble();
+      double latMax = in.readDouble();
+      double lonMin = in.readDouble();
+      double lonMax = in.readDouble();
+      int nstations = in.readInt();
+      Set<String> stations = null;
+      if (nstations >= 0) {
+        stations = new HashSet<>(2 * nstations);
+        for (int i = 0; i < nstations; i++) stations.add(in.readUTF());
+      }
+      return new PointFileSummary(lastModified, nobs, minTime, maxTime, latMin, latMax, lonMin, lonMax, stations);
+    }
+  }
+
+  /////////////////////////////////////////////////////////
+
+  /**
+   * Accumulates a summary while the obs of a file are read.
+   */
+  static class Builder {
+    private final boolean isStation;
+    private final Set<String> stations = new HashSet<>();
+    private long nobs;
+    private long minTime = Long.MAX_VALUE, maxTime = Long.MIN_VALUE;
+    private double latMin = Double.MAX_VALUE, latMax = -Double.MAX_VALUE;
+    private double lonMin = Double.MAX_VALUE, lonMax = -Double.MAX_VALUE;
+    private boolean missingLocation;
+
+    Builder(boolean isStation) {
+      this.isStation = isStation;
+    }
+
+    void add(PointFeature pf) {
+      nobs++;
+      long time = pf.getObservationTimeAsCalendarDate().getMillis();
+      minTime = Math.min(minTime, time);
+      maxTime = Math.max(maxTime, time);
+
+      double lat = pf.getLocation().getLatitude();
+      double lon = pf.getLocation().getLongitude();
+      if (Double.isNaN(lat) || Double.isNaN(lon)) {
+        missingLocation = true;
+      } else {
+        latMin = Math.min(latMin, lat);
+        latMax = Math.max(latMax, lat);
+        lonMin = Math.min(lonMin, lon);
+        lonMax = Math.max(lonMax, lon);
+      }
+
+      if (isStation && pf instanceof StationPointFeature)
+        stations.add(((StationPointFeature) pf).getStation().getName());
+    }
+
+    PointFileSummary build(long lastModified) {
+      boolean noBB = missingLocation || nobs == 0;
+      return new PointFileSummary(lastModified, nobs, minTime, maxTime,
+              noBB ? Double.NaN : latMin, noBB ? Double.NaN : latMax,
+              noBB ? Double.NaN : lonMin, noBB ? Double.NaN : lonMax,
+              isStation ? Collections.unmodifiableSet(stations) : null);
+    }
+  }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 1998-2015 John Caron and University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.ft.point.collection;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Formatter;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import thredds.inventory.TimedCollection;
+import ucar.nc2.constants.FeatureType;
+import ucar.nc2.ft.FeatureDatasetFactoryManager;
+import ucar.nc2.ft.FeatureDatasetPoint;
+
+/**
+ * Opens the datasets of a composite collection one after the other, while the next few
+ * are opened in the background. Each dataset is still read by the caller's thread.
+ *
+ * @since 10/19/2016
+ */
+class PrefetchingDatasetIterator implements Closeable {
+  static private final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(PrefetchingDatasetIterator.class);
+
+  static private final ExecutorService pool = Executors.newCachedThreadPool(
+          new ThreadFactoryBuilder().setNameFormat("CompositeOpen-%d").setDaemon(true).build());
+
+  static private volatile int prefetch = 2;
+
+  /**
+   * Set the number of datasets opened ahead of the one being read.
+   * @param n 0 to open each dataset only when it is needed
+   */
+  static public void setPrefetch(int n) {
+    prefetch = Math.max(n, 0);
+  }
+
+  private static class Open {
+    final TimedCollection.Dataset td;
+    final Formatter errlog = new Formatter();
+    Future<FeatureDatasetPoint> future;  // null if not started
+
+    Open(TimedCollection.Dataset td) {
+      this.td = td;
+    }
+  }
+
+  private final FeatureType featureType;
+  private final Iterator<TimedCollection.Dataset> datasets;
+  private final int lookahead;
+  private final Deque<Open> pending = new ArrayDeque<>();
+  private Open current;
+
+  PrefetchingDatasetIterator(List<TimedCollection.Dataset> datasets, FeatureType featureType) {
+    this.featureType = featureType;
+    this.datasets = datasets.iterator();
+    this.lookahead = prefetch;
+  }
+
+  boolean hasNext() {
+    return !pending.isEmpty() || datasets.hasNext();
+  }
+
+  /**
+   * Advance to the next dataset, and start opening the ones after it.
+   */
+  TimedCollection.Dataset next() {
+    if (pending.isEmpty())
+      pending.add(new Open(datasets.next()));
+    current = pending.removeFirst();
+
+    while (pending.size() < lookahead && datasets.hasNext()) {
+      Open open = new Open(datasets.next());
+      open.future = pool.submit(() -> (FeatureDatasetPoint) FeatureDatasetFactoryManager.open(featureType, open.td.getLocation(), null, open.errlog));
+      pending.add(open);
+    }
+    return current.td;
+  }
+
+  /**
+   * Get the current dataset, opening it now if that wasnt already done. The caller must close it.
+   * @return null if it cant be opened as a point dataset
+   */
+  FeatureDatasetPoint open() throws IOException {
+    if (current.future == null)
+      return (FeatureDatasetPoint) FeatureDatasetFactoryManager.open(featureType, current.td.getLocation(), null, current.errlog);
+
+    try {
+      return current.future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted opening " + current.td.getLocation(), e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) throw (IOException) cause;
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      throw new IOException("Failed to open " + current.td.getLocation(), cause);
+    }
+  }
+
+  /**
+   * Messages from opening the current dataset.
+   */
+  String getErrlog() {
+    return current.errlog.toString();
+  }
+
+  // close the datasets that were opened ahead but not used
+  @Override
+  public void close() {
+    for (Open open : pending) {
+      if (open.future == null || open.future.cancel(false))
+        continue;
+      Future<FeatureDatasetPoint> future = open.future;
+      pool.execute(() -> {
+        try {
+          FeatureDatasetPoint fdp = future.get();
+          if (fdp != null) fdp.close();
+        } catch (Exception e) {
+          logger.debug("Prefetched dataset {} not closed", open.td.getLocation(), e);
+        }
+      });
+    }
+    pending.clear();
+  }
+
+}
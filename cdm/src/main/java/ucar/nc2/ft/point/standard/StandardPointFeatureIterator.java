@@ -38,6 +38,7 @@ import javax.annotation.Nonnull;
 import ucar.ma2.StructureData;
 import ucar.nc2.ft.DsgFeatureCollection;
 import ucar.nc2.ft.PointFeature;
+import ucar.nc2.ft.PointFeatureBlock;
 import ucar.nc2.ft.point.CollectionInfo;
 import ucar.nc2.ft.point.PointCollectionImpl;
 import ucar.nc2.ft.point.PointFeatureImpl;
@@ -83,6 +84,35 @@ public class StandardPointFeatureIterator extends PointIteratorFromStructureData
     return new StandardPointFeature(cursor.copy(), timeUnit, obsTime);
   }
 
+  // fill the block straight from the tables, without making a PointFeature
+  @Override
+  protected void addToBlock(PointFeatureBlock block, int recnum, StructureData sdata) throws IOException {
+    if (hasFilter()) {
+      super.addToBlock(block, recnum, sdata);
+      return;
+    }
+
+    cursor.recnum[0] = recnum;
+    cursor.tableData[0] = sdata; // always in the first position
+    cursor.currentIndex = 0;
+    ft.addParentJoin(cursor); // there may be parent joins
+
+    if (isMissing()) return; // missing data
+
+    double lat = ft.getLatitude(cursor);
+    double lon = ft.getLongitude(cursor);
+    if (Double.isNaN(lat) || Double.isNaN(lon)) return; // missing location
+
+    double obsTime = ft.getObsTime(cursor);
+    double nomTime = ft.getNomTime(cursor);
+    if (Double.isNaN(nomTime)) nomTime = obsTime;
+
+    calcBounds(obsTime, lat, lon);
+    if (block.getTimeUnit() == null) block.setTimeUnit(timeUnit);
+    StructureData dataAll = block.getMemberNames().isEmpty() ? null : ft.makeObsStructureData(cursor);
+    block.add(obsTime, nomTime, lat, lon, ft.getAltitude(cursor), dataAll);
+  }
+
   protected boolean isMissing() throws IOException {
     return ft.isTimeMissing(this.cursor) || ft.isMissing(this.cursor);
   }
@@ -728,14 +728,23 @@ public abstract class CFPointWriter implements Closeable {
   }
 
   protected int writeStructureData(int recno, Structure s, StructureData sdata, Map<String, Variable> varMap) throws IOException {
+    if (s == record && config.bufferSize > 1)
+      return writeRecordBuffered(recno, sdata, varMap);
+    return writeStructureDataDirect(recno, s, sdata, varMap);
+  }
+
+  private int writeStructureDataDirect(int recno, Structure s, StructureData sdata, Map<String, Variable> varMap) throws IOException {
 
     // write the recno record
     int[] origin = new int[1];
     origin[0] = recno;
     try {
       if (isExtendedModel) {
-        if (s.isUnlimited())
-          return writer.appendStructureData(s, sdata);  // can write it all at once along unlimited dimension
+        if (s.isUnlimited()) {
+          int row = writer.appendStructureData(s, sdata);  // can write it all at once along unlimited dimension
+          if (s == record) nrecords = row + 1;
+          return row;
+        }
         else {
           ArrayStructureW as = new ArrayStructureW(sdata.getStructureMembers(), new int[] {1});
           as.setStructureData(sdata, 0);
@@ -780,6 +789,260 @@ public abstract class CFPointWriter implements Closeable {
     return origin[0];
   }
 
+  ///////////////////////////////////////////////////////////////////////////////////////////////////////
+  // buffered observation writes: hold config.bufferSize obs in memory, then write them at once
+
+  private RecordBuffer recordBuffer;
+  private int nrecords;  // number of rows in an unlimited extended record structure, including buffered ones
+  private int nbuffered, nflushes;
+
+  /**
+   * @return number of observations that were written through the buffer; the others were written one at a time
+   */
+  public int getBufferedRecordCount() {
+    return nbuffered;
+  }
+
+  /**
+   * @return number of times the buffered observations were written to the file
+   */
+  public int getBufferFlushCount() {
+    return nflushes;
+  }
+
+  private int writeRecordBuffered(int recno, StructureData sdata, Map<String, Variable> varMap) throws IOException {
+    if (recordBuffer == null)
+      recordBuffer = isExtendedModel ? new ExtendedRecordBuffer(config.bufferSize) : new ClassicRecordBuffer(config.bufferSize, varMap);
+
+    // appendStructureData returns the row that was written, not the next one; keep that contract
+    boolean append = isExtendedModel && record.isUnlimited();
+    int row = append ? nrecords : recno;
+
+    if (!recordBuffer.isNext(row))
+      flushRecords();
+
+    if (!recordBuffer.add(row, sdata)) {  // doesnt fit the buffer layout: write it by itself
+      flushRecords();
+      return writeStructureDataDirect(recno, record, sdata, varMap);
+    }
+    nbuffered++;
+
+    if (recordBuffer.count == recordBuffer.capacity)
+      flushRecords();
+
+    if (append) {
+      nrecords++;
+      return row;
+    }
+    return recno + 1;
+  }
+
+  /**
+   * Write any buffered observations to the file. Called by finish(); subclasses that write the
+   * record variables some other way must call this first.
+   */
+  protected void flushRecords() throws IOException {
+    if (recordBuffer == null || recordBuffer.count == 0) return;
+    try {
+      recordBuffer.flush();
+      nflushes++;
+    } catch (InvalidRangeException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private abstract class RecordBuffer {
+    final int capacity;
+    int start;  // record number of the first buffered row
+    int count;  // number of buffered rows
+
+    RecordBuffer(int capacity) {
+      this.capacity = capacity;
+    }
+
+    boolean isNext(int row) {
+      return count == 0 || row == start + count;
+    }
+
+    // return false if sdata cant be buffered, nothing is changed in that case
+    abstract boolean add(int row, StructureData sdata);
+
+    abstract void flush() throws IOException, InvalidRangeException;
+  }
+
+  // netcdf-4 extended model: keep a deep copy of each row, write them as one section of the record structure
+  private class ExtendedRecordBuffer extends RecordBuffer {
+    private final StructureMembers recordMembers;
+    private final StructureData[] rows;
+    private final boolean hasStrings;
+
+    ExtendedRecordBuffer(int capacity) {
+      super(capacity);
+      this.recordMembers = record.makeStructureMembers();
+      this.rows = new StructureData[capacity];
+      boolean strings = false;
+      for (StructureMembers.Member m : recordMembers.getMembers())
+        if (m.getDataType() == DataType.STRING) strings = true;
+      this.hasStrings = strings;
+    }
+
+    @Override
+    boolean add(int row, StructureData sdata) {
+      if (hasStrings)  // appendStructureData handles these differently, dont change the file layout
+        return false;
+      for (StructureMembers.Member want : recordMembers.getMembers()) {
+        StructureMembers.Member m = sdata.findMember(want.getName());
+        if (m == null || m.getDataType() != want.getDataType())
+          return false;
+      }
+
+      // the caller may reuse sdata
+      rows[count] = StructureDataDeep.copy(sdata, new StructureMembers(sdata.getStructureMembers()));
+      if (count == 0) start = row;
+      count++;
+      return true;
+    }
+
+    @Override
+    void flush() throws IOException, InvalidRangeException {
+      StructureData[] sdatas = (count == capacity) ? rows : Arrays.copyOf(rows, count);
+      ArrayStructureW as = new ArrayStructureW(recordMembers, new int[]{count}, sdatas);
+      writer.write(record, new int[]{start}, as);
+      Arrays.fill(rows, null);
+      count = 0;
+    }
+  }
+
+  // netcdf-3 / classic model: one column array per record variable, written with one call per variable
+  private class ClassicRecordBuffer extends RecordBuffer {
+    private final Map<String, Column> columns = new HashMap<>();
+
+    ClassicRecordBuffer(int capacity, Map<String, Variable> varMap) {
+      super(capacity);
+      for (Variable mv : varMap.values()) {
+        if (mv.getRank() > 0 && mv.getDimension(0).isUnlimited())
+          columns.put(mv.getShortName(), new Column(mv, capacity));
+      }
+    }
+
+    @Override
+    boolean add(int row, StructureData sdata) {
+      // check everything first, so that a rejected row leaves no trace
+      List<StructureMembers.Member> members = sdata.getMembers();
+      Array[] values = new Array[members.size()];
+      Column[] cols = new Column[members.size()];
+      int nset = 0;
+      for (int i = 0; i < members.size(); i++) {
+        StructureMembers.Member m = members.get(i);
+        Column col = columns.get(m.getName());
+        if (col == null)
+          continue;
+
+        Array org = sdata.getArray(m);
+        if (m.getDataType() == DataType.STRING)  // convert to ArrayChar
+          org = ArrayChar.makeFromStringArray((ArrayObject) org);
+        if (!col.fits(org))
+          return false;
+        values[i] = org;
+        cols[i] = col;
+        nset++;
+      }
+      if (nset != columns.size())  // unwritten values must get the fill value, so write this one directly
+        return false;
+
+      if (count == 0) start = row;
+      for (int i = 0; i < values.length; i++) {
+        if (cols[i] != null)
+          cols[i].set(count, values[i]);
+      }
+      count++;
+      return true;
+    }
+
+    @Override
+    void flush() throws IOException, InvalidRangeException {
+      for (Column col : columns.values())
+        col.write(start, count);
+      count = 0;
+    }
+  }
+
+  private class Column {
+    private final Variable mv;
+    private final int[] rowShape;
+    private final int rowSize;
+    private final Array data;  // [capacity, rowShape]
+
+    Column(Variable mv, int capacity) {
+      this.mv = mv;
+      int[] shape = mv.getShape();
+      this.rowShape = Arrays.copyOfRange(shape, 1, shape.length);
+      int size = 1;
+      for (int len : rowShape) size *= len;
+      this.rowSize = size;
+      shape[0] = capacity;
+      this.data = Array.factory(mv.getDataType(), shape);
+    }
+
+    // same shape, or strings no longer than the char dimension
+    boolean fits(Array org) {
+      if (org.getDataType() != mv.getDataType() || org.getRank() != rowShape.length)
+        return false;
+      int[] shape = org.getShape();
+      for (int k = 0; k < shape.length; k++) {
+        if (shape[k] == rowShape[k]) continue;
+        if (shape[k] > rowShape[k] || org.getDataType() != DataType.CHAR || k != shape.length - 1)
+          return false;
+      }
+      return true;
+    }
+
+    void set(int row, Array org) {
+      int offset = row * rowSize;
+      IndexIterator ii = org.getIndexIterator();
+      if (org.getSize() == rowSize) {  // common case
+        for (int i = 0; i < rowSize; i++)
+          copy(ii, offset + i);
+        return;
+      }
+
+      // short strings: pad the char dimension with zeroes
+      for (int i = 0; i < rowSize; i++)
+        data.setChar(offset + i, (char) 0);
+      int strlen = rowShape[rowShape.length - 1];
+      int orglen = org.getShape()[org.getRank() - 1];
+      for (int i = 0; ii.hasNext(); i++) {
+        int elem = offset + (i / orglen) * strlen + (i % orglen);
+        data.setChar(elem, ii.getCharNext());
+      }
+    }
+
+    private void copy(IndexIterator ii, int elem) {
+      switch (mv.getDataType()) {
+        case DOUBLE: data.setDouble(elem, ii.getDoubleNext()); break;
+        case FLOAT:  data.setFloat(elem, ii.getFloatNext()); break;
+        case LONG:   data.setLong(elem, ii.getLongNext()); break;
+        case INT:    data.setInt(elem, ii.getIntNext()); break;
+        case SHORT:  data.setShort(elem, ii.getShortNext()); break;
+        case BYTE:   data.setByte(elem, ii.getByteNext()); break;
+        case CHAR:   data.setChar(elem, ii.getCharNext()); break;
+        default:     data.setObject(elem, ii.getObjectNext()); break;
+      }
+    }
+
+    void write(int start, int count) throws IOException, InvalidRangeException {
+      int[] origin = new int[rowShape.length + 1];
+      origin[0] = start;
+      Array values = data;
+      if (count < data.getShape()[0]) {
+        int[] shape = data.getShape();
+        shape[0] = count;
+        values = data.sectionNoReduce(new int[rowShape.length + 1], shape, null);
+      }
+      writer.write(mv, origin, values);
+    }
+  }
+
 
   // keep track of the bounding box
   protected void trackBB(LatLonPoint loc, CalendarDate obsDate) {
@@ -797,6 +1060,8 @@ public abstract class CFPointWriter implements Closeable {
   }
 
   public void finish() throws IOException {
+    flushRecords();
+
     if (llbb != null) {
       writer.updateAttribute(null, new Attribute(ACDD.LAT_MIN, llbb.getLowerLeftPoint().getLatitude()));
       writer.updateAttribute(null, new Attribute(ACDD.LAT_MAX, llbb.getUpperRightPoint().getLatitude()));
@@ -816,7 +1081,11 @@ public abstract class CFPointWriter implements Closeable {
 
   @Override
   public void close() throws IOException {
-    writer.close();
+    try {
+      flushRecords();  // nothing left if finish() was called
+    } finally {
+      writer.close();
+    }
   }
 
   ///////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -67,7 +67,9 @@ public class GeoReferencedArray implements IsMissingEvaluator, CoordSysContainer
     this.transforms = transforms;
     List<String> names = axes.stream().map(CoverageCoordAxis::getName).collect(Collectors.toList());
 
-    this.csSubset = new CoverageCoordSys(null, names, null, type);
+    List<String> transformNames = transforms.stream().map(CoverageTransform::getName).collect(Collectors.toList());
+
+    this.csSubset = new CoverageCoordSys(null, names, transformNames, type);
     this.csSubset.setDataset(this);
     this.csSubset.setHorizCoordSys(this.csSubset.makeHorizCoordSys());
 
@@ -85,6 +85,7 @@ public class HorizCoordSys {
   private final CoverageTransform transform;
   private final boolean isProjection;
   private final boolean hasLatLon2D;              // may be true if isProjection
+  private double[][] latlons;                     // lazy, see getLatLons()
 
   protected HorizCoordSys(CoverageCoordAxis1D xaxis, CoverageCoordAxis1D yaxis, CoverageCoordAxis lataxis, CoverageCoordAxis lonaxis, CoverageTransform transform) {
     this.xaxis = xaxis;
@@ -294,7 +295,7 @@ public class HorizCoordSys {
   public LatLonPoint getLatLon(int yindex, int xindex) {
     if (isProjection) {
       double x = xaxis.getCoordMidpoint(xindex);
-      double y = yaxis.getCoordMidpoint(xindex);
+      double y = yaxis.getCoordMidpoint(yindex);
       ProjectionImpl proj = transform.getProjection();
       return proj.projToLatLon(x, y);
     } else {
@@ -304,6 +305,45 @@ public class HorizCoordSys {
     }
   }
 
+  /**
+   * The lat/lon of every grid point, in row major order (y outer, x inner).
+   * Computed on first use with the projection's batch transform and kept for the life of this object.
+   * The arrays are shared, do not modify.
+   *
+   * @return double[2][ny*nx], with lats in [0] and lons in [1]
+   */
+  public double[][] getLatLons() {
+    synchronized (this) {
+      if (latlons == null) latlons = makeLatLons();
+    }
+    return latlons;
+  }
+
+  protected double[][] makeLatLons() {
+    CoverageCoordAxis1D xa = getXAxis();
+    CoverageCoordAxis1D ya = getYAxis();
+    int nx = xa.getNcoords();
+    int ny = ya.getNcoords();
+    double[][] pts = new double[2][nx * ny];
+    int count = 0;
+    for (int j = 0; j < ny; j++) {
+      double y = ya.getCoordMidpoint(j);
+      for (int i = 0; i < nx; i++) {
+        pts[0][count] = xa.getCoordMidpoint(i);
+        pts[1][count] = y;
+        count++;
+      }
+    }
+    if (isProjection)
+      return transform.getProjection().projToLatLonParallel(pts, new double[2][nx * ny]);
+
+    // x is lon
+    double[] lons = pts[0];
+    pts[0] = pts[1];
+    pts[1] = lons;
+    return pts;
+  }
+
   /*
     longitude subset, after normalizing to start
     draw a circle, representing longitude values from start to start + 360.
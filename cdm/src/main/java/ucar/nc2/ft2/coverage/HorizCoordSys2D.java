@@ -35,6 +35,7 @@ package ucar.nc2.ft2.coverage;
 
 import ucar.ma2.*;
 import ucar.nc2.util.Optional;
+import ucar.unidata.geoloc.LatLonGridIndex;
 import ucar.unidata.geoloc.LatLonPoint;
 import ucar.unidata.geoloc.LatLonPointImpl;
 import ucar.unidata.geoloc.LatLonRect;
@@ -127,6 +128,14 @@ public class HorizCoordSys2D extends HorizCoordSys {
     return new LatLonPointImpl(lat, lon);
   }
 
+  @Override
+  protected double[][] makeLatLons() {
+    double[][] result = new double[2][];
+    result[0] = (double[]) lataxis2D.getCoordsAsArray().get1DJavaArray(DataType.DOUBLE);
+    result[1] = (double[]) lonaxis2D.getCoordsAsArray().get1DJavaArray(DataType.DOUBLE);
+    return result;
+  }
+
   @Override
   public List<RangeIterator> getRanges() {
     return lataxis2D.getRanges(); // both are the same
@@ -163,13 +172,14 @@ public class HorizCoordSys2D extends HorizCoordSys {
     synchronized (this) {
       if (edges == null) edges = new Edges();
     }
-    return edges.computeBoundsExhaustive(llbb, horizStride);
+    return edges.computeBounds(llbb, horizStride);
   }
 
   // assume this class is instantiated when these edges are needed
   private class Edges {
     private ArrayDouble.D2 latEdge, lonEdge;
     private MAMath.MinMax latMinMax, lonMinMax;
+    private LatLonGridIndex index;  // kept for the life of this HorizCoordSys
 
     Edges() {
       latEdge = (ArrayDouble.D2) lataxis2D.getCoordBoundsAsArray();
@@ -185,6 +195,7 @@ public class HorizCoordSys2D extends HorizCoordSys {
         double nonVal = lonEdge.getDouble(i);
         lonEdge.setDouble(i, LatLonPointImpl.lonNormalFrom(nonVal, lonMinMax.min));
       }
+      index = new LatLonGridIndex(latEdge, lonEdge);
 
       if (debug)
         System.out.printf("Bounds (%d %d): lat= (%f,%f) lon = (%f,%f) %n", nrows, ncols, latMinMax.min, latMinMax.max, lonMinMax.min, lonMinMax.max);
@@ -200,7 +211,9 @@ public class HorizCoordSys2D extends HorizCoordSys {
      */
     public boolean findCoordElement(double wantLat, double wantLon, int[] rectIndex) {
       double wantLonNormal = LatLonPointImpl.lonNormalFrom(wantLon, lonMinMax.min);
-      return findCoordElementNoForce(wantLat, wantLonNormal, rectIndex);
+      if (index.findCell(wantLat, wantLonNormal, this::contains, rectIndex))
+        return true;
+      return findCoordElementNoForce(wantLat, wantLonNormal, rectIndex); // leaves the best guess in rectIndex
     }
 
     private boolean findCoordElementNoForce(double wantLat, double wantLon, int[] rectIndex) {
@@ -474,7 +487,7 @@ public class HorizCoordSys2D extends HorizCoordSys {
     }
 
     // return y, x ranges
-    Optional<List<RangeIterator>> computeBoundsExhaustive(LatLonRect rect, int horizStride) {
+    Optional<List<RangeIterator>> computeBounds(LatLonRect rect, int horizStride) {
       LatLonPointImpl llpt = rect.getLowerLeftPoint();
       LatLonPointImpl urpt = rect.getUpperRightPoint();
 
@@ -518,19 +531,13 @@ public class HorizCoordSys2D extends HorizCoordSys {
         maxRow = ny;
       }
 
-      // brute force, examine every point LOOK BAD
-      for (int row = 0; row <= ny; row++) {
-        for (int col = 0; col <= nx; col++) {
-          double lat = latEdge.get(row, col);
-          double lon = lonEdge.get(row, col);
-
-          if ((lat >= miny) && (lat <= maxy) && (lon >= minx) && (lon <= maxx)) {
-            if (col > maxCol) maxCol = col;
-            if (col < minCol) minCol = col;
-            if (row > maxRow) maxRow = row;
-            if (row < minRow) minRow = row;
-          }
-        }
+      // the edge points inside the box
+      int[] bounds = index.findBounds(miny, maxy, minx, maxx);
+      if (bounds != null) {
+        minRow = Math.min(minRow, bounds[0]);
+        maxRow = Math.max(maxRow, bounds[1]);
+        minCol = Math.min(minCol, bounds[2]);
+        maxCol = Math.max(maxCol, bounds[3]);
       }
 
       try {
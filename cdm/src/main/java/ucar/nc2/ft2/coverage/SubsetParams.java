@@ -61,6 +61,8 @@ public class SubsetParams {
   public static final String horizStride = "horizStride";  // value = Integer
   public static final String latlonPoint = "latlonPoint";  // value = LatLonPointImpl
   public static final String stations = "stn";           // value = List<String>
+  public static final String regrid = "regrid";         // value = writer.TargetGrid, used by server, not remote
+  public static final String regridMethod = "regridMethod"; // value = String "nearest" or "bilinear"
 
   public static final String time = "time";             // value = CalendarDate
   public static final String timeRange = "timeRange";   // value = CalendarDateRange
@@ -141,6 +143,9 @@ public class SubsetParams {
         case SubsetParams.timeOffsetFirst:
           f.format("&timeOffset=first");
           break;
+        case SubsetParams.regrid:
+        case SubsetParams.regridMethod:
+          break; // regridding is done locally, see writer.Regridder
         default:
           f.format("&%s=%s", entry.getKey(), entry.getValue());
           break;
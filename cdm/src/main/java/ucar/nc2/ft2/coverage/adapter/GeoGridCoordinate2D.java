@@ -36,6 +36,7 @@ package ucar.nc2.ft2.coverage.adapter;
 import ucar.nc2.dataset.CoordinateAxis2D;
 import ucar.ma2.ArrayDouble;
 import ucar.ma2.MAMath;
+import ucar.unidata.geoloc.LatLonGridIndex;
 
 /**
  * fork ucar.nc2.dt.grid.GridCoordinate2D for adaption of GridCoverage
@@ -56,6 +57,8 @@ public class GeoGridCoordinate2D {
   private final int nrows, ncols;
   private ArrayDouble.D2 latEdge, lonEdge;
   private MAMath.MinMax latMinMax, lonMinMax;
+  private LatLonGridIndex index;       // cells, made with the edges
+  private LatLonGridIndex coordIndex;  // coordinate values, made on first use
 
   GeoGridCoordinate2D(CoordinateAxis2D latCoord, CoordinateAxis2D lonCoord) {
     this.latCoord = latCoord;
@@ -69,8 +72,8 @@ public class GeoGridCoordinate2D {
     ncols = shape[1];
   }
 
-  private void findBounds() {
-    if (lonMinMax != null) return;
+  private synchronized void findBounds() {
+    if (index != null) return;
 
     lonEdge = lonCoord.getEdges();
     latEdge = latCoord.getEdges();
@@ -78,6 +81,7 @@ public class GeoGridCoordinate2D {
     // assume missing values have been converted to NaNs
     latMinMax = MAMath.getMinMax(latEdge);
     lonMinMax = MAMath.getMinMax(lonEdge);
+    index = new LatLonGridIndex(latEdge, lonEdge);
 
     if (debug)
       System.out.printf("Bounds (%d %d): lat= (%f,%f) lon = (%f,%f) %n", nrows, ncols, latMinMax.min, latMinMax.max, lonMinMax.min, lonMinMax.max);
@@ -110,7 +114,25 @@ public class GeoGridCoordinate2D {
   }
 
   public boolean findCoordElement(double wantLat, double wantLon, int[] rectIndex) {
-    return findCoordElementNoForce(wantLat, wantLon,rectIndex);
+    findBounds();
+    if (index.findCell(wantLat, wantLon, this::contains, rectIndex))
+      return true;
+    return findCoordElementNoForce(wantLat, wantLon,rectIndex); // leaves the best guess in rectIndex
+  }
+
+  /**
+   * Find the index range of the coordinate values inside a lat/lon box, including its edges.
+   *
+   * @return {minRow, maxRow, minCol, maxCol}, inclusive, or null if none are inside
+   */
+  public int[] findIndexRange(double minLat, double maxLat, double minLon, double maxLon) {
+    LatLonGridIndex useIndex;
+    synchronized (this) {
+      if (coordIndex == null)
+        coordIndex = new LatLonGridIndex(latCoord.getCoordValuesArray(), lonCoord.getCoordValuesArray());
+      useIndex = coordIndex;
+    }
+    return useIndex.findBounds(minLat, maxLat, minLon, maxLon);
   }
 
 
@@ -73,6 +73,8 @@ public class CdmrCoverageReader implements CoverageReader, CoordAxisReader {
   HTTPSession httpClient;
   boolean showCompression = true;
   boolean showRequest = true;
+  int chunkSize = 1000 * 1000;  // ask for the data in chunks of this many bytes; 0 = in the response message
+  boolean deflate = true;       // deflate the chunks
 
   CdmrCoverageReader(String endpoint, HTTPSession httpClient) throws IOException {
     this.endpoint = endpoint;
@@ -97,6 +99,8 @@ public class CdmrCoverageReader implements CoverageReader, CoordAxisReader {
     Formatter f = new Formatter();
     f.format("%s?", endpoint);
     subset.encodeForCdmrfDataRequest(f, coverage.getName());
+    if (chunkSize > 0)
+      f.format("&chunkSize=%d&deflate=%s", chunkSize, deflate);
 
     if (showRequest)
       System.out.printf("CdmrFeature data request for gridCoverage: %s%n url=%s", coverage.getName(), f);
@@ -131,7 +135,7 @@ public class CdmrCoverageReader implements CoverageReader, CoordAxisReader {
       byte[] dp = new byte[psize];
       NcStream.readFully(is, dp);
       CdmrFeatureProto.CoverageDataResponse dproto = CdmrFeatureProto.CoverageDataResponse.parseFrom(dp);
-      CoverageDataResponse dataResponse = cdmrfReader.decodeDataResponse(dproto);
+      CoverageDataResponse dataResponse = cdmrfReader.decodeDataResponse(dproto, is); // reads any chunked data
 
       List<GeoReferencedArray> geoArrays = dataResponse.arrayResponse;
       assert geoArrays.size() == 1; // LOOK maybe need readData(List<names>) returns List<GeoArray> ?
@@ -50,6 +50,7 @@ import ucar.nc2.time.CalendarDate;
 import ucar.nc2.time.CalendarDateRange;
 import ucar.unidata.geoloc.*;
 
+import java.io.EOFException;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -59,6 +60,8 @@ import java.nio.DoubleBuffer;
 import java.util.ArrayList;
 import java.util.Formatter;
 import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 /**
  * Client side for opening a CdmrFeature CoverageDataset. Reads the metadata.
@@ -449,6 +452,18 @@ message Coverage {
   }
    */
   public CoverageDataResponse decodeDataResponse(CdmrFeatureProto.CoverageDataResponse dproto) {
+    try {
+      return decodeDataResponse(dproto, null);
+    } catch (IOException e) {
+      throw new IllegalStateException(e); // cant happen, nothing is read
+    }
+  }
+
+  /**
+   * Decode the data response.
+   * @param is if not null, arrays sent chunked have their data read from it, in the order of the arrays in dproto
+   */
+  public CoverageDataResponse decodeDataResponse(CdmrFeatureProto.CoverageDataResponse dproto, InputStream is) throws IOException {
     List<CoverageTransform> transforms = new ArrayList<>();
     for (CdmrFeatureProto.CoordTransform pt : dproto.getCoordTransformsList())
       transforms.add( decodeCoordTransform(pt));
@@ -464,7 +479,7 @@ message Coverage {
     CoverageDataResponse result = new CoverageDataResponse(axes, coordSys, transforms);
 
     for (CdmrFeatureProto.GeoReferencedArray psys : dproto.getGeoArrayList())
-      result.arrayResponse.add(decodeGeoReferencedArray(result, psys));
+      result.arrayResponse.add(decodeGeoReferencedArray(result, psys, is));
 
     return result;
   }
@@ -486,6 +501,15 @@ message Coverage {
    */
 
   public GeoReferencedArray decodeGeoReferencedArray(CoverageDataResponse dataResponse, CdmrFeatureProto.GeoReferencedArray parray) {
+    try {
+      return decodeGeoReferencedArray(dataResponse, parray, null);
+    } catch (IOException e) {
+      throw new IllegalStateException(e); // cant happen, nothing is read
+    }
+  }
+
+  public GeoReferencedArray decodeGeoReferencedArray(CoverageDataResponse dataResponse, CdmrFeatureProto.GeoReferencedArray parray,
+                                                     InputStream is) throws IOException {
     DataType dataType = NcStream.convertDataType(parray.getDataType());
     ByteOrder byteOrder = parray.getBigend() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
     boolean deflate = parray.getCompress() == NcStreamProto.Compress.DEFLATE;
@@ -495,7 +519,11 @@ message Coverage {
     for (int i=0; i< parray.getShapeCount(); i++)
       shape[i] = parray.getShape(i);
 
-    ByteBuffer bb = parray.getPrimdata().asReadOnlyByteBuffer();
+    ByteBuffer bb;
+    if (is != null && parray.getPrimdata().isEmpty() && uncompressedSize > 0)  // chunked, data follows the message
+      bb = ByteBuffer.wrap(readChunkedData(is, (int) uncompressedSize, deflate));
+    else
+      bb = parray.getPrimdata().asReadOnlyByteBuffer();
     bb.order(byteOrder);
     Array data = Array.factory(dataType, shape, bb);
 
@@ -505,4 +533,62 @@ message Coverage {
     return new GeoReferencedArray(parray.getCoverageName(), dataType, data, csys);
     }
 
+  /**
+   * Read the data written by CdmrfWriter.sendChunkedData().
+   * Each chunk is inflated directly into its place in the result as it arrives.
+   */
+  private byte[] readChunkedData(InputStream is, int uncompressedSize, boolean deflate) throws IOException {
+    byte[] result = new byte[uncompressedSize];
+    byte[] chunk = new byte[0];
+    Inflater inflater = new Inflater();
+    try {
+      int pos = 0;
+      while (pos < uncompressedSize) {
+        int uncompressedLength = NcStream.readVInt(is);
+        int length = NcStream.readVInt(is);
+        if (uncompressedLength <= 0 || length < 0 || uncompressedLength > uncompressedSize - pos)
+          throw new IOException("Data transfer corrupted");
+
+        if (!deflate) {
+          if (length != uncompressedLength)
+            throw new IOException("Data transfer corrupted");
+          readFully(is, result, pos, length);
+
+        } else {
+          if (chunk.length < length)
+            chunk = new byte[length];
+          readFully(is, chunk, 0, length);
+          inflater.reset();
+          inflater.setInput(chunk, 0, length);
+          try {
+            int done = 0;
+            while (done < uncompressedLength) {
+              int n = inflater.inflate(result, pos + done, uncompressedLength - done);
+              if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()))
+                throw new IOException("Data transfer corrupted");
+              done += n;
+            }
+          } catch (DataFormatException e) {
+            throw new IOException("Data transfer corrupted", e);
+          }
+        }
+        pos += uncompressedLength;
+      }
+
+    } finally {
+      inflater.end();
+    }
+    return result;
+  }
+
+  private void readFully(InputStream is, byte[] b, int off, int len) throws IOException {
+    while (len > 0) {
+      int bytesRead = is.read(b, off, len);
+      if (bytesRead == -1)
+        throw new EOFException("Data transfer truncated");
+      off += bytesRead;
+      len -= bytesRead;
+    }
+  }
+
 }
@@ -35,6 +35,7 @@ package ucar.nc2.ft2.coverage.remote;
 
 import com.google.protobuf.ByteString;
 import ucar.ma2.Array;
+import ucar.ma2.IndexIterator;
 import ucar.ma2.InvalidRangeException;
 import ucar.nc2.*;
 import ucar.nc2.constants.AxisType;
@@ -52,11 +53,17 @@ import ucar.unidata.geoloc.ProjectionRect;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.DoubleBuffer;
+import java.util.ArrayDeque;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 
 /**
@@ -418,6 +425,17 @@ public class CdmrfWriter {
 
   public CdmrFeatureProto.CoverageDataResponse encodeDataResponse(Iterable<CoverageCoordAxis> axes,
         Iterable<CoverageCoordSys> coordSys, Iterable<CoverageTransform> transforms, List<GeoReferencedArray> arrays, boolean deflate) {
+    return encodeDataResponse(axes, coordSys, transforms, arrays, deflate, deflate);
+  }
+
+  /**
+   * Encode the data response.
+   * @param deflate the chunks are deflated, only used when chunked
+   * @param chunked the data are not put in the message, but sent after it with sendChunkedData(), in the same order as arrays
+   */
+  public CdmrFeatureProto.CoverageDataResponse encodeDataResponse(Iterable<CoverageCoordAxis> axes,
+        Iterable<CoverageCoordSys> coordSys, Iterable<CoverageTransform> transforms, List<GeoReferencedArray> arrays,
+        boolean deflate, boolean chunked) {
 
     CdmrFeatureProto.CoverageDataResponse.Builder builder = CdmrFeatureProto.CoverageDataResponse.newBuilder();
     for (CoverageCoordAxis axis : axes)
@@ -427,12 +445,16 @@ public class CdmrfWriter {
     for (CoverageTransform t : transforms)
       builder.addCoordTransforms(encodeCoordTransform(t));
     for (GeoReferencedArray array : arrays)
-      builder.addGeoArray(encodeGeoReferencedArray(array, deflate));
+      builder.addGeoArray(encodeGeoReferencedArray(array, deflate, chunked));
 
     return builder.build();
   }
 
   public CdmrFeatureProto.GeoReferencedArray.Builder encodeGeoReferencedArray(GeoReferencedArray geoArray, boolean deflate) {
+    return encodeGeoReferencedArray(geoArray, deflate, deflate);
+  }
+
+  public CdmrFeatureProto.GeoReferencedArray.Builder encodeGeoReferencedArray(GeoReferencedArray geoArray, boolean deflate, boolean chunked) {
     CdmrFeatureProto.GeoReferencedArray.Builder builder = CdmrFeatureProto.GeoReferencedArray.newBuilder();
     builder.setCoverageName(geoArray.getCoverageName());
     builder.setDataType(NcStream.convertDataType(geoArray.getDataType()));
@@ -448,8 +470,9 @@ public class CdmrfWriter {
 
     builder.setCoordSysName(csys.getName());
 
-    if (deflate) {
-      builder.setCompress(NcStreamProto.Compress.DEFLATE);
+    if (chunked) { // primdata is empty, data follows the message
+      if (deflate)
+        builder.setCompress(NcStreamProto.Compress.DEFLATE);
       long uncompressedSize = geoArray.getData().getSizeBytes();
       builder.setUncompressedSize(uncompressedSize);
 
@@ -488,6 +511,121 @@ public class CdmrfWriter {
     return size;
   }
 
+  /**
+   * Send the data of an array encoded with chunked = true: the values in canonical order and native byte order,
+   * split into chunks of about chunkSize bytes, each written as
+   * <pre>
+   *   vint uncompressedLength
+   *   vint length
+   *   byte[length] (deflated if deflate)
+   * </pre>
+   * Chunks are deflated on worker threads and written in order; at most a few chunks are in memory at once.
+   *
+   * @return number of bytes written
+   */
+  public long sendChunkedData(Array data, OutputStream out, int chunkSize, boolean deflate) throws IOException {
+    int elemSize = data.getDataType().getSize();
+    long nelems = data.getSize();
+    int chunkElems = Math.max(1, chunkSize / elemSize);
+    int maxPending = Runtime.getRuntime().availableProcessors() + 1;
+
+    IndexIterator iter = data.getIndexIterator();
+    ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+    ArrayDeque<Integer> pendingLength = new ArrayDeque<>();
+    long done = 0;
+    long size = 0;
+    while (done < nelems) {
+      int n = (int) Math.min(chunkElems, nelems - done);
+      ByteBuffer bb = ByteBuffer.allocate(n * elemSize);
+      bb.order(ByteOrder.nativeOrder());
+      copyChunk(iter, data.getElementType(), n, bb);
+      byte[] chunk = bb.array();
+      done += n;
+
+      if (!deflate) {
+        size += writeChunk(out, chunk.length, chunk, chunk.length);
+        continue;
+      }
+
+      if (pending.size() >= maxPending)
+        size += writeDeflatedChunk(out, pendingLength.remove(), pending.remove());
+      pending.add(CompletableFuture.supplyAsync(() -> deflateChunk(chunk)));
+      pendingLength.add(chunk.length);
+    }
+
+    while (!pending.isEmpty())
+      size += writeDeflatedChunk(out, pendingLength.remove(), pending.remove());
+
+    return size;
+  }
+
+  private void copyChunk(IndexIterator iter, Class classType, int n, ByteBuffer out) {
+    if (classType == double.class) {
+      for (int i = 0; i < n; i++)
+        out.putDouble(iter.getDoubleNext());
+
+    } else if (classType == float.class) {
+      for (int i = 0; i < n; i++)
+        out.putFloat(iter.getFloatNext());
+
+    } else if (classType == long.class) {
+      for (int i = 0; i < n; i++)
+        out.putLong(iter.getLongNext());
+
+    } else if (classType == int.class) {
+      for (int i = 0; i < n; i++)
+        out.putInt(iter.getIntNext());
+
+    } else if (classType == short.class) {
+      for (int i = 0; i < n; i++)
+        out.putShort(iter.getShortNext());
+
+    } else if (classType == byte.class) {
+      for (int i = 0; i < n; i++)
+        out.put(iter.getByteNext());
+
+    } else
+      throw new UnsupportedOperationException("Class type = " + classType.getName());
+  }
+
+  private static byte[] deflateChunk(byte[] chunk) {
+    Deflater deflater = new Deflater();
+    try {
+      deflater.setInput(chunk);
+      deflater.finish();
+      ByteArrayOutputStream bout = new ByteArrayOutputStream(chunk.length / 2 + 64);
+      byte[] buff = new byte[8 * 1024];
+      while (!deflater.finished()) {
+        int n = deflater.deflate(buff);
+        bout.write(buff, 0, n);
+      }
+      return bout.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private long writeDeflatedChunk(OutputStream out, int uncompressedLength, Future<byte[]> future) throws IOException {
+    try {
+      byte[] deflated = future.get();
+      return writeChunk(out, uncompressedLength, deflated, deflated.length);
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(e.getMessage());
+
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+  }
+
+  private long writeChunk(OutputStream out, int uncompressedLength, byte[] b, int len) throws IOException {
+    long size = NcStream.writeVInt(out, uncompressedLength);
+    size += NcStream.writeVInt(out, len);
+    out.write(b, 0, len);
+    return size + len;
+  }
+
   private int writeBytes(OutputStream out, byte[] b) throws IOException {
     out.write(b);
     return b.length;
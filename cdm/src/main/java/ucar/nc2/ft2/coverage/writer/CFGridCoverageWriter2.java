@@ -33,6 +33,7 @@
  */
 package ucar.nc2.ft2.coverage.writer;
 
+import ucar.ma2.Array;
 import ucar.ma2.DataType;
 import ucar.ma2.InvalidRangeException;
 import ucar.ma2.Section;
@@ -105,6 +106,13 @@ public class CFGridCoverageWriter2 {
       total_size += grid.getSizeInBytes();
     }
 
+    // optional 2D lat/lon, for projection grids
+    HorizCoordSys hcs = subsetDataset.getHorizCoordSys();
+    boolean addLatLon2D = addLatLon && hcs.getIsProjection() && !hcs.isLatLon2D() &&
+            subsetDataset.findCoordAxis("lat") == null && subsetDataset.findCoordAxis("lon") == null;
+    if (addLatLon2D)
+      total_size += 2 * 8L * hcs.getXAxis().getNcoords() * hcs.getYAxis().getNcoords();
+
     if (testSizeOnly)
       return Optional.of(total_size);
 
@@ -163,6 +171,9 @@ public class CFGridCoverageWriter2 {
 
     }
 
+    if (addLatLon2D)
+      addLatLon2D(hcs, writer);
+
     // add grids
     for (Coverage grid : subsetDataset.getCoverages()) {
       Variable v = writer.addVariable(null, grid.getName(), grid.getDataType(), grid.getIndependentAxisNamesOrdered());
@@ -176,7 +187,7 @@ public class CFGridCoverageWriter2 {
         ctv.addAttribute(att);
     }
 
-    addCFAnnotations(subsetDataset, writer, addLatLon);
+    addCFAnnotations(subsetDataset, writer, addLatLon2D);
 
     // finish define mode
     writer.create();
@@ -197,11 +208,25 @@ public class CFGridCoverageWriter2 {
       }
     }
 
+    if (addLatLon2D) {
+      double[][] latlons = hcs.getLatLons();
+      int[] shape = new int[]{hcs.getYAxis().getNcoords(), hcs.getXAxis().getNcoords()};
+      writer.write(writer.findVariable("lat"), Array.factory(DataType.DOUBLE, shape, latlons[0]));
+      writer.write(writer.findVariable("lon"), Array.factory(DataType.DOUBLE, shape, latlons[1]));
+    }
+
     // write the grid data
+    TargetGrid target = (TargetGrid) subsetParams.get(SubsetParams.regrid);
     for (Coverage grid : subsetDataset.getCoverages()) {
       // we need to call readData on the original
       Coverage gridOrg = gdsOrg.findCoverage(grid.getName());
-      GeoReferencedArray array = gridOrg.readData(subsetParams);
+      GeoReferencedArray array;
+      if (target == null) {
+        array = gridOrg.readData(subsetParams);
+      } else {
+        SubsetParams sourceParams = Regridder.makeSourceParams(subsetParams, target, gridOrg.getCoordSys().getHorizCoordSys());
+        array = Regridder.regrid(gridOrg.readData(sourceParams), target, Regridder.Method.fromString((String) subsetParams.get(SubsetParams.regridMethod)));
+      }
 
       // test conform to whatever axis.getCoordsAsArray() returns
       checkConformance(gridOrg, grid, array, gdsOrg.getName());
@@ -261,6 +286,22 @@ public class CFGridCoverageWriter2 {
     }
   }
 
+  private void addLatLon2D(HorizCoordSys hcs, NetcdfFileWriter writer) {
+    String dims = hcs.getYAxis().getName() + " " + hcs.getXAxis().getName();
+
+    Variable latVar = writer.addVariable(null, "lat", DataType.DOUBLE, dims);
+    latVar.addAttribute(new Attribute(CDM.UNITS, CDM.LAT_UNITS));
+    latVar.addAttribute(new Attribute(CDM.LONG_NAME, "latitude coordinate"));
+    latVar.addAttribute(new Attribute(CF.STANDARD_NAME, CF.LATITUDE));
+    latVar.addAttribute(new Attribute(_Coordinate.AxisType, AxisType.Lat.toString()));
+
+    Variable lonVar = writer.addVariable(null, "lon", DataType.DOUBLE, dims);
+    lonVar.addAttribute(new Attribute(CDM.UNITS, CDM.LON_UNITS));
+    lonVar.addAttribute(new Attribute(CDM.LONG_NAME, "longitude coordinate"));
+    lonVar.addAttribute(new Attribute(CF.STANDARD_NAME, CF.LONGITUDE));
+    lonVar.addAttribute(new Attribute(_Coordinate.AxisType, AxisType.Lon.toString()));
+  }
+
   private void addCFAnnotations(CoverageCollection gds, NetcdfFileWriter writer, boolean addLatLon) {
 
     for (Coverage grid : gds.getCoverages()) {
@@ -276,7 +317,7 @@ public class CFGridCoverageWriter2 {
       Formatter sbuff = new Formatter();
       for (String s : grid.getCoordSys().getAxisNames())
         sbuff.format("%s ", s);
-      // if (addLatLon) sbuff.format("lat lon"); LOOK
+      if (addLatLon) sbuff.format("lat lon");
       newV.addAttribute(new Attribute(CF.COORDINATES, sbuff.toString()));
 
       // add reference to coordinate transform variables
@@ -36,9 +36,11 @@ package ucar.nc2.ft2.coverage.writer;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import javax.annotation.Nonnull;
 
 import ucar.ma2.Array;
+import ucar.ma2.Index;
 import ucar.ma2.IndexIterator;
 import ucar.ma2.InvalidRangeException;
 import ucar.ma2.StructureData;
@@ -62,14 +64,20 @@ import ucar.nc2.ft2.coverage.CoverageCoordAxis;
 import ucar.nc2.ft2.coverage.CoverageCoordAxis1D;
 import ucar.nc2.ft2.coverage.CoverageCoordSys;
 import ucar.nc2.ft2.coverage.GeoReferencedArray;
+import ucar.nc2.ft2.coverage.HorizCoordSys;
 import ucar.nc2.ft2.coverage.SubsetParams;
+import ucar.nc2.time.CalendarDate;
 import ucar.nc2.time.CalendarDateUnit;
 import ucar.nc2.util.Misc;
+import ucar.nc2.util.Optional;
 import ucar.unidata.geoloc.LatLonPointImpl;
+import ucar.unidata.geoloc.ProjectionPoint;
+import ucar.unidata.geoloc.Station;
 import ucar.unidata.util.StringUtil2;
 
 /**
- * Write DSG CF-1.6 file from a Coverage Dataset
+ * Write DSG CF-1.6 file from a Coverage Dataset.
+ * Extracts the time series at one lat/lon point, or, in batch mode, at a list of stations.
  *
  * @author caron
  * @since 7/8/2015
@@ -82,13 +90,20 @@ public class CoverageAsPoint {
   private SubsetParams subset;
   private LatLonPointImpl latLonPoint;
   private CalendarDateUnit dateUnit;
+  private List<StationData> stationData; // batch mode only
+  private double[] obsTimes;  // batch mode: time coordinate for each time step
+  private int nvalues;        // batch mode: number of values at each station
 
   private class VarData {
     Coverage cov;
-    GeoReferencedArray array;
+    GeoReferencedArray array;  // null in batch mode
 
-    public VarData(Coverage cov) throws IOException {
+    public VarData(Coverage cov, boolean read) throws IOException {
       this.cov = cov;
+      if (read) readData();
+    }
+
+    private void readData() throws IOException {
       try {
         this.array = cov.readData(subset);
         if (debug)
@@ -107,11 +122,34 @@ public class CoverageAsPoint {
     if (latLonPoint == null)
       throw new IllegalArgumentException("No latlon point");
 
+    findVariables(varNames, true);
+  }
+
+  /**
+   * Batch mode: extract the time series at each of a list of stations.
+   * Each 2D field is read once for all of the stations, one time step at a time, which is much faster than
+   * one request per station when the stations are many, or the data is stored by 2D record (eg GRIB).
+   * Stations that are outside the horizontal grid of any of the variables are left out.
+   *
+   * @param gcd      the coverages
+   * @param varNames extract these variables
+   * @param subset   time, vertical and other subsetting. Any horizontal subset is ignored.
+   * @param stations extract at these locations, with these names
+   */
+  public CoverageAsPoint(CoverageCollection gcd, List<String> varNames, SubsetParams subset, List<? extends Station> stations) throws IOException {
+    this.gcd = gcd;
+    this.subset = subset;
+
+    findVariables(varNames, false);
+    readStations(stations);
+  }
+
+  private void findVariables(List<String> varNames, boolean read) throws IOException {
     varData = new ArrayList<>(varNames.size());
     for (String varName : varNames) {
       Coverage cov = gcd.findCoverage(varName); // LOOK we should read all at once if possible
       if (cov != null) {
-        varData.add(new VarData(cov));
+        varData.add(new VarData(cov, read));
 
         if (dateUnit == null) { // assume all have the same time unit, just use the first one
           CoverageCoordSys csys = cov.getCoordSys();
@@ -122,6 +160,143 @@ public class CoverageAsPoint {
     }
   }
 
+  // the values of all the variables at one station
+  private static class StationData {
+    Station stn;
+    int[][] index;           // [var] = {y, x} in the variable's grid
+    Array[] values;          // [var] = all the values at this station, in the order they were read
+
+    StationData(Station stn, int nvars) {
+      this.stn = stn;
+      this.index = new int[nvars][];
+      this.values = new Array[nvars];
+    }
+  }
+
+  // batch mode: read each 2D field once, and pick out the values at all of the stations
+  private void readStations(List<? extends Station> stations) throws IOException {
+    int nvars = varData.size();
+
+    // find each station in each variable's grid, drop the ones that are outside
+    stationData = new ArrayList<>(stations.size());
+    for (Station stn : stations) {
+      StationData sd = new StationData(stn, nvars);
+      boolean inside = true;
+      for (int v = 0; v < nvars && inside; v++) {
+        sd.index[v] = findIndex(varData.get(v).cov.getCoordSys().getHorizCoordSys(), stn);
+        inside = (sd.index[v] != null);
+      }
+      if (inside) stationData.add(sd);
+      else if (debug) System.out.printf(" Station %s is not in the grid%n", stn.getName());
+    }
+    if (stationData.isEmpty()) return;
+
+    // the whole horizontal field is read, and each time step separately
+    SubsetParams fieldSubset = new SubsetParams();
+    for (Map.Entry<String, Object> entry : subset.getEntries()) {
+      switch (entry.getKey()) {
+        case SubsetParams.latlonPoint:
+        case SubsetParams.latlonBB:
+        case SubsetParams.projBB:
+        case SubsetParams.horizStride:
+          break;
+        default:
+          fieldSubset.set(entry.getKey(), entry.getValue());
+      }
+    }
+
+    int minValues = Integer.MAX_VALUE;
+    for (int v = 0; v < nvars; v++) {
+      Coverage cov = varData.get(v).cov;
+      Optional<CoverageCoordSys> csyso = cov.getCoordSys().subset(fieldSubset);
+      if (!csyso.isPresent())
+        throw new IllegalArgumentException(cov.getName() + ": " + csyso.getErrorMessage());
+
+      // one read for each time, unless the time is 2D or there is only one
+      CoverageCoordAxis timeAxis = csyso.get().getTimeAxis();
+      List<SubsetParams> steps = new ArrayList<>();
+      double[] stepTimes;
+      if (timeAxis instanceof CoverageCoordAxis1D && timeAxis.getNcoords() > 1) {
+        CoverageCoordAxis1D timeAxis1D = (CoverageCoordAxis1D) timeAxis;
+        stepTimes = new double[timeAxis1D.getNcoords()];
+        for (int t = 0; t < stepTimes.length; t++) {
+          stepTimes[t] = timeAxis1D.getCoordMidpoint(t);
+          steps.add(makeTimeStep(fieldSubset, timeAxis1D.makeDate(stepTimes[t])));
+        }
+      } else {
+        stepTimes = new double[]{(timeAxis instanceof CoverageCoordAxis1D) ? ((CoverageCoordAxis1D) timeAxis).getCoordMidpoint(0) : 0.0};
+        steps.add(fieldSubset);
+      }
+      if (obsTimes == null) obsTimes = stepTimes; // assume they are all the same, as in the single point case
+
+      int start = 0;
+      for (SubsetParams step : steps) {
+        Array data;
+        try {
+          data = cov.readData(step).getData();
+        } catch (InvalidRangeException e) {
+          throw new IllegalArgumentException(cov.getName() + ": " + e.getMessage());
+        }
+        if (debug) System.out.printf(" Coverage %s step data shape = %s%n", cov.getName(), Misc.showInts(data.getShape()));
+        start += gather(v, data, start, steps.size());
+      }
+      minValues = Math.min(minValues, start);
+    }
+    nvalues = (nvars == 0) ? 0 : minValues;
+  }
+
+  private SubsetParams makeTimeStep(SubsetParams fieldSubset, CalendarDate date) {
+    SubsetParams step = new SubsetParams();
+    for (Map.Entry<String, Object> entry : fieldSubset.getEntries()) {
+      switch (entry.getKey()) {
+        case SubsetParams.timeRange:
+        case SubsetParams.timeStride:
+        case SubsetParams.timePresent:
+        case SubsetParams.timeAll:
+        case SubsetParams.timeWindow:
+          break;
+        default:
+          step.set(entry.getKey(), entry.getValue());
+      }
+    }
+    step.set(SubsetParams.time, date);
+    return step;
+  }
+
+  // copy the values at each station out of one read of variable v; return the number of values per station
+  private int gather(int v, Array data, int start, int nsteps) {
+    int[] shape = data.getShape();
+    int rank = shape.length;
+    int nx = shape[rank - 1];
+    int ny = shape[rank - 2];
+    int nfield = ny * nx;
+    int nper = (int) (data.getSize() / nfield);  // eg vertical levels
+
+    Index ima = data.getIndex();
+    for (StationData sd : stationData) {
+      if (sd.values[v] == null)
+        sd.values[v] = Array.factory(varData.get(v).cov.getDataType(), new int[]{nsteps * nper});
+      int offset = sd.index[v][0] * nx + sd.index[v][1];
+      for (int i = 0; i < nper && start + i < sd.values[v].getSize(); i++) {
+        ima.setCurrentCounter(i * nfield + offset);
+        sd.values[v].setDouble(start + i, data.getDouble(ima));
+      }
+    }
+    return nper;
+  }
+
+  // return {y, x} index of the grid cell containing the station, or null if outside
+  private static int[] findIndex(HorizCoordSys hcs, Station stn) {
+    Optional<HorizCoordSys.CoordReturn> opt;
+    if (hcs.getIsProjection()) {
+      ProjectionPoint pp = hcs.getTransform().getProjection().latLonToProj(stn.getLatitude(), stn.getLongitude());
+      opt = hcs.findXYindexFromCoord(pp.getX(), pp.getY());
+    } else {
+      opt = hcs.findXYindexFromCoord(stn.getLongitude(), stn.getLatitude());
+    }
+    return opt.isPresent() ? new int[]{opt.get().y, opt.get().x} : null;
+  }
+
   public FeatureDatasetPoint asFeatureDatasetPoint() {
     // for the moment, assume a single station, no vert coord, single lat/lon
     return new CoverageAsFeatureDatasetPoint(FeatureType.STATION);
@@ -151,19 +326,31 @@ public class CoverageAsPoint {
     @Override
     protected StationHelper createStationHelper() throws IOException {
       StationHelper helper = new StationHelper();
+      if (stationData != null) {
+        for (StationData sd : stationData) {
+          Station stn = sd.stn;
+          helper.addStation(new MyStationFeature(stn.getName(), stn.getDescription(), stn.getWmoId(), stn.getLatitude(), stn.getLongitude(),
+                  stn.getAltitude(), dateUnit, null, nvalues, sd));
+        }
+        return helper;
+      }
+
       String name = String.format("GridPointAt[%s]", latLonPoint.toString(3));
       name = StringUtil2.replace(name.trim(), ' ', "_");
-      helper.addStation(new MyStationFeature(name, name, null, latLonPoint.getLatitude(), latLonPoint.getLongitude(), 0.0, dateUnit, null, -1));
+      helper.addStation(new MyStationFeature(name, name, null, latLonPoint.getLatitude(), latLonPoint.getLongitude(), 0.0, dateUnit, null, -1, null));
       return helper;
     }
 
   }
 
   private class MyStationFeature extends StationTimeSeriesFeatureImpl {
+    private final StationData stationData; // batch mode, else null
 
-    public MyStationFeature(String name, String desc, String wmoId, double lat, double lon, double alt, CalendarDateUnit timeUnit, String altUnits, int npts) {
+    public MyStationFeature(String name, String desc, String wmoId, double lat, double lon, double alt, CalendarDateUnit timeUnit, String altUnits, int npts,
+                            StationData stationData) {
       // String name, String desc, String wmoId, double lat, double lon, double alt, DateUnit timeUnit, String altUnits, int npts
       super(name, desc, wmoId, lat, lon, alt, timeUnit, altUnits, npts, StructureData.EMPTY);
+      this.stationData = stationData;
     }
 
     @Nonnull
@@ -197,6 +384,13 @@ public class CoverageAsPoint {
 
       TimeseriesIterator() {
         varIters = new ArrayList<>();
+        if (stationData != null) {
+          for (int v = 0; v < varData.size(); v++)
+            varIters.add(new VarIter(varData.get(v).cov, null, stationData.values[v].getIndexIterator()));
+          nvalues = CoverageAsPoint.this.nvalues;
+          return;
+        }
+
         for (VarData vd : varData) {
           Array data = vd.array.getData();
           if (debug) System.out.printf("%s shape=%s%n", vd.cov.getName(), Misc.showInts(data.getShape()));
@@ -219,7 +413,7 @@ public class CoverageAsPoint {
 
       @Override
       public PointFeature next() {
-        double obsTime = timeAxis.getCoordMidpoint(curr);
+        double obsTime = (stationData != null) ? getObsTime(curr) : timeAxis.getCoordMidpoint(curr);
 
         StructureDataScalar coords = new StructureDataScalar("Coords");
         for (VarIter vi : varIters) {
@@ -231,6 +425,12 @@ public class CoverageAsPoint {
         return pf;
       }
 
+      // batch mode: there are nvalues / obsTimes.length values (eg vertical levels) for each time step
+      private double getObsTime(int index) {
+        int step = index / Math.max(1, nvalues / obsTimes.length);
+        return obsTimes[Math.min(step, obsTimes.length - 1)];
+      }
+
       @Override
       public void close() {
         finishCalcBounds();
@@ -33,8 +33,11 @@
  */
 package ucar.nc2.ft2.coverage.writer;
 
+import ucar.ma2.DataType;
 import ucar.ma2.InvalidRangeException;
+import ucar.nc2.Attribute;
 import ucar.nc2.AttributeContainerHelper;
+import ucar.nc2.constants.CDM;
 import ucar.nc2.ft2.coverage.*;
 import ucar.nc2.time.CalendarDateRange;
 import ucar.unidata.geoloc.LatLonRect;
@@ -68,18 +71,45 @@ public class CoverageSubsetter2 {
         coordTransformSet.add(tname);
     }
 
+    // if regridding, the horizontal axes and transform are replaced by the target's
+    TargetGrid target = (TargetGrid) params.get(SubsetParams.regrid);
+    CoverageCoordAxis1D[] targetAxes = (target == null) ? null : target.makeAxes();
+    CoverageTransform targetTransform = (target == null) ? null : target.makeTransform();
+
     // LOOK bail out if any fail, make more robust
     // subset all coordSys, and eliminate duplicate axes.
     Map<String, CoverageCoordAxis> subsetCoordAxes = new HashMap<>();
     Map<String, CoverageCoordSys> subsetCFCoordSys = new HashMap<>();
     for (CoverageCoordSys orgCs : orgCoordSys.values()) {
-      ucar.nc2.util.Optional<CoverageCoordSys> opt = orgCs.subset(params, true, false); // subsetCF make do some CF tweaks, not needed in regular subset
+      SubsetParams csParams = (target == null) ? params : Regridder.makeSourceParams(params, target, orgCs.getHorizCoordSys());
+      ucar.nc2.util.Optional<CoverageCoordSys> opt = orgCs.subset(csParams, true, false); // subsetCF make do some CF tweaks, not needed in regular subset
       if (!opt.isPresent())
         return ucar.nc2.util.Optional.empty(opt.getErrorMessage());
 
       CoverageCoordSys subsetCoordSys = opt.get();
-      subsetCFCoordSys.put(orgCs.getName(), subsetCoordSys);
+      List<CoverageCoordAxis> axes = new ArrayList<>();
       for (CoverageCoordAxis axis : subsetCoordSys.getAxes()) {
+        if (target == null || !axis.getAxisType().isHoriz())
+          axes.add(axis);
+      }
+
+      if (target != null) {
+        axes.add(targetAxes[1]);
+        axes.add(targetAxes[0]);
+        Collections.sort(axes);
+        List<String> axisNames = new ArrayList<>();
+        for (CoverageCoordAxis axis : axes)
+          axisNames.add(axis.getName());
+        List<String> transformNames = new ArrayList<>();
+        for (CoverageTransform ct : orgCs.getTransforms())
+          if (ct != null && !ct.isHoriz()) transformNames.add(ct.getName());
+        if (targetTransform != null)
+          transformNames.add(targetTransform.getName());
+        subsetCoordSys = new CoverageCoordSys(null, axisNames, transformNames, subsetCoordSys.getCoverageType());
+      }
+
+      subsetCFCoordSys.put(orgCs.getName(), subsetCoordSys);
+      for (CoverageCoordAxis axis : axes) {
         subsetCoordAxes.put(axis.getName(), axis);  // eliminate duplicates
       }
     }
@@ -100,14 +130,21 @@ public class CoverageSubsetter2 {
     for (Coverage orgCov : orgCoverages) {
       // must substitute subsetCS
       CoverageCoordSys subsetCs = subsetCFCoordSys.get(orgCov.getCoordSysName());
-      coverages.add( new Coverage(orgCov, subsetCs)); // must use a copy, because of setCoordSys()
+      DataType dataType = orgCov.getDataType();
+      if (target != null && Regridder.getResultType(dataType) != dataType) // regridded data is floating point
+        coverages.add(new Coverage(orgCov.getName(), Regridder.getResultType(dataType), removePacking(orgCov.getAttributes()),
+                subsetCs.getName(), orgCov.getUnitsString(), orgCov.getDescription(), org.getReader(), orgCov.getUserObject()));
+      else
+        coverages.add( new Coverage(orgCov, subsetCs)); // must use a copy, because of setCoordSys()
     }
 
     for (String tname : coordTransformSet) {
       CoverageTransform t = org.findCoordTransform(tname); // these are truly immutable, so can use originals
-      if (t != null)
+      if (t != null && (target == null || !t.isHoriz()))
         coordTransforms.add(t);
     }
+    if (targetTransform != null)
+      coordTransforms.add(targetTransform);
 
     // put it all together
     return ucar.nc2.util.Optional.of(new CoverageCollection(org.getName(), org.getCoverageType(),
@@ -116,6 +153,25 @@ public class CoverageSubsetter2 {
             coordSys, coordTransforms, coordAxes, coverages, org.getReader()));  // use org.reader -> subset always in coord space !
   }
 
+  // these no longer apply when the data type changes
+  private static List<Attribute> removePacking(List<Attribute> atts) {
+    List<Attribute> result = new ArrayList<>();
+    for (Attribute att : atts) {
+      switch (att.getShortName()) {
+        case CDM.FILL_VALUE:
+        case CDM.MISSING_VALUE:
+        case CDM.SCALE_FACTOR:
+        case CDM.ADD_OFFSET:
+        case CDM.UNSIGNED:
+        case CDM.VALID_RANGE:
+          break;
+        default:
+          result.add(att);
+      }
+    }
+    return result;
+  }
+
   CoverageCoordAxis1D findIndependentAxis(String want, List<CoverageCoordAxis> axes) {
     String name = want == null ? null : want.trim();
     for (CoverageCoordAxis axis : axes)
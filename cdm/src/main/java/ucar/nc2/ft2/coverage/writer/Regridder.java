@@ -0,0 +1,419 @@
+/*
+ * Copyright 1998-2015 John Caron and University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ *
+ */
+package ucar.nc2.ft2.coverage.writer;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.IndexIterator;
+import ucar.ma2.RangeIterator;
+import ucar.nc2.ft2.coverage.*;
+import ucar.nc2.util.Optional;
+import ucar.unidata.geoloc.*;
+import ucar.unidata.util.Parameter;
+
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Regrid a GeoReferencedArray onto a TargetGrid, using the nearest point or bilinear interpolation.
+ * <p>
+ * For each target point, the index (and weights) of the source points depend only on the source HorizCoordSys
+ * and the target grid, so they are computed once with the batch projection transforms and cached as an index map.
+ * Regridding the data is then a gather over the read data.
+ *
+ * @since 10/19/2016
+ */
+@ThreadSafe
+public class Regridder {
+
+  public enum Method {
+    nearest, bilinear;
+
+    /** Parse a method name, null or unknown means nearest. */
+    static public Method fromString(String s) {
+      return "bilinear".equalsIgnoreCase(s) ? bilinear : nearest;
+    }
+  }
+
+  static private final Cache<Key, IndexMap> cache = CacheBuilder.newBuilder()
+          .maximumWeight(250 * 1000 * 1000)
+          .weigher((Key key, IndexMap value) -> value.sizeBytes())
+          .recordStats()
+          .build();
+
+  static public void clearCache() {
+    cache.invalidateAll();
+  }
+
+  static public void showCache(Formatter f) {
+    f.format("Regridder cache size=%d %s%n", cache.size(), cache.stats());
+  }
+
+  /**
+   * The SubsetParams to read the source data with: the horizontal subset is replaced by the lat/lon bounding box
+   * of the target, widened by a few source cells so that interpolation at the edges has its neighbors.
+   *
+   * @param params requested subset
+   * @param target regrid onto this
+   * @param hcs    source horizontal coordinate system, before subsetting
+   * @return new params, does not include the regrid keys
+   */
+  static public SubsetParams makeSourceParams(SubsetParams params, TargetGrid target, HorizCoordSys hcs) {
+    SubsetParams result = new SubsetParams();
+    for (Map.Entry<String, Object> entry : params.getEntries()) {
+      switch (entry.getKey()) {
+        case SubsetParams.latlonBB:
+        case SubsetParams.projBB:
+        case SubsetParams.horizStride:
+        case SubsetParams.latlonPoint:
+        case SubsetParams.regrid:
+        case SubsetParams.regridMethod:
+          break;
+        default:
+          result.set(entry.getKey(), entry.getValue());
+      }
+    }
+
+    // estimate the source cell size in degrees
+    LatLonRect srcBB = hcs.makeLatlonBB(null);
+    List<RangeIterator> ranges = hcs.getRanges();
+    double cell = Math.max(srcBB.getHeight() / ranges.get(0).length(), srcBB.getWidth() / ranges.get(1).length());
+    double margin = 2 * cell;
+
+    LatLonRect bb = target.getLatLonBoundingBox();
+    double south = Math.max(-90, bb.getLatMin() - margin);
+    double north = Math.min(90, bb.getLatMax() + margin);
+    double width = Math.min(360, bb.getWidth() + 2 * margin);
+    result.set(SubsetParams.latlonBB, new LatLonRect(new LatLonPointImpl(south, bb.getLonMin() - margin), north - south, width));
+    return result;
+  }
+
+  /**
+   * The data type of the regridded data: float or double, so that missing points can be NaN.
+   */
+  static public DataType getResultType(DataType dataType) {
+    return (dataType == DataType.DOUBLE) ? DataType.DOUBLE : DataType.FLOAT;
+  }
+
+  /**
+   * Regrid the data onto the target grid. The horizontal dimensions must be the last two (y, x), as they are
+   * for all coverages. Any other dimensions are kept.
+   *
+   * @param geo    data read from a Coverage
+   * @param target regrid onto this
+   * @param method nearest point or bilinear
+   * @return regridded data, NaN where the target point is outside the source grid
+   * @throws IOException on failure
+   */
+  static public GeoReferencedArray regrid(GeoReferencedArray geo, TargetGrid target, Method method) throws IOException {
+    CoverageCoordSys csys = geo.getCoordSysForData();
+    HorizCoordSys hcs = csys.getHorizCoordSys();
+    if (hcs.isLatLon2D() && method == Method.bilinear)
+      method = Method.nearest; // LOOK no bilinear for curvilinear grids
+
+    Key key = new Key(signature(hcs), target, method);
+    IndexMap map;
+    try {
+      Method m = method;
+      map = cache.get(key, () -> new IndexMap(hcs, target, m));
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+
+    // the new axes and transforms replace the horizontal ones
+    List<CoverageCoordAxis> axes = new ArrayList<>();
+    for (CoverageCoordAxis axis : csys.getAxes())
+      if (!axis.getAxisType().isHoriz()) axes.add(axis);
+    CoverageCoordAxis1D[] targetAxes = target.makeAxes();
+    axes.add(targetAxes[1]);
+    axes.add(targetAxes[0]);
+
+    List<CoverageTransform> transforms = new ArrayList<>();
+    for (CoverageTransform ct : csys.getTransforms())
+      if (ct != null && !ct.isHoriz()) transforms.add(ct);
+    CoverageTransform targetTransform = target.makeTransform();
+    if (targetTransform != null)
+      transforms.add(targetTransform);
+
+    Array data = geo.getData();
+    int[] shape = data.getShape();
+    int rank = shape.length;
+    if (rank < 2 || shape[rank - 2] != map.srcNy || shape[rank - 1] != map.srcNx)
+      throw new IOException("Regridder: data shape does not match the horizontal coordinates of " + geo.getCoverageName());
+
+    int[] resultShape = shape.clone();
+    resultShape[rank - 2] = target.getNy();
+    resultShape[rank - 1] = target.getNx();
+    DataType resultType = getResultType(geo.getDataType());
+    Array result = Array.factory(resultType, resultShape);
+
+    double[] src = (double[]) data.get1DJavaArray(DataType.DOUBLE); // canonical order
+    map.gather(src, result.getIndexIterator());
+
+    return new GeoReferencedArray(geo.getCoverageName(), resultType, result, axes, transforms, csys.getCoverageType());
+  }
+
+  /*
+   * A hash of everything about the source grid that affects the index map, so that equal grids in different
+   * datasets (or in successive opens of the same dataset) share the map.
+   */
+  static private String signature(HorizCoordSys hcs) {
+    Hasher h = Hashing.murmur3_128().newHasher();
+    if (hcs.isLatLon2D()) {
+      h.putString("2D", StandardCharsets.UTF_8);
+      hashValues(h, hcs.getLatAxis2D().getCoordsAsArray());
+      hashValues(h, hcs.getLonAxis2D().getCoordsAsArray());
+      return h.hash().toString();
+    }
+
+    if (hcs.getIsProjection()) {
+      ProjectionImpl proj = hcs.getTransform().getProjection();
+      h.putString(proj.getClassName(), StandardCharsets.UTF_8);
+      for (Parameter p : proj.getProjectionParameters())
+        h.putString(p.toString(), StandardCharsets.UTF_8);
+    } else {
+      h.putString("latlon", StandardCharsets.UTF_8);
+    }
+    hashAxis(h, hcs.getXAxis());
+    hashAxis(h, hcs.getYAxis());
+    return h.hash().toString();
+  }
+
+  static private void hashAxis(Hasher h, CoverageCoordAxis1D axis) {
+    h.putInt(axis.getNcoords());
+    if (axis.isRegular()) {
+      h.putDouble(axis.getStartValue()).putDouble(axis.getResolution());
+    } else {
+      for (int i = 0; i < axis.getNcoords(); i++)
+        h.putDouble(axis.getCoordMidpoint(i));
+    }
+  }
+
+  static private void hashValues(Hasher h, Array values) {
+    IndexIterator iter = values.getIndexIterator();
+    while (iter.hasNext())
+      h.putDouble(iter.getDoubleNext());
+  }
+
+  /////////////////////////////////////////////////////////////////
+
+  @Immutable
+  static private class Key {
+    final String source;
+    final TargetGrid target;
+    final Method method;
+
+    Key(String source, TargetGrid target, Method method) {
+      this.source = source;
+      this.target = target;
+      this.method = method;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      Key key = (Key) o;
+      return source.equals(key.source) && target.equals(key.target) && method == key.method;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(source, target, method);
+    }
+  }
+
+  /*
+   * For each target point, the index y * srcNx + x of the nearest source point (or the lower left one for bilinear),
+   * or -1 if outside the source grid.
+   */
+  @Immutable
+  static private class IndexMap {
+    final int srcNy, srcNx;
+    final int[] index;
+    final float[] wx, wy;  // weight of the x+1, y+1 neighbors, bilinear only
+
+    IndexMap(HorizCoordSys hcs, TargetGrid target, Method method) {
+      List<RangeIterator> ranges = hcs.getRanges();
+      this.srcNy = ranges.get(0).length();
+      this.srcNx = ranges.get(1).length();
+
+      boolean bilinear = (method == Method.bilinear);
+      int n = target.getNx() * target.getNy();
+      index = new int[n];
+      wx = bilinear ? new float[n] : null;
+      wy = bilinear ? new float[n] : null;
+
+      double[][] latlon = target.getLatLons();
+
+      if (hcs.isLatLon2D()) {
+        for (int i = 0; i < n; i++) {
+          Optional<HorizCoordSys.CoordReturn> opt = hcs.findXYindexFromCoord(latlon[1][i], latlon[0][i]);
+          index[i] = opt.isPresent() ? opt.get().y * srcNx + opt.get().x : -1;
+        }
+        return;
+      }
+
+      double[] xs, ys;
+      CoverageCoordAxis1D xaxis = hcs.getXAxis();
+      CoverageCoordAxis1D yaxis = hcs.getYAxis();
+      if (hcs.getIsProjection()) {
+        double[][] proj = hcs.getTransform().getProjection().latLonToProjParallel(latlon, new double[2][latlon[0].length]);
+        xs = proj[0];
+        ys = proj[1];
+      } else {
+        double lonStart = Math.min(xaxis.getCoordEdge1(0), xaxis.getCoordEdgeLast());
+        xs = latlon[1];
+        for (int i = 0; i < n; i++)
+          xs[i] = LatLonPointImpl.lonNormalFrom(xs[i], lonStart);
+        ys = latlon[0];
+      }
+
+      AxisFinder xfinder = new AxisFinder(xaxis);
+      AxisFinder yfinder = new AxisFinder(yaxis);
+      for (int i = 0; i < n; i++) {
+        double fx = xfinder.find(xs[i]);
+        double fy = yfinder.find(ys[i]);
+        if (Double.isNaN(fx) || Double.isNaN(fy)) {
+          index[i] = -1;
+
+        } else if (bilinear) {
+          int x0 = Math.min((int) fx, Math.max(srcNx - 2, 0));
+          int y0 = Math.min((int) fy, Math.max(srcNy - 2, 0));
+          index[i] = y0 * srcNx + x0;
+          wx[i] = (float) (fx - x0);
+          wy[i] = (float) (fy - y0);
+
+        } else {
+          index[i] = (int) Math.round(fy) * srcNx + (int) Math.round(fx);
+        }
+      }
+    }
+
+    int sizeBytes() {
+      int n = index.length;
+      return (wx == null) ? 4 * n : 12 * n;
+    }
+
+    void gather(double[] src, IndexIterator result) {
+      int srcSlice = srcNy * srcNx;
+      int nslices = (srcSlice == 0) ? 0 : src.length / srcSlice;
+      for (int s = 0; s < nslices; s++) {
+        int offset = s * srcSlice;
+        for (int i = 0; i < index.length; i++) {
+          int idx = index[i];
+          double val;
+          if (idx < 0)
+            val = Double.NaN;
+          else if (wx == null)
+            val = src[offset + idx];
+          else
+            val = interpolate(src, offset + idx, wx[i], wy[i]);
+          result.setDoubleNext(val);
+        }
+      }
+    }
+
+    private double interpolate(double[] src, int idx, float fx, float fy) {
+      // only touch a neighbor if it has weight, so we dont step off the grid
+      double v00 = src[idx];
+      double v01 = (fx > 0) ? src[idx + 1] : v00;
+      double v10 = (fy > 0) ? src[idx + srcNx] : v00;
+      double v11 = (fx > 0 && fy > 0) ? src[idx + srcNx + 1] : (fx > 0 ? v01 : v10);
+      double v0 = v00 + fx * (v01 - v00);
+      double v1 = v10 + fx * (v11 - v10);
+      double val = v0 + fy * (v1 - v0);
+      if (!Double.isNaN(val)) return val;
+
+      // use the nearest
+      if (fy < 0.5f)
+        return (fx < 0.5f) ? v00 : v01;
+      else
+        return (fx < 0.5f) ? v10 : v11;
+    }
+  }
+
+  /*
+   * Find the fractional index of a coordinate value along a 1D axis, ascending or descending.
+   * Values within half a cell of the ends are clamped; values further out are NaN.
+   */
+  static private class AxisFinder {
+    final double[] coords;
+    final double lo, hi;   // outer edges
+    final boolean ascending;
+
+    AxisFinder(CoverageCoordAxis1D axis) {
+      int n = axis.getNcoords();
+      coords = new double[n];
+      for (int i = 0; i < n; i++)
+        coords[i] = axis.getCoordMidpoint(i);
+      double e1 = axis.getCoordEdge1(0);
+      double e2 = axis.getCoordEdgeLast();
+      lo = Math.min(e1, e2);
+      hi = Math.max(e1, e2);
+      ascending = (n < 2) || coords[n - 1] >= coords[0];
+    }
+
+    double find(double val) {
+      if (!(val >= lo && val <= hi)) return Double.NaN; // also NaN
+      int n = coords.length;
+      if (n == 1) return 0;
+
+      // find k such that val is between coords[k] and coords[k+1]
+      int low = 0, high = n - 1;
+      if (ascending ? val <= coords[0] : val >= coords[0]) return 0;
+      if (ascending ? val >= coords[n - 1] : val <= coords[n - 1]) return n - 1;
+      while (high - low > 1) {
+        int mid = (low + high) >>> 1;
+        if (ascending ? coords[mid] <= val : coords[mid] >= val)
+          low = mid;
+        else
+          high = mid;
+      }
+      return low + (val - coords[low]) / (coords[high] - coords[low]);
+    }
+  }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright 1998-2015 John Caron and University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ *
+ */
+package ucar.nc2.ft2.coverage.writer;
+
+import ucar.ma2.DataType;
+import ucar.nc2.Attribute;
+import ucar.nc2.AttributeContainerHelper;
+import ucar.nc2.constants.AxisType;
+import ucar.nc2.constants.CDM;
+import ucar.nc2.constants.CF;
+import ucar.nc2.ft2.coverage.CoverageCoordAxis;
+import ucar.nc2.ft2.coverage.CoverageCoordAxis1D;
+import ucar.nc2.ft2.coverage.CoverageCoordAxisBuilder;
+import ucar.nc2.ft2.coverage.CoverageTransform;
+import ucar.unidata.geoloc.*;
+import ucar.unidata.geoloc.projection.LatLonProjection;
+import ucar.unidata.geoloc.projection.Mercator;
+import ucar.unidata.util.Parameter;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.Formatter;
+
+/**
+ * A regular grid that a coverage can be regridded onto, see Regridder.
+ * The grid points are the cell centers (startx + i * dx, starty + j * dy), in the units of the projection
+ * (degrees for lat/lon, km otherwise).
+ *
+ * @since 10/19/2016
+ */
+@Immutable
+public class TargetGrid {
+  static public final String TRANSFORM_NAME = "regrid_crs";
+  static private final double WEB_MERCATOR_RADIUS = 6378.137; // km
+  static private final double WEB_MERCATOR_MAXLAT = 85.0511287798;
+
+  /**
+   * Largest number of points (nx * ny) allowed in a target grid.
+   * Regridding allocates lat/lon and index map arrays of this size.
+   */
+  static public final int MAX_POINTS = 25 * 1000 * 1000;
+
+  /**
+   * Is nx by ny an allowed target grid size?
+   */
+  static public boolean isValidSize(long nx, long ny) {
+    return nx > 0 && ny > 0 && nx * ny <= MAX_POINTS;
+  }
+
+  /**
+   * Is this CRS identifier one we can regrid onto?
+   *
+   * @param crs EPSG or OGC identifier, eg "EPSG:4326", "CRS:84", "EPSG:3857"
+   */
+  static public boolean isSupportedCrs(String crs) {
+    return isLatLonCrs(crs) || isWebMercatorCrs(crs);
+  }
+
+  static private boolean isLatLonCrs(String crs) {
+    return crs != null && (crs.equalsIgnoreCase("EPSG:4326") || crs.equalsIgnoreCase("CRS:84") || crs.equalsIgnoreCase("OGC:CRS84"));
+  }
+
+  static private boolean isWebMercatorCrs(String crs) {
+    return crs != null && (crs.equalsIgnoreCase("EPSG:3857") || crs.equalsIgnoreCase("EPSG:900913"));
+  }
+
+  /**
+   * Make a grid of nx by ny cells covering a lat/lon bounding box.
+   *
+   * @param crs  one of the isSupportedCrs() identifiers
+   * @param llbb area to cover
+   * @param nx   number of cells in x
+   * @param ny   number of cells in y
+   * @return the grid, or null if the crs is not supported
+   */
+  static public TargetGrid factory(String crs, LatLonRect llbb, int nx, int ny) {
+    if (isLatLonCrs(crs)) {
+      double dx = llbb.getWidth() / nx;
+      double dy = llbb.getHeight() / ny;
+      return new TargetGrid(new LatLonProjection(), llbb.getLonMin() + dx / 2, llbb.getLatMin() + dy / 2, dx, dy, nx, ny);
+    }
+
+    if (isWebMercatorCrs(crs)) {
+      ProjectionImpl proj = new Mercator(0.0, 0.0, 0.0, 0.0, WEB_MERCATOR_RADIUS);
+      double latMin = Math.max(llbb.getLatMin(), -WEB_MERCATOR_MAXLAT);
+      double latMax = Math.min(llbb.getLatMax(), WEB_MERCATOR_MAXLAT);
+      ProjectionPoint ll = proj.latLonToProj(new LatLonPointImpl(latMin, llbb.getLonMin()));
+      ProjectionPoint ur = proj.latLonToProj(new LatLonPointImpl(latMax, llbb.getLonMin()));
+      double width = WEB_MERCATOR_RADIUS * Math.toRadians(llbb.getWidth()); // may cross the seam
+      double dx = width / nx;
+      double dy = (ur.getY() - ll.getY()) / ny;
+      return new TargetGrid(proj, ll.getX() + dx / 2, ll.getY() + dy / 2, dx, dy, nx, ny);
+    }
+
+    return null;
+  }
+
+  ////////////////////////////////////////////////////////
+  private final ProjectionImpl proj;
+  private final boolean isLatLon;
+  private final double startx, starty, dx, dy;
+  private final int nx, ny;
+
+  /**
+   * General constructor.
+   *
+   * @param proj   target projection; use LatLonProjection for lat/lon
+   * @param startx x (or lon) of the first point
+   * @param starty y (or lat) of the first point
+   * @param dx     spacing in x, > 0
+   * @param dy     spacing in y, > 0
+   * @param nx     number of points in x
+   * @param ny     number of points in y
+   * @throws IllegalArgumentException if nx * ny is not between 1 and MAX_POINTS
+   */
+  public TargetGrid(ProjectionImpl proj, double startx, double starty, double dx, double dy, int nx, int ny) {
+    if (!isValidSize(nx, ny))
+      throw new IllegalArgumentException("TargetGrid must have between 1 and " + MAX_POINTS + " points, nx=" + nx + " ny=" + ny);
+    this.proj = proj;
+    this.isLatLon = proj.isLatLon();
+    this.startx = startx;
+    this.starty = starty;
+    this.dx = dx;
+    this.dy = dy;
+    this.nx = nx;
+    this.ny = ny;
+  }
+
+  public ProjectionImpl getProjection() {
+    return proj;
+  }
+
+  public boolean isLatLon() {
+    return isLatLon;
+  }
+
+  public int getNx() {
+    return nx;
+  }
+
+  public int getNy() {
+    return ny;
+  }
+
+  public double getX(int i) {
+    return startx + i * dx;
+  }
+
+  public double getY(int j) {
+    return starty + j * dy;
+  }
+
+  /**
+   * The lat/lon of every grid point, in row major order (y outer, x inner).
+   * @return double[2][ny*nx], with lats in [0] and lons in [1]
+   */
+  public double[][] getLatLons() {
+    int n = nx * ny;
+    double[][] pts = new double[2][n];
+    int count = 0;
+    for (int j = 0; j < ny; j++) {
+      for (int i = 0; i < nx; i++) {
+        pts[0][count] = getX(i);
+        pts[1][count] = getY(j);
+        count++;
+      }
+    }
+    if (!isLatLon)
+      return proj.projToLatLonParallel(pts, new double[2][n]);
+
+    // swap, x is lon
+    double[] lons = pts[0];
+    pts[0] = pts[1];
+    pts[1] = lons;
+    return pts;
+  }
+
+  /**
+   * The lat/lon bounding box of the grid cells.
+   */
+  public LatLonRect getLatLonBoundingBox() {
+    double minx = startx - dx / 2;
+    double miny = starty - dy / 2;
+    if (isLatLon)
+      return new LatLonRect(new LatLonPointImpl(miny, minx), ny * dy, nx * dx);
+    return proj.projToLatLonBB(new ProjectionRect(minx, miny, minx + nx * dx, miny + ny * dy));
+  }
+
+  /**
+   * Make the x and y (or lon and lat) axes of this grid.
+   * @return 1D axes, in order x, y
+   */
+  public CoverageCoordAxis1D[] makeAxes() {
+    CoverageCoordAxis1D xaxis = makeAxis(isLatLon ? "lon" : "x", isLatLon ? AxisType.Lon : AxisType.GeoX, startx, dx, nx);
+    CoverageCoordAxis1D yaxis = makeAxis(isLatLon ? "lat" : "y", isLatLon ? AxisType.Lat : AxisType.GeoY, starty, dy, ny);
+    return new CoverageCoordAxis1D[] {xaxis, yaxis};
+  }
+
+  private CoverageCoordAxis1D makeAxis(String name, AxisType type, double start, double incr, int n) {
+    String units = isLatLon ? (type == AxisType.Lat ? CDM.LAT_UNITS : CDM.LON_UNITS) : "km";
+    String desc = isLatLon ? name : name + " coordinate of projection";
+    AttributeContainerHelper atts = new AttributeContainerHelper(name);
+    atts.addAttribute(new Attribute(CDM.UNITS, units));
+    CoverageCoordAxisBuilder builder = new CoverageCoordAxisBuilder(name, units, desc, DataType.DOUBLE, type, atts,
+            CoverageCoordAxis.DependenceType.independent, null, CoverageCoordAxis.Spacing.regularPoint,
+            n, start, start + (n - 1) * incr, incr, null, null);
+    return new CoverageCoordAxis1D(builder);
+  }
+
+  /**
+   * Make the horizontal transform for this grid.
+   * @return transform, or null if lat/lon
+   */
+  public CoverageTransform makeTransform() {
+    if (isLatLon) return null;
+    AttributeContainerHelper atts = new AttributeContainerHelper(TRANSFORM_NAME);
+    for (Parameter p : proj.getProjectionParameters())
+      atts.addAttribute(new Attribute(p));
+    if (atts.findAttribute(CF.GRID_MAPPING_NAME) == null)
+      return null;
+    return new CoverageTransform(TRANSFORM_NAME, atts, true);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (o == null || getClass() != o.getClass()) return false;
+    TargetGrid that = (TargetGrid) o;
+    return nx == that.nx && ny == that.ny &&
+            Double.compare(that.startx, startx) == 0 && Double.compare(that.starty, starty) == 0 &&
+            Double.compare(that.dx, dx) == 0 && Double.compare(that.dy, dy) == 0 &&
+            proj.equals(that.proj);
+  }
+
+  @Override
+  public int hashCode() {
+    int result = proj.hashCode();
+    result = 31 * result + Double.hashCode(startx);
+    result = 31 * result + Double.hashCode(starty);
+    result = 31 * result + Double.hashCode(dx);
+    result = 31 * result + Double.hashCode(dy);
+    result = 31 * result + nx;
+    result = 31 * result + ny;
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    Formatter f = new Formatter();
+    f.format("TargetGrid{%s %s x=%s/%s/%d y=%s/%s/%d}", proj.getClassName(), proj.getProjectionParameters(),
+            startx, dx, nx, starty, dy, ny);
+    return f.toString();
+  }
+}
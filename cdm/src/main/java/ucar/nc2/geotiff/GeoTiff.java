@@ -34,6 +34,7 @@ package ucar.nc2.geotiff;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.io.RandomAccessFile;
@@ -402,6 +403,68 @@ public class GeoTiff implements Closeable {
     return size;
   }
 
+  /////////////////////////////////////////////////////////////////////////////
+  // streaming a single image: header and IFD are written first, then the image data
+
+  /**
+   * Add the geokeys to the tags, and sort them. Call once, after all tags and geokeys are added.
+   *
+   * @return size in bytes of the header plus IFD, which is where the image data will start.
+   * Tag values may be changed after this, but not their counts.
+   */
+  int finishTags() {
+    writeGeoKeys();
+    Collections.sort(tags);
+    return getHeaderAndIFDSize();
+  }
+
+  private int getHeaderAndIFDSize() {
+    int size = headerSize + 2 + 12 * tags.size() + 4;
+    for (IFDEntry ifd : tags) {
+      int vsize = ifd.count * ifd.type.size;
+      if (vsize > 4) size += vsize + (vsize & 1);  // keep values on a word boundary
+    }
+    return size;
+  }
+
+  /**
+   * Write the header and the IFD to a stream, with the IFD immediately following the header.
+   *
+   * @param out write to here; not closed
+   * @throws IOException on write error
+   */
+  void writeHeaderAndIFD(OutputStream out) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(getHeaderAndIFDSize());
+    buffer.put((byte) 'M');
+    buffer.put((byte) 'M');
+    buffer.putShort((short) 42);
+    buffer.putInt(headerSize);
+
+    buffer.putShort((short) tags.size());
+    int overflow = headerSize + 2 + 12 * tags.size() + 4;
+    for (IFDEntry ifd : tags) {
+      buffer.putShort((short) ifd.tag.getCode());
+      buffer.putShort((short) ifd.type.code);
+      buffer.putInt(ifd.count);
+
+      int size = ifd.count * ifd.type.size;
+      int pos = buffer.position();
+      if (size <= 4) {
+        writeValues(buffer, ifd);
+        buffer.position(pos + 4);
+      } else {
+        buffer.putInt(overflow);
+        buffer.position(overflow);
+        writeValues(buffer, ifd);
+        buffer.position(pos + 4);
+        overflow += size + (size & 1);
+      }
+    }
+    buffer.putInt(0); // no next IFD
+
+    out.write(buffer.array());
+  }
+
   /////////////////////////////////////////////////////////////////////////////
   // reading
 
@@ -35,6 +35,8 @@ package ucar.nc2.geotiff;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 import ucar.ma2.Array;
 import ucar.ma2.ArrayByte;
@@ -72,6 +74,7 @@ public class GeotiffWriter implements Closeable {
 
   protected GeoTiff geotiff;
   protected short pageNumber = 1;
+  private OutputStream out;  // only for writeGridTiled()
 
   /**
    * Constructor
@@ -82,8 +85,20 @@ public class GeotiffWriter implements Closeable {
     geotiff = new GeoTiff(fileOut);
   }
 
+  /**
+   * Constructor for writing one tiled image to a stream, see writeGridTiled().
+   *
+   * @param out write to this stream, which is flushed but not closed by close().
+   */
+  public GeotiffWriter(OutputStream out) {
+    geotiff = new GeoTiff(null);
+    this.out = out;
+  }
+
   public void close() throws IOException {
     geotiff.close();
+    if (out != null)
+      out.flush();
   }
 
   /**
@@ -235,6 +250,13 @@ public class GeotiffWriter implements Closeable {
     geotiff.addTag(new IFDEntry(Tag.PhotometricInterpretation, FieldType.SHORT).setValue(1));  // black is zero : not used?
     geotiff.addTag(new IFDEntry(Tag.PlanarConfiguration, FieldType.SHORT).setValue(1));
 
+    addSampleTags(greyScale, dataMinMax);
+    addGeoTags(xStart, yStart, xInc, yInc, proj);
+
+    geotiff.writeMetadata(imageNumber);
+  }
+
+  private void addSampleTags(boolean greyScale, MAMath.MinMax dataMinMax) {
     if (greyScale) {
       // standard tags for Greyscale images ( see TIFF spec, section 4)
       geotiff.addTag(new IFDEntry(Tag.BitsPerSample, FieldType.SHORT).setValue(8));  // 8 bits per sample
@@ -255,7 +277,9 @@ public class GeotiffWriter implements Closeable {
       geotiff.addTag(new IFDEntry(Tag.SMaxSampleValue, FieldType.FLOAT).setValue(max));
       geotiff.addTag(new IFDEntry(Tag.GDALNoData, FieldType.FLOAT).setValue(min - 1.f));
     }
+  }
 
+  private void addGeoTags(double xStart, double yStart, double xInc, double yInc, Projection proj) {
         /*
               geotiff.addTag( new IFDEntry(Tag.Geo_ModelPixelScale, FieldType.DOUBLE).setValue(
                 new double[] {5.0, 2.5, 0.0} ));
@@ -287,8 +311,6 @@ public class GeotiffWriter implements Closeable {
     } else {
       throw new IllegalArgumentException("Unsupported projection = " + proj.getClass().getName());
     }
-
-    geotiff.writeMetadata(imageNumber);
   }
 
   /**
@@ -567,12 +589,42 @@ public class GeotiffWriter implements Closeable {
    * @throws IOException on i/o error
    */
   public void writeGrid(GeoReferencedArray array, boolean greyScale) throws IOException {
+    if (out != null)
+      throw new IllegalStateException("Use writeGridTiled() when writing to a stream");
+
+    double[] georef = new double[4];
+    Array data = prepareCoverageData(array, georef);
+
+    if (pageNumber > 1) {
+      geotiff.initTags();
+    }
+
+    // write the data first
+    int nextStart = 0;
+    MAMath.MinMax dataMinMax = MAMath.getMinMaxSkipMissingData(data, array);
+    if (greyScale) {
+      ArrayByte result = replaceMissingValuesAndScale(array, data, dataMinMax);
+      nextStart = geotiff.writeData((byte[]) result.getStorage(), pageNumber);
+    } else {
+      ArrayFloat result = replaceMissingValues(array, data, dataMinMax);
+      nextStart = geotiff.writeData((float[]) result.getStorage(), pageNumber);
+    }
+
+    // set the width and the height
+    int height = data.getShape()[0];         // Y
+    int width = data.getShape()[1];         // X
+
+    writeMetadata(greyScale, georef[0], georef[1], georef[2], georef[3], height, width, pageNumber, nextStart, dataMinMax,
+            array.getCoordSysForData().getProjection());
+    pageNumber++;
+  }
 
+  // return the 2D data, top row first; georef gets xStart, yStart, xInc, yInc
+  private Array prepareCoverageData(GeoReferencedArray array, double[] georef) {
     CoverageCoordSys gcs = array.getCoordSysForData();
     if (!gcs.isRegularSpatial())
       throw new IllegalArgumentException("Must have 1D x and y axes for " + array.getCoverageName());
 
-    Projection proj = gcs.getProjection();
     CoverageCoordAxis1D xaxis = (CoverageCoordAxis1D) gcs.getXAxis();
     CoverageCoordAxis1D yaxis = (CoverageCoordAxis1D) gcs.getYAxis();
 
@@ -599,27 +651,175 @@ public class GeotiffWriter implements Closeable {
       //xStart = -180.0;
     }  */
 
-    if (pageNumber > 1) {
-      geotiff.initTags();
-    }
+    georef[0] = xStart;
+    georef[1] = yStart;
+    georef[2] = xInc;
+    georef[3] = yInc;
+    return data;
+  }
 
-    // write the data first
-    int nextStart = 0;
-    MAMath.MinMax dataMinMax = MAMath.getMinMaxSkipMissingData(data, array);
-    if (greyScale) {
-      ArrayByte result = replaceMissingValuesAndScale(array, data, dataMinMax);
-      nextStart = geotiff.writeData((byte[]) result.getStorage(), pageNumber);
-    } else {
-      ArrayFloat result = replaceMissingValues(array, data, dataMinMax);
-      nextStart = geotiff.writeData((float[]) result.getStorage(), pageNumber);
+  //////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+  // tiled, compressed, written to a stream
+
+  /**
+   * Compression of tiled images
+   */
+  public enum Compression {
+    none(TileEncoder.COMPRESSION_NONE), lzw(TileEncoder.COMPRESSION_LZW), deflate(TileEncoder.COMPRESSION_DEFLATE);
+
+    final int code;
+
+    Compression(int code) {
+      this.code = code;
     }
+  }
 
-    // set the width and the height
+  public static final int DEFAULT_TILE_SIZE = 256;
+
+  /**
+   * Write a single GridCoverage as a tiled GeoTIFF to the stream given in the constructor.
+   * The header and IFD come first, so nothing is written until the size of every tile is known:
+   * uncompressed tiles are streamed as they are made, compressed tiles are held (compressed) until the end.
+   * Missing values are handled as in writeGrid().
+   *
+   * @param array       GeoReferencedArray array in YX order
+   * @param greyScale   if true, write greyScale image, else dataSample.
+   * @param compression type of compression
+   * @param predictor   if true, use the horizontal (greyScale) or floating point (dataSample) predictor
+   * @param tileSize    tile width and height in pixels, must be a multiple of 16
+   * @throws IOException on i/o error
+   */
+  public void writeGridTiled(GeoReferencedArray array, boolean greyScale, Compression compression, boolean predictor, int tileSize) throws IOException {
+    if (out == null)
+      throw new IllegalStateException("Tiled images are written to a stream, use GeotiffWriter(OutputStream)");
+    if (pageNumber > 1)
+      throw new IllegalStateException("Only one tiled image can be written to a stream");
+    if (tileSize <= 0 || tileSize % 16 != 0)
+      throw new IllegalArgumentException("tileSize must be a multiple of 16: " + tileSize);
+
+    double[] georef = new double[4];
+    Array data = prepareCoverageData(array, georef);
     int height = data.getShape()[0];         // Y
     int width = data.getShape()[1];         // X
+    int tilesAcross = (width + tileSize - 1) / tileSize;
+    int tilesDown = (height + tileSize - 1) / tileSize;
+    int ntiles = tilesAcross * tilesDown;
+
+    MAMath.MinMax dataMinMax = MAMath.getMinMaxSkipMissingData(data, array);
+    int elemSize = greyScale ? 1 : 4;
+    int predictorCode = !predictor || compression == Compression.none ? TileEncoder.PREDICTOR_NONE :
+            greyScale ? TileEncoder.PREDICTOR_HORIZONTAL : TileEncoder.PREDICTOR_FLOATING_POINT;
+    TileEncoder encoder = new TileEncoder(compression.code, predictorCode, tileSize, elemSize);
+
+    geotiff.addTag(new IFDEntry(Tag.ImageWidth, FieldType.LONG).setValue(width));
+    geotiff.addTag(new IFDEntry(Tag.ImageLength, FieldType.LONG).setValue(height));
+    geotiff.addTag(new IFDEntry(Tag.TileWidth, FieldType.LONG).setValue(tileSize));
+    geotiff.addTag(new IFDEntry(Tag.TileLength, FieldType.LONG).setValue(tileSize));
+    IFDEntry tileOffsets = new IFDEntry(Tag.TileOffsets, FieldType.LONG).setValue(new int[ntiles]);
+    IFDEntry tileByteCounts = new IFDEntry(Tag.TileByteCounts, FieldType.LONG).setValue(new int[ntiles]);
+    geotiff.addTag(tileOffsets);
+    geotiff.addTag(tileByteCounts);
+    geotiff.addTag(new IFDEntry(Tag.Compression, FieldType.SHORT).setValue(compression.code));
+    if (predictorCode != TileEncoder.PREDICTOR_NONE)
+      geotiff.addTag(new IFDEntry(Tag.Predictor, FieldType.SHORT).setValue(predictorCode));
+    geotiff.addTag(new IFDEntry(Tag.Software, FieldType.ASCII).setValue("nc2geotiff"));
+    geotiff.addTag(new IFDEntry(Tag.PhotometricInterpretation, FieldType.SHORT).setValue(1));  // black is zero
+    geotiff.addTag(new IFDEntry(Tag.PlanarConfiguration, FieldType.SHORT).setValue(1));
+    addSampleTags(greyScale, dataMinMax);
+    addGeoTags(georef[0], georef[1], georef[2], georef[3], array.getCoordSysForData().getProjection());
+    int dataStart = geotiff.finishTags();
+
+    try {
+      TileMaker maker = new TileMaker(array, data, dataMinMax, greyScale, tileSize);
+      int[] offsets = new int[ntiles];
+      int[] counts = new int[ntiles];
+
+      if (compression == Compression.none) {
+        // sizes are known, so the tiles can follow the IFD as they are made
+        for (int i = 0; i < ntiles; i++) {
+          counts[i] = encoder.getTileBytes();
+          offsets[i] = dataStart + i * encoder.getTileBytes();
+        }
+        tileOffsets.setValue(offsets);
+        tileByteCounts.setValue(counts);
+        geotiff.writeHeaderAndIFD(out);
+        for (int ty = 0; ty < tilesDown; ty++)
+          for (int tx = 0; tx < tilesAcross; tx++)
+            out.write(maker.makeTile(ty, tx));
+
+      } else {
+        byte[][] tiles = new byte[ntiles][];
+        int count = 0;
+        long offset = dataStart;
+        for (int ty = 0; ty < tilesDown; ty++) {
+          for (int tx = 0; tx < tilesAcross; tx++) {
+            tiles[count] = encoder.encode(maker.makeTile(ty, tx));
+            counts[count] = tiles[count].length;
+            offsets[count] = (int) offset;
+            offset += counts[count];
+            count++;
+          }
+        }
+        if (offset > Integer.MAX_VALUE)
+          throw new IllegalArgumentException("GeoTIFF would be larger than 2 Gbytes");
+        tileOffsets.setValue(offsets);
+        tileByteCounts.setValue(counts);
+        geotiff.writeHeaderAndIFD(out);
+        for (byte[] tile : tiles)
+          out.write(tile);
+      }
 
-    writeMetadata(greyScale, xStart, yStart, xInc, yInc, height, width, pageNumber, nextStart, dataMinMax, proj);
+    } finally {
+      encoder.end();
+    }
     pageNumber++;
   }
-}
 
+  // makes the uncompressed bytes of one tile, big endian, edges padded with the missing value
+  private static class TileMaker {
+    private final Array data;
+    private final Index ima;
+    private final IsMissingEvaluator missing;
+    private final boolean greyScale;
+    private final int tileSize, height, width;
+    private final double min, scale;
+    private final float missingFloat;
+    private final ByteBuffer bb;
+
+    TileMaker(IsMissingEvaluator missing, Array data, MAMath.MinMax dataMinMax, boolean greyScale, int tileSize) {
+      this.data = data;
+      this.ima = data.getIndex();
+      this.missing = missing;
+      this.greyScale = greyScale;
+      this.tileSize = tileSize;
+      this.height = data.getShape()[0];
+      this.width = data.getShape()[1];
+      this.min = dataMinMax.min;
+      this.scale = 254.0 / (dataMinMax.max - dataMinMax.min);
+      this.missingFloat = (float) (dataMinMax.min - 1.0);
+      this.bb = ByteBuffer.allocate(tileSize * tileSize * (greyScale ? 1 : 4));
+    }
+
+    byte[] makeTile(int ty, int tx) {
+      bb.clear();
+      for (int j = 0; j < tileSize; j++) {
+        int row = ty * tileSize + j;
+        for (int i = 0; i < tileSize; i++) {
+          int col = tx * tileSize + i;
+          boolean inside = row < height && col < width;
+          double v = inside ? data.getDouble(ima.set(row, col)) : Double.NaN;
+          boolean isMissing = !inside || missing.isMissing(v);
+          if (greyScale) {
+            // same as replaceMissingValuesAndScale()
+            bb.put(isMissing ? 0 : (byte) (((int) ((v - min) * scale + 1)) & 0xff));
+          } else {
+            // same as replaceMissingValues()
+            bb.putFloat(isMissing ? missingFloat : (float) v);
+          }
+        }
+      }
+      return bb.array();
+    }
+  }
+
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 1998-2015 John Caron and University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.geotiff;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Applies the TIFF predictor and compression to one tile at a time.
+ * Tiles are big endian, one sample per pixel, tileSize x tileSize.
+ * Not thread safe, use one per writer.
+ *
+ * @since 10/19/2016
+ */
+class TileEncoder {
+  static final int COMPRESSION_NONE = 1;
+  static final int COMPRESSION_LZW = 5;
+  static final int COMPRESSION_DEFLATE = 8;
+
+  static final int PREDICTOR_NONE = 1;
+  static final int PREDICTOR_HORIZONTAL = 2;
+  static final int PREDICTOR_FLOATING_POINT = 3;
+
+  private final int compression;
+  private final int predictor;
+  private final int tileSize;
+  private final int elemSize;
+
+  private final byte[] row;    // scratch for the floating point predictor
+  private final ByteArrayOutputStream bout = new ByteArrayOutputStream();
+  private Deflater deflater;
+  private Lzw lzw;
+
+  /**
+   * @param compression one of the COMPRESSION_ constants
+   * @param predictor   one of the PREDICTOR_ constants
+   * @param tileSize    tile width and height in pixels
+   * @param elemSize    bytes per sample, 1 or 4
+   */
+  TileEncoder(int compression, int predictor, int tileSize, int elemSize) {
+    this.compression = compression;
+    this.predictor = predictor;
+    this.tileSize = tileSize;
+    this.elemSize = elemSize;
+    this.row = new byte[tileSize * elemSize];
+  }
+
+  int getTileBytes() {
+    return tileSize * tileSize * elemSize;
+  }
+
+  /**
+   * Encode one tile. The predictor is applied in place, so raw is modified.
+   *
+   * @param raw uncompressed tile, getTileBytes() long
+   * @return the bytes to write, may be raw itself if there is no compression
+   */
+  byte[] encode(byte[] raw) {
+    if (predictor == PREDICTOR_HORIZONTAL)
+      horizontalDifference(raw);
+    else if (predictor == PREDICTOR_FLOATING_POINT)
+      floatingPointDifference(raw);
+
+    switch (compression) {
+      case COMPRESSION_DEFLATE:
+        return deflate(raw);
+      case COMPRESSION_LZW:
+        if (lzw == null) lzw = new Lzw();
+        return lzw.encode(raw, bout);
+      default:
+        return raw;
+    }
+  }
+
+  void end() {
+    if (deflater != null) deflater.end();
+  }
+
+  // 8 bit samples: each byte minus the one to its left, row by row
+  private void horizontalDifference(byte[] raw) {
+    int rowBytes = tileSize * elemSize;
+    for (int start = 0; start < raw.length; start += rowBytes) {
+      for (int i = start + rowBytes - 1; i > start; i--)
+        raw[i] -= raw[i - 1];
+    }
+  }
+
+  // floating point predictor (Adobe tech note 3): within a row, gather byte k of every sample together,
+  // most significant first, then difference the bytes
+  private void floatingPointDifference(byte[] raw) {
+    int rowBytes = tileSize * elemSize;
+    for (int start = 0; start < raw.length; start += rowBytes) {
+      for (int col = 0; col < tileSize; col++)
+        for (int b = 0; b < elemSize; b++)
+          row[b * tileSize + col] = raw[start + col * elemSize + b];
+      for (int i = rowBytes - 1; i > 0; i--)
+        row[i] -= row[i - 1];
+      System.arraycopy(row, 0, raw, start, rowBytes);
+    }
+  }
+
+  private byte[] deflate(byte[] raw) {
+    if (deflater == null) deflater = new Deflater();
+    deflater.reset();
+    deflater.setInput(raw);
+    deflater.finish();
+    bout.reset();
+    byte[] buff = new byte[8192];
+    while (!deflater.finished()) {
+      int n = deflater.deflate(buff);
+      bout.write(buff, 0, n);
+    }
+    return bout.toByteArray();
+  }
+
+  /**
+   * TIFF flavored LZW: codes written most significant bit first, 9 to 12 bits,
+   * and the code width is bumped one code early, as libtiff does.
+   */
+  static class Lzw {
+    private static final int CLEAR = 256;
+    private static final int EOI = 257;
+    private static final int FIRST = 258;
+    private static final int MAX_BITS = 12;
+    private static final int TABLE_FULL = (1 << MAX_BITS) - 2;
+
+    // the string table as a trie: children of a code are chained through sibling
+    private final int[] child = new int[1 << MAX_BITS];
+    private final int[] sibling = new int[1 << MAX_BITS];
+    private final byte[] suffix = new byte[1 << MAX_BITS];
+
+    private ByteArrayOutputStream out;
+    private int nextCode, codeWidth;
+    private int bitBuffer, bitCount;
+
+    byte[] encode(byte[] raw, ByteArrayOutputStream bout) {
+      out = bout;
+      out.reset();
+      bitBuffer = 0;
+      bitCount = 0;
+
+      reset();
+      put(CLEAR);
+      if (raw.length > 0) {
+        int prefix = raw[0] & 0xff;
+        for (int i = 1; i < raw.length; i++) {
+          byte c = raw[i];
+          int k = child[prefix];
+          while (k != -1 && suffix[k] != c)
+            k = sibling[k];
+          if (k != -1) {
+            prefix = k;
+            continue;
+          }
+
+          put(prefix);
+          suffix[nextCode] = c;
+          child[nextCode] = -1;
+          sibling[nextCode] = child[prefix];
+          child[prefix] = nextCode;
+          addedCode();
+          prefix = c & 0xff;
+        }
+        put(prefix);
+        addedCode();
+      }
+      put(EOI);
+
+      if (bitCount > 0)
+        out.write(bitBuffer << (8 - bitCount));
+      return out.toByteArray();
+    }
+
+    private void reset() {
+      Arrays.fill(child, -1);
+      nextCode = FIRST;
+      codeWidth = 9;
+    }
+
+    private void addedCode() {
+      nextCode++;
+      if (nextCode == TABLE_FULL) {
+        put(CLEAR);
+        reset();
+      } else if (nextCode > (1 << codeWidth) - 1) {
+        codeWidth++;
+      }
+    }
+
+    private void put(int code) {
+      bitBuffer = (bitBuffer << codeWidth) | code;
+      bitCount += codeWidth;
+      while (bitCount >= 8) {
+        out.write(bitBuffer >>> (bitCount - 8));
+        bitCount -= 8;
+      }
+      bitBuffer &= (1 << bitCount) - 1;
+    }
+  }
+
+}
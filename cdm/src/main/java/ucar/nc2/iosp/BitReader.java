@@ -59,9 +59,13 @@ public class BitReader {
   private byte bitBuf = 0;
   private int bitPos = 0; // Current bit position in bitBuf.
 
-  // for testing
-  public BitReader(byte[] test) {
-    this.data = test;
+  /**
+   * Constructor, reading from memory
+   *
+   * @param data the bytes to read, bit offsets are from the start of this array
+   */
+  public BitReader(byte[] data) {
+    this.data = data;
     this.dataPos = 0;
   }
 
@@ -92,6 +96,18 @@ public class BitReader {
    * @throws IOException on io error
    */
   public void setBitOffset(int bitOffset) throws IOException {
+    if (raf == null) {
+      dataPos = bitOffset / 8;
+      bitPos = 0;
+      bitBuf = 0;
+      if (bitOffset % 8 != 0) {
+        bitPos = 8 - (bitOffset % 8);
+        bitBuf = data[dataPos++];
+        bitBuf &= 0xff >> (8 - bitPos);   // mask off consumed bits
+      }
+      return;
+    }
+
     if (bitOffset % 8 == 0) {
       raf.seek(startPos + bitOffset / 8);
       bitPos = 0;
@@ -620,13 +620,42 @@ public abstract class N3iosp extends AbstractIOServiceProvider implements IOServ
     if (v2 instanceof Structure)
       return readRecordData((Structure) v2, section, channel);
 
-    N3header.Vinfo vinfo = (N3header.Vinfo) v2.getSPobject();
-    DataType dataType = v2.getDataType();
+    Layout layout = makeLayout(v2, section);
+    return readData(layout, v2.getDataType(), channel);
+  }
 
-    Layout layout = (!v2.isUnlimited()) ? new LayoutRegular(vinfo.begin, v2.getElementSize(), v2.getShape(), section) :
-      new LayoutRegularSegmented(vinfo.begin, v2.getElementSize(), header.recsize, v2.getShape(), section);
+  /**
+   * Count the byte ranges that readToByteChannel() transfers from the file for this section.
+   * Lets a caller decide if sending the section straight from the file is worthwhile.
+   *
+   * @param max stop counting after this many
+   * @return number of byte ranges, or max + 1 if there are more than max,
+   *   or -1 if the file is truncated and doesn't hold all of them.
+   */
+  public int countByteRanges(ucar.nc2.Variable v2, Section section, int max) throws IOException, InvalidRangeException {
+    if (raf.isExtendMode()) return -1; // missing data is zero filled on read, not by readToByteChannel
+    long fileLength = raf.length();
 
-    return readData(layout, dataType, channel);
+    if (v2 instanceof Structure) {
+      Range recordRange = section.getRange(0);
+      if (recordRange.length() > 0 && header.recStart + (recordRange.last() + 1) * header.recsize > fileLength) return -1;
+      return recordRange.length(); // one per record
+    }
+
+    Layout layout = makeLayout(v2, section);
+    int count = 0;
+    while (layout.hasNext() && count <= max) {
+      Layout.Chunk chunk = layout.next();
+      if (chunk.getSrcPos() + chunk.getNelems() * (long) v2.getElementSize() > fileLength) return -1;
+      count++;
+    }
+    return count;
+  }
+
+  private Layout makeLayout(ucar.nc2.Variable v2, Section section) throws InvalidRangeException {
+    N3header.Vinfo vinfo = (N3header.Vinfo) v2.getSPobject();
+    return (!v2.isUnlimited()) ? new LayoutRegular(vinfo.begin, v2.getElementSize(), v2.getShape(), section) :
+      new LayoutRegularSegmented(vinfo.begin, v2.getElementSize(), header.recsize, v2.getShape(), section);
   }
 
   private long readRecordData(ucar.nc2.Structure s, Section section, WritableByteChannel out) throws java.io.IOException, InvalidRangeException {
@@ -0,0 +1,232 @@
+/*
+ * Copyright 1998-2015 John Caron and University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.iosp.nexrad2;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import ucar.unidata.io.RandomAccessFile;
+import ucar.unidata.io.bzip2.BZip2ReadException;
+import ucar.unidata.io.bzip2.CBZip2InputStream;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Uncompress bzip2 NEXRAD level II volumes (AR2V000x) in memory.
+ * Each LDM block is compressed independently, so the blocks are uncompressed in parallel.
+ * Uncompressed volumes are kept in a cache limited by total bytes.
+ * Concurrent opens of the same volume wait for a single uncompression.
+ * The DiskCache ".uncompress" file is used only if setUseDiskCache(true).
+ *
+ * @since 10/19/2016
+ */
+@ThreadSafe
+public class Level2Uncompress {
+  static private org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(Level2Uncompress.class);
+
+  static private volatile boolean useDiskCache = false;
+  static private volatile Cache<String, byte[]> cache = makeCache(250 * 1000 * 1000);
+
+  static private Cache<String, byte[]> makeCache(long maxBytes) {
+    return CacheBuilder.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((String key, byte[] value) -> value.length)
+            .recordStats()
+            .build();
+  }
+
+  /**
+   * Use the DiskCache ".uncompress" file instead of memory. Default false.
+   * @param b true to use a scratch file
+   */
+  static public void setUseDiskCache(boolean b) {
+    useDiskCache = b;
+  }
+
+  static public boolean useDiskCache() {
+    return useDiskCache;
+  }
+
+  /**
+   * Set the maximum bytes of uncompressed volumes kept in memory. Default 250 Mb.
+   * Replaces the current cache.
+   * @param maxBytes maximum total bytes
+   */
+  static public void setCacheSize(long maxBytes) {
+    cache = makeCache(maxBytes);
+  }
+
+  static public void clearCache() {
+    cache.invalidateAll();
+  }
+
+  static public void showCache(Formatter f) {
+    Cache<String, byte[]> c = cache;
+    f.format("Level2Uncompress cache size=%d %s%n", c.size(), c.stats());
+  }
+
+  /**
+   * Get the uncompressed volume, from the cache or by uncompressing it.
+   *
+   * @param raf compressed volume
+   * @return uncompressed volume, including the volume header
+   * @throws IOException on read error
+   */
+  static byte[] getUncompressed(RandomAccessFile raf) throws IOException {
+    String location = raf.getLocation();
+    File file = new File(location);
+    String key = file.exists() ? location + "#" + file.lastModified() : location;
+
+    try {
+      return cache.get(key, () -> uncompress(raf));
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) throw (IOException) cause;
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * Uncompress a volume, one task for each block.
+   *
+   * @param raf compressed volume
+   * @return uncompressed volume, including the volume header
+   * @throws IOException on read error
+   */
+  static byte[] uncompress(RandomAccessFile raf) throws IOException {
+    raf.seek(0);
+    raf.order(RandomAccessFile.BIG_ENDIAN);
+    byte[] header = new byte[Level2Record.FILE_HEADER_SIZE];
+    raf.readFully(header);
+
+    // read the compressed blocks
+    List<byte[]> blocks = new ArrayList<>();
+    boolean eof = false;
+    while (!eof) {
+      int numCompBytes;
+      try {
+        numCompBytes = raf.readInt();
+        if (numCompBytes == -1) {
+          if (log.isDebugEnabled()) log.debug("  done: numCompBytes=-1 ");
+          break;
+        }
+      } catch (EOFException ee) {
+        log.debug("got EOFException");
+        break; // assume this is ok
+      }
+
+      // the last block seems to have the number of bytes negated
+      if (numCompBytes < 0) {
+        if (log.isDebugEnabled()) log.debug("last block?" + numCompBytes);
+        numCompBytes = -numCompBytes;
+        eof = true;
+      }
+      byte[] buf = new byte[numCompBytes];
+      raf.readFully(buf);
+      blocks.add(buf);
+    }
+
+    // uncompress them
+    List<Callable<byte[]>> tasks = new ArrayList<>(blocks.size());
+    for (byte[] block : blocks)
+      tasks.add(() -> uncompressBlock(block));
+
+    List<byte[]> results = new ArrayList<>(blocks.size());
+    try {
+      for (Future<byte[]> future : ForkJoinPool.commonPool().invokeAll(tasks))
+        results.add(future.get());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) throw (IOException) cause;
+      throw new IOException(cause);
+    }
+
+    // concatenate
+    int total = header.length;
+    for (byte[] result : results)
+      total += result.length;
+    byte[] data = new byte[total];
+    System.arraycopy(header, 0, data, 0, header.length);
+    int pos = header.length;
+    for (byte[] result : results) {
+      System.arraycopy(result, 0, data, pos, result.length);
+      pos += result.length;
+    }
+
+    if (log.isDebugEnabled())
+      log.debug("uncompressed " + raf.getLocation() + " " + blocks.size() + " blocks into " + total + " bytes");
+    return data;
+  }
+
+  // a bad block is skipped, as it was when uncompressing to disk
+  static private byte[] uncompressBlock(byte[] buf) throws IOException {
+    CBZip2InputStream cbzip2 = new CBZip2InputStream();
+    cbzip2.setStream(new ByteArrayInputStream(buf, 2, buf.length - 2));
+
+    byte[] ubuff = new byte[40000];
+    byte[] obuff = new byte[40000];
+    int total = 0;
+    int nread;
+    try {
+      while ((nread = cbzip2.read(ubuff)) != -1) {
+        if (total + nread > obuff.length) {
+          byte[] temp = obuff;
+          obuff = new byte[Math.max(temp.length * 2, total + nread)];
+          System.arraycopy(temp, 0, obuff, 0, total);
+        }
+        System.arraycopy(ubuff, 0, obuff, total, nread);
+        total += nread;
+      }
+    } catch (BZip2ReadException ioe) {
+      log.warn("Level2Uncompress.uncompressBlock ", ioe);
+      return new byte[0];
+    }
+
+    byte[] result = new byte[total];
+    System.arraycopy(obuff, 0, result, 0, total);
+    return result;
+  }
+}
@@ -33,6 +33,7 @@
 
 package ucar.nc2.iosp.nexrad2;
 
+import ucar.unidata.io.InMemoryRandomAccessFile;
 import ucar.unidata.io.RandomAccessFile;
 import ucar.nc2.util.CancelTask;
 import ucar.nc2.util.DiskCache;
@@ -153,7 +154,11 @@ public class Level2VolumeScan {
         RandomAccessFile uraf = null;
         File uncompressedFile = DiskCache.getFileStandardPolicy(raf.getLocation() + ".uncompress");
 
-        if (uncompressedFile.exists() && uncompressedFile.length() > 0) {
+        if (!Level2Uncompress.useDiskCache()) {
+          // uncompress in memory, or get it from the cache
+          uraf = new InMemoryRandomAccessFile(raf.getLocation(), Level2Uncompress.getUncompressed(raf));
+
+        } else if (uncompressedFile.exists() && uncompressedFile.length() > 0) {
           // see if its locked - another thread is writing it
           try (FileInputStream fstream = new FileInputStream(uncompressedFile)) {
             //lock = fstream.getChannel().lock(0, 1, true); // wait till its unlocked
@@ -62,6 +62,7 @@ public class CdmRemote extends ucar.nc2.NetcdfFile {
   // static private org.slf4SCHEMEj.Logger logger = org.slf4j.LoggerFactory.getLogger(CdmRemote.class);
   static private boolean showRequest = false;
   static private boolean compress = false;
+  static private int compressLevel = 5;
 
   static public void setDebugFlags(ucar.nc2.util.DebugFlags debugFlag) {
     showRequest = debugFlag.isSet("CdmRemote/showRequest");
@@ -71,6 +72,13 @@ public class CdmRemote extends ucar.nc2.NetcdfFile {
     compress = b;
   }
 
+  /**
+   * Deflate level to ask for when compression is allowed, 1 (fastest) to 9 (smallest).
+   */
+  static public void setCompressionLevel(int level) {
+    compressLevel = level;
+  }
+
 
   /**
    * Create the canonical form of the URL.
@@ -158,7 +166,7 @@ public class CdmRemote extends ucar.nc2.NetcdfFile {
     Formatter f = new Formatter();
     f.format("%s?req=data", remoteURI);
     if (compress)
-      f.format("&deflate=5");
+      f.format("&deflate=%d", compressLevel);
     //f.format("&var=%s", v.getShortName());
     f.format("&var=%s", v.getFullNameEscaped());
     if ((section != null) && (section.computeSize() != v.getSize()) && (v.getDataType() != DataType.SEQUENCE)) {
@@ -0,0 +1,235 @@
+/*
+ * Copyright 1998-2015 John Caron and University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package ucar.nc2.stream;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+/**
+ * Like NcStreamCompressedOutputStream, but deflates the data in fixed size blocks, concurrently on the common pool.
+ * On flush(), writes the compressed size as a vint, then the blocks in order, then a block index.
+ * <p>
+ * The blocks are raw deflate ending on a sync flush, framed by a zlib header and the adler32 of the whole, so together
+ * they are one ordinary zlib stream that any inflater reads. The block index follows the zlib stream, where
+ * readers that just inflate never look:
+ * <pre>
+ *   int compressedLength[nblocks]
+ *   int blockSize            // uncompressed size of each block but the last
+ *   int nblocks
+ *   MAGIC_BLOCKS
+ * </pre>
+ * all big-endian. NcStreamReader uses it to inflate the blocks in parallel.
+ *
+ * @since 10/19/2016
+ */
+public class NcStreamBlockedOutputStream extends DataOutputStream {
+  static public final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+  static final byte[] MAGIC_BLOCKS = new byte[]{(byte) 0xba, (byte) 0x0c, (byte) 0xc5, (byte) 0xde};
+  static final int TRAILER_SIZE = 12; // blockSize, nblocks, MAGIC_BLOCKS
+
+  private static class Block {
+    int uncompressedLength;
+    long adler;
+    byte[] bytes;
+
+    Block(int uncompressedLength, long adler, byte[] bytes) {
+      this.uncompressedLength = uncompressedLength;
+      this.adler = adler;
+      this.bytes = bytes;
+    }
+  }
+
+  private final OutputStream writer;
+  private final int blockSize;
+  private final int level;
+  private final int maxPending = Runtime.getRuntime().availableProcessors() + 1;
+
+  private final List<Future<Block>> blocks = new ArrayList<>();
+  private int nfinished; // blocks before this are known to be compressed
+  private byte[] current;
+  private int count;
+
+  public NcStreamBlockedOutputStream(OutputStream out, int blockSize, int level) {
+    super(out);
+
+    // Save the original out for use when we flush
+    writer = out;
+    this.blockSize = blockSize;
+    this.level = level;
+    current = new byte[blockSize];
+
+    // Override out to fill the current block
+    this.out = new OutputStream() {
+      @Override
+      public void write(int b) throws IOException {
+        current[count++] = (byte) b;
+        if (count == blockSize) submit(false);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+          int n = Math.min(len, blockSize - count);
+          System.arraycopy(b, off, current, count, n);
+          count += n;
+          off += n;
+          len -= n;
+          if (count == blockSize) submit(false);
+        }
+      }
+    };
+  }
+
+  private void submit(boolean last) throws IOException {
+    byte[] raw = current;
+    int len = count;
+    blocks.add(CompletableFuture.supplyAsync(() -> compress(raw, len, last)));
+    current = new byte[blockSize];
+    count = 0;
+
+    // dont let the uncompressed blocks pile up if the writer is faster than the compressors
+    while (blocks.size() - nfinished > maxPending)
+      getBlock(nfinished++);
+  }
+
+  private Block compress(byte[] raw, int len, boolean last) {
+    Deflater deflater = new Deflater(level, true);
+    try {
+      deflater.setInput(raw, 0, len);
+      ByteArrayOutputStream bout = new ByteArrayOutputStream(len / 2 + 64);
+      byte[] buff = new byte[64 * 1024];
+      if (last) {
+        deflater.finish();
+        while (!deflater.finished())
+          bout.write(buff, 0, deflater.deflate(buff));
+
+      } else { // sync flush ends the block on a byte boundary, so the next block can follow it
+        int n;
+        do {
+          n = deflater.deflate(buff, 0, buff.length, Deflater.SYNC_FLUSH);
+          bout.write(buff, 0, n);
+        } while (n == buff.length || !deflater.needsInput());
+      }
+
+      Adler32 adler = new Adler32();
+      adler.update(raw, 0, len);
+      return new Block(len, adler.getValue(), bout.toByteArray());
+
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private Block getBlock(int index) throws IOException {
+    try {
+      return blocks.get(index).get();
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(e.getMessage());
+
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    // The last block, possibly empty, finishes the zlib stream
+    submit(true);
+
+    int nblocks = blocks.size();
+    List<Block> done = new ArrayList<>(nblocks);
+    long adler = 1;
+    int compressedSize = 2 + 4 + 4 * nblocks + TRAILER_SIZE;
+    for (int i = 0; i < nblocks; i++) {
+      Block block = getBlock(i);
+      done.add(block);
+      adler = adler32Combine(adler, block.adler, block.uncompressedLength);
+      compressedSize += block.bytes.length;
+    }
+
+    // Write size of compressed data and then the block of compressed data, as NcStreamCompressedOutputStream does.
+    written = compressedSize;
+    written += NcStream.writeVInt(writer, compressedSize);
+
+    DataOutputStream dout = new DataOutputStream(writer);
+    dout.write(zlibHeader(level));
+    for (Block block : done)
+      dout.write(block.bytes);
+    dout.writeInt((int) adler);
+
+    for (Block block : done)
+      dout.writeInt(block.bytes.length);
+    dout.writeInt(blockSize);
+    dout.writeInt(nblocks);
+    dout.write(MAGIC_BLOCKS);
+
+    // Reset so that in theory we could continue to write to this stream.
+    blocks.clear();
+    nfinished = 0;
+  }
+
+  static byte[] zlibHeader(int level) {
+    int flevel = (level == 0 || level == 1) ? 0 : (level >= 2 && level <= 5) ? 1 : (level == 6 || level < 0) ? 2 : 3;
+    int cmf = 0x78; // deflate, 32K window
+    int flg = flevel << 6;
+    flg += 31 - ((cmf << 8) + flg) % 31;
+    return new byte[]{(byte) cmf, (byte) flg};
+  }
+
+  /**
+   * The adler32 of two byte sequences put together, from their adler32s and the length of the second.
+   * Same as zlib's adler32_combine().
+   */
+  static long adler32Combine(long adler1, long adler2, long len2) {
+    final long BASE = 65521;
+    long rem = len2 % BASE;
+    long sum1 = adler1 & 0xffff;
+    long sum2 = (rem * sum1) % BASE;
+    sum1 += (adler2 & 0xffff) + BASE - 1;
+    sum2 += ((adler1 >> 16) & 0xffff) + ((adler2 >> 16) & 0xffff) + BASE - rem;
+    if (sum1 >= BASE) sum1 -= BASE;
+    if (sum1 >= BASE) sum1 -= BASE;
+    if (sum2 >= (BASE << 1)) sum2 -= (BASE << 1);
+    if (sum2 >= BASE) sum2 -= BASE;
+    return sum1 | (sum2 << 16);
+  }
+}
@@ -45,6 +45,10 @@ import java.io.InputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.stream.IntStream;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
 
 import com.google.protobuf.InvalidProtocolBufferException;
@@ -212,10 +216,13 @@ public class NcStreamReader {
     NcStreamProto.Compress compress = dproto.getCompress();
     int uncompressedSize = dproto.getUncompressedSize();
     if (compress == NcStreamProto.Compress.DEFLATE) {
-      ByteArrayInputStream bin = new ByteArrayInputStream(datab);
-      InflaterInputStream in = new InflaterInputStream(bin);
-      byte[] resultb = new byte[uncompressedSize];
-      NcStream.readFully(in, resultb);
+      byte[] resultb = inflateBlocks(datab, uncompressedSize);
+      if (resultb == null) { // no block index
+        ByteArrayInputStream bin = new ByteArrayInputStream(datab);
+        InflaterInputStream in = new InflaterInputStream(bin);
+        resultb = new byte[uncompressedSize];
+        NcStream.readFully(in, resultb);
+      }
 
       data = Array.factory(dataType, section.getShape(), ByteBuffer.wrap(resultb)); // another copy, not sure can do anything
       if (showDeflate)
@@ -230,6 +237,69 @@ public class NcStreamReader {
     return new DataResult(dproto.getVarName(), data);
   }
 
+  /**
+   * Inflate data written by NcStreamBlockedOutputStream, each block in parallel, directly into the result.
+   * @return the uncompressed data, or null if datab has no block index.
+   */
+  private byte[] inflateBlocks(byte[] datab, int uncompressedSize) throws IOException {
+    int n = datab.length;
+    if (n < 6 + NcStreamBlockedOutputStream.TRAILER_SIZE) return null;
+    ByteBuffer bb = ByteBuffer.wrap(datab); // big-endian
+    for (int i = 0; i < 4; i++)
+      if (datab[n - 4 + i] != NcStreamBlockedOutputStream.MAGIC_BLOCKS[i]) return null;
+    int nblocks = bb.getInt(n - 8);
+    int blockSize = bb.getInt(n - 12);
+    int indexStart = n - NcStreamBlockedOutputStream.TRAILER_SIZE - 4 * nblocks;
+    if (nblocks <= 0 || blockSize <= 0 || indexStart < 6 || (long) (nblocks - 1) * blockSize > uncompressedSize) return null;
+
+    int[] offset = new int[nblocks + 1];
+    offset[0] = 2; // zlib header
+    for (int i = 0; i < nblocks; i++) {
+      int len = bb.getInt(indexStart + 4 * i);
+      if (len < 0) return null;
+      offset[i + 1] = offset[i] + len;
+    }
+    if (offset[nblocks] + 4 != indexStart) return null; // adler32 then the index
+
+    byte[] resultb = new byte[uncompressedSize];
+    long[] adlers = new long[nblocks];
+    boolean[] ok = new boolean[nblocks];
+    IntStream.range(0, nblocks).parallel().forEach(i -> {
+      int start = i * blockSize;
+      int want = (i == nblocks - 1) ? uncompressedSize - start : blockSize;
+      Inflater inflater = new Inflater(true);
+      try {
+        inflater.setInput(datab, offset[i], offset[i + 1] - offset[i]);
+        int done = 0;
+        while (done < want) {
+          int got = inflater.inflate(resultb, start + done, want - done);
+          if (got == 0 && (inflater.finished() || inflater.needsInput())) break;
+          done += got;
+        }
+        Adler32 adler = new Adler32();
+        adler.update(resultb, start, want);
+        adlers[i] = adler.getValue();
+        ok[i] = (done == want);
+      } catch (DataFormatException e) {
+        ok[i] = false;
+      } finally {
+        inflater.end();
+      }
+    });
+
+    long adler = 1;
+    for (int i = 0; i < nblocks; i++) {
+      if (!ok[i]) throw new IOException("Data transfer corrupted: bad compressed block " + i);
+      int start = i * blockSize;
+      int len = (i == nblocks - 1) ? uncompressedSize - start : blockSize;
+      adler = NcStreamBlockedOutputStream.adler32Combine(adler, adlers[i], len);
+    }
+    if ((int) adler != bb.getInt(offset[nblocks]))
+      throw new IOException("Data transfer corrupted: adler32 mismatch");
+
+    return resultb;
+  }
+
   private DataResult readData2(InputStream is) throws IOException {
     int psize = NcStream.readVInt(is);
     if (debug) System.out.println("  readData data message len= " + psize);
@@ -35,9 +35,14 @@ package ucar.nc2.stream;
 import ucar.ma2.*;
 import ucar.nc2.*;
 import ucar.nc2.constants.CDM;
+import ucar.nc2.dataset.VariableEnhanced;
+import ucar.nc2.iosp.IOServiceProvider;
+import ucar.nc2.iosp.netcdf3.N3iosp;
 
 import java.io.*;
 import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * Write a NetcdfFile to an OutputStream using ncstream protocol
@@ -49,6 +54,8 @@ public class NcStreamWriter {
   static private long maxChunk = 1000 * 1000; // 1 MByte
   static private final int sizeToCache = 100; // when to store a variable's data in the header, ie "immediate" mode
   static private final int currentVersion = 1;
+  static private final int minDirectSegmentSize = 8 * 1000; // send directly from the file if the average byte range is at least this
+  static private final int maxDirectSegments = 16;          // or if there are no more byte ranges than this
 
   private NetcdfFile ncfile;
   private NcStreamProto.Header header;
@@ -144,6 +151,67 @@ public class NcStreamWriter {
     return size;
   }
 
+  /**
+   * Send the data straight from the file to the output, when the bytes on disk are already the wire format:
+   * uncompressed primitive data in a netCDF-3 file (always big-endian, which the MAGIC_DATA reader expects),
+   * whose section maps to a few contiguous byte ranges. The length is known, so the data message header is
+   * computed up front as in NcStreamWriterChannel, then the bytes are moved with FileChannel.transferTo().
+   *
+   * @return number of bytes sent, or -1 if the section can't be sent this way, in which case nothing was written.
+   */
+  public long sendDataDirect(Variable v, Section section, OutputStream out, NcStreamCompression compress) throws IOException, InvalidRangeException {
+    if (!canSendDirect(v, section, compress)) return -1;
+    if (show) System.out.printf(" %s section=%s direct%n", v.getFullName(), section);
+
+    long len = section.computeSize() * v.getElementSize();
+    long size = 0;
+    size += writeBytes(out, NcStream.MAGIC_DATA); // magic
+    NcStreamProto.Data dataProto = NcStream.encodeDataProto(v, section, compress.type, ByteOrder.BIG_ENDIAN, (int) len);
+    byte[] datab = dataProto.toByteArray();
+    size += NcStream.writeVInt(out, datab.length); // dataProto len
+    size += writeBytes(out, datab); // dataProto
+    size += NcStream.writeVInt(out, (int) len); // data len
+    out.flush();
+
+    WritableByteChannel wbc = Channels.newChannel(out);
+    size += v.readToByteChannel(section, wbc);
+    return size;
+  }
+
+  /**
+   * Send the data compressed, as a MAGIC_DATA message, since sendData2() does not compress.
+   * Large payloads are deflated in parallel blocks, see NcStreamBlockedOutputStream.
+   *
+   * @return number of bytes sent, or -1 if no compression was asked for or the variable is not a regular primitive array,
+   *   in which case nothing was written.
+   */
+  public long sendDataCompressed(Variable v, Section section, OutputStream out, NcStreamCompression compress) throws IOException, InvalidRangeException {
+    if (compress.type == NcStreamProto.Compress.NONE) return -1;
+    if (v instanceof Structure || v.isVariableLength()) return -1;
+    DataType dataType = v.getDataType();
+    if (!dataType.isNumeric() && dataType != DataType.CHAR) return -1;
+    if (section.computeSize() * v.getElementSize() > Integer.MAX_VALUE) return -1;
+
+    return sendData(v, section, out, compress);
+  }
+
+  private boolean canSendDirect(Variable v, Section section, NcStreamCompression compress) throws IOException, InvalidRangeException {
+    if (compress.type != NcStreamProto.Compress.NONE) return false;
+    if (v instanceof Structure || v instanceof VariableEnhanced || v.isVariableLength() || v.hasCachedData()) return false;
+    DataType dataType = v.getDataType();
+    if (!dataType.isNumeric() && dataType != DataType.CHAR) return false;
+
+    NetcdfFile vfile = v.getNetcdfFile();
+    IOServiceProvider iosp = (vfile == null) ? null : vfile.getIosp();
+    if (!(iosp instanceof N3iosp)) return false;
+
+    long len = section.computeSize() * v.getElementSize();
+    if (len > Integer.MAX_VALUE) return false;
+    int maxSegments = (int) Math.max(maxDirectSegments, len / minDirectSegmentSize);
+    int count = ((N3iosp) iosp).countByteRanges(v, section, maxSegments);  // -1 if the file is truncated
+    return count >= 0 && count <= maxSegments;
+  }
+
   // LOOK compression not used
   public long sendData2(Variable v, Section section, OutputStream out, NcStreamCompression compress) throws IOException, InvalidRangeException {
     if (show) System.out.printf(" %s section=%s%n", v.getFullName(), section);
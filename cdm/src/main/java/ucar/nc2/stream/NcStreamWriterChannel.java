@@ -99,7 +99,7 @@ public class NcStreamWriterChannel {
   public long sendData(Variable v, Section section, WritableByteChannel wbc, NcStreamCompression compress) throws IOException, InvalidRangeException {
     if (show) System.out.printf(" %s section=%s%n", v.getFullName(), section);
 
-    ByteOrder bo = ByteOrder.nativeOrder(); // reader makes right
+    ByteOrder bo = ByteOrder.BIG_ENDIAN; // readToByteChannel sends big-endian
     long size = 0;
     size += writeBytes(wbc, NcStream.MAGIC_DATA); // magic
     NcStreamProto.Data dataProto = NcStream.encodeDataProto(v, section, compress.type, bo, 0);
@@ -0,0 +1,329 @@
+/*
+ * Copyright 1998-2014 University Corporation for Atmospheric Research/Unidata
+ *
+ *   Portions of this software were developed by the Unidata Program at the
+ *   University Corporation for Atmospheric Research.
+ *
+ *   Access and use of this software shall impose the following obligations
+ *   and understandings on the user. The user is granted the right, without
+ *   any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *   this software, and any derivative works thereof, and its supporting
+ *   documentation for any purpose whatsoever, provided that this entire
+ *   notice appears in all copies of the software, derivative works and
+ *   supporting documentation.  Further, UCAR requests that the user credit
+ *   UCAR/Unidata in any publications that result from the use of this
+ *   software or in any product that includes this software. The names UCAR
+ *   and/or Unidata, however, may not be used in any advertising or publicity
+ *   to endorse or promote any products or commercial entity unless specific
+ *   written permission is obtained from UCAR/Unidata. The user also
+ *   understands that UCAR/Unidata is not obligated to provide the user with
+ *   any support, consulting, training or assistance of any kind with regard
+ *   to the use, operation and performance of this software nor to provide
+ *   the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *   THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *   IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *   WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *   DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *   INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *   FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *   NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *   WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.unidata.geoloc;
+
+import ucar.ma2.ArrayDouble;
+import ucar.ma2.DataType;
+
+/**
+ * Spatial index of the points of a 2D lat/lon grid, for curvilinear coordinate systems.
+ * The points are sorted into a regular grid of lat/lon buckets, so finding the cell that contains a point,
+ * or the index range of the points inside a lat/lon box, only looks at the buckets involved.
+ * <p>
+ * The buckets evenly divide the lat/lon extent of the non-missing points, about 16 points per bucket, with the
+ * bucket sides roughly equal in degrees. Bucket (i, j) is number i * nbLon + j. The contents of all buckets are
+ * kept in one array, with a start offset for each bucket. For findCell(), a cell goes into every bucket that its
+ * bounding box touches. For findBounds(), a point goes into the bucket it is in, and each bucket also keeps the
+ * lat/lon extent and row/col range of its points. The buckets are made on first use; after that the index is
+ * not changed, and may be shared between threads.
+ * <p>
+ * Longitudes do not wrap. They are used as given, so a grid that crosses the seam of its longitude range
+ * (eg the dateline for -180..180) must first be normalized to one continuous range, for example with
+ * LatLonPointImpl.lonNormalFrom(lon, lonMin), and queries must be normalized the same way. Otherwise the cells
+ * at the seam span the whole longitude range and land in every bucket along it.
+ *
+ * @since 10/19/2016
+ */
+public class LatLonGridIndex {
+  static private final int pointsPerBucket = 16;
+
+  /**
+   * Test if a point is inside a cell of the grid.
+   */
+  public interface CellTest {
+    /**
+     * @param wantLat   lat of point
+     * @param wantLon   lon of point
+     * @param rectIndex (row, col) of the cell's lower corner
+     * @return true if contained
+     */
+    boolean contains(double wantLat, double wantLon, int[] rectIndex);
+  }
+
+  private final double[] lat, lon;  // row major
+  private final int ny, nx;
+
+  // extent of the points that are not NaN
+  private double latMin = Double.MAX_VALUE, latMax = -Double.MAX_VALUE;
+  private double lonMin = Double.MAX_VALUE, lonMax = -Double.MAX_VALUE;
+
+  private final int nbLat, nbLon;
+  private final double latScale, lonScale; // buckets per degree
+
+  private volatile Buckets cellBuckets;   // made on first use
+  private volatile Buckets pointBuckets;  // made on first use
+
+  /**
+   * Index the grid points lat(y,x), lon(y,x). Missing values must be NaN.
+   */
+  public LatLonGridIndex(ArrayDouble.D2 latGrid, ArrayDouble.D2 lonGrid) {
+    int[] shape = latGrid.getShape();
+    this.ny = shape[0];
+    this.nx = shape[1];
+    this.lat = (double[]) latGrid.get1DJavaArray(DataType.DOUBLE);
+    this.lon = (double[]) lonGrid.get1DJavaArray(DataType.DOUBLE);
+
+    int npts = 0;
+    for (int i = 0; i < lat.length; i++) {
+      if (Double.isNaN(lat[i]) || Double.isNaN(lon[i])) continue;
+      latMin = Math.min(latMin, lat[i]);
+      latMax = Math.max(latMax, lat[i]);
+      lonMin = Math.min(lonMin, lon[i]);
+      lonMax = Math.max(lonMax, lon[i]);
+      npts++;
+    }
+
+    // about pointsPerBucket points in each bucket, and square buckets in degrees
+    int nbuckets = Math.max(1, npts / pointsPerBucket);
+    double latRange = Math.max(latMax - latMin, 1.0e-9);
+    double lonRange = Math.max(lonMax - lonMin, 1.0e-9);
+    int n = (int) Math.round(Math.sqrt(nbuckets * latRange / lonRange));
+    nbLat = Math.max(1, Math.min(n, nbuckets));
+    nbLon = Math.max(1, nbuckets / nbLat);
+    latScale = nbLat / latRange;
+    lonScale = nbLon / lonRange;
+
+    if (npts == 0) latMin = Double.NaN;  // nothing matches
+  }
+
+  private boolean isOutside(double wantLat, double wantLon) {
+    return !(wantLat >= latMin && wantLat <= latMax && wantLon >= lonMin && wantLon <= lonMax);
+  }
+
+  /**
+   * Find the cell that contains a point.
+   * The cells are the quadrilaterals between neighboring grid points, so there are (ny-1) x (nx-1) of them.
+   *
+   * @param wantLat   lat of point
+   * @param wantLon   lon of point
+   * @param test      is the point inside the cell
+   * @param rectIndex return (row,col) index of the cell here, may not be null
+   * @return false if not in any cell
+   */
+  public boolean findCell(double wantLat, double wantLon, CellTest test, int[] rectIndex) {
+    if (isOutside(wantLat, wantLon)) return false;
+    Buckets cells = getCellBuckets();
+
+    int bucket = latBucket(wantLat) * nbLon + lonBucket(wantLon);
+    for (int i = cells.start[bucket]; i < cells.start[bucket + 1]; i++) {
+      int id = cells.items[i];
+      if (wantLat < min4(lat[id], lat[id + 1], lat[id + nx], lat[id + nx + 1])) continue;  // quick check on the cell's bounding box
+      if (wantLat > max4(lat[id], lat[id + 1], lat[id + nx], lat[id + nx + 1])) continue;
+      if (wantLon < min4(lon[id], lon[id + 1], lon[id + nx], lon[id + nx + 1])) continue;
+      if (wantLon > max4(lon[id], lon[id + 1], lon[id + nx], lon[id + nx + 1])) continue;
+      rectIndex[0] = id / nx;
+      rectIndex[1] = id % nx;
+      if (test.contains(wantLat, wantLon, rectIndex)) return true;
+    }
+    return false;
+  }
+
+  /**
+   * Find the index range of the grid points inside a lat/lon box, including its edges.
+   *
+   * @return {minRow, maxRow, minCol, maxCol}, inclusive, or null if no points are inside
+   */
+  public int[] findBounds(double minLat, double maxLat, double minLon, double maxLon) {
+    if (!(minLat <= latMax && maxLat >= latMin && minLon <= lonMax && maxLon >= lonMin)) return null;
+    Buckets points = getPointBuckets();
+
+    int[] result = new int[]{Integer.MAX_VALUE, -1, Integer.MAX_VALUE, -1};
+    for (int i = latBucket(minLat); i <= latBucket(maxLat); i++) {
+      for (int j = lonBucket(minLon); j <= lonBucket(maxLon); j++) {
+        int bucket = i * nbLon + j;
+        if (points.start[bucket] == points.start[bucket + 1]) continue;
+
+        // all of the bucket's points are inside: use their bounds
+        double[] extent = points.extent;
+        if (extent[4 * bucket] >= minLat && extent[4 * bucket + 1] <= maxLat &&
+                extent[4 * bucket + 2] >= minLon && extent[4 * bucket + 3] <= maxLon) {
+          int[] bounds = points.bounds;
+          result[0] = Math.min(result[0], bounds[4 * bucket]);
+          result[1] = Math.max(result[1], bounds[4 * bucket + 1]);
+          result[2] = Math.min(result[2], bounds[4 * bucket + 2]);
+          result[3] = Math.max(result[3], bounds[4 * bucket + 3]);
+          continue;
+        }
+
+        for (int k = points.start[bucket]; k < points.start[bucket + 1]; k++) {
+          int id = points.items[k];
+          if (lat[id] >= minLat && lat[id] <= maxLat && lon[id] >= minLon && lon[id] <= maxLon) {
+            int row = id / nx;
+            int col = id % nx;
+            result[0] = Math.min(result[0], row);
+            result[1] = Math.max(result[1], row);
+            result[2] = Math.min(result[2], col);
+            result[3] = Math.max(result[3], col);
+          }
+        }
+      }
+    }
+    return (result[1] < 0) ? null : result;
+  }
+
+  private int latBucket(double val) {
+    int b = (int) ((val - latMin) * latScale);
+    return (b < 0) ? 0 : (b >= nbLat) ? nbLat - 1 : b;
+  }
+
+  private int lonBucket(double val) {
+    int b = (int) ((val - lonMin) * lonScale);
+    return (b < 0) ? 0 : (b >= nbLon) ? nbLon - 1 : b;
+  }
+
+  ////////////////////////////////////////////////////////////////////////
+
+  private Buckets getCellBuckets() {
+    Buckets result = cellBuckets;
+    return (result != null) ? result : makeCellBuckets();
+  }
+
+  private Buckets getPointBuckets() {
+    Buckets result = pointBuckets;
+    return (result != null) ? result : makePointBuckets();
+  }
+
+  // each cell goes into every bucket its corners' bounding box touches; id is the index of its lower corner
+  private synchronized Buckets makeCellBuckets() {
+    if (cellBuckets != null) return cellBuckets;
+
+    int[] count = new int[nbLat * nbLon + 1];
+    for (int pass = 0; pass < 2; pass++) {
+      int[] items = (pass == 0) ? null : new int[count[count.length - 1]];
+      int[] next = (pass == 0) ? null : count.clone();
+
+      for (int row = 0; row < ny - 1; row++) {
+        for (int col = 0; col < nx - 1; col++) {
+          int id = row * nx + col;
+          double cellLatMin = min4(lat[id], lat[id + 1], lat[id + nx], lat[id + nx + 1]);
+          double cellLatMax = max4(lat[id], lat[id + 1], lat[id + nx], lat[id + nx + 1]);
+          double cellLonMin = min4(lon[id], lon[id + 1], lon[id + nx], lon[id + nx + 1]);
+          double cellLonMax = max4(lon[id], lon[id + 1], lon[id + nx], lon[id + nx + 1]);
+          if (Double.isNaN(cellLatMin + cellLatMax + cellLonMin + cellLonMax)) continue;
+
+          int lonb0 = lonBucket(cellLonMin), lonb1 = lonBucket(cellLonMax);
+          for (int i = latBucket(cellLatMin); i <= latBucket(cellLatMax); i++) {
+            for (int j = lonb0; j <= lonb1; j++) {
+              int bucket = i * nbLon + j;
+              if (pass == 0)
+                count[bucket + 1]++;
+              else
+                items[next[bucket]++] = id;
+            }
+          }
+        }
+      }
+
+      if (pass == 0) {
+        for (int b = 0; b < nbLat * nbLon; b++)
+          count[b + 1] = Math.addExact(count[b + 1], count[b]);
+      } else {
+        cellBuckets = new Buckets(count, items, null, null);
+      }
+    }
+    return cellBuckets;
+  }
+
+  // each point goes into the bucket it is in, which also keeps the index and lat/lon bounds of its points
+  private synchronized Buckets makePointBuckets() {
+    if (pointBuckets != null) return pointBuckets;
+
+    int nbuckets = nbLat * nbLon;
+    int[] bucketOf = new int[lat.length];
+    int[] start = new int[nbuckets + 1];
+    for (int id = 0; id < lat.length; id++) {
+      if (Double.isNaN(lat[id]) || Double.isNaN(lon[id])) {
+        bucketOf[id] = -1;
+        continue;
+      }
+      bucketOf[id] = latBucket(lat[id]) * nbLon + lonBucket(lon[id]);
+      start[bucketOf[id] + 1]++;
+    }
+    for (int b = 0; b < nbuckets; b++)
+      start[b + 1] += start[b];
+
+    int[] items = new int[start[nbuckets]];
+    int[] next = start.clone();
+    int[] bounds = new int[4 * nbuckets];
+    double[] extent = new double[4 * nbuckets];
+    for (int b = 0; b < nbuckets; b++) {
+      bounds[4 * b] = bounds[4 * b + 2] = Integer.MAX_VALUE;
+      bounds[4 * b + 1] = bounds[4 * b + 3] = -1;
+      extent[4 * b] = extent[4 * b + 2] = Double.MAX_VALUE;
+      extent[4 * b + 1] = extent[4 * b + 3] = -Double.MAX_VALUE;
+    }
+
+    for (int id = 0; id < lat.length; id++) {
+      int b = bucketOf[id];
+      if (b < 0) continue;
+      items[next[b]++] = id;
+      int row = id / nx;
+      int col = id % nx;
+      bounds[4 * b] = Math.min(bounds[4 * b], row);
+      bounds[4 * b + 1] = Math.max(bounds[4 * b + 1], row);
+      bounds[4 * b + 2] = Math.min(bounds[4 * b + 2], col);
+      bounds[4 * b + 3] = Math.max(bounds[4 * b + 3], col);
+      extent[4 * b] = Math.min(extent[4 * b], lat[id]);
+      extent[4 * b + 1] = Math.max(extent[4 * b + 1], lat[id]);
+      extent[4 * b + 2] = Math.min(extent[4 * b + 2], lon[id]);
+      extent[4 * b + 3] = Math.max(extent[4 * b + 3], lon[id]);
+    }
+
+    pointBuckets = new Buckets(start, items, bounds, extent);
+    return pointBuckets;
+  }
+
+  // NaN if any are NaN
+  private static double min4(double a, double b, double c, double d) {
+    return Math.min(Math.min(a, b), Math.min(c, d));
+  }
+
+  private static double max4(double a, double b, double c, double d) {
+    return Math.max(Math.max(a, b), Math.max(c, d));
+  }
+
+  // items of bucket b are items[start[b]] to items[start[b+1]-1], in increasing order
+  private static class Buckets {
+    final int[] start;
+    final int[] items;
+    final int[] bounds;     // point buckets: minRow, maxRow, minCol, maxCol for each bucket
+    final double[] extent;  // point buckets: minLat, maxLat, minLon, maxLon for each bucket
+
+    Buckets(int[] start, int[] items, int[] bounds, double[] extent) {
+      this.start = start;
+      this.items = items;
+      this.bounds = bounds;
+      this.extent = extent;
+    }
+  }
+}
@@ -347,6 +347,32 @@ public class LatLonRect {
         && b.contains(lowerLeft);
   }
 
+  /**
+   * Determine if this bounding box overlaps the box of latitudes [latMin, latMax] and longitudes [lonMin, lonMax],
+   * edges included. Unlike intersect(), a box with no width or height, such as a single point, still overlaps.
+   *
+   * @param latMin south edge of the box
+   * @param latMax north edge of the box
+   * @param lonMin west edge of the box, need not be normalized
+   * @param lonMax east edge of the box, going east from lonMin
+   * @return true if they overlap
+   */
+  public boolean intersects(double latMin, double latMax, double lonMin, double lonMax) {
+    double eps = 1.0e-9;
+    if ((latMax + eps < lowerLeft.getLatitude()) || (latMin - eps > upperRight.getLatitude()))
+      return false;
+
+    double boxWidth = lonMax - lonMin;
+    if (allLongitude || width >= 360.0 || boxWidth >= 360.0)
+      return true;
+
+    // on the circle, one of the two west edges must lie within the other interval
+    double myLonMin = lowerLeft.getLongitude();
+    if (LatLonPointImpl.lonNormalFrom(lonMin, myLonMin) <= myLonMin + width + eps)
+      return true;
+    return LatLonPointImpl.lonNormalFrom(myLonMin, lonMin) <= lonMin + boxWidth + eps;
+  }
+
   /*
   * Determine if a specified LatLonRect intersects this
   * @param b the specified box to be tested
@@ -422,8 +422,12 @@ public abstract class ProjectionImpl implements Projection, java.io.Serializable
               + "from array not same length as to array");
     }
 
+    ProjectionPointImpl ppi = new ProjectionPointImpl();
+    LatLonPointImpl llpi = new LatLonPointImpl();
+
     for (int i = 0; i < from[0].length; i++) {
-      LatLonPoint endL = projToLatLon(from[0][i], from[1][i]);
+      ppi.setLocation(from[0][i], from[1][i]);
+      LatLonPoint endL = projToLatLon(ppi, llpi);  // may return a constant such as INVALID
       to[0][i] = endL.getLatitude();
       to[1][i] = endL.getLongitude();
     }
@@ -661,6 +665,76 @@ public abstract class ProjectionImpl implements Projection, java.io.Serializable
     return to;
   }
 
+  ///////////////////////////////////////////////////////////////////////////////////
+  // parallel versions of the double array methods, for large grids
+
+  /**
+   * Arrays with fewer points than this are transformed on the calling thread.
+   */
+  public static final int PARALLEL_THRESHOLD = 100 * 1000;
+
+  /**
+   * Points per task when transforming in parallel.
+   */
+  private static final int PARALLEL_CHUNK = 32 * 1024;
+
+  /**
+   * Convert projection coordinates to lat/lon coordinates, splitting large arrays across the common fork/join pool.
+   * Each chunk is handed to projToLatLon(double[][], double[][]), so subclasses that override the batch method
+   * get their optimized loop in every task. Small arrays are done on the calling thread.
+   *
+   * @param from array of projection coordinates: from[2][n], where (from[0][i], from[1][i]) is the (x, y) coordinate
+   * @param to   resulting array of lat/lon coordinates: to[2][n] where (to[0][i], to[1][i]) is the (lat, lon) coordinate
+   * @return the "to" array
+   */
+  public double[][] projToLatLonParallel(double[][] from, double[][] to) {
+    int n = from[0].length;
+    if (n < PARALLEL_THRESHOLD)
+      return projToLatLon(from, to);
+
+    int nchunks = (n + PARALLEL_CHUNK - 1) / PARALLEL_CHUNK;
+    java.util.stream.IntStream.range(0, nchunks).parallel().forEach(chunk -> {
+      int start = chunk * PARALLEL_CHUNK;
+      int len = Math.min(PARALLEL_CHUNK, n - start);
+      double[][] subFrom = new double[2][len];
+      double[][] subTo = new double[2][len];
+      System.arraycopy(from[0], start, subFrom[0], 0, len);
+      System.arraycopy(from[1], start, subFrom[1], 0, len);
+      projToLatLon(subFrom, subTo);
+      System.arraycopy(subTo[0], 0, to[0], start, len);
+      System.arraycopy(subTo[1], 0, to[1], start, len);
+    });
+    return to;
+  }
+
+  /**
+   * Convert lat/lon coordinates to projection coordinates, splitting large arrays across the common fork/join pool.
+   *
+   * @param from array of lat/lon coordinates: from[2][n], where (from[0][i], from[1][i]) is the (lat, lon) coordinate
+   * @param to   resulting array of projection coordinates: to[2][n] where (to[0][i], to[1][i]) is the (x, y) coordinate
+   * @return the "to" array
+   * @see #projToLatLonParallel
+   */
+  public double[][] latLonToProjParallel(double[][] from, double[][] to) {
+    int n = from[0].length;
+    if (n < PARALLEL_THRESHOLD)
+      return latLonToProj(from, to, INDEX_LAT, INDEX_LON);
+
+    int nchunks = (n + PARALLEL_CHUNK - 1) / PARALLEL_CHUNK;
+    java.util.stream.IntStream.range(0, nchunks).parallel().forEach(chunk -> {
+      int start = chunk * PARALLEL_CHUNK;
+      int len = Math.min(PARALLEL_CHUNK, n - start);
+      double[][] subFrom = new double[2][len];
+      double[][] subTo = new double[2][len];
+      System.arraycopy(from[0], start, subFrom[0], 0, len);
+      System.arraycopy(from[1], start, subFrom[1], 0, len);
+      latLonToProj(subFrom, subTo, INDEX_LAT, INDEX_LON);
+      System.arraycopy(subTo[0], 0, to[0], start, len);
+      System.arraycopy(subTo[1], 0, to[1], start, len);
+    });
+    return to;
+  }
+
   // bounding box utilities
 
   /**
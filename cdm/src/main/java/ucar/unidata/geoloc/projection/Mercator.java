@@ -352,5 +352,68 @@ public class Mercator extends ProjectionImpl {
     return result;
   }
 
+  /**
+   * Convert lat/lon coordinates to projection coordinates.
+   *
+   * @param from     array of lat/lon coordinates: from[2][n], where
+   *                 (from[latIndex][i], from[lonIndex][i]) is the (lat,lon)
+   *                 coordinate of the ith point
+   * @param to       resulting array of projection coordinates: to[2][n]
+   *                 where (to[0][i], to[1][i]) is the (x,y) coordinate of
+   *                 the ith point
+   * @param latIndex index of lat coordinate; must be 0 or 1
+   * @param lonIndex index of lon coordinate; must be 0 or 1
+   * @return the "to" array
+   */
+  @Override
+  public double[][] latLonToProj(double[][] from, double[][] to, int latIndex, int lonIndex) {
+    int cnt = from[0].length;
+    double[] fromLatA = from[latIndex];
+    double[] fromLonA = from[lonIndex];
+    double[] resultXA = to[INDEX_X];
+    double[] resultYA = to[INDEX_Y];
+
+    for (int i = 0; i < cnt; i++) {
+      double fromLat = fromLatA[i];
+      if ((Math.abs(90.0 - Math.abs(fromLat))) < TOLERANCE) {
+        resultXA[i] = Double.POSITIVE_INFINITY;
+        resultYA[i] = Double.POSITIVE_INFINITY;
+      } else {
+        resultXA[i] = A * Math.toRadians(LatLonPointImpl.range180(fromLonA[i] - this.lon0)) + falseEasting;
+        resultYA[i] = A * SpecialMathFunction.atanh(Math.sin(Math.toRadians(fromLat))) + falseNorthing;
+      }
+    }
+    return to;
+  }
+
+  /**
+   * Convert projection coordinates to lat/lon coordinate.
+   *
+   * @param from array of projection coordinates: from[2][n], where
+   *             (from[0][i], from[1][i]) is the (x, y) coordinate
+   *             of the ith point
+   * @param to   resulting array of lat/lon coordinates: to[2][n] where
+   *             (to[0][i], to[1][i]) is the (lat, lon) coordinate of
+   *             the ith point
+   * @return the "to" array
+   */
+  @Override
+  public double[][] projToLatLon(double[][] from, double[][] to) {
+    int cnt = from[0].length;
+    double[] fromXA = from[INDEX_X];
+    double[] fromYA = from[INDEX_Y];
+    double[] toLatA = to[INDEX_LAT];
+    double[] toLonA = to[INDEX_LON];
+
+    for (int i = 0; i < cnt; i++) {
+      double fromX = fromXA[i] - falseEasting;
+      double fromY = fromYA[i] - falseNorthing;
+      double e = Math.exp(-fromY / A);
+      toLatA[i] = Math.toDegrees(Math.PI / 2 - 2 * Math.atan(e));
+      toLonA[i] = Math.toDegrees(fromX / A) + lon0;
+    }
+    return to;
+  }
+
 }
 
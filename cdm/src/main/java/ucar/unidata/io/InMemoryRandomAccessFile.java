@@ -78,6 +78,7 @@ public class InMemoryRandomAccessFile extends ucar.unidata.io.RandomAccessFile {
 
   @Override
   protected int read_(long pos, byte[] b, int offset, int len) throws IOException {
+    if (pos >= buffer.length) return -1; // EOF
     len = Math.min(len, (int) (buffer.length - pos));
     // copy out of buffer
     System.arraycopy(buffer, (int) pos, b, offset, len);
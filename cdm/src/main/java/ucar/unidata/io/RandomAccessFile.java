@@ -623,6 +623,13 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
     this.extendMode = true;
   }
 
+  /**
+   * @return true if reads past the end of the file are zero filled, see setExtendMode()
+   */
+  public boolean isExtendMode() {
+    return extendMode;
+  }
+
   //////////////////////////////////////////////////////////////////////////////////////////////
   // Read primitives.
   //
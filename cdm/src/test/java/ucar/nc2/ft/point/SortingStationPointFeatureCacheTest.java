@@ -11,7 +11,9 @@ import java.util.LinkedList;
 import java.util.List;
 import com.google.common.collect.Ordering;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import ucar.ma2.DataType;
 import ucar.ma2.StructureDataScalar;
 import ucar.nc2.constants.FeatureType;
@@ -20,8 +22,12 @@ import ucar.nc2.ft.FeatureDatasetPoint;
 import ucar.nc2.ft.NoFactoryFoundException;
 import ucar.nc2.ft.PointFeatureIterator;
 import ucar.nc2.time.CalendarDateUnit;
+import ucar.nc2.util.DiskCache2;
 
 public class SortingStationPointFeatureCacheTest {
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     @Test
     public void test1() throws Exception {
         StructureDataScalar stationData = new StructureDataScalar("StationFeature");  // leave it empty.
@@ -114,4 +120,43 @@ public class SortingStationPointFeatureCacheTest {
             Assert.assertTrue(PointTestUtil.equals(pointIterExpected, pointIterActual));
         }
     }
+
+    @Test
+    public void testSpillToDisk() throws IOException {
+        CalendarDateUnit timeUnit = CalendarDateUnit.of(null, "days since 1970-01-01");
+        DsgFeatureCollection dummyDsg = new SimplePointFeatureCC("dummy", timeUnit, "m", FeatureType.STATION);
+
+        List<StationFeature> stationFeats = new ArrayList<>();
+        for (String name : Arrays.asList("Foo", "Bar", "Baz")) {
+            StructureDataScalar stationData = new StructureDataScalar("StationFeature");
+            stationData.addMemberString("name", null, null, name, 3);
+            stationFeats.add(new StationFeatureImpl(name, "desc", "123", 30, 60, 5000, 20, stationData));
+        }
+
+        List<StationPointFeature> spfList = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            StationFeature stationFeat = stationFeats.get((i * 7) % 3);
+            spfList.add(makeStationPointFeature(dummyDsg, stationFeat, timeUnit, 100 - i, i, i / 2.0));
+        }
+
+        // Stations in name order; within a station, features keep the order they were added in.
+        SortingStationPointFeatureCache expected =
+                new SortingStationPointFeatureCache(SortingStationPointFeatureCache.stationNameComparator);
+        DiskCache2 diskCache = new DiskCache2(tempFolder.getRoot().getAbsolutePath(), false, 0, 0);
+
+        try (SortingStationPointFeatureCache actual = new SortingStationPointFeatureCache(
+                SortingStationPointFeatureCache.stationNameComparator, diskCache, 2000)) {
+            for (StationPointFeature stationPointFeat : spfList) {
+                expected.add(stationPointFeat);
+                actual.add(stationPointFeat);
+            }
+
+            Assert.assertEquals(0, expected.getNumRuns());
+            Assert.assertTrue(actual.getNumRuns() > 1);
+            Assert.assertTrue(
+                    PointTestUtil.equals(expected.getPointFeatureIterator(), actual.getPointFeatureIterator()));
+        }
+
+        Assert.assertArrayEquals(new String[0], tempFolder.getRoot().list());
+    }
 }
@@ -0,0 +1,116 @@
+package ucar.nc2.ft.point;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ucar.unidata.geoloc.LatLonPointImpl;
+import ucar.unidata.geoloc.LatLonRect;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compare the StationHelper spatial index against a linear scan.
+ *
+ * @since 10/19/2016
+ */
+public class StationHelperTest {
+    private final Random random = new Random(42);
+
+    private StationHelper makeHelper(int n) {
+        List<StationFeature> stations = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            double lat = -90 + 180 * random.nextDouble();
+            double lon = -180 + 360 * random.nextDouble();
+            if (i % 100 == 0) lon += 360;  // some unnormalized longitudes
+            stations.add(new StationFeatureImpl("stn" + i, null, null, lat, lon, 0, 0, null));
+        }
+        // some clustered stations, and some on cell edges
+        stations.add(new StationFeatureImpl("edge1", null, null, 0.0, 180.0, 0, 0, null));
+        stations.add(new StationFeatureImpl("edge2", null, null, 90.0, -180.0, 0, 0, null));
+        stations.add(new StationFeatureImpl("edge3", null, null, -90.0, 0.0, 0, 0, null));
+        for (int i = 0; i < 50; i++)
+            stations.add(new StationFeatureImpl("cluster" + i, null, null, 40 + random.nextDouble() * .01, -105 + random.nextDouble() * .01, 0, 0, null));
+
+        StationHelper helper = new StationHelper();
+        helper.setStations(stations);
+        return helper;
+    }
+
+    private List<StationFeature> scan(StationHelper helper, LatLonRect bb) {
+        List<StationFeature> result = new ArrayList<>();
+        for (StationFeature s : helper.getStationFeatures())
+            if (bb.contains(s.getLatitude(), s.getLongitude()))
+                result.add(s);
+        return result;
+    }
+
+    private double distance(StationFeature s, LatLonPointImpl pt) {
+        return StationIndex.distance(pt.getLatitude(), pt.getLongitude(), s.getLatitude(), s.getLongitude());
+    }
+
+    @Test
+    public void testBoundingBox() throws IOException {
+        for (int n : new int[]{0, 1, 10, 1000, 30000}) {
+            StationHelper helper = makeHelper(n);
+            List<LatLonRect> boxes = new ArrayList<>();
+            boxes.add(new LatLonRect());
+            boxes.add(new LatLonRect(new LatLonPointImpl(-10, 170), 20, 20));    // crosses the dateline
+            boxes.add(new LatLonRect(new LatLonPointImpl(-10, -190), 20, 20));
+            boxes.add(new LatLonRect(new LatLonPointImpl(39, -106), 2, 2));
+            boxes.add(new LatLonRect(new LatLonPointImpl(0, 180), 0, 0));
+            for (int i = 0; i < 200; i++) {
+                double lat = -90 + 180 * random.nextDouble();
+                double lon = -180 + 360 * random.nextDouble();
+                boxes.add(new LatLonRect(new LatLonPointImpl(lat, lon), 30 * random.nextDouble(), 60 * random.nextDouble()));
+            }
+
+            for (LatLonRect bb : boxes)
+                Assert.assertEquals(n + " " + bb, scan(helper, bb), helper.getStationFeatures(bb));
+        }
+    }
+
+    @Test
+    public void testNearest() {
+        StationHelper helper = makeHelper(30000);
+        List<StationFeature> all = helper.getStationFeatures();
+        for (int i = 0; i < 200; i++) {
+            LatLonPointImpl pt;
+            if (i == 0) pt = new LatLonPointImpl(89.99, 0);
+            else if (i == 1) pt = new LatLonPointImpl(0, 179.99);
+            else pt = new LatLonPointImpl(-90 + 180 * random.nextDouble(), -180 + 360 * random.nextDouble());
+
+            double[] dist = new double[all.size()];
+            for (int j = 0; j < dist.length; j++)
+                dist[j] = distance(all.get(j), pt);
+            double[] sorted = dist.clone();
+            Arrays.sort(sorted);
+
+            List<StationFeature> nearest = helper.getNearestStationFeatures(pt, 5);
+            Assert.assertEquals(5, nearest.size());
+            for (int k = 0; k < 5; k++)
+                Assert.assertEquals(pt.toString(), sorted[k], distance(nearest.get(k), pt), 1.0e-9);
+
+            double radius = 500 * random.nextDouble();
+            int count = 0;
+            for (double d : dist)
+                if (d <= radius) count++;
+            List<StationFeature> within = helper.getStationFeatures(pt, radius);
+            Assert.assertEquals(pt + " " + radius, count, within.size());
+        }
+
+        Assert.assertEquals(all.size(), helper.getNearestStationFeatures(new LatLonPointImpl(0, 0), all.size() + 10).size());
+    }
+
+    @Test
+    public void testAddStation() throws IOException {
+        StationHelper helper = makeHelper(100);
+        LatLonRect bb = new LatLonRect(new LatLonPointImpl(10, 10), 1, 1);
+        int before = helper.getStationFeatures(bb).size();
+        helper.addStation(new StationFeatureImpl("added", null, null, 10.5, 10.5, 0, 0, null));
+        Assert.assertEquals(before + 1, helper.getStationFeatures(bb).size());
+        Assert.assertEquals("added", helper.getNearestStationFeature(new LatLonPointImpl(10.5, 10.5)).getName());
+    }
+}
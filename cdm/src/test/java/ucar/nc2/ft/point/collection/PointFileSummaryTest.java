@@ -0,0 +1,109 @@
+package ucar.nc2.ft.point.collection;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ucar.ma2.StructureDataScalar;
+import ucar.nc2.constants.FeatureType;
+import ucar.nc2.ft.DsgFeatureCollection;
+import ucar.nc2.ft.point.SimplePointFeatureCC;
+import ucar.nc2.ft.point.SimpleStationPointFeature;
+import ucar.nc2.ft.point.StationFeature;
+import ucar.nc2.ft.point.StationFeatureImpl;
+import ucar.nc2.time.CalendarDate;
+import ucar.nc2.time.CalendarDateRange;
+import ucar.nc2.time.CalendarDateUnit;
+import ucar.unidata.geoloc.LatLonPointImpl;
+import ucar.unidata.geoloc.LatLonRect;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Test building, persisting and querying a PointFileSummary.
+ *
+ * @since 10/19/2016
+ */
+public class PointFileSummaryTest {
+    private final CalendarDateUnit timeUnit = CalendarDateUnit.of(null, "days since 1970-01-01");
+    private final DsgFeatureCollection dsg = new SimplePointFeatureCC("dummy", timeUnit, "m", FeatureType.STATION);
+
+    private PointFileSummary makeSummary() {
+        StationFeature denver = new StationFeatureImpl("DEN", null, null, 39.8, -104.7, 1650, 0, new StructureDataScalar("DEN"));
+        StationFeature boulder = new StationFeatureImpl("BOU", null, null, 40.0, -105.3, 1600, 0, new StructureDataScalar("BOU"));
+
+        PointFileSummary.Builder builder = new PointFileSummary.Builder(true);
+        builder.add(new SimpleStationPointFeature(dsg, denver, 10, 10, timeUnit, new StructureDataScalar("obs")));
+        builder.add(new SimpleStationPointFeature(dsg, boulder, 12, 12, timeUnit, new StructureDataScalar("obs")));
+        builder.add(new SimpleStationPointFeature(dsg, denver, 11, 11, timeUnit, new StructureDataScalar("obs")));
+        return builder.build(1234L);
+    }
+
+    private CalendarDateRange days(double start, double end) {
+        return CalendarDateRange.of(timeUnit.makeCalendarDate(start), timeUnit.makeCalendarDate(end));
+    }
+
+    @Test
+    public void testQueries() {
+        PointFileSummary summary = makeSummary();
+        Assert.assertEquals(3, summary.nobs);
+
+        Assert.assertTrue(summary.intersects((CalendarDateRange) null));
+        Assert.assertTrue(summary.intersects(days(0, 10)));
+        Assert.assertTrue(summary.intersects(days(11.5, 11.6)));
+        Assert.assertFalse(summary.intersects(days(0, 9.9)));
+        Assert.assertFalse(summary.intersects(days(12.1, 20)));
+
+        Assert.assertTrue(summary.intersects((LatLonRect) null));
+        Assert.assertTrue(summary.intersects(new LatLonRect(new LatLonPointImpl(39, -106), 2, 2)));
+        Assert.assertFalse(summary.intersects(new LatLonRect(new LatLonPointImpl(-10, 170), 20, 20)));
+
+        Assert.assertTrue(summary.hasStation(null));
+        Assert.assertTrue(summary.hasStation(Arrays.asList("ABC", "BOU")));
+        Assert.assertFalse(summary.hasStation(Collections.singleton("ABC")));
+    }
+
+    @Test
+    public void testSingleStation() {
+        // all obs at one place: the box has no width or height
+        StationFeature denver = new StationFeatureImpl("DEN", null, null, 39.8, -104.7, 1650, 0, new StructureDataScalar("DEN"));
+        PointFileSummary.Builder builder = new PointFileSummary.Builder(true);
+        builder.add(new SimpleStationPointFeature(dsg, denver, 10, 10, timeUnit, new StructureDataScalar("obs")));
+        builder.add(new SimpleStationPointFeature(dsg, denver, 11, 11, timeUnit, new StructureDataScalar("obs")));
+        PointFileSummary summary = builder.build(1234L);
+        Assert.assertEquals(summary.lonMin, summary.lonMax, 0.0);
+
+        Assert.assertTrue(summary.intersects(new LatLonRect(new LatLonPointImpl(39, -106), 2, 2)));
+        Assert.assertTrue(summary.intersects(new LatLonRect(new LatLonPointImpl(39.8, -104.7), 1, 1)));  // on the corner
+        Assert.assertTrue(summary.intersects(new LatLonRect(new LatLonPointImpl(30, 250), 20, 20)));    // same place, 0..360
+        Assert.assertFalse(summary.intersects(new LatLonRect(new LatLonPointImpl(39, -104), 2, 2)));
+        Assert.assertFalse(summary.intersects(new LatLonRect(new LatLonPointImpl(40, -106), 2, 2)));
+    }
+
+    @Test
+    public void testEmptyFile() {
+        PointFileSummary summary = new PointFileSummary.Builder(false).build(0);
+        Assert.assertFalse(summary.intersects((CalendarDateRange) null));
+        Assert.assertFalse(summary.intersects((LatLonRect) null));
+        Assert.assertFalse(summary.hasStation(null));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        PointFileSummary summary = makeSummary();
+        PointFileSummary copy = PointFileSummary.fromBytes(summary.toBytes());
+        Assert.assertNotNull(copy);
+
+        Assert.assertEquals(summary.lastModified, copy.lastModified);
+        Assert.assertEquals(summary.nobs, copy.nobs);
+        Assert.assertEquals(summary.minTime, copy.minTime);
+        Assert.assertEquals(summary.maxTime, copy.maxTime);
+        Assert.assertEquals(summary.latMin, copy.latMin, 0.0);
+        Assert.assertEquals(summary.latMax, copy.latMax, 0.0);
+        Assert.assertEquals(summary.lonMin, copy.lonMin, 0.0);
+        Assert.assertEquals(summary.lonMax, copy.lonMax, 0.0);
+        Assert.assertEquals(summary.stations, copy.stations);
+
+        Assert.assertEquals(CalendarDate.of(null, 1970, 1, 11, 0, 0, 0).getMillis(), copy.minTime);
+    }
+}
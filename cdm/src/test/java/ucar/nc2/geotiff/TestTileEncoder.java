@@ -0,0 +1,203 @@
+/*
+ * Copyright 1998-2015 John Caron and University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.geotiff;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Inflater;
+
+/**
+ * Decode what TileEncoder makes and compare with the original tile.
+ *
+ * @since 10/19/2016
+ */
+public class TestTileEncoder {
+
+  @Test
+  public void testLzwRandom() {
+    // random bytes fill the string table, so the encoder has to send CLEAR
+    byte[] raw = new byte[256 * 256];
+    new Random(17).nextBytes(raw);
+    checkLzw(raw, 256, TileEncoder.PREDICTOR_NONE);
+  }
+
+  @Test
+  public void testLzwRepetitive() {
+    byte[] raw = new byte[256 * 256];
+    for (int i = 0; i < raw.length; i++)
+      raw[i] = (byte) ((i / 1000) % 7);
+    byte[] encoded = checkLzw(raw, 256, TileEncoder.PREDICTOR_NONE);
+    Assert.assertTrue(encoded.length < raw.length / 10);
+  }
+
+  @Test
+  public void testLzwEmpty() {
+    byte[] encoded = new TileEncoder.Lzw().encode(new byte[0], new ByteArrayOutputStream());
+    Assert.assertEquals(0, lzwDecode(encoded).length);
+  }
+
+  @Test
+  public void testLzwHorizontalPredictor() {
+    int tileSize = 64;
+    byte[] raw = new byte[tileSize * tileSize];
+    for (int row = 0; row < tileSize; row++)
+      for (int col = 0; col < tileSize; col++)
+        raw[row * tileSize + col] = (byte) (row + 3 * col);
+    checkLzw(raw, tileSize, TileEncoder.PREDICTOR_HORIZONTAL);
+  }
+
+  @Test
+  public void testDeflateFloatPredictor() throws Exception {
+    int tileSize = 32;
+    ByteBuffer bb = ByteBuffer.allocate(tileSize * tileSize * 4);
+    for (int row = 0; row < tileSize; row++)
+      for (int col = 0; col < tileSize; col++)
+        bb.putFloat((float) (273.15 + Math.sin(row * .1) * col));
+    byte[] raw = bb.array();
+    byte[] expected = raw.clone();
+
+    TileEncoder encoder = new TileEncoder(TileEncoder.COMPRESSION_DEFLATE, TileEncoder.PREDICTOR_FLOATING_POINT, tileSize, 4);
+    byte[] encoded = encoder.encode(raw);
+    encoder.end();
+
+    Inflater inflater = new Inflater();
+    inflater.setInput(encoded);
+    byte[] tile = new byte[expected.length];
+    Assert.assertEquals(tile.length, inflater.inflate(tile));
+    Assert.assertTrue(inflater.finished());
+    inflater.end();
+
+    undoFloatingPointPredictor(tile, tileSize, 4);
+    Assert.assertArrayEquals(expected, tile);
+  }
+
+  @Test
+  public void testNone() {
+    byte[] raw = new byte[16 * 16 * 4];
+    new Random(17).nextBytes(raw);
+    byte[] expected = raw.clone();
+
+    TileEncoder encoder = new TileEncoder(TileEncoder.COMPRESSION_NONE, TileEncoder.PREDICTOR_NONE, 16, 4);
+    Assert.assertEquals(raw.length, encoder.getTileBytes());
+    byte[] encoded = encoder.encode(raw);
+    encoder.end();
+    Assert.assertSame(raw, encoded);
+    Assert.assertArrayEquals(expected, encoded);
+  }
+
+  private byte[] checkLzw(byte[] raw, int tileSize, int predictor) {
+    byte[] expected = raw.clone();
+    TileEncoder encoder = new TileEncoder(TileEncoder.COMPRESSION_LZW, predictor, tileSize, 1);
+    byte[] encoded = encoder.encode(raw);
+    encoder.end();
+
+    byte[] tile = lzwDecode(encoded);
+    Assert.assertEquals(expected.length, tile.length);
+    if (predictor == TileEncoder.PREDICTOR_HORIZONTAL) {
+      for (int start = 0; start < tile.length; start += tileSize)
+        for (int i = start + 1; i < start + tileSize; i++)
+          tile[i] += tile[i - 1];
+    }
+    Assert.assertArrayEquals(expected, tile);
+    return encoded;
+  }
+
+  private void undoFloatingPointPredictor(byte[] tile, int tileSize, int elemSize) {
+    int rowBytes = tileSize * elemSize;
+    byte[] row = new byte[rowBytes];
+    for (int start = 0; start < tile.length; start += rowBytes) {
+      for (int i = start + 1; i < start + rowBytes; i++)
+        tile[i] += tile[i - 1];
+      for (int col = 0; col < tileSize; col++)
+        for (int b = 0; b < elemSize; b++)
+          row[col * elemSize + b] = tile[start + b * tileSize + col];
+      System.arraycopy(row, 0, tile, start, rowBytes);
+    }
+  }
+
+  // TIFF LZW as libtiff reads it: most significant bit first, code width bumped one code early
+  static byte[] lzwDecode(byte[] in) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[][] table = new byte[4096][];
+    int width = 9;
+    int next = 258;
+    byte[] prev = null;
+    long bitPos = 0;
+
+    while (true) {
+      Assert.assertTrue("no EOI", bitPos + width <= 8L * in.length);
+      int code = 0;
+      for (int i = 0; i < width; i++, bitPos++) {
+        int bit = (in[(int) (bitPos >> 3)] >> (7 - (int) (bitPos & 7))) & 1;
+        code = (code << 1) | bit;
+      }
+
+      if (code == 257)  // EOI
+        break;
+      if (code == 256) { // CLEAR
+        width = 9;
+        next = 258;
+        prev = null;
+        continue;
+      }
+
+      byte[] entry;
+      if (code < 256) {
+        entry = new byte[] {(byte) code};
+      } else if (code < next) {
+        entry = table[code];
+      } else {
+        Assert.assertTrue("bad code " + code, code == next && prev != null);
+        entry = Arrays.copyOf(prev, prev.length + 1);
+        entry[prev.length] = prev[0];
+      }
+      out.write(entry, 0, entry.length);
+
+      if (prev != null) {
+        byte[] added = Arrays.copyOf(prev, prev.length + 1);
+        added[prev.length] = entry[0];
+        table[next++] = added;
+      }
+      prev = entry;
+      if (next >= (1 << width) - 1 && width < 12)
+        width++;
+    }
+    return out.toByteArray();
+  }
+
+}
@@ -73,6 +73,17 @@ public class TestBitReader {
 		assertEquals(-945, (int) bu.bits2SInt(11));
 	}
 
+	@Test
+	public void testSetBitOffset() throws IOException {
+		BitReader bu = new BitReader(new byte[] {(byte)71,(byte)200,(byte)235,(byte)216,(byte)128,(byte)0});
+		bu.setBitOffset(11);
+		assertEquals(570, (int) bu.bits2UInt(11));
+		bu.setBitOffset(0);
+		assertEquals(574, (int) bu.bits2UInt(11));
+		bu.setBitOffset(16);
+		assertEquals(235, (int) bu.bits2UInt(8));
+	}
+
 	@Test
 	@Ignore("why is this failing?")
 	public void testSignedNegative3() throws IOException {
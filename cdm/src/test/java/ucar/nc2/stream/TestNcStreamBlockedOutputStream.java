@@ -0,0 +1,167 @@
+/*
+ * Copyright 1998-2015 John Caron and University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.stream;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ucar.ma2.DataType;
+import ucar.ma2.Section;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Read what NcStreamBlockedOutputStream writes with a plain InflaterInputStream and with NcStreamReader.inflateBlocks.
+ *
+ * @since 10/19/2016
+ */
+public class TestNcStreamBlockedOutputStream {
+  private static final int[] levels = new int[] {-1, 1, 9};
+  private static final int blockSize = 1000;
+
+  @Test
+  public void testSmallBlocks() throws IOException {
+    // empty, one partial block, exactly one block, an exact multiple, blocks and a remainder
+    for (int level : levels)
+      for (int size : new int[] {0, 500, blockSize, 3 * blockSize, 3 * blockSize + 500}) {
+        byte[] data = makeData(size);
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        OutputStream os = new NcStreamBlockedOutputStream(bout, blockSize, level);
+        os.write(data);
+        os.flush();
+        checkRead(data, bout.toByteArray(), level + "/" + size);
+      }
+  }
+
+  @Test
+  public void testSetupStream() throws IOException {
+    int defaultBlock = NcStreamBlockedOutputStream.DEFAULT_BLOCK_SIZE;
+    for (int level : levels)
+      for (int size : new int[] {2 * defaultBlock, 2 * defaultBlock + 12345}) {
+        byte[] data = makeData(size);
+        checkRead(data, writeSetupStream(data, level), level + "/" + size);
+      }
+  }
+
+  @Test
+  public void testCorruptBlock() throws IOException {
+    byte[] data = makeData(3 * blockSize + 500);
+    byte[] stream = writeBlocked(data);
+    stream[stream.length / 3] ^= 0x55; // in the compressed blocks
+    checkCorrupt(data, stream);
+  }
+
+  @Test
+  public void testCorruptAdler() throws IOException {
+    byte[] data = makeData(3 * blockSize + 500);
+    byte[] stream = writeBlocked(data);
+    int nblocks = ByteBuffer.wrap(stream).getInt(stream.length - 8);
+    int adlerPos = stream.length - NcStreamBlockedOutputStream.TRAILER_SIZE - 4 * nblocks - 4;
+    stream[adlerPos] ^= 0x55;
+    checkCorrupt(data, stream);
+  }
+
+  private byte[] makeData(int size) {
+    // compressible, but not trivially
+    Random r = new Random(size);
+    byte[] data = new byte[size];
+    for (int i = 0; i < size; i++)
+      data[i] = (byte) ((i / 7) % 13 + r.nextInt(4));
+    return data;
+  }
+
+  private byte[] writeBlocked(byte[] data) throws IOException {
+    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    OutputStream os = new NcStreamBlockedOutputStream(bout, blockSize, -1);
+    os.write(data);
+    os.flush();
+    return bout.toByteArray();
+  }
+
+  private byte[] writeSetupStream(byte[] data, int level) throws IOException {
+    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    OutputStream os = NcStreamCompression.deflate(level).setupStream(bout, data.length);
+    Assert.assertTrue(os instanceof NcStreamBlockedOutputStream);
+    os.write(data);
+    os.flush();
+    return bout.toByteArray();
+  }
+
+  // stream is the vint compressed size, then the compressed data
+  private void checkRead(byte[] data, byte[] stream, String what) throws IOException {
+    // any inflater reads the blocks as one zlib stream, and checks the adler32
+    InputStream is = new ByteArrayInputStream(stream);
+    int compressedSize = NcStream.readVInt(is);
+    Assert.assertEquals(what, compressedSize, is.available());
+    ByteArrayOutputStream inflated = new ByteArrayOutputStream();
+    try (InputStream in = new InflaterInputStream(is)) {
+      byte[] buff = new byte[8192];
+      int n;
+      while ((n = in.read(buff)) > 0)
+        inflated.write(buff, 0, n);
+    }
+    Assert.assertArrayEquals(what, data, inflated.toByteArray());
+
+    Assert.assertArrayEquals(what, data, readData(data.length, stream));
+  }
+
+  private void checkCorrupt(byte[] data, byte[] stream) {
+    try {
+      readData(data.length, stream);
+      Assert.fail("corrupted data not detected");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  // wrap the stream in a data message, so it goes through NcStreamReader.inflateBlocks()
+  private byte[] readData(int size, byte[] stream) throws IOException {
+    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    bout.write(NcStream.MAGIC_DATA);
+    byte[] proto = NcStream.encodeDataProto("data", DataType.BYTE, new Section(new int[] {size}), true, size).toByteArray();
+    NcStream.writeVInt(bout, proto.length);
+    bout.write(proto);
+    bout.write(stream);
+
+    NcStreamReader.DataResult result = new NcStreamReader().readData(new ByteArrayInputStream(bout.toByteArray()), null, "test");
+    Assert.assertEquals(size, result.data.getSize());
+    return (byte[]) result.data.get1DJavaArray(DataType.BYTE);
+  }
+
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 1998-2015 John Caron and University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.stream;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.*;
+import ucar.nc2.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Compare NcStreamWriter.sendDataDirect() with sendData2(), and NcStreamWriterChannel.sendData(),
+ * all read back with NcStreamReader.
+ *
+ * @since 10/19/2016
+ */
+public class TestNcStreamWriteDirect {
+  @ClassRule
+  public static TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static String filename;
+
+  // two record variables, so records of "rec" are not contiguous
+  @BeforeClass
+  public static void makeFile() throws IOException, InvalidRangeException {
+    filename = tempFolder.newFile("testNcStreamWriteDirect.nc").getAbsolutePath();
+    try (NetcdfFileWriter writer = NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3, filename)) {
+      writer.addUnlimitedDimension("time");
+      writer.addDimension(null, "y", 20);
+      writer.addDimension(null, "x", 30);
+      Variable fixed = writer.addVariable(null, "fixed", DataType.FLOAT, "y x");
+      Variable rec = writer.addVariable(null, "rec", DataType.INT, "time y x");
+      Variable rec2 = writer.addVariable(null, "rec2", DataType.SHORT, "time");
+      writer.create();
+
+      writer.write(fixed, makeData(DataType.FLOAT, new int[] {20, 30}));
+      writer.write(rec, new int[] {0, 0, 0}, makeData(DataType.INT, new int[] {5, 20, 30}));
+      writer.write(rec2, new int[] {0}, makeData(DataType.SHORT, new int[] {5}));
+    }
+  }
+
+  private static Array makeData(DataType dt, int[] shape) {
+    Array data = Array.factory(dt, shape);
+    IndexIterator iter = data.getIndexIterator();
+    int count = 0;
+    while (iter.hasNext())
+      iter.setDoubleNext(count++ * 1.5 - 100);
+    return data;
+  }
+
+  @Test
+  public void testFixed() throws IOException, InvalidRangeException {
+    checkDirect("fixed", null, true);
+    checkDirect("fixed", "5:14,:", true);
+  }
+
+  @Test
+  public void testRecord() throws IOException, InvalidRangeException {
+    checkDirect("rec", null, true);   // one byte range per record, LayoutRegularSegmented
+    checkDirect("rec", "1:3,:,:", true);
+  }
+
+  @Test
+  public void testStrided() throws IOException, InvalidRangeException {
+    // many small byte ranges, so sendDataDirect declines and sendData2 is used
+    checkDirect("fixed", "0:19:2,0:29:3", false);
+    checkDirect("rec", "0:4:2,:,5:9", false);
+  }
+
+  // a truncated file is opened in extend mode, where reads past the end are zero filled;
+  // FileChannel.transferTo() doesn't do that, so the data must not be sent directly
+  @Test
+  public void testTruncated() throws IOException, InvalidRangeException {
+    File truncated = tempFolder.newFile("testNcStreamWriteDirectTruncated.nc");
+    Files.copy(new File(filename).toPath(), truncated.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    try (java.io.RandomAccessFile raf = new java.io.RandomAccessFile(truncated, "rw")) {
+      raf.setLength(raf.length() - 1000); // part of the last record
+    }
+
+    String location = truncated.getAbsolutePath();
+    checkDirect(location, "rec", null, false);
+    checkDirect(location, "rec", "4,:,:", false);
+    checkDirect(location, "fixed", null, false);
+  }
+
+  private void checkDirect(String varName, String sectionSpec, boolean expectDirect) throws IOException, InvalidRangeException {
+    checkDirect(filename, varName, sectionSpec, expectDirect);
+  }
+
+  private void checkDirect(String filename, String varName, String sectionSpec, boolean expectDirect) throws IOException, InvalidRangeException {
+    try (NetcdfFile ncfile = NetcdfFile.open(filename)) {
+      Variable v = ncfile.findVariable(varName);
+      Assert.assertNotNull(varName, v);
+      Section section = (sectionSpec == null) ? v.getShapeAsSection() : new Section(sectionSpec);
+      Array expected = v.read(section);
+      NcStreamWriter writer = new NcStreamWriter(ncfile, filename);
+
+      ByteArrayOutputStream direct = new ByteArrayOutputStream();
+      long size = writer.sendDataDirect(v, section, direct, NcStreamCompression.none());
+      if (!expectDirect) {
+        Assert.assertEquals(-1, size);
+        Assert.assertEquals("nothing written", 0, direct.size());
+      } else {
+        Assert.assertEquals(direct.size(), size);
+        checkByteOrder(direct.toByteArray());
+        compare(ncfile, filename, direct.toByteArray(), expected);
+      }
+
+      ByteArrayOutputStream indirect = new ByteArrayOutputStream();
+      writer.sendData2(v, section, indirect, NcStreamCompression.none());
+      compare(ncfile, filename, indirect.toByteArray(), expected);
+    }
+  }
+
+  @Test
+  public void testChannel() throws IOException, InvalidRangeException {
+    try (NetcdfFile ncfile = NetcdfFile.open(filename)) {
+      NcStreamWriterChannel writer = new NcStreamWriterChannel(ncfile, filename);
+      for (String varName : new String[] {"fixed", "rec", "rec2"}) {
+        Variable v = ncfile.findVariable(varName);
+        Assert.assertNotNull(varName, v);
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        writer.sendData(v, v.getShapeAsSection(), Channels.newChannel(bout), NcStreamCompression.none());
+        checkByteOrder(bout.toByteArray());
+        compare(ncfile, filename, bout.toByteArray(), v.read());
+      }
+    }
+  }
+
+  // the data proto must say big-endian, which is what the netCDF-3 bytes are
+  private void checkByteOrder(byte[] message) throws IOException {
+    InputStream is = new ByteArrayInputStream(message);
+    byte[] magic = new byte[4];
+    NcStream.readFully(is, magic);
+    Assert.assertTrue(NcStream.test(magic, NcStream.MAGIC_DATA));
+    byte[] dp = new byte[NcStream.readVInt(is)];
+    NcStream.readFully(is, dp);
+    Assert.assertEquals(ByteOrder.BIG_ENDIAN, NcStream.decodeDataByteOrder(NcStreamProto.Data.parseFrom(dp)));
+  }
+
+  private void compare(NetcdfFile ncfile, String filename, byte[] message, Array expected) throws IOException {
+    InputStream is = new ByteArrayInputStream(message);
+    NcStreamReader.DataResult result = new NcStreamReader().readData(is, ncfile, filename);
+    Assert.assertEquals("whole message read", -1, is.read());
+    Assert.assertTrue(result.varNameFullEsc, MAMath.equals(expected, result.data));
+  }
+
+}
@@ -0,0 +1,113 @@
+package ucar.unidata.geoloc;
+
+import org.junit.Assert;
+import org.junit.Test;
+import ucar.ma2.ArrayDouble;
+
+import java.util.Random;
+
+/**
+ * Compare LatLonGridIndex with brute force search on a rotated, stretched grid.
+ *
+ * @since 10/19/2016
+ */
+public class TestLatLonGridIndex {
+  private static final int ny = 120, nx = 200;
+  private final ArrayDouble.D2 lat = new ArrayDouble.D2(ny, nx);
+  private final ArrayDouble.D2 lon = new ArrayDouble.D2(ny, nx);
+
+  public TestLatLonGridIndex() {
+    double angle = Math.toRadians(30);
+    for (int j = 0; j < ny; j++) {
+      for (int i = 0; i < nx; i++) {
+        double x = 0.1 * i + 0.0005 * i * i;
+        double y = 0.1 * j;
+        lat.set(j, i, 10.0 + x * Math.sin(angle) + y * Math.cos(angle));
+        lon.set(j, i, -80.0 + x * Math.cos(angle) - y * Math.sin(angle));
+      }
+    }
+    lat.set(5, 7, Double.NaN);  // missing value
+  }
+
+  // same test as HorizCoordSys2D
+  private boolean contains(double wantLat, double wantLon, int[] rectIndex) {
+    int row = rectIndex[0];
+    int col = rectIndex[1];
+    double[] x = {lon.get(row, col), lon.get(row, col + 1), lon.get(row + 1, col + 1), lon.get(row + 1, col)};
+    double[] y = {lat.get(row, col), lat.get(row, col + 1), lat.get(row + 1, col + 1), lat.get(row + 1, col)};
+    for (int k = 0; k < 4; k++)
+      if (Double.isNaN(x[k]) || Double.isNaN(y[k])) return false;
+    boolean sign = det(x[0], y[0], x[1], y[1], wantLon, wantLat) > 0;
+    for (int k = 1; k < 4; k++)
+      if (sign != det(x[k], y[k], x[(k + 1) % 4], y[(k + 1) % 4], wantLon, wantLat) > 0) return false;
+    return true;
+  }
+
+  private static double det(double x0, double y0, double x1, double y1, double x2, double y2) {
+    return x1 * y2 - y1 * x2 - x0 * y2 + y0 * x2 + x0 * y1 - y0 * x1;
+  }
+
+  private boolean findCellBrute(double wantLat, double wantLon, int[] rectIndex) {
+    for (int row = 0; row < ny - 1; row++)
+      for (int col = 0; col < nx - 1; col++) {
+        rectIndex[0] = row;
+        rectIndex[1] = col;
+        if (contains(wantLat, wantLon, rectIndex)) return true;
+      }
+    return false;
+  }
+
+  @Test
+  public void testFindCell() {
+    LatLonGridIndex index = new LatLonGridIndex(lat, lon);
+    Random random = new Random(17);
+    int[] want = new int[2];
+    int[] got = new int[2];
+    int nfound = 0;
+    for (int n = 0; n < 2000; n++) {
+      double wantLat = 5.0 + 30.0 * random.nextDouble();
+      double wantLon = -90.0 + 50.0 * random.nextDouble();
+      boolean found = findCellBrute(wantLat, wantLon, want);
+      Assert.assertEquals(wantLat + " " + wantLon, found, index.findCell(wantLat, wantLon, this::contains, got));
+      if (found) {
+        Assert.assertArrayEquals(wantLat + " " + wantLon, want, got);
+        nfound++;
+      }
+    }
+    Assert.assertTrue(nfound > 100);
+  }
+
+  @Test
+  public void testFindBounds() {
+    LatLonGridIndex index = new LatLonGridIndex(lat, lon);
+    Random random = new Random(42);
+    for (int n = 0; n < 500; n++) {
+      double minLat = 5.0 + 30.0 * random.nextDouble();
+      double maxLat = minLat + 15.0 * random.nextDouble();
+      double minLon = -90.0 + 50.0 * random.nextDouble();
+      double maxLon = minLon + 25.0 * random.nextDouble();
+
+      int[] want = {Integer.MAX_VALUE, -1, Integer.MAX_VALUE, -1};
+      for (int row = 0; row < ny; row++)
+        for (int col = 0; col < nx; col++) {
+          double la = lat.get(row, col);
+          double lo = lon.get(row, col);
+          if (la >= minLat && la <= maxLat && lo >= minLon && lo <= maxLon) {
+            want[0] = Math.min(want[0], row);
+            want[1] = Math.max(want[1], row);
+            want[2] = Math.min(want[2], col);
+            want[3] = Math.max(want[3], col);
+          }
+        }
+
+      int[] got = index.findBounds(minLat, maxLat, minLon, maxLon);
+      if (want[1] < 0)
+        Assert.assertNull(got);
+      else
+        Assert.assertArrayEquals(want, got);
+    }
+
+    Assert.assertArrayEquals(new int[]{0, ny - 1, 0, nx - 1}, index.findBounds(-90, 90, -180, 180));
+    Assert.assertNull(index.findBounds(-90, -80, -180, 180));
+  }
+}
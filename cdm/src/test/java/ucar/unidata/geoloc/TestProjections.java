@@ -471,5 +471,34 @@ public class TestProjections {
     assert p.equals(p2);
   }
 
+  // batch (and parallel batch) transforms must agree with the single point methods
+  private void testBatch(ProjectionImpl proj, int n) {
+    java.util.Random r = new java.util.Random(1234);
+    double[][] latlon = new double[2][n];
+    for (int i = 0; i < n; i++) {
+      latlon[0][i] = 140.0 * (r.nextDouble() - .5);
+      latlon[1][i] = 120.0 * (r.nextDouble() - .5);
+    }
+    double[][] xy = proj.latLonToProjParallel(latlon, new double[2][n]);
+    double[][] back = proj.projToLatLonParallel(xy, new double[2][n]);
+    for (int i = 0; i < n; i += 97) {
+      ProjectionPoint p = proj.latLonToProj(latlon[0][i], latlon[1][i]);
+      Assert.assertEquals(proj.getName(), p.getX(), xy[0][i], 1.0e-6);
+      Assert.assertEquals(proj.getName(), p.getY(), xy[1][i], 1.0e-6);
+      LatLonPoint ll = proj.projToLatLon(xy[0][i], xy[1][i]);
+      Assert.assertEquals(proj.getName(), ll.getLatitude(), back[0][i], 1.0e-6);
+      Assert.assertEquals(proj.getName(), ll.getLongitude(), back[1][i], 1.0e-6);
+    }
+  }
+
+  @Test
+  public void testBatchTransforms() {
+    ProjectionImpl[] projs = {new Mercator(), new Sinusoidal(), new RotatedPole(37.0, 177.0),
+            new LambertConformal(), new LatLonProjection()};
+    for (ProjectionImpl proj : projs) {
+      testBatch(proj, 1000);
+      testBatch(proj, ProjectionImpl.PARALLEL_THRESHOLD + 1001);
+    }
+  }
 
 }
\ No newline at end of file
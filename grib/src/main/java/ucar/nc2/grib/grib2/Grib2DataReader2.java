@@ -106,7 +106,7 @@ public class Grib2DataReader2 {
    */
 
   public float[] getData(RandomAccessFile raf, Grib2SectionBitMap bitmapSection, Grib2Drs gdrs) throws IOException {
-    this.bitmap = bitmapSection.getBitmap(raf);
+    this.bitmap = Grib2SectionCache.getBitmap(raf, bitmapSection);
     this.bitmapIndicator = bitmapSection.getBitMapIndicator();
 
     if (bitmap != null) { // is bitmap ok ?
@@ -150,7 +150,7 @@ public class Grib2DataReader2 {
   }
 
   public int[] getRawData(RandomAccessFile raf, Grib2SectionBitMap bitmapSection, Grib2Drs gdrs) throws IOException {
-    this.bitmap = bitmapSection.getBitmap(raf);
+    this.bitmap = Grib2SectionCache.getBitmap(raf, bitmapSection);
     this.bitmapIndicator = bitmapSection.getBitMapIndicator();
 
     if (bitmap != null) { // is bitmap ok ?
@@ -168,6 +168,31 @@ public class Grib2DataReader2 {
     return getData40raw(raf, (Grib2Drs.Type40) gdrs);
   }
 
+  /*
+   * Spread the packed values over the points that are set in the bitmap, the rest get the missing value.
+   * Whole bytes of the bitmap that are all set or all unset are done without testing each bit.
+   */
+  private float[] applyBitmap(float[] packed, float mv) {
+    float[] result = new float[totalNPoints];
+    int idx = 0;
+    int i = 0;
+    for (; i + 8 <= totalNPoints; i += 8) {
+      int mask = bitmap[i / 8] & 0xff;
+      if (mask == 0xff) {
+        System.arraycopy(packed, idx, result, i, 8);
+        idx += 8;
+      } else if (mask == 0) {
+        Arrays.fill(result, i, i + 8, mv);
+      } else {
+        for (int j = i; j < i + 8; j++)
+          result[j] = ((mask & GribNumbers.bitmask[j % 8]) != 0) ? packed[idx++] : mv;
+      }
+    }
+    for (; i < totalNPoints; i++)
+      result[i] = ((bitmap[i / 8] & GribNumbers.bitmask[i % 8]) != 0) ? packed[idx++] : mv;
+    return result;
+  }
+
   static private final boolean staticMissingValueInUse = true;
   static private final float staticMissingValue = Float.NaN;
 
@@ -373,18 +398,8 @@ public class Grib2DataReader2 {
       }  // end for j
     }  // end for i
 
-    if (bitmap != null) {
-      int idx = 0;
-      float[] tmp = new float[totalNPoints];
-      for (int i = 0; i < totalNPoints; i++) {
-        if ((bitmap[i / 8] & GribNumbers.bitmask[i % 8]) != 0) {
-          tmp[i] = data[idx++];
-        } else {
-          tmp[i] = mv;
-        }
-      }
-      data = tmp;
-    }
+    if (bitmap != null)
+      data = applyBitmap(data, mv);
 
     return data;
   }
@@ -716,18 +731,8 @@ public class Grib2DataReader2 {
     }
 
     // bit map is used
-    if (bitmap != null) {
-      int idx = 0;
-      float[] tmp = new float[totalNPoints];
-      for (int i = 0; i < totalNPoints; i++) {
-        if ((bitmap[i / 8] & GribNumbers.bitmask[i % 8]) != 0) {
-          tmp[i] = data[idx++];
-        } else {
-          tmp[i] = mv;
-        }
-      }
-      data = tmp;
-    }
+    if (bitmap != null)
+      data = applyBitmap(data, mv);
 
     return data;
   }
@@ -751,10 +756,7 @@ public class Grib2DataReader2 {
     Grib2JpegDecoder g2j = null;
     // try {
       if (nb != 0) {  // there's data to decode
-        g2j = new Grib2JpegDecoder(nb, false);
-        byte[] buf = new byte[dataLength - 5];
-        raf.readFully(buf);
-        g2j.decode(buf);
+        g2j = decodeJpeg(raf, nb);
         gdrs.hasSignedProblem = g2j.hasSignedProblem();
       }
 
@@ -809,17 +811,23 @@ public class Grib2DataReader2 {
     } */
   }
 
+  // use this thread's decoder, and read the codestream into its buffer
+  private Grib2JpegDecoder decodeJpeg(RandomAccessFile raf, int nb) throws IOException {
+    Grib2JpegDecoder g2j = Grib2JpegDecoder.getThreadDecoder(nb);
+    int len = dataLength - 5;
+    byte[] buf = g2j.getInputBuffer(len);
+    raf.readFully(buf, 0, len);
+    g2j.decode(buf, len);
+    return g2j;
+  }
+
     // Grid point data - JPEG 2000 code stream format
   public int[] getData40raw(RandomAccessFile raf, Grib2Drs.Type40 gdrs) throws IOException {
     int nb = gdrs.numberOfBits;
     if (nb == 0) return null;
     int missing_value = (2 << nb - 1) - 1;       // all ones - reserved for missing value
 
-    Grib2JpegDecoder g2j;
-    g2j = new Grib2JpegDecoder(nb, false);
-    byte[] buf = new byte[dataLength - 5];
-    raf.readFully(buf);
-    g2j.decode(buf);
+    Grib2JpegDecoder g2j = decodeJpeg(raf, nb);
     gdrs.hasSignedProblem = g2j.hasSignedProblem();
 
     int[] idata = g2j.getGdata();
@@ -54,7 +54,6 @@ import org.slf4j.LoggerFactory;
 import java.util.*;
 import java.io.IOException;
 import java.io.EOFException;
-import java.io.ByteArrayInputStream;
 
 /**
  * Adaptation of jj2000.j2k.decoder.Decoder, in order to read input from memory.
@@ -88,6 +87,46 @@ public class Grib2JpegDecoder {
    */
   private ParameterList pl;
 
+  /**
+   * The default parameter list (with modules arguments), built once and shared by all decoders.
+   */
+  private static final ParameterList defaultParameters = makeDefaultParameters();
+
+  private static ParameterList makeDefaultParameters() {
+    ParameterList defpl = new ParameterList();
+    String[][] param = Grib2JpegDecoder.getAllParameters();
+
+    for (int i = param.length - 1; i >= 0; i--) {
+      if (param[i][3] != null)
+        defpl.put(param[i][0], param[i][3]);
+    }
+    return defpl;
+  }
+
+  /**
+   * One decoder per thread, reused across records.
+   */
+  private static final ThreadLocal<Grib2JpegDecoder> threadDecoder = new ThreadLocal<>();
+
+  /**
+   * Get a decoder for this thread, configured for the given number of bits.
+   * The decoder and its input buffer are reused for each call on the same thread,
+   * so the results of {@link #getGdata()} must be consumed before decoding the next record.
+   *
+   * @param nbits number of bits of the packed data
+   * @return decoder owned by the calling thread
+   */
+  public static Grib2JpegDecoder getThreadDecoder(int nbits) {
+    Grib2JpegDecoder decoder = threadDecoder.get();
+    if (decoder == null) {
+      decoder = new Grib2JpegDecoder(nbits, false);
+      threadDecoder.set(decoder);
+    } else {
+      decoder.setRate(nbits);
+    }
+    return decoder;
+  }
+
   /**
    * Instantiates a decoder object, width the 'argv' command
    * line arguments. It also initializes the default parameters. If the
@@ -99,8 +138,14 @@ public class Grib2JpegDecoder {
    * @see Grib2JpegDecoder#getExitCode
    */
   public Grib2JpegDecoder(int nbits, boolean debug) {
-    this.rate = nbits;
     this.debug = debug;
+    this.rate = -1;
+    setRate(nbits);
+  } // end Grib2JpegDecoder constructor
+
+  private void setRate(int nbits) {
+    if (nbits == rate && pl != null) return;
+    this.rate = nbits;
 
     // not sure if these are needed in the bowels of jj2000
     String[] argv = new String[6];
@@ -111,25 +156,8 @@ public class Grib2JpegDecoder {
     argv[4] = "-debug" ;
     argv[5] = "on" ;
 
-    // Initialize default parameters
-    //System.err.println("calling Grib2JpegDecoder with argv argument");
-    /*
-    The default parameter list (with modules arguments)
-   */
-    ParameterList defpl = new ParameterList();
-    String[][] param = Grib2JpegDecoder.getAllParameters();
-
-    for (int i = param.length - 1; i >= 0; i--) {
-      if (param[i][3] != null)
-        defpl.put(param[i][0], param[i][3]);
-    }
-
     // Create parameter list using defaults
-    pl = new ParameterList(defpl);
-
-    if (argv.length == 0) {
-      throw new IllegalArgumentException("No arguments!");
-    }
+    pl = new ParameterList(defaultParameters);
 
     // Parse arguments from argv
     try {
@@ -137,7 +165,22 @@ public class Grib2JpegDecoder {
     } catch (StringFormatException e) {
       System.err.println("An error occurred while parsing the arguments:\n" + e.getMessage());
     }
-  } // end Grib2JpegDecoder constructor
+  }
+
+  private byte[] inputBuffer;
+
+  /**
+   * Get a buffer of at least the given size to read the codestream into.
+   * The buffer is owned by this decoder and reused on each call.
+   *
+   * @param size minimum size in bytes
+   * @return reusable buffer, may be larger than size
+   */
+  public byte[] getInputBuffer(int size) {
+    if (inputBuffer == null || inputBuffer.length < size)
+      inputBuffer = new byte[size];
+    return inputBuffer;
+  }
 
   /**
    * Returns the exit code of the class. This is only initialized after the
@@ -154,6 +197,16 @@ public class Grib2JpegDecoder {
     return hasSignedProblem;
   }
 
+  private boolean singleTileShortcut = true;
+
+  /**
+   * Single-tile codestreams are normally read straight from the end of the jj2000 chain.
+   * Turn this off to decode everything through ImgWriterArray, eg to check one against the other.
+   */
+  public void setSingleTileShortcut(boolean singleTileShortcut) {
+    this.singleTileShortcut = singleTileShortcut;
+  }
+
   /**
    * Runs the decoder. After completion the exit code is set, a non-zero
    * value indicates that an error occurred.
@@ -161,7 +214,21 @@ public class Grib2JpegDecoder {
    * @see #getExitCode
    */
   public void decode(byte buf[]) throws IOException {
-    // int dataSize = buf.length;
+    decode(buf, buf.length);
+  }
+
+  /**
+   * Runs the decoder on the first len bytes of buf.
+   *
+   * @param buf contains the codestream
+   * @param len number of valid bytes in buf
+   * @see #getExitCode
+   */
+  public void decode(byte buf[], int len) throws IOException {
+    exitCode = 0;
+    hasSignedProblem = false;
+    csMap = null;
+    data = null;
     final boolean verbose = false;
     int res; // resolution level to reconstruct
     FileFormatReader ff;
@@ -183,9 +250,8 @@ public class Grib2JpegDecoder {
 
     try {
 
-      // create a ByteArrayInputStream from byte array for ISRandomAccessIO
-      ByteArrayInputStream bais = new ByteArrayInputStream(buf);
-      RandomAccessIO in = new ISRandomAccessIO(bais, buf.length, 1, buf.length);
+      // read directly from the byte array, rather than copying it through an ISRandomAccessIO
+      RandomAccessIO in = new ByteArrayRandomAccessIO(buf, len);
 
       // **** File Format ****
       // If the codestream is wrapped in the jp2 fileformat, Read the
@@ -304,6 +370,16 @@ public class Grib2JpegDecoder {
       // code to get data
       // **** Decode and write/display result ****
 
+      // GRIB codestreams are a single component in a single tile, so take the decoded block directly
+      // from the end of the chain, without an ImgWriter in between.
+      if (singleTileShortcut && csMap == null && nCompImg == 1) {
+        Coord nT = decodedImage.getNumTiles(null);
+        if (nT.x == 1 && nT.y == 1) {
+          decodeSingleTile(decodedImage, hd.isOriginalSigned(0), depth[0]);
+          return;
+        }
+      }
+
       ImgWriter[] imwriter = new ImgWriter[nCompImg];
 
       // Now write the image to the array (decodes as needed)
@@ -386,6 +462,41 @@ public class Grib2JpegDecoder {
     }
   } // end decode
 
+  private void decodeSingleTile(BlkImgDataSrc src, boolean isSigned, int nb) throws IOException {
+    int bitDepth = src.getNomRangeBits(0);
+    if ((bitDepth <= 0) || (bitDepth > 31)) {
+      throw new IOException("Array supports only bit-depth between 1 and 31");
+    }
+    packBytes = (bitDepth <= 8) ? 1 : (bitDepth <= 16) ? 2 : 4;
+
+    src.setTile(0, 0);
+    DataBlkInt db = new DataBlkInt(0, 0, src.getImgWidth(), src.getImgHeight());
+    // Request the data and make sure it is not progressive.
+    // For the reversible (lossless) transforms GRIB uses, this is the internal buffer of the
+    // inverse wavelet transform, so no copy is made.
+    do {
+      db = (DataBlkInt) src.getInternCompData(db, 0);
+    } while (db.progressive);
+
+    int w = db.w, h = db.h;
+    if (db.offset == 0 && db.scanw == w && db.data.length == w * h) {
+      data = db.data;
+    } else { // the block is a window into a larger buffer
+      data = new int[w * h];
+      for (int row = 0; row < h; row++)
+        System.arraycopy(db.data, db.offset + row * db.scanw, data, row * w, w);
+    }
+
+    // unSigned data processing here
+    if (!isSigned) {
+      int levShift = 1 << (nb - 1);
+      if (nb != rate) hasSignedProblem = true;
+
+      for (int j = 0; j < data.length; j++)
+        data[j] += levShift;
+    }
+  }
+
   private void error(String msg, int code) {
     exitCode = code;
     logger.debug(msg);
@@ -672,4 +783,122 @@ public class Grib2JpegDecoder {
         }
     } // end ImgWriterArray
 
+  /**
+   * A read-only RandomAccessIO over a byte array, so the codestream does not have to be copied.
+   */
+  private static class ByteArrayRandomAccessIO implements RandomAccessIO {
+    private final byte[] buf;
+    private final int len;
+    private int pos;
+
+    ByteArrayRandomAccessIO(byte[] buf, int len) {
+      this.buf = buf;
+      this.len = len;
+    }
+
+    public void close() throws IOException {
+    }
+
+    public int getPos() throws IOException {
+      return pos;
+    }
+
+    public int length() throws IOException {
+      return len;
+    }
+
+    public void seek(int off) throws IOException {
+      if (off > len) throw new EOFException();
+      pos = off;
+    }
+
+    public int read() throws IOException {
+      if (pos >= len) throw new EOFException();
+      return buf[pos++] & 0xff;
+    }
+
+    public void readFully(byte[] b, int off, int n) throws IOException {
+      if (pos + n > len) throw new EOFException();
+      System.arraycopy(buf, pos, b, off, n);
+      pos += n;
+    }
+
+    public byte readByte() throws IOException {
+      return (byte) read();
+    }
+
+    public int readUnsignedByte() throws IOException {
+      return read();
+    }
+
+    public short readShort() throws IOException {
+      return (short) readUnsignedShort();
+    }
+
+    public int readUnsignedShort() throws IOException {
+      return (read() << 8) | read();
+    }
+
+    public int readInt() throws IOException {
+      return (read() << 24) | (read() << 16) | (read() << 8) | read();
+    }
+
+    public long readUnsignedInt() throws IOException {
+      return readInt() & 0xffffffffL;
+    }
+
+    public long readLong() throws IOException {
+      return ((long) readInt() << 32) | readUnsignedInt();
+    }
+
+    public float readFloat() throws IOException {
+      return Float.intBitsToFloat(readInt());
+    }
+
+    public double readDouble() throws IOException {
+      return Double.longBitsToDouble(readLong());
+    }
+
+    public int getByteOrdering() {
+      return EndianType.BIG_ENDIAN;
+    }
+
+    public int skipBytes(int n) throws IOException {
+      if (pos + n > len) throw new EOFException();
+      pos += n;
+      return n;
+    }
+
+    public void write(int b) throws IOException {
+      throw new IOException("read only");
+    }
+
+    public void writeByte(int v) throws IOException {
+      throw new IOException("read only");
+    }
+
+    public void writeShort(int v) throws IOException {
+      throw new IOException("read only");
+    }
+
+    public void writeInt(int v) throws IOException {
+      throw new IOException("read only");
+    }
+
+    public void writeLong(long v) throws IOException {
+      throw new IOException("read only");
+    }
+
+    public void writeFloat(float v) throws IOException {
+      throw new IOException("read only");
+    }
+
+    public void writeDouble(double v) throws IOException {
+      throw new IOException("read only");
+    }
+
+    public void flush() throws IOException {
+    }
+  }
+
 } // end Grib2JpegDecoder
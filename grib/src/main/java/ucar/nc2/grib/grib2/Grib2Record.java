@@ -350,7 +350,7 @@ public class Grib2Record {
     Grib2DataReader2 reader = new Grib2DataReader2(drs.getDataTemplate(), gdsNumberPoints, drs.getDataPoints(),
             scanMode, nx, dataSection.getStartingPosition(), dataSection.getMsgLength());
 
-    Grib2Drs gdrs = drs.getDrs(raf);
+    Grib2Drs gdrs = Grib2SectionCache.getDrs(raf, drs);
 
     //return reader.getData(raf, bitmap, gdrs);
 
@@ -0,0 +1,177 @@
+/*
+ * Copyright 1998-2015 John Caron and University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package ucar.nc2.grib.grib2;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import ucar.nc2.grib.GribNumbers;
+import ucar.unidata.io.RandomAccessFile;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Formatter;
+
+/**
+ * Shares bitmaps (section 6) and data representation templates (section 5) between GRIB-2 records.
+ * Within a collection, many records have an identical bitmap and identical DRS parameters.
+ * <ul>
+ *   <li>Bitmaps are cached by file and section position, which is what the collection index stores (including the
+ *   "previously defined" bitmaps, where the index points to the earlier section), and identical contents are shared.</li>
+ *   <li>Templates are cached by the contents of the section, so records with the same packing share one Grib2Drs.
+ *   Templates that carry per-record decoding state (40 and 50002) are not cached.</li>
+ * </ul>
+ *
+ * @since 10/18/2016
+ */
+@ThreadSafe
+public class Grib2SectionCache {
+  static private final int maxBitmapBytes = 100 * 1000 * 1000;
+  static private final int maxDrs = 1000;
+
+  static private final Cache<String, byte[]> bitmapCache = CacheBuilder.newBuilder()
+          .maximumWeight(maxBitmapBytes)
+          .weigher((String key, byte[] value) -> value.length)
+          .recordStats()
+          .build();
+
+  // the distinct bitmap contents, held strongly so identical bitmaps keep being shared
+  static private final Cache<Content, byte[]> bitmapContents = CacheBuilder.newBuilder()
+          .maximumWeight(maxBitmapBytes)
+          .weigher((Content key, byte[] value) -> value.length)
+          .build();
+
+  static private final Cache<Content, Grib2Drs> drsCache = CacheBuilder.newBuilder()
+          .maximumSize(maxDrs)
+          .recordStats()
+          .build();
+
+  /**
+   * Read the bit map array, or get it from the cache.
+   * The returned array is shared and must not be modified.
+   *
+   * @param raf read from here
+   * @param bms the bitmap section
+   * @return bit map as array of byte values, or null if there is no bitmap
+   * @throws java.io.IOException on read error
+   */
+  public static byte[] getBitmap(RandomAccessFile raf, Grib2SectionBitMap bms) throws IOException {
+    if (bms.getBitMapIndicator() == 255) return null;
+
+    String key = makeKey(raf, bms.getStartingPosition());
+    byte[] bitmap = bitmapCache.getIfPresent(key);
+    if (bitmap != null) return bitmap;
+
+    bitmap = bms.getBitmap(raf);
+    if (bitmap == null) return null;
+    byte[] shared = bitmapContents.asMap().putIfAbsent(new Content(bitmap), bitmap); // share identical bitmaps
+    if (shared != null) bitmap = shared;
+    bitmapCache.put(key, bitmap);
+    return bitmap;
+  }
+
+  /**
+   * Read the template-specific fields of the data representation section, or get them from the cache.
+   * The returned object may be shared and must not be modified.
+   *
+   * @param raf read from here
+   * @param drs the data representation section
+   * @return the Grib2Drs for this record
+   * @throws java.io.IOException on read error
+   */
+  public static Grib2Drs getDrs(RandomAccessFile raf, Grib2SectionDataRepresentation drs) throws IOException {
+    int template = drs.getDataTemplate();
+    if (template == 40 || template == 50002)
+      return drs.getDrs(raf);
+
+    raf.seek(drs.getStartingPosition());
+    int length = GribNumbers.int4(raf);
+    byte[] section = new byte[length - 4];
+    raf.readFully(section);
+    Content key = new Content(section);
+
+    Grib2Drs gdrs = drsCache.getIfPresent(key);
+    if (gdrs == null) {
+      gdrs = drs.getDrs(raf);
+      drsCache.put(key, gdrs);
+    }
+    return gdrs;
+  }
+
+  public static void clear() {
+    bitmapCache.invalidateAll();
+    bitmapContents.invalidateAll();
+    drsCache.invalidateAll();
+  }
+
+  public static void showCache(Formatter f) {
+    CacheStats stats = bitmapCache.stats();
+    f.format("Grib2SectionCache bitmaps: size=%d hits=%d misses=%d evictions=%d%n", bitmapCache.size(),
+            stats.hitCount(), stats.missCount(), stats.evictionCount());
+    stats = drsCache.stats();
+    f.format("Grib2SectionCache drs: size=%d hits=%d misses=%d evictions=%d%n", drsCache.size(),
+            stats.hitCount(), stats.missCount(), stats.evictionCount());
+  }
+
+  // a rewritten file gets a new key
+  private static String makeKey(RandomAccessFile raf, long pos) {
+    return raf.getLocation() + "#" + raf.getLastModified() + "#" + pos;
+  }
+
+  // byte array with content equality
+  private static class Content {
+    final byte[] bytes;
+    final int hashCode;
+
+    Content(byte[] bytes) {
+      this.bytes = bytes;
+      this.hashCode = Arrays.hashCode(bytes);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      Content that = (Content) o;
+      return hashCode == that.hashCode && Arrays.equals(bytes, that.bytes);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+}
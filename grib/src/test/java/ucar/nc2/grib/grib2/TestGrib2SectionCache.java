@@ -0,0 +1,121 @@
+/*
+ * Copyright 1998-2015 University Corporation for Atmospheric Research/Unidata
+ *
+ * Portions of this software were developed by the Unidata Program at the
+ * University Corporation for Atmospheric Research.
+ *
+ * Access and use of this software shall impose the following obligations
+ * and understandings on the user. The user is granted the right, without
+ * any fee or cost, to use, copy, modify, alter, enhance and distribute
+ * this software, and any derivative works thereof, and its supporting
+ * documentation for any purpose whatsoever, provided that this entire
+ * notice appears in all copies of the software, derivative works and
+ * supporting documentation.  Further, UCAR requests that the user credit
+ * UCAR/Unidata in any publications that result from the use of this
+ * software or in any product that includes this software. The names UCAR
+ * and/or Unidata, however, may not be used in any advertising or publicity
+ * to endorse or promote any products or commercial entity unless specific
+ * written permission is obtained from UCAR/Unidata. The user also
+ * understands that UCAR/Unidata is not obligated to provide the user with
+ * any support, consulting, training or assistance of any kind with regard
+ * to the use, operation and performance of this software nor to provide
+ * the user with any updates, revisions, new versions or "bug fixes."
+ *
+ * THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ * INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ * FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ * NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ * WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package ucar.nc2.grib.grib2;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.unidata.io.RandomAccessFile;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class TestGrib2SectionCache {
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    // bitmaps come back with the same contents as reading the section, and are shared on the second read
+    @Test
+    public void testBitmap() throws IOException {
+        final String testfile = "../grib/src/test/data/HLYA10";
+        int nbitmaps = 0;
+        try (RandomAccessFile raf = new RandomAccessFile(testfile, "r")) {
+            Grib2RecordScanner scanner = new Grib2RecordScanner(raf);
+            while (scanner.hasNext()) {
+                Grib2Record gr = scanner.next();
+                Grib2SectionBitMap bms = gr.getBitmapSection();
+                byte[] expected = bms.getBitmap(raf);
+                byte[] cached = Grib2SectionCache.getBitmap(raf, bms);
+                Assert.assertTrue(Arrays.equals(expected, cached));
+                if (expected == null) continue;
+
+                Assert.assertSame(cached, Grib2SectionCache.getBitmap(raf, bms));
+                nbitmaps++;
+            }
+        }
+        Assert.assertTrue(nbitmaps > 0);
+    }
+
+    // bitmap sections at different positions with the same contents return the same array
+    @Test
+    public void testSameBitmapShared() throws IOException {
+        byte[] bits = new byte[1000];
+        for (int i = 0; i < bits.length; i++)
+            bits[i] = (byte) (i % 7 == 0 ? 0 : 0xff);
+        byte[] other = bits.clone();
+        other[500] = 0x0f;
+
+        File file = tempFolder.newFile("bitmaps.bin");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            for (byte[] b : new byte[][] {bits, bits, other}) {
+                out.writeInt(b.length + 6); // section length
+                out.write(6);               // section number
+                out.write(0);               // bitmap follows
+                out.write(b);
+            }
+        }
+
+        int sectionLen = bits.length + 6;
+        try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "r")) {
+            byte[] first = Grib2SectionCache.getBitmap(raf, Grib2SectionBitMap.factory(raf, 0));
+            System.gc(); // nothing but the caches refers to the shared contents
+            byte[] second = Grib2SectionCache.getBitmap(raf, Grib2SectionBitMap.factory(raf, sectionLen));
+            byte[] third = Grib2SectionCache.getBitmap(raf, Grib2SectionBitMap.factory(raf, 2 * sectionLen));
+
+            Assert.assertArrayEquals(bits, first);
+            Assert.assertSame(first, second);
+            Assert.assertArrayEquals(other, third);
+            Assert.assertNotSame(first, third);
+        }
+    }
+
+    // records with the same packing share one Grib2Drs
+    @Test
+    public void testDrs() throws IOException {
+        final String testfile = "../grib/src/test/data/cosmo-eu.grib2";
+        try (RandomAccessFile raf = new RandomAccessFile(testfile, "r")) {
+            Grib2RecordScanner scanner = new Grib2RecordScanner(raf);
+            while (scanner.hasNext()) {
+                Grib2Record gr = scanner.next();
+                Grib2SectionDataRepresentation drs = gr.getDataRepresentationSection();
+                Grib2Drs gdrs = Grib2SectionCache.getDrs(raf, drs);
+                Assert.assertEquals(drs.getDrs(raf).toString(), gdrs.toString());
+                Assert.assertSame(gdrs, Grib2SectionCache.getDrs(raf, drs));
+            }
+        }
+    }
+}
@@ -165,24 +165,7 @@ public class BytePrimitiveVector extends PrimitiveVector
                                          StatusUI statusUI)
             throws IOException, EOFException, DataReadException {
 
-        int modFour = vals.length % 4;
-        // number of bytes to pad
-        int pad = (modFour != 0) ? (4 - modFour) : 0;
-
-        for (int i = 0; i < vals.length; i++) {
-            vals[i] = source.readByte();
-            if (statusUI != null) {
-                statusUI.incrementByteCount(1);
-                if (statusUI.userCancelled())
-                    throw new DataReadException("User cancelled");
-            }
-        }
-        // pad out to a multiple of four bytes
-        byte unused;
-        for (int i = 0; i < pad; i++)
-            unused = source.readByte();
-        if (statusUI != null)
-            statusUI.incrementByteCount(pad);
+        PrimitiveVectorIO.read(source, vals, statusUI); // pads out to a multiple of four bytes
     }
 
     /**
@@ -195,16 +178,7 @@ public class BytePrimitiveVector extends PrimitiveVector
      *                     exception.
      */
     public void externalize(DataOutputStream sink) throws IOException {
-        int modFour = vals.length % 4;
-        // number of bytes to pad
-        int pad = (modFour != 0) ? (4 - modFour) : 0;
-
-        for (int i = 0; i < vals.length; i++) {
-            sink.writeByte(vals[i]);
-        }
-        // pad out to a multiple of four bytes
-        for (int i = 0; i < pad; i++)
-            sink.writeByte(0);
+        PrimitiveVectorIO.write(sink, vals, 0, vals.length - 1, 1); // pads out to a multiple of four bytes
     }
 
     /**
@@ -217,17 +191,7 @@ public class BytePrimitiveVector extends PrimitiveVector
      * @throws IOException thrown on any <code>OutputStream</code> exception.
      */
     public void externalize(DataOutputStream sink, int start, int stop, int stride) throws IOException {
-        int count = 0;
-        for (int i = start; i <= stop; i += stride) {
-            sink.writeByte(vals[i]);
-            count++;
-        }
-
-        // pad out to a multiple of four bytes
-        int modFour = count % 4;
-        int pad = (modFour != 0) ? (4 - modFour) : 0;
-        for (int i = 0; i < pad; i++)
-            sink.writeByte(0);
+        PrimitiveVectorIO.write(sink, vals, start, stop, stride); // pads out to a multiple of four bytes
     }
 
     /**
@@ -164,16 +164,7 @@ public class Float32PrimitiveVector extends PrimitiveVector
                                          ServerVersion sv,
                                          StatusUI statusUI)
             throws IOException, EOFException, DataReadException {
-        for (int i = 0; i < vals.length; i++) {
-            vals[i] = source.readFloat();
-
-           //LogStream.out.printf("%d:%f ",i,vals[i]);
-            if (statusUI != null) {
-                statusUI.incrementByteCount(8);
-                if (statusUI.userCancelled())
-                    throw new DataReadException("User cancelled");
-            }
-        }
+        PrimitiveVectorIO.read(source, vals, statusUI, 4);
     }
 
     /**
@@ -186,9 +177,7 @@ public class Float32PrimitiveVector extends PrimitiveVector
      *                     exception.
      */
     public void externalize(DataOutputStream sink) throws IOException {
-        for (int i = 0; i < vals.length; i++) {
-            sink.writeFloat(vals[i]);
-        }
+        PrimitiveVectorIO.write(sink, vals, 0, vals.length - 1, 1);
     }
 
     /**
@@ -201,8 +190,7 @@ public class Float32PrimitiveVector extends PrimitiveVector
      * @throws IOException thrown on any <code>OutputStream</code> exception.
      */
     public void externalize(DataOutputStream sink, int start, int stop, int stride) throws IOException {
-        for (int i = start; i <= stop; i += stride)
-            sink.writeFloat(vals[i]);
+        PrimitiveVectorIO.write(sink, vals, start, stop, stride);
     }
 
 
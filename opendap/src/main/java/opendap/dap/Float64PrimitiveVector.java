@@ -163,14 +163,7 @@ public class Float64PrimitiveVector extends PrimitiveVector
                                          ServerVersion sv,
                                          StatusUI statusUI)
             throws IOException, EOFException, DataReadException {
-        for (int i = 0; i < vals.length; i++) {
-            vals[i] = source.readDouble();
-            if (statusUI != null) {
-                statusUI.incrementByteCount(8);
-                if (statusUI.userCancelled())
-                    throw new DataReadException("User cancelled");
-            }
-        }
+        PrimitiveVectorIO.read(source, vals, statusUI, 8);
     }
 
     /**
@@ -183,9 +176,7 @@ public class Float64PrimitiveVector extends PrimitiveVector
      *                     exception.
      */
     public void externalize(DataOutputStream sink) throws IOException {
-        for (int i = 0; i < vals.length; i++) {
-            sink.writeDouble(vals[i]);
-        }
+        PrimitiveVectorIO.write(sink, vals, 0, vals.length - 1, 1);
     }
 
     /**
@@ -198,8 +189,7 @@ public class Float64PrimitiveVector extends PrimitiveVector
      * @throws IOException thrown on any <code>OutputStream</code> exception.
      */
     public void externalize(DataOutputStream sink, int start, int stop, int stride) throws IOException {
-        for (int i = start; i <= stop; i += stride)
-            sink.writeDouble(vals[i]);
+        PrimitiveVectorIO.write(sink, vals, start, stop, stride);
     }
 
     /**
@@ -0,0 +1,238 @@
+/////////////////////////////////////////////////////////////////////////////
+// This file is part of the "Java-DAP" project, a Java implementation
+// of the OPeNDAP Data Access Protocol.
+//
+// Copyright (c) 2010, OPeNDAP, Inc.
+// Copyright (c) 2002,2003 OPeNDAP, Inc.
+// All rights reserved.
+// 
+// Redistribution and use in source and binary forms,
+// with or without modification, are permitted provided
+// that the following conditions are met:
+// 
+// - Redistributions of source code must retain the above copyright
+//   notice, this list of conditions and the following disclaimer.
+// 
+// - Redistributions in binary form must reproduce the above copyright
+//   notice, this list of conditions and the following disclaimer in the
+//   documentation and/or other materials provided with the distribution.
+// 
+// - Neither the name of the OPeNDAP nor the names of its contributors may
+//   be used to endorse or promote products derived from this software
+//   without specific prior written permission.
+// 
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS
+// IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+// TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A
+// PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+// TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+// PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+// LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+// NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+// SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+
+package opendap.dap;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Bulk XDR encoding and decoding of the primitive arrays held by the PrimitiveVector classes.
+ * Values are converted through big-endian views of a reusable per-thread buffer, and the buffer is written
+ * to or read from the stream in one call, instead of one stream call per element.
+ * The bytes are the same as DataOutputStream.writeFloat() etc. would produce.
+ *
+ * @see PrimitiveVector
+ */
+final class PrimitiveVectorIO {
+
+    static final int BUFFER_SIZE = 64 * 1024; // bytes
+
+    // big-endian, the XDR byte order
+    private static final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(BUFFER_SIZE));
+
+    private PrimitiveVectorIO() {
+    }
+
+    /////////////////////////////////////////////////////////////////////
+    // encode: write vals[i] for i=start; i<=stop; i+=stride
+
+    static void write(DataOutputStream sink, float[] vals, int start, int stop, int stride) throws IOException {
+        ByteBuffer bb = buffers.get();
+        FloatBuffer fb = bb.asFloatBuffer();
+        int i = start;
+        while (i <= stop) {
+            fb.clear();
+            if (stride == 1) {
+                int n = Math.min(fb.remaining(), stop - i + 1);
+                fb.put(vals, i, n);
+                i += n;
+            } else {
+                for (; i <= stop && fb.hasRemaining(); i += stride)
+                    fb.put(vals[i]);
+            }
+            sink.write(bb.array(), 0, 4 * fb.position());
+        }
+    }
+
+    static void write(DataOutputStream sink, double[] vals, int start, int stop, int stride) throws IOException {
+        ByteBuffer bb = buffers.get();
+        DoubleBuffer db = bb.asDoubleBuffer();
+        int i = start;
+        while (i <= stop) {
+            db.clear();
+            if (stride == 1) {
+                int n = Math.min(db.remaining(), stop - i + 1);
+                db.put(vals, i, n);
+                i += n;
+            } else {
+                for (; i <= stop && db.hasRemaining(); i += stride)
+                    db.put(vals[i]);
+            }
+            sink.write(bb.array(), 0, 8 * db.position());
+        }
+    }
+
+    static void write(DataOutputStream sink, int[] vals, int start, int stop, int stride) throws IOException {
+        ByteBuffer bb = buffers.get();
+        IntBuffer ib = bb.asIntBuffer();
+        int i = start;
+        while (i <= stop) {
+            ib.clear();
+            if (stride == 1) {
+                int n = Math.min(ib.remaining(), stop - i + 1);
+                ib.put(vals, i, n);
+                i += n;
+            } else {
+                for (; i <= stop && ib.hasRemaining(); i += stride)
+                    ib.put(vals[i]);
+            }
+            sink.write(bb.array(), 0, 4 * ib.position());
+        }
+    }
+
+    // shorts are sent as 4 byte XDR ints
+    static void write(DataOutputStream sink, short[] vals, int start, int stop, int stride) throws IOException {
+        ByteBuffer bb = buffers.get();
+        IntBuffer ib = bb.asIntBuffer();
+        int i = start;
+        while (i <= stop) {
+            ib.clear();
+            for (; i <= stop && ib.hasRemaining(); i += stride)
+                ib.put((int) vals[i]);
+            sink.write(bb.array(), 0, 4 * ib.position());
+        }
+    }
+
+    // bytes are sent as is, padded to a multiple of 4
+    static void write(DataOutputStream sink, byte[] vals, int start, int stop, int stride) throws IOException {
+        int count = 0;
+        if (stride == 1) {
+            count = Math.max(stop - start + 1, 0);
+            sink.write(vals, start, count);
+        } else {
+            byte[] b = buffers.get().array();
+            int i = start;
+            while (i <= stop) {
+                int n = 0;
+                for (; i <= stop && n < b.length; i += stride)
+                    b[n++] = vals[i];
+                sink.write(b, 0, n);
+                count += n;
+            }
+        }
+
+        int modFour = count % 4;
+        int pad = (modFour != 0) ? (4 - modFour) : 0;
+        for (int i = 0; i < pad; i++)
+            sink.writeByte(0);
+    }
+
+    /////////////////////////////////////////////////////////////////////
+    // decode: fill vals. statusUI, if not null, is told about elemBytes for each element,
+    // and checked for cancellation once per buffer.
+
+    static void read(DataInputStream source, float[] vals, StatusUI statusUI, int elemBytes) throws IOException, DataReadException {
+        ByteBuffer bb = buffers.get();
+        FloatBuffer fb = bb.asFloatBuffer();
+        for (int i = 0; i < vals.length; ) {
+            int n = Math.min(fb.capacity(), vals.length - i);
+            source.readFully(bb.array(), 0, 4 * n);
+            fb.clear();
+            fb.get(vals, i, n);
+            i += n;
+            progress(statusUI, n * elemBytes);
+        }
+    }
+
+    static void read(DataInputStream source, double[] vals, StatusUI statusUI, int elemBytes) throws IOException, DataReadException {
+        ByteBuffer bb = buffers.get();
+        DoubleBuffer db = bb.asDoubleBuffer();
+        for (int i = 0; i < vals.length; ) {
+            int n = Math.min(db.capacity(), vals.length - i);
+            source.readFully(bb.array(), 0, 8 * n);
+            db.clear();
+            db.get(vals, i, n);
+            i += n;
+            progress(statusUI, n * elemBytes);
+        }
+    }
+
+    static void read(DataInputStream source, int[] vals, StatusUI statusUI, int elemBytes) throws IOException, DataReadException {
+        ByteBuffer bb = buffers.get();
+        IntBuffer ib = bb.asIntBuffer();
+        for (int i = 0; i < vals.length; ) {
+            int n = Math.min(ib.capacity(), vals.length - i);
+            source.readFully(bb.array(), 0, 4 * n);
+            ib.clear();
+            ib.get(vals, i, n);
+            i += n;
+            progress(statusUI, n * elemBytes);
+        }
+    }
+
+    // shorts are sent as 4 byte XDR ints
+    static void read(DataInputStream source, short[] vals, StatusUI statusUI, int elemBytes) throws IOException, DataReadException {
+        ByteBuffer bb = buffers.get();
+        IntBuffer ib = bb.asIntBuffer();
+        for (int i = 0; i < vals.length; ) {
+            int n = Math.min(ib.capacity(), vals.length - i);
+            source.readFully(bb.array(), 0, 4 * n);
+            for (int k = 0; k < n; k++)
+                vals[i + k] = (short) ib.get(k);
+            i += n;
+            progress(statusUI, n * elemBytes);
+        }
+    }
+
+    // bytes are sent as is, padded to a multiple of 4
+    static void read(DataInputStream source, byte[] vals, StatusUI statusUI) throws IOException, DataReadException {
+        for (int i = 0; i < vals.length; ) {
+            int n = Math.min(BUFFER_SIZE, vals.length - i);
+            source.readFully(vals, i, n);
+            i += n;
+            progress(statusUI, n);
+        }
+
+        int modFour = vals.length % 4;
+        int pad = (modFour != 0) ? (4 - modFour) : 0;
+        source.readFully(buffers.get().array(), 0, pad);
+        if (statusUI != null)
+            statusUI.incrementByteCount(pad);
+    }
+
+    private static void progress(StatusUI statusUI, int nbytes) throws DataReadException {
+        if (statusUI != null) {
+            statusUI.incrementByteCount(nbytes);
+            if (statusUI.userCancelled())
+                throw new DataReadException("User cancelled");
+        }
+    }
+}
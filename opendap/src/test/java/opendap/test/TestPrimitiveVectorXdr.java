@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 1998 - 2016. University Corporation for Atmospheric Research/Unidata
+ * Portions of this software were developed by the Unidata Program at the
+ * University Corporation for Atmospheric Research.
+ *
+ * Access and use of this software shall impose the following obligations
+ * and understandings on the user. The user is granted the right, without
+ * any fee or cost, to use, copy, modify, alter, enhance and distribute
+ * this software, and any derivative works thereof, and its supporting
+ * documentation for any purpose whatsoever, provided that this entire
+ * notice appears in all copies of the software, derivative works and
+ * supporting documentation.  Further, UCAR requests that the user credit
+ * UCAR/Unidata in any publications that result from the use of this
+ * software or in any product that includes this software. The names UCAR
+ * and/or Unidata, however, may not be used in any advertising or publicity
+ * to endorse or promote any products or commercial entity unless specific
+ * written permission is obtained from UCAR/Unidata. The user also
+ * understands that UCAR/Unidata is not obligated to provide the user with
+ * any support, consulting, training or assistance of any kind with regard
+ * to the use, operation and performance of this software nor to provide
+ * the user with any updates, revisions, new versions or "bug fixes."
+ *
+ * THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ * INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ * FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ * NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ * WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package opendap.test;
+
+import opendap.dap.*;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.Random;
+
+/**
+ * Check that the bulk XDR encoding of the PrimitiveVectors gives the same bytes as one DataOutputStream call per element,
+ * for whole arrays and strided subsets, and that deserialize reads them back.
+ *
+ * @since 10/19/2016
+ */
+public class TestPrimitiveVectorXdr {
+  static private final int N = 100 * 1000 + 3; // more than one buffer, not a multiple of 4
+
+  interface Writer {
+    void write(DataOutputStream out, int i) throws IOException;
+  }
+
+  private byte[] expected(int start, int stop, int stride, int padTo, Writer w) throws IOException {
+    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bout);
+    int count = 0;
+    for (int i = start; i <= stop; i += stride, count++)
+      w.write(out, i);
+    while (padTo > 1 && (count++ % padTo) != 0)
+      out.writeByte(0);
+    return bout.toByteArray();
+  }
+
+  // stride = 0 means the whole vector
+  private byte[] externalize(PrimitiveVector pv, int start, int stop, int stride) throws Exception {
+    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bout);
+    if (stride == 0)
+      pv.externalize(out);
+    else  // not declared in PrimitiveVector
+      pv.getClass().getMethod("externalize", DataOutputStream.class, int.class, int.class, int.class).invoke(pv, out, start, stop, stride);
+    return bout.toByteArray();
+  }
+
+  private PrimitiveVector roundtrip(PrimitiveVector pv, PrimitiveVector result) throws Exception {
+    byte[] b = externalize(pv, 0, 0, 0);
+    result.setLength(pv.getLength());
+    result.deserialize(new DataInputStream(new ByteArrayInputStream(b)), new ServerVersion(2, 0), null);
+    return result;
+  }
+
+  private void check(PrimitiveVector pv, int padTo, Writer w) throws Exception {
+    Assert.assertArrayEquals(expected(0, N - 1, 1, padTo, w), externalize(pv, 0, 0, 0));
+    Assert.assertArrayEquals(expected(7, N - 1, 1, padTo, w), externalize(pv, 7, N - 1, 1));
+    Assert.assertArrayEquals(expected(3, N - 10, 5, padTo, w), externalize(pv, 3, N - 10, 5));
+    Assert.assertArrayEquals(expected(11, 11, 3, padTo, w), externalize(pv, 11, 11, 3));
+  }
+
+  @Test
+  public void testFloat32() throws Exception {
+    Random r = new Random(17);
+    float[] vals = new float[N];
+    for (int i = 0; i < N; i++) vals[i] = r.nextFloat() * 1000 - 500;
+    vals[1] = Float.NaN;
+    Float32PrimitiveVector pv = new Float32PrimitiveVector(new DFloat32("f"));
+    pv.setInternalStorage(vals);
+    check(pv, 0, (out, i) -> out.writeFloat(vals[i]));
+
+    PrimitiveVector result = roundtrip(pv, new Float32PrimitiveVector(new DFloat32("f")));
+    Assert.assertArrayEquals(vals, (float[]) result.getInternalStorage(), 0.0f);
+  }
+
+  @Test
+  public void testFloat64() throws Exception {
+    Random r = new Random(17);
+    double[] vals = new double[N];
+    for (int i = 0; i < N; i++) vals[i] = r.nextDouble() * 1000 - 500;
+    Float64PrimitiveVector pv = new Float64PrimitiveVector(new DFloat64("d"));
+    pv.setInternalStorage(vals);
+    check(pv, 0, (out, i) -> out.writeDouble(vals[i]));
+
+    PrimitiveVector result = roundtrip(pv, new Float64PrimitiveVector(new DFloat64("d")));
+    Assert.assertArrayEquals(vals, (double[]) result.getInternalStorage(), 0.0);
+  }
+
+  @Test
+  public void testInt32() throws Exception {
+    Random r = new Random(17);
+    int[] vals = new int[N];
+    for (int i = 0; i < N; i++) vals[i] = r.nextInt();
+    Int32PrimitiveVector pv = new UInt32PrimitiveVector(new DUInt32("u"));
+    pv.setInternalStorage(vals);
+    check(pv, 0, (out, i) -> out.writeInt(vals[i]));
+
+    PrimitiveVector result = roundtrip(pv, new Int32PrimitiveVector(new DInt32("i")));
+    Assert.assertArrayEquals(vals, (int[]) result.getInternalStorage());
+  }
+
+  @Test
+  public void testInt16() throws Exception {
+    Random r = new Random(17);
+    short[] vals = new short[N];
+    for (int i = 0; i < N; i++) vals[i] = (short) r.nextInt();
+    Int16PrimitiveVector pv = new Int16PrimitiveVector(new DInt16("s"));
+    pv.setInternalStorage(vals);
+    check(pv, 0, (out, i) -> out.writeInt((int) vals[i]));
+
+    PrimitiveVector result = roundtrip(pv, new Int16PrimitiveVector(new DInt16("s")));
+    Assert.assertArrayEquals(vals, (short[]) result.getInternalStorage());
+  }
+
+  @Test
+  public void testByte() throws Exception {
+    Random r = new Random(17);
+    byte[] vals = new byte[N];
+    r.nextBytes(vals);
+    BytePrimitiveVector pv = new BytePrimitiveVector(new DByte("b"));
+    pv.setInternalStorage(vals);
+    check(pv, 4, (out, i) -> out.writeByte(vals[i]));
+
+    PrimitiveVector result = roundtrip(pv, new BytePrimitiveVector(new DByte("b")));
+    Assert.assertArrayEquals(vals, (byte[]) result.getInternalStorage());
+  }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 1998-2009 University Corporation for Atmospheric Research/Unidata
+ *
+ * Portions of this software were developed by the Unidata Program at the
+ * University Corporation for Atmospheric Research.
+ *
+ * Access and use of this software shall impose the following obligations
+ * and understandings on the user. The user is granted the right, without
+ * any fee or cost, to use, copy, modify, alter, enhance and distribute
+ * this software, and any derivative works thereof, and its supporting
+ * documentation for any purpose whatsoever, provided that this entire
+ * notice appears in all copies of the software, derivative works and
+ * supporting documentation.  Further, UCAR requests that the user credit
+ * UCAR/Unidata in any publications that result from the use of this
+ * software or in any product that includes this software. The names UCAR
+ * and/or Unidata, however, may not be used in any advertising or publicity
+ * to endorse or promote any products or commercial entity unless specific
+ * written permission is obtained from UCAR/Unidata. The user also
+ * understands that UCAR/Unidata is not obligated to provide the user with
+ * any support, consulting, training or assistance of any kind with regard
+ * to the use, operation and performance of this software nor to provide
+ * the user with any updates, revisions, new versions or "bug fixes."
+ *
+ * THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ * INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ * FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ * NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ * WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package timing;
+
+import opendap.dap.*;
+
+import java.io.*;
+
+/**
+ * Time XDR encoding and decoding of large PrimitiveVectors, bulk (externalize/deserialize) vs one stream call per element.
+ * Sizes are in MBytes of data per vector; default 400.
+ *
+ * @since 10/19/2016
+ */
+public class TimingPrimitiveVectorXdr {
+
+  static class NullOutputStream extends OutputStream {
+    public void write(int b) { }
+    public void write(byte[] b, int off, int len) { }
+  }
+
+  // endless zeros
+  static class ZeroInputStream extends InputStream {
+    public int read() { return 0; }
+    public int read(byte[] b, int off, int len) {
+      java.util.Arrays.fill(b, off, off + len, (byte) 0);
+      return len;
+    }
+  }
+
+  static DataOutputStream sink() {
+    return new DataOutputStream(new BufferedOutputStream(new NullOutputStream(), 64 * 1000));
+  }
+
+  static DataInputStream source() {
+    return new DataInputStream(new BufferedInputStream(new ZeroInputStream(), 64 * 1000));
+  }
+
+  static void report(String what, long nbytes, long startNanos) {
+    double secs = (System.nanoTime() - startNanos) * 1.0e-9;
+    System.out.printf("  %-40s %8.3f secs %8.1f MB/sec%n", what, secs, nbytes / secs / 1.0e6);
+  }
+
+  static void timeFloat32(int n) throws Exception {
+    float[] vals = new float[n];
+    for (int i = 0; i < n; i++) vals[i] = i * 0.5f;
+    Float32PrimitiveVector pv = new Float32PrimitiveVector(new DFloat32("f"));
+    pv.setInternalStorage(vals);
+    long nbytes = 4L * n;
+
+    long start = System.nanoTime();
+    DataOutputStream out = sink();
+    for (float val : vals) out.writeFloat(val);
+    out.flush();
+    report("Float32 writeFloat per element", nbytes, start);
+
+    start = System.nanoTime();
+    out = sink();
+    pv.externalize(out);
+    out.flush();
+    report("Float32 externalize", nbytes, start);
+
+    start = System.nanoTime();
+    out = sink();
+    pv.externalize(out, 0, n - 1, 2);
+    out.flush();
+    report("Float32 externalize stride 2", nbytes / 2, start);
+
+    start = System.nanoTime();
+    DataInputStream in = source();
+    for (int i = 0; i < n; i++) vals[i] = in.readFloat();
+    report("Float32 readFloat per element", nbytes, start);
+
+    start = System.nanoTime();
+    pv.deserialize(source(), new ServerVersion(2, 0), null);
+    report("Float32 deserialize", nbytes, start);
+  }
+
+  static void timeFloat64(int n) throws Exception {
+    double[] vals = new double[n];
+    for (int i = 0; i < n; i++) vals[i] = i * 0.5;
+    Float64PrimitiveVector pv = new Float64PrimitiveVector(new DFloat64("d"));
+    pv.setInternalStorage(vals);
+    long nbytes = 8L * n;
+
+    long start = System.nanoTime();
+    DataOutputStream out = sink();
+    for (double val : vals) out.writeDouble(val);
+    out.flush();
+    report("Float64 writeDouble per element", nbytes, start);
+
+    start = System.nanoTime();
+    out = sink();
+    pv.externalize(out);
+    out.flush();
+    report("Float64 externalize", nbytes, start);
+
+    start = System.nanoTime();
+    out = sink();
+    pv.externalize(out, 0, n - 1, 2);
+    out.flush();
+    report("Float64 externalize stride 2", nbytes / 2, start);
+
+    start = System.nanoTime();
+    DataInputStream in = source();
+    for (int i = 0; i < n; i++) vals[i] = in.readDouble();
+    report("Float64 readDouble per element", nbytes, start);
+
+    start = System.nanoTime();
+    pv.deserialize(source(), new ServerVersion(2, 0), null);
+    report("Float64 deserialize", nbytes, start);
+  }
+
+  static public void main(String args[]) throws Exception {
+    int mbytes = (args.length > 0) ? Integer.parseInt(args[0]) : 400;
+    int ntries = (args.length > 1) ? Integer.parseInt(args[1]) : 3;
+
+    for (int i = 0; i < ntries; i++) {
+      System.out.printf("%d MBytes, try %d%n", mbytes, i);
+      timeFloat32(mbytes * 1000 * 1000 / 4);
+      timeFloat64(mbytes * 1000 * 1000 / 8);
+    }
+  }
+
+}
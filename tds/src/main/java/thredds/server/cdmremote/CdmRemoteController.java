@@ -247,7 +247,12 @@ public class CdmRemoteController {
       while (stoke.hasMoreTokens()) {
         ParsedSectionSpec cer = ParsedSectionSpec.parseVariableSection(ncfile, stoke.nextToken());
         // size += ncWriter.sendData(cer.v, cer.section, out, qb.getCompression());
-        size += ncWriter.sendData2(cer.v, cer.section, out, qb.getCompression());
+        long vsize = ncWriter.sendDataDirect(cer.v, cer.section, out, qb.getCompression()); // straight from the file if possible
+        if (vsize < 0)
+          vsize = ncWriter.sendDataCompressed(cer.v, cer.section, out, qb.getCompression()); // if deflate was asked for
+        if (vsize < 0)
+          vsize = ncWriter.sendData2(cer.v, cer.section, out, qb.getCompression());
+        size += vsize;
         // size += ncWriter.sendData3(cer.v, cer.section, out, qb.getCompression());
       }
       out.flush();
@@ -88,6 +88,8 @@ public class CdmrGridController {
   // private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(CdmrGridController.class);
   private static final boolean showReq = false;
   private static final boolean showRes = false;
+  private static final int MIN_CHUNK_SIZE = 64 * 1000;         // chunkSize requests are clamped to this range
+  private static final int MAX_CHUNK_SIZE = 16 * 1000 * 1000;
 
   @Autowired
   TdsContext tdsContext;
@@ -219,7 +221,10 @@ public class CdmrGridController {
 
   @RequestMapping(value = "/**", method = RequestMethod.GET, params = "req=data")
   public void handleDataRequest(HttpServletRequest request, HttpServletResponse response,
-                                @Valid NcssGridParamsBean qb, BindingResult validationResult, OutputStream out) throws IOException, BindException, InvalidRangeException {
+                                @Valid NcssGridParamsBean qb, BindingResult validationResult,
+                                @RequestParam(value = "chunkSize", required = false, defaultValue = "0") int chunkSize,
+                                @RequestParam(value = "deflate", required = false, defaultValue = "false") boolean deflate,
+                                OutputStream out) throws IOException, BindException, InvalidRangeException {
 
     if (showReq)
       System.out.printf("CdmrGridController '%s?%s'%n", request.getRequestURI(), request.getQueryString());
@@ -247,7 +252,9 @@ public class CdmrGridController {
         GeoReferencedArray array = grid.readData(params);
         arrays.add(array);
       }
-      sendDataResponse(arrays, out, false); // LOOK deflate ??
+      if (chunkSize > 0) // tiny chunks waste framing and tasks, huge ones defeat streaming
+        chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, chunkSize));
+      sendDataResponse(arrays, out, chunkSize, deflate);
       out.flush();
 
     } catch (Throwable t) {
@@ -258,7 +265,8 @@ public class CdmrGridController {
        System.out.printf(" that took %d msecs%n", System.currentTimeMillis() - start);
   }
 
-  private long sendDataResponse(List<GeoReferencedArray> arrays, OutputStream out, boolean deflate) throws IOException, InvalidRangeException {
+  // chunkSize > 0 : the data follow the message in chunks of about chunkSize bytes, optionally deflated, see CdmrfWriter.sendChunkedData
+  private long sendDataResponse(List<GeoReferencedArray> arrays, OutputStream out, int chunkSize, boolean deflate) throws IOException, InvalidRangeException {
 
     // turns List into a Set
     Set<CoverageCoordSys> sysSet = arrays.stream().map(GeoReferencedArray::getCoordSysForData).collect(Collectors.toSet());
@@ -273,11 +281,21 @@ public class CdmrGridController {
     CdmrfWriter cdmrfWriter = new CdmrfWriter();
     long size = 0;
     size += writeBytes(out, NcStream.MAGIC_DATACOV);
-    CdmrFeatureProto.CoverageDataResponse dataProto = cdmrfWriter.encodeDataResponse(axisSet, sysSet, transformSet, arrays, deflate);
+    boolean chunked = chunkSize > 0;
+    CdmrFeatureProto.CoverageDataResponse dataProto = cdmrfWriter.encodeDataResponse(axisSet, sysSet, transformSet, arrays, deflate, chunked);
     byte[] datab = dataProto.toByteArray();
     size += NcStream.writeVInt(out, datab.length); // dataProto len
     size += writeBytes(out, datab); // dataProto
 
+    if (chunked) {
+      for (GeoReferencedArray array : arrays) {
+        long dataLen = cdmrfWriter.sendChunkedData(array.getData(), out, chunkSize, deflate);
+        if (showRes)
+          System.out.printf(" CdmrGridController.sendChunkedData grid='%s' org/sent= %d/%d%n", array.getCoverageName(), array.getData().getSizeBytes(), dataLen);
+        size += dataLen;
+      }
+    }
+
     /* float ratio = ((float) uncompressedLength) / deflatedSize;
     if (showRes)
       System.out.printf("  org/compress= %d/%d = %f%n", uncompressedLength, deflatedSize, ratio); */
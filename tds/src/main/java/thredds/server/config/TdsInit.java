@@ -475,6 +475,7 @@ public class TdsInit implements ApplicationListener<ContextRefreshedEvent>, Disp
     DiskCache2.exit();                // this handles background threads for all instances of DiskCache2
     thredds.inventory.bdb.MetadataManager.closeAll();
     executor.shutdownNow();
+    thredds.server.ncss.view.dsg.PointBlockPipeline.shutdown();  // background readers for NCSS point responses
 
     /* try {
       catalogWatcher.close();
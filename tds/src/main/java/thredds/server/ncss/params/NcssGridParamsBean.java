@@ -37,6 +37,7 @@ import ucar.nc2.constants.FeatureType;
 import ucar.nc2.ft2.coverage.CoverageCoordSys;
 import ucar.nc2.ft2.coverage.CoverageCollection;
 import ucar.nc2.ft2.coverage.SubsetParams;
+import ucar.nc2.ft2.coverage.writer.TargetGrid;
 import ucar.nc2.time.Calendar;
 import ucar.nc2.time.CalendarDate;
 import ucar.nc2.time.CalendarDateFormatter;
@@ -69,6 +70,12 @@ public class NcssGridParamsBean extends NcssParamsBean {
   private String runtime;
   private String timeOffset;
 
+  //// regrid onto a lat/lon or web mercator grid
+  private String crs;
+  private Integer width;
+  private Integer height;
+  private String interp;
+
   public Double getMinx() {
     return minx;
   }
@@ -165,6 +172,42 @@ public class NcssGridParamsBean extends NcssParamsBean {
     this.timeOffset = timeOffset;
   }
 
+  public String getCrs() {
+    return crs;
+  }
+
+  public void setCrs(String crs) {
+    this.crs = crs;
+  }
+
+  public Integer getWidth() {
+    return width;
+  }
+
+  public void setWidth(Integer width) {
+    this.width = width;
+  }
+
+  public Integer getHeight() {
+    return height;
+  }
+
+  public void setHeight(Integer height) {
+    this.height = height;
+  }
+
+  public String getInterp() {
+    return interp;
+  }
+
+  public void setInterp(String interp) {
+    this.interp = interp;
+  }
+
+  public boolean hasRegrid() {
+    return crs != null;
+  }
+
   ////////////////////////////
   protected Double timeOffsetVal;
   protected boolean firstTimeOffset;
@@ -235,6 +278,13 @@ public class NcssGridParamsBean extends NcssParamsBean {
     if (hasLatLonPoint())
       subset.set(SubsetParams.latlonPoint, new LatLonPointImpl(getLatitude(), getLongitude()));
 
+    // regrid, replaces the horiz subset
+    if (hasRegrid() && hasLatLonBB()) {
+      subset.set(SubsetParams.regrid, TargetGrid.factory(crs, getLatLonBoundingBox(), width, height));
+      if (interp != null)
+        subset.set(SubsetParams.regridMethod, interp);
+    }
+
     if (isFmrc) { // 2D Time subsetting
 
       // runtime
@@ -34,6 +34,7 @@
 package thredds.server.ncss.validation;
 
 import thredds.server.ncss.params.NcssGridParamsBean;
+import ucar.nc2.ft2.coverage.writer.TargetGrid;
 import ucar.nc2.time.CalendarDate;
 
 import javax.validation.ConstraintValidator;
@@ -44,6 +45,7 @@ import javax.validation.ConstraintValidatorContext;
  * 1) if has either latitude or longitude, has both
  * 2) if has any of latlon bb, has all. north > south, east > west
  * 3) if has any of projection bb, has all. min < max
+ * 4) if regridding, has a supported crs, a latlon bb, and width and height
  * <p>
  * Messages in WEB-INF/classes/ValidationMessages.properties
  *
@@ -51,7 +53,6 @@ import javax.validation.ConstraintValidatorContext;
  * @since 10/9/13
  */
 public class NcssGridRequestValidator implements ConstraintValidator<NcssGridRequestConstraint, NcssGridParamsBean> {
-
   /* (non-Javadoc)
    * @see javax.validation.ConstraintValidator#initialize(java.lang.annotation.Annotation)
    */
@@ -112,6 +113,26 @@ public class NcssGridRequestValidator implements ConstraintValidator<NcssGridReq
       }
     }
 
+    // regrid: crs, lat/lon bb, width and height
+    if (params.hasRegrid()) {
+      if (!TargetGrid.isSupportedCrs(params.getCrs())) {
+        isValid = false;
+        constraintValidatorContext.buildConstraintViolationWithTemplate("{thredds.server.ncSubset.validation.regrid_crs}").addConstraintViolation();
+      }
+      if (!params.hasLatLonBB()) {
+        isValid = false;
+        constraintValidatorContext.buildConstraintViolationWithTemplate("{thredds.server.ncSubset.validation.regrid_bbox}").addConstraintViolation();
+      }
+      if (params.getWidth() == null || params.getHeight() == null || !TargetGrid.isValidSize(params.getWidth(), params.getHeight())) {
+        isValid = false;
+        constraintValidatorContext.buildConstraintViolationWithTemplate("{thredds.server.ncSubset.validation.regrid_size}").addConstraintViolation();
+      }
+      if (params.getInterp() != null && !params.getInterp().equalsIgnoreCase("nearest") && !params.getInterp().equalsIgnoreCase("bilinear")) {
+        isValid = false;
+        constraintValidatorContext.buildConstraintViolationWithTemplate("{thredds.server.ncSubset.validation.regrid_interp}").addConstraintViolation();
+      }
+    }
+
     // runtime: latest, all, or time
     if (params.getRuntime() != null) {
       if ("latest".equalsIgnoreCase(params.getRuntime())) {
@@ -63,6 +63,14 @@ public abstract class DsgSubsetWriter {
         this.wantedRange = getWantedDateRange(ncssParams);
     }
 
+    // names of the wanted variables, as members of the point feature data
+    protected List<String> getWantedMemberNames() {
+        List<String> memberNames = new ArrayList<>(wantedVariables.size());
+        for (VariableSimpleIF wantedVar : wantedVariables)
+            memberNames.add(wantedVar.getShortName());
+        return memberNames;
+    }
+
     abstract public HttpHeaders getHttpHeaders(String datasetPath, boolean isStream);
     abstract public void write() throws Exception;
 
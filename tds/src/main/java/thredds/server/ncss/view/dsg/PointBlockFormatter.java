@@ -0,0 +1,181 @@
+/*
+ * Copyright 1998-2015 John Caron and University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package thredds.server.ncss.view.dsg;
+
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.StructureData;
+import ucar.nc2.ft.PointFeatureBlock;
+import ucar.nc2.time.CalendarDateFormatter;
+import ucar.nc2.time.CalendarDateUnit;
+import ucar.unidata.util.Format;
+
+/**
+ * Formats the values in a PointFeatureBlock for the text writers, with the same output as formatting each
+ * PointFeature, but without making a String for each value where that can be avoided.
+ * Times and coordinates repeat a lot in point data, so the last one formatted is reused.
+ * Not thread-safe, use one per writer.
+ *
+ * @since 10/19/2016
+ */
+public class PointBlockFormatter {
+  private final LastValue time = new LastValue(-1);
+  private final LastValue lat = new LastValue(3);
+  private final LastValue lon = new LastValue(3);
+  private final LastValue alt = new LastValue(0);
+  private CalendarDateUnit timeUnit;
+
+  /**
+   * Same as CalendarDateFormatter.toDateTimeStringISO(block.getObservationTimeAsCalendarDate(row))
+   */
+  public String formatTime(PointFeatureBlock block, int row) {
+    double val = block.getObservationTimes()[row];
+    if (!time.isSame(val) || block.getTimeUnit() != timeUnit) {
+      time.set(val, CalendarDateFormatter.toDateTimeStringISO(block.getObservationTimeAsCalendarDate(row)));
+      timeUnit = block.getTimeUnit();
+    }
+    return time.string;
+  }
+
+  /**
+   * Same as Format.dfrac(latitude, 3)
+   */
+  public String formatLatitude(PointFeatureBlock block, int row) {
+    return lat.format(block.getLatitudes()[row]);
+  }
+
+  /**
+   * Same as Format.dfrac(longitude, 3)
+   */
+  public String formatLongitude(PointFeatureBlock block, int row) {
+    return lon.format(block.getLongitudes()[row]);
+  }
+
+  /**
+   * Same as Format.dfrac(altitude, 0)
+   */
+  public String formatAltitude(PointFeatureBlock block, int row) {
+    return alt.format(block.getAltitudes()[row]);
+  }
+
+  /**
+   * Append a data member, the same as PointFeature.getDataAll().getArray(memberName).toString().trim()
+   *
+   * @return false if the member is not in the block, in which case nothing is appended
+   */
+  public boolean appendData(StringBuilder sb, PointFeatureBlock block, String memberName, int row) {
+    Array col = block.getData(memberName);
+    if (col == null) return false;
+    DataType dataType = col.getDataType();
+
+    if (!isSignedNumber(dataType)) {
+      sb.append(block.getData(memberName, row).toString().trim());
+      return true;
+    }
+
+    // StringBuilder.append() of a primitive gives the same text as the boxed toString() that Array.toString() uses
+    int size = block.getRowSize(memberName);
+    int start = row * size;
+    for (int k = 0; k < size; k++) {
+      if (k > 0) sb.append(' ');
+      switch (dataType) {
+        case DOUBLE: sb.append(col.getDouble(start + k)); break;
+        case FLOAT: sb.append(col.getFloat(start + k)); break;
+        case LONG: sb.append(col.getLong(start + k)); break;
+        case INT: sb.append(col.getInt(start + k)); break;
+        case SHORT: sb.append(col.getShort(start + k)); break;
+        case BYTE: sb.append(col.getByte(start + k)); break;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Format a data member for XML character data, the same as
+   * Parse.cleanCharacterData(getArray(memberName).toString()).trim() for text members, and
+   * getArray(memberName).toString().trim() otherwise.
+   * The result is left in sb, which is cleared first.
+   *
+   * @return false if the member is not in the block
+   */
+  public boolean formatXmlData(StringBuilder sb, PointFeatureBlock block, String memberName, int row) {
+    sb.setLength(0);
+    Array col = block.getData(memberName);
+    if (col == null) return false;
+    if (isSignedNumber(col.getDataType()))
+      return appendData(sb, block, memberName, row);
+
+    Array dataArray = block.getData(memberName, row);
+    String ss = dataArray.toString();
+    Class elemType = dataArray.getElementType();
+    if ((elemType == String.class) || (elemType == char.class) || (elemType == StructureData.class))
+      ss = ucar.nc2.util.xml.Parse.cleanCharacterData(ss); // make sure no bad chars
+    sb.append(ss.trim());
+    return true;
+  }
+
+  /**
+   * True if appendData() writes the member as numbers, so it never needs escaping
+   */
+  public static boolean isSignedNumber(DataType dataType) {
+    switch (dataType) {
+      case DOUBLE: case FLOAT: case LONG: case INT: case SHORT: case BYTE: return true;
+      default: return false;
+    }
+  }
+
+  private static class LastValue {
+    final int decimals;
+    double val;
+    String string;
+
+    LastValue(int decimals) {
+      this.decimals = decimals;
+    }
+
+    boolean isSame(double val) {
+      return string != null && Double.compare(this.val, val) == 0;
+    }
+
+    void set(double val, String string) {
+      this.val = val;
+      this.string = string;
+    }
+
+    String format(double val) {
+      if (!isSame(val))
+        set(val, Format.dfrac(val, decimals));
+      return string;
+    }
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 1998-2015 John Caron and University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package thredds.server.ncss.view.dsg;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import ucar.nc2.ft.PointFeatureBlock;
+import ucar.nc2.ft.PointFeatureIterator;
+
+/**
+ * Reads PointFeatureBlocks from a PointFeatureIterator on a background thread, so reading the dataset overlaps with
+ * formatting and writing the response on the request thread.
+ * A fixed set of blocks is passed back and forth, so the reader waits when the writer falls behind.
+ * The iterator is only used on the reader thread, and is closed there.
+ *
+ * @since 10/19/2016
+ */
+public class PointBlockPipeline implements Closeable {
+  static private final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(PointBlockPipeline.class);
+
+  public static final int DEFAULT_BLOCK_SIZE = 1000;
+  public static final int DEFAULT_DEPTH = 3;
+
+  private static final long POLL_MSECS = 100;
+  private static final Object END = new Object();
+
+  private static final ExecutorService fetchExecutor = Executors.newCachedThreadPool(
+          new ThreadFactoryBuilder().setNameFormat("NcssPointFetch-%d").setDaemon(true).build());
+
+  /**
+   * Stop the reader threads, call on shutdown.
+   */
+  public static void shutdown() {
+    fetchExecutor.shutdownNow();
+  }
+
+  private final BlockingQueue<PointFeatureBlock> empty;
+  private final BlockingQueue<Object> filled;  // blocks, END, or the Throwable that stopped the reader
+  private final CountDownLatch done = new CountDownLatch(1);
+  private volatile boolean cancelled;
+
+  private PointFeatureBlock current;
+  private boolean finished;
+
+  public PointBlockPipeline(PointFeatureIterator iter, List<String> memberNames) {
+    this(iter, memberNames, DEFAULT_BLOCK_SIZE, DEFAULT_DEPTH);
+  }
+
+  /**
+   * Start reading.
+   *
+   * @param iter        read from here; closed when done
+   * @param memberNames data members to keep in the blocks
+   * @param blockSize   number of features in each block
+   * @param depth       number of blocks; the reader can be this many blocks ahead of the writer
+   */
+  public PointBlockPipeline(PointFeatureIterator iter, List<String> memberNames, int blockSize, int depth) {
+    this.empty = new ArrayBlockingQueue<>(depth);
+    this.filled = new ArrayBlockingQueue<>(depth + 1);  // every block plus the final marker fits, so add() never fails
+    for (int i = 0; i < depth; i++)
+      empty.add(new PointFeatureBlock(blockSize, memberNames));
+
+    fetchExecutor.execute(() -> read(iter));
+  }
+
+  private void read(PointFeatureIterator iter) {
+    try {
+      while (!cancelled) {
+        // poll so that close() is noticed; dont interrupt the thread, it may be reading from a shared file
+        PointFeatureBlock block = empty.poll(POLL_MSECS, TimeUnit.MILLISECONDS);
+        if (block == null) continue;
+        if (iter.readBlock(block) == 0) break;
+        filled.add(block);
+      }
+      filled.add(END);
+
+    } catch (Throwable t) {
+      if (!cancelled)
+        logger.debug("reading point features failed", t);
+      filled.add(t);
+
+    } finally {
+      iter.close();
+      done.countDown();
+    }
+  }
+
+  /**
+   * Get the next block of features, waiting for the reader if needed.
+   * The block may be reused after the next call to next() or close().
+   *
+   * @return next block, never empty, or null when there are no more
+   * @throws IOException if the reader failed
+   */
+  public PointFeatureBlock next() throws IOException {
+    if (finished) return null;
+    if (current != null) {
+      empty.add(current);
+      current = null;
+    }
+
+    Object result;
+    try {
+      result = filled.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("interrupted waiting for point features");
+    }
+
+    if (result == END) {
+      finished = true;
+      return null;
+    }
+    if (result instanceof Throwable) {
+      finished = true;
+      Throwable t = (Throwable) result;
+      if (t instanceof IOException) throw (IOException) t;
+      if (t instanceof RuntimeException) throw (RuntimeException) t;
+      if (t instanceof Error) throw (Error) t;
+      throw new IOException(t);
+    }
+
+    current = (PointFeatureBlock) result;
+    return current;
+  }
+
+  /**
+   * Stop reading, and wait until the reader has closed the iterator.
+   */
+  @Override
+  public void close() {
+    cancelled = true;
+    try {
+      done.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
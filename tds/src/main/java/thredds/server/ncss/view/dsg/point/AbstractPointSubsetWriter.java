@@ -73,9 +73,21 @@ public abstract class AbstractPointSubsetWriter extends DsgSubsetWriter {
     if (subsettedPointFeatColl == null) // means theres nothing in the subset
       return;
 
+    int count = writePoints(subsettedPointFeatColl);
+    if (count == 0)
+      throw new NcssException("No features are in the requested subset");
+
+    writeFooter();
+  }
+
+  /**
+   * Write the header and all the points in the collection.
+   * @return number of points written
+   */
+  protected int writePoints(PointFeatureCollection pointFeatColl) throws Exception {
     int count = 0;
     boolean headerDone = false;
-    for (PointFeature pointFeat : subsettedPointFeatColl) {
+    for (PointFeature pointFeat : pointFeatColl) {
       if (!headerDone) {
         writeHeader(pointFeat);
         headerDone = true;
@@ -83,10 +95,6 @@ public abstract class AbstractPointSubsetWriter extends DsgSubsetWriter {
       writePoint(pointFeat);
       count++;
     }
-
-    if (count == 0)
-      throw new NcssException("No features are in the requested subset");
-
-    writeFooter();
+    return count;
   }
 }
@@ -7,6 +7,8 @@ package thredds.server.ncss.view.dsg.point;
 import org.springframework.http.HttpHeaders;
 
 import thredds.server.ncss.exception.NcssException;
+import thredds.server.ncss.view.dsg.PointBlockFormatter;
+import thredds.server.ncss.view.dsg.PointBlockPipeline;
 import thredds.util.ContentType;
 import thredds.util.TdsPathUtils;
 import ucar.ma2.Array;
@@ -15,6 +17,8 @@ import ucar.nc2.VariableSimpleIF;
 import ucar.nc2.constants.CDM;
 import ucar.nc2.ft.FeatureDatasetPoint;
 import ucar.nc2.ft.PointFeature;
+import ucar.nc2.ft.PointFeatureBlock;
+import ucar.nc2.ft.PointFeatureCollection;
 import ucar.nc2.ft2.coverage.SubsetParams;
 import ucar.nc2.time.CalendarDateFormatter;
 import ucar.unidata.geoloc.EarthLocation;
@@ -24,12 +28,14 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.util.List;
 
 /**
  * Created by cwardgar on 2014/06/02.
  */
 public class PointSubsetWriterCSV extends AbstractPointSubsetWriter {
     final protected PrintWriter writer;
+    private final PointBlockFormatter formatter = new PointBlockFormatter();
 
     public PointSubsetWriterCSV(FeatureDatasetPoint fdPoint, SubsetParams ncssParams, OutputStream out)
             throws NcssException, IOException {
@@ -85,6 +91,38 @@ public class PointSubsetWriterCSV extends AbstractPointSubsetWriter {
         writer.println();
     }
 
+    // read the points a block at a time on another thread, and format them here
+    @Override
+    protected int writePoints(PointFeatureCollection pointFeatColl) throws IOException {
+        List<String> memberNames = getWantedMemberNames();
+        StringBuilder line = new StringBuilder(200);
+
+        int count = 0;
+        try (PointBlockPipeline pipeline = new PointBlockPipeline(pointFeatColl.getPointFeatureIterator(), memberNames)) {
+            PointFeatureBlock block;
+            while ((block = pipeline.next()) != null) {
+                if (count == 0)
+                    writeHeader(null);
+
+                for (int row = 0; row < block.getCount(); row++) {
+                    line.setLength(0);
+                    line.append(formatter.formatTime(block, row));
+                    line.append(',').append(formatter.formatLatitude(block, row));
+                    line.append(',').append(formatter.formatLongitude(block, row));
+
+                    for (String memberName : memberNames) {
+                        line.append(',');
+                        formatter.appendData(line, block, memberName, row);
+                    }
+                    writer.append(line);
+                    writer.println();
+                }
+                count += block.getCount();
+            }
+        }
+        return count;
+    }
+
     @Override
     public void writeFooter() {
         writer.flush();
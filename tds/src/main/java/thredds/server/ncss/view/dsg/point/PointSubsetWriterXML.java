@@ -34,6 +34,8 @@ package thredds.server.ncss.view.dsg.point;
 
 import org.springframework.http.HttpHeaders;
 import thredds.server.ncss.exception.NcssException;
+import thredds.server.ncss.view.dsg.PointBlockFormatter;
+import thredds.server.ncss.view.dsg.PointBlockPipeline;
 import thredds.util.ContentType;
 import thredds.util.TdsPathUtils;
 import ucar.ma2.Array;
@@ -42,6 +44,8 @@ import ucar.nc2.VariableSimpleIF;
 import ucar.nc2.constants.CDM;
 import ucar.nc2.ft.FeatureDatasetPoint;
 import ucar.nc2.ft.PointFeature;
+import ucar.nc2.ft.PointFeatureBlock;
+import ucar.nc2.ft.PointFeatureCollection;
 import ucar.nc2.ft2.coverage.SubsetParams;
 import ucar.nc2.time.CalendarDateFormatter;
 import ucar.unidata.geoloc.EarthLocation;
@@ -52,12 +56,16 @@ import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.List;
 
 /**
  * Created by cwardgar on 2014/06/03.
  */
 public class PointSubsetWriterXML extends AbstractPointSubsetWriter {
     private final XMLStreamWriter staxWriter;
+    private final PointBlockFormatter formatter = new PointBlockFormatter();
+    private final StringBuilder text = new StringBuilder(100);
+    private char[] chars = new char[100];
 
     public PointSubsetWriterXML(FeatureDatasetPoint fdPoint, SubsetParams ncssParams, OutputStream out)
             throws XMLStreamException, NcssException, IOException {
@@ -125,6 +133,59 @@ public class PointSubsetWriterXML extends AbstractPointSubsetWriter {
         staxWriter.writeEndElement();
     }
 
+    // read the points a block at a time on another thread, and format them here
+    @Override
+    protected int writePoints(PointFeatureCollection pointFeatColl) throws IOException, XMLStreamException {
+        List<String> memberNames = getWantedMemberNames();
+
+        int count = 0;
+        try (PointBlockPipeline pipeline = new PointBlockPipeline(pointFeatColl.getPointFeatureIterator(), memberNames)) {
+            PointFeatureBlock block;
+            while ((block = pipeline.next()) != null) {
+                if (count == 0)
+                    writeHeader(null);
+
+                for (int row = 0; row < block.getCount(); row++) {
+                    staxWriter.writeCharacters("\n    ");
+                    staxWriter.writeStartElement("pointFeature");
+                    staxWriter.writeAttribute("date", formatter.formatTime(block, row));
+
+                    staxWriter.writeCharacters("\n        ");
+                    staxWriter.writeEmptyElement("location");
+                    staxWriter.writeAttribute("latitude", formatter.formatLatitude(block, row));
+                    staxWriter.writeAttribute("longitude", formatter.formatLongitude(block, row));
+                    if (!Double.isNaN(block.getAltitudes()[row]))
+                        staxWriter.writeAttribute("altitude", formatter.formatAltitude(block, row));
+
+                    for (VariableSimpleIF wantedVar : wantedVariables) {
+                        staxWriter.writeCharacters("\n        ");
+                        staxWriter.writeStartElement("data");
+                        staxWriter.writeAttribute("name", wantedVar.getShortName());
+                        if (wantedVar.getUnitsString() != null)
+                            staxWriter.writeAttribute(CDM.UNITS, wantedVar.getUnitsString());
+
+                        formatter.formatXmlData(text, block, wantedVar.getShortName(), row);
+                        writeCharacters(text);
+                        staxWriter.writeEndElement();
+                    }
+
+                    staxWriter.writeCharacters("\n    ");
+                    staxWriter.writeEndElement();
+                }
+                count += block.getCount();
+            }
+        }
+        return count;
+    }
+
+    // write without making a String
+    private void writeCharacters(StringBuilder sb) throws XMLStreamException {
+        if (chars.length < sb.length())
+            chars = new char[2 * sb.length()];
+        sb.getChars(0, sb.length(), chars, 0);
+        staxWriter.writeCharacters(chars, 0, sb.length());
+    }
+
     @Override
     public void writeFooter() throws XMLStreamException {
         staxWriter.writeCharacters("\n");
@@ -40,6 +40,7 @@ import ucar.nc2.ft.*;
 import ucar.nc2.ft.point.PointIteratorFiltered;
 import ucar.nc2.ft.point.StationFeature;
 import ucar.nc2.ft.point.StationPointFeature;
+import ucar.nc2.ft.point.StationTimeSeriesCollectionImpl;
 import ucar.nc2.ft.point.StationTimeSeriesFeatureImpl;
 import ucar.nc2.ft2.coverage.SubsetParams;
 import ucar.nc2.time.CalendarDate;
@@ -229,7 +230,8 @@ public abstract class AbstractStationSubsetWriter extends DsgSubsetWriter {
 
   /*
    * Find the station closest to the specified point.
-   * The metric is (lat-lat0)**2 + (cos(lat0)*(lon-lon0))**2
+   * Collections with a station index use great circle distance; otherwise the
+   * metric is (lat-lat0)**2 + (cos(lat0)*(lon-lon0))**2
    *
    * @param lat latitude value
    * @param lon longitude value
@@ -238,6 +240,11 @@ public abstract class AbstractStationSubsetWriter extends DsgSubsetWriter {
    */
   public static Station findClosestStation(StationTimeSeriesFeatureCollection stationFeatCol, LatLonPoint pt)
           throws IOException {
+    if (stationFeatCol instanceof StationTimeSeriesCollectionImpl) {
+      List<StationFeature> nearest = ((StationTimeSeriesCollectionImpl) stationFeatCol).getNearestStationFeatures(pt, 1);
+      if (!nearest.isEmpty()) return nearest.get(0);
+    }
+
     double lat = pt.getLatitude();
     double lon = pt.getLongitude();
     double cos = Math.cos(Math.toRadians(lat));
@@ -8,15 +8,20 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.util.List;
 import org.springframework.http.HttpHeaders;
 
 import thredds.server.ncss.exception.NcssException;
+import thredds.server.ncss.view.dsg.PointBlockFormatter;
+import thredds.server.ncss.view.dsg.PointBlockPipeline;
 import thredds.util.ContentType;
 import thredds.util.TdsPathUtils;
 import ucar.ma2.Array;
 import ucar.nc2.VariableSimpleIF;
 import ucar.nc2.constants.CDM;
 import ucar.nc2.ft.FeatureDatasetPoint;
+import ucar.nc2.ft.PointFeatureBlock;
+import ucar.nc2.ft.StationTimeSeriesFeature;
 import ucar.nc2.ft.point.StationPointFeature;
 import ucar.nc2.ft2.coverage.SubsetParams;
 import ucar.nc2.time.CalendarDateFormatter;
@@ -28,6 +33,7 @@ import ucar.unidata.util.Format;
  */
 public class StationSubsetWriterCSV extends AbstractStationSubsetWriter {
     final protected PrintWriter writer;
+    private final PointBlockFormatter formatter = new PointBlockFormatter();
 
     public StationSubsetWriterCSV(FeatureDatasetPoint fdPoint, SubsetParams ncssParams, OutputStream out)
             throws NcssException, IOException {
@@ -84,6 +90,42 @@ public class StationSubsetWriterCSV extends AbstractStationSubsetWriter {
         writer.println();
     }
 
+    // read the station's obs a block at a time on another thread, and format them here
+    @Override
+    protected int writeStationTimeSeriesFeature(StationTimeSeriesFeature stationFeat) throws IOException {
+        List<String> memberNames = getWantedMemberNames();
+        StringBuilder line = new StringBuilder(200);
+
+        String prefix = "," + stationFeat.getName() + "," + Format.dfrac(stationFeat.getLatitude(), 3) + "," +
+                Format.dfrac(stationFeat.getLongitude(), 3);
+
+        int count = 0;
+        try (PointBlockPipeline pipeline = new PointBlockPipeline(stationFeat.getPointFeatureIterator(), memberNames)) {
+            PointFeatureBlock block;
+            while ((block = pipeline.next()) != null) {
+                if (!headerDone) {
+                    writeHeader(null);
+                    headerDone = true;
+                }
+
+                for (int row = 0; row < block.getCount(); row++) {
+                    line.setLength(0);
+                    line.append(formatter.formatTime(block, row));
+                    line.append(prefix);
+
+                    for (String memberName : memberNames) {
+                        line.append(',');
+                        formatter.appendData(line, block, memberName, row);
+                    }
+                    writer.append(line);
+                    writer.println();
+                }
+                count += block.getCount();
+            }
+        }
+        return count;
+    }
+
     @Override
     protected void writeFooter() throws IOException {
         writer.flush();
@@ -34,11 +34,14 @@ package thredds.server.ncss.view.dsg.station;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.List;
 import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 import org.springframework.http.HttpHeaders;
 import thredds.server.ncss.exception.NcssException;
+import thredds.server.ncss.view.dsg.PointBlockFormatter;
+import thredds.server.ncss.view.dsg.PointBlockPipeline;
 import thredds.util.ContentType;
 import thredds.util.TdsPathUtils;
 import ucar.ma2.Array;
@@ -46,6 +49,8 @@ import ucar.ma2.StructureData;
 import ucar.nc2.VariableSimpleIF;
 import ucar.nc2.constants.CDM;
 import ucar.nc2.ft.FeatureDatasetPoint;
+import ucar.nc2.ft.PointFeatureBlock;
+import ucar.nc2.ft.StationTimeSeriesFeature;
 import ucar.nc2.ft.point.StationPointFeature;
 import ucar.nc2.ft2.coverage.SubsetParams;
 import ucar.nc2.time.CalendarDateFormatter;
@@ -57,6 +62,9 @@ import ucar.unidata.util.Format;
  */
 public class StationSubsetWriterXML extends AbstractStationSubsetWriter {
     private final XMLStreamWriter staxWriter;
+    private final PointBlockFormatter formatter = new PointBlockFormatter();
+    private final StringBuilder text = new StringBuilder(100);
+    private char[] chars = new char[100];
 
     public StationSubsetWriterXML(FeatureDatasetPoint fdPoint, SubsetParams ncssParams, OutputStream out)
             throws XMLStreamException, NcssException, IOException {
@@ -128,6 +136,69 @@ public class StationSubsetWriterXML extends AbstractStationSubsetWriter {
         staxWriter.writeEndElement();
     }
 
+    // read the station's obs a block at a time on another thread, and format them here
+    @Override
+    protected int writeStationTimeSeriesFeature(StationTimeSeriesFeature stationFeat)
+            throws IOException, XMLStreamException {
+        List<String> memberNames = getWantedMemberNames();
+        String lat = Format.dfrac(stationFeat.getLatitude(), 3);
+        String lon = Format.dfrac(stationFeat.getLongitude(), 3);
+        String alt = Double.isNaN(stationFeat.getAltitude()) ? null : Format.dfrac(stationFeat.getAltitude(), 0);
+
+        int count = 0;
+        try (PointBlockPipeline pipeline = new PointBlockPipeline(stationFeat.getPointFeatureIterator(), memberNames)) {
+            PointFeatureBlock block;
+            while ((block = pipeline.next()) != null) {
+                if (!headerDone) {
+                    writeHeader(null);
+                    headerDone = true;
+                }
+
+                for (int row = 0; row < block.getCount(); row++) {
+                    staxWriter.writeCharacters("\n    ");
+                    staxWriter.writeStartElement("stationFeature");
+                    staxWriter.writeAttribute("date", formatter.formatTime(block, row));
+
+                    staxWriter.writeCharacters("\n        ");
+                    staxWriter.writeStartElement("station");
+                    staxWriter.writeAttribute("name", stationFeat.getName());
+                    staxWriter.writeAttribute("latitude", lat);
+                    staxWriter.writeAttribute("longitude", lon);
+                    if (alt != null)
+                        staxWriter.writeAttribute("altitude", alt);
+                    if (stationFeat.getDescription() != null)
+                        staxWriter.writeCharacters(stationFeat.getDescription());
+                    staxWriter.writeEndElement();
+
+                    for (VariableSimpleIF wantedVar : wantedVariables) {
+                        staxWriter.writeCharacters("\n        ");
+                        staxWriter.writeStartElement("data");
+                        staxWriter.writeAttribute("name", wantedVar.getShortName());
+                        if (wantedVar.getUnitsString() != null)
+                            staxWriter.writeAttribute(CDM.UNITS, wantedVar.getUnitsString());
+
+                        formatter.formatXmlData(text, block, wantedVar.getShortName(), row);
+                        writeCharacters(text);
+                        staxWriter.writeEndElement();
+                    }
+
+                    staxWriter.writeCharacters("\n    ");
+                    staxWriter.writeEndElement();
+                }
+                count += block.getCount();
+            }
+        }
+        return count;
+    }
+
+    // write without making a String
+    private void writeCharacters(StringBuilder sb) throws XMLStreamException {
+        if (chars.length < sb.length())
+            chars = new char[2 * sb.length()];
+        sb.getChars(0, sb.length(), chars, 0);
+        staxWriter.writeCharacters(chars, 0, sb.length());
+    }
+
     @Override
     protected void writeFooter() throws XMLStreamException {
         staxWriter.writeCharacters("\n");
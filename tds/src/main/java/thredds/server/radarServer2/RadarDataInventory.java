@@ -74,6 +74,9 @@ public class RadarDataInventory {
     private String name, description;
     private DateRange timeCoverage;
     private RadarServerConfig.RadarConfigEntry.GeoInfo geoCoverage;
+    private boolean useIndex = true;
+    private Path indexFile;
+    private RadarFileIndex index;
 
     public RadarDataInventory(Path datasetRoot, int numCrawl) {
         items = new EnumMap<>(DirType.class);
@@ -155,6 +158,39 @@ public class RadarDataInventory {
         nearestWindow = pd;
     }
 
+    /**
+     * Answer queries from an index of the collection, rather than crawling
+     * the directories for each query. Default is true.
+     */
+    public void setUseIndex(boolean useIndex) {
+        this.useIndex = useIndex;
+    }
+
+    /**
+     * Persist the index in this file, so it need not be rebuilt on restart.
+     */
+    public synchronized void setIndexFile(Path indexFile) {
+        this.indexFile = indexFile;
+        if (index != null) index.setIndexFile(indexFile);
+    }
+
+    public void showIndex(Formatter f) {
+        RadarFileIndex idx;
+        synchronized (this) {
+            idx = index;
+        }
+        if (idx == null) f.format("not yet built%n");
+        else idx.show(f);
+    }
+
+    synchronized RadarFileIndex getIndex() {
+        if (index == null) {
+            index = new RadarFileIndex(structure, fileTimeRegex, fileTimeFmt);
+            index.setIndexFile(indexFile);
+        }
+        return index;
+    }
+
     public static class DirectoryStructure {
         int maxCrawlDepth = 1;
         private static class DirEntry {
@@ -166,7 +202,7 @@ public class RadarDataInventory {
             }
         }
 
-        private class DirectoryDateMatcher {
+        class DirectoryDateMatcher {
             // Map a directory level to a date format
             List<Integer> levels;
             String fmt;
@@ -181,6 +217,13 @@ public class RadarDataInventory {
                 fmt += value;
             }
 
+            public DirectoryDateMatcher copy() {
+                DirectoryDateMatcher result = new DirectoryDateMatcher();
+                result.levels.addAll(levels);
+                result.fmt = fmt;
+                return result;
+            }
+
             public SimpleDateFormat getFormat() {
                 SimpleDateFormat sdf = new SimpleDateFormat(fmt);
                 sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
@@ -221,6 +264,22 @@ public class RadarDataInventory {
             order.add(new DirEntry(type, fmt));
         }
 
+        public Path getBase() {
+            return base;
+        }
+
+        public int size() {
+            return order.size();
+        }
+
+        public DirType getType(int level) {
+            return order.get(level).type;
+        }
+
+        public String getFormat(int level) {
+            return order.get(level).fmt;
+        }
+
         // Get a key for a path based on station/var
         public String getKey(Path path) {
             Path relPath = base.relativize(path);
@@ -234,17 +293,20 @@ public class RadarDataInventory {
         public DirectoryDateMatcher matcher() { return new DirectoryDateMatcher(); }
     }
 
-    public void addStationDir() {
+    public synchronized void addStationDir() {
+        index = null;
         structure.addSubDir(DirType.Station, null);
         dirty = true;
     }
 
-    public void addVariableDir() {
+    public synchronized void addVariableDir() {
+        index = null;
         structure.addSubDir(DirType.Variable, null);
         dirty = true;
     }
 
-    public void addDateDir(String fmt) {
+    public synchronized void addDateDir(String fmt) {
+        index = null;
         structure.addSubDir(DirType.Date, fmt);
         CalendarPeriod adjust = findRangeAdjustment(fmt);
         if (rangeAdjustment == null) {
@@ -272,7 +334,8 @@ public class RadarDataInventory {
             return CalendarPeriod.of(366, CalendarPeriod.Field.Day);
     }
 
-    public void addFileTime(String regex, String fmt) {
+    public synchronized void addFileTime(String regex, String fmt) {
+        index = null;
         fileTimeRegex = java.util.regex.Pattern.compile(regex);
         fileTimeFmt = fmt;
     }
@@ -446,6 +509,54 @@ public class RadarDataInventory {
         }
 
         public Collection<QueryResultItem> results() {
+            return useIndex ? indexedResults() : crawlResults();
+        }
+
+        private Collection<QueryResultItem> indexedResults() {
+            RadarFileIndex idx = getIndex();
+            List<Object> dates = q.get(DirType.Date);
+            CalendarDateRange range = (CalendarDateRange) dates.get(0);
+            long window = (range == null) ? 0 :
+                    range.getStart().add(nearestWindow).getDifferenceInMsecs(range.getStart());
+
+            // Bring the index up to date if the query might want files that
+            // arrived since it was last updated
+            if (range == null)
+                idx.refresh(Long.MAX_VALUE);
+            else if (range.isPoint())
+                idx.refresh(range.getEnd().getMillis() + window);
+            else
+                idx.refresh(range.getEnd().getMillis());
+
+            List<Collection<String>> keyValues = new ArrayList<>();
+            for (DirType type : idx.getKeyTypes()) {
+                List<Object> vals = q.get(type);
+                if (vals == null) {
+                    keyValues.add(null);
+                } else {
+                    Set<String> names = new HashSet<>();
+                    for (Object val : vals)
+                        names.add(val.toString());
+                    keyValues.add(names);
+                }
+            }
+
+            List<RadarFileIndex.Item> items;
+            if (range == null)
+                items = idx.find(keyValues, Long.MIN_VALUE, Long.MAX_VALUE);
+            else if (range.isPoint())
+                items = idx.findNearest(keyValues, range.getStart().getMillis(), window);
+            else
+                items = idx.find(keyValues, range.getStart().getMillis(),
+                        range.getEnd().getMillis());
+
+            List<QueryResultItem> result = new ArrayList<>(items.size());
+            for (RadarFileIndex.Item item : items)
+                result.add(new QueryResultItem(item.file, CalendarDate.of(item.time)));
+            return result;
+        }
+
+        private Collection<QueryResultItem> crawlResults() {
             List<Path> results = new ArrayList<>();
             DirectoryStructure.DirectoryDateMatcher matcher = structure.matcher();
             results.add(structure.base);
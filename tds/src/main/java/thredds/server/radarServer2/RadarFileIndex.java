@@ -0,0 +1,825 @@
+/*
+ * Copyright 1998-2015 John Caron and University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package thredds.server.radarServer2;
+
+import ucar.nc2.constants.CDM;
+
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.*;
+import java.nio.file.*;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+
+/**
+ * Index of the files in a radar collection: for each station (and variable), the
+ * files sorted by time. The collection is crawled once; after that only the newest
+ * date directories (those at or after the latest indexed time) are rescanned, and
+ * leaf directories whose modification time has not changed are skipped. Files deleted from
+ * a rescanned directory are dropped; older directories are only checked by the full scan.
+ * Queries are answered by binary search on the in-memory index, which can be
+ * persisted so that a restart does not need a full crawl.
+ *
+ * @since 10/19/2016
+ */
+@ThreadSafe
+class RadarFileIndex {
+    static private final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(RadarFileIndex.class);
+
+    static private final String MAGIC = "RadarFileIndex";
+    static private final int VERSION = 1;
+
+    // a directory modified this recently may still get files with the same timestamp
+    static private final long modifiedSlopMsec = 2000;
+
+    private final RadarDataInventory.DirectoryStructure structure;
+    private final java.util.regex.Pattern fileTimeRegex;
+    private final String fileTimeFmt;
+    private final RadarDataInventory.DirType[] keyTypes;
+    private final int[] keyPos;          // level -> position in key, or -1
+    private final RadarDataInventory.DirectoryStructure.DirectoryDateMatcher[] matchers;  // level -> matcher, for date levels
+    private final String signature;
+
+    private Path indexFile;
+    private long updateIntervalMsec = 60 * 1000;
+    private long fullScanIntervalMsec = 24 * 3600 * 1000;
+    private long writeIntervalMsec = 10 * 60 * 1000;
+
+    // only touched by the thread holding the lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Integer> dirIndex = new HashMap<>();
+    private final List<String> dirList = new ArrayList<>();
+    private Map<String, Long> dirModified = new HashMap<>();
+    private long lastFullScan, lastWrite;
+    private boolean needsWrite;
+
+    private volatile Snapshot snapshot;
+
+    RadarFileIndex(RadarDataInventory.DirectoryStructure structure,
+                   java.util.regex.Pattern fileTimeRegex, String fileTimeFmt) {
+        this.structure = structure;
+        this.fileTimeRegex = fileTimeRegex;
+        this.fileTimeFmt = fileTimeFmt;
+
+        int nlevels = structure.size();
+        List<RadarDataInventory.DirType> types = new ArrayList<>();
+        keyPos = new int[nlevels];
+        matchers = new RadarDataInventory.DirectoryStructure.DirectoryDateMatcher[nlevels];
+        RadarDataInventory.DirectoryStructure.DirectoryDateMatcher matcher = structure.matcher();
+        Formatter sig = new Formatter();
+        sig.format("%s", structure.getBase());
+        for (int level = 0; level < nlevels; level++) {
+            RadarDataInventory.DirType type = structure.getType(level);
+            sig.format("/%s", type);
+            keyPos[level] = -1;
+            if (type == RadarDataInventory.DirType.Date) {
+                sig.format(":%s", structure.getFormat(level));
+                matcher.add(level, structure.getFormat(level));
+                matchers[level] = matcher.copy();
+            } else {
+                keyPos[level] = types.size();
+                types.add(type);
+            }
+        }
+        sig.format(" %s %s", fileTimeRegex, fileTimeFmt);
+        keyTypes = types.toArray(new RadarDataInventory.DirType[types.size()]);
+        signature = sig.toString();
+    }
+
+    /**
+     * Persist the index to this file, and read it from there if it exists.
+     * @param indexFile index file, or null for memory only
+     */
+    void setIndexFile(Path indexFile) {
+        this.indexFile = indexFile;
+    }
+
+    void setUpdateInterval(long msecs) {
+        this.updateIntervalMsec = msecs;
+    }
+
+    void setFullScanInterval(long msecs) {
+        this.fullScanIntervalMsec = msecs;
+    }
+
+    /**
+     * The types of the directory levels that make up an index key, in key order
+     */
+    RadarDataInventory.DirType[] getKeyTypes() {
+        return keyTypes;
+    }
+
+    /**
+     * Bring the index up to date if needed. Updates happen at most every update interval,
+     * or more often if the caller wants files newer than the last update.
+     * @param wantTime caller wants files up to this time, in msecs
+     */
+    void refresh(long wantTime) {
+        Snapshot s = snapshot;
+        if (s != null) {
+            boolean needsCurrent = wantTime > s.updated;
+            long age = System.currentTimeMillis() - s.updated;
+            long maxAge = needsCurrent ? Math.min(updateIntervalMsec, modifiedSlopMsec * 5) : updateIntervalMsec;
+            if (age < maxAge) return;
+
+            // someone else is updating; use what we have
+            if (!lock.tryLock()) return;
+        } else {
+            lock.lock();
+        }
+
+        try {
+            if (snapshot == null) {
+                if (!readIndex())
+                    update(true);
+            } else {
+                update(System.currentTimeMillis() - lastFullScan > fullScanIntervalMsec);
+            }
+            writeIndex(false);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Rescan the collection.
+     * @param full crawl everything; otherwise only the newest and modified directories
+     */
+    void update(boolean full) {
+        lock.lock();
+        try {
+            Snapshot old = snapshot;
+            if (old == null) full = true;
+            long start = System.currentTimeMillis();
+            Crawl crawl = new Crawl(full, old, start);
+            crawl(structure.getBase(), 0, new String[keyTypes.length], crawl);
+
+            Map<String, Series> series = full ? new TreeMap<String, Series>() : new TreeMap<>(old.series);
+            int nremoved = 0;
+            if (!crawl.rescanned.isEmpty()) {
+                Iterator<Map.Entry<String, Series>> iter = series.entrySet().iterator();
+                while (iter.hasNext()) {
+                    Map.Entry<String, Series> ent = iter.next();
+                    List<Entry> found = crawl.found.get(ent.getKey());
+                    Series prev = ent.getValue();
+                    Series s = Series.removeMissing(prev, crawl.rescanned, found == null ? new ArrayList<Entry>() : found);
+                    if (s == prev) continue;
+                    nremoved += prev.size() - s.size();
+                    if (s.size() == 0) iter.remove();
+                    else ent.setValue(s);
+                }
+            }
+
+            int nadded = 0;
+            for (Map.Entry<String, List<Entry>> ent : crawl.found.entrySet()) {
+                Series prev = series.get(ent.getKey());
+                Series s = Series.add(prev, ent.getValue());
+                if (s != prev) {
+                    series.put(ent.getKey(), s);
+                    nadded += s.size() - (prev == null ? 0 : prev.size());
+                }
+            }
+
+            if (full) {
+                dirIndex.clear();
+                dirIndex.putAll(crawl.dirIndex);
+                dirList.clear();
+                dirList.addAll(crawl.dirList);
+                lastFullScan = start;
+            }
+            dirModified = crawl.dirModified;
+            String[] dirs = (old != null && !full && old.dirs.length == dirList.size()) ? old.dirs : dirList.toArray(new String[dirList.size()]);
+            snapshot = new Snapshot(Collections.unmodifiableMap(series), dirs, start);
+            if (full || nadded > 0 || nremoved > 0) needsWrite = true;
+
+            if (logger.isDebugEnabled())
+                logger.debug("{} {} scan: {} dirs, {} files seen, {} added, {} removed in {} msecs", structure.getBase(),
+                        full ? "full" : "incremental", crawl.ndirs, crawl.nfiles, nadded, nremoved, System.currentTimeMillis() - start);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Find all files with time in [start, end].
+     * @param keyValues for each key position, the allowed values, or null for any
+     * @param start start time in msecs, inclusive
+     * @param end end time in msecs, inclusive
+     */
+    List<Item> find(List<Collection<String>> keyValues, long start, long end) {
+        Snapshot s = getSnapshot();
+        List<Item> result = new ArrayList<>();
+        for (Map.Entry<String, Series> ent : s.series.entrySet()) {
+            if (!matches(ent.getKey(), keyValues)) continue;
+            Series series = ent.getValue();
+            int first = series.lowerBound(start);
+            int last = series.upperBound(end);
+            for (int i = first; i < last; i++)
+                result.add(series.getItem(i, s.dirs, structure.getBase()));
+        }
+        return result;
+    }
+
+    /**
+     * For each key, find the file nearest the given time, if within the window.
+     * @param keyValues for each key position, the allowed values, or null for any
+     * @param time target time in msecs
+     * @param window max distance from time in msecs
+     */
+    List<Item> findNearest(List<Collection<String>> keyValues, long time, long window) {
+        Snapshot s = getSnapshot();
+        List<Item> result = new ArrayList<>();
+        for (Map.Entry<String, Series> ent : s.series.entrySet()) {
+            if (!matches(ent.getKey(), keyValues)) continue;
+            Series series = ent.getValue();
+            int idx = series.lowerBound(time);
+            int best = -1;
+            long bestDiff = Long.MAX_VALUE;
+            for (int i = idx - 1; i <= idx; i++) {
+                if (i < 0 || i >= series.size()) continue;
+                long diff = Math.abs(series.getTime(i) - time);
+                if (diff < bestDiff) {
+                    bestDiff = diff;
+                    best = i;
+                }
+            }
+            if (best >= 0 && bestDiff <= window)
+                result.add(series.getItem(best, s.dirs, structure.getBase()));
+        }
+        return result;
+    }
+
+    void show(Formatter f) {
+        Snapshot s = snapshot;
+        if (s == null) {
+            f.format("not yet built%n");
+            return;
+        }
+        long nfiles = 0;
+        for (Series series : s.series.values())
+            nfiles += series.size();
+        f.format("%d keys, %d directories, %d files; updated %s, last full scan %s; index file %s%n",
+                s.series.size(), s.dirs.length, nfiles, new Date(s.updated), new Date(lastFullScan), indexFile);
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot s = snapshot;
+        if (s == null) {
+            refresh(Long.MAX_VALUE);
+            s = snapshot;
+        }
+        return s;
+    }
+
+    private boolean matches(String key, List<Collection<String>> keyValues) {
+        String[] parts = splitKey(key);
+        for (int i = 0; i < parts.length; i++) {
+            Collection<String> allowed = i < keyValues.size() ? keyValues.get(i) : null;
+            if (allowed != null && !allowed.contains(parts[i])) return false;
+        }
+        return true;
+    }
+
+    static private String makeKey(String[] parts) {
+        StringBuilder sb = new StringBuilder();
+        for (String p : parts) {
+            if (sb.length() > 0) sb.append('/');
+            sb.append(p);
+        }
+        return sb.toString();
+    }
+
+    static private String[] splitKey(String key) {
+        return key.isEmpty() ? new String[0] : key.split("/");
+    }
+
+    ////////////////////////////////////////////////////////////////////
+    // crawling
+
+    private class Crawl {
+        final boolean full;
+        final Snapshot old;
+        final long start;
+        final SimpleDateFormat fileFmt;
+        final Map<String, List<Entry>> found = new HashMap<>();
+        final BitSet rescanned = new BitSet();  // indexes of already known directories that were listed again
+        final Map<String, Long> dirModified;
+        final Map<String, Integer> dirIndex;
+        final List<String> dirList;
+        int ndirs, nfiles;
+
+        Crawl(boolean full, Snapshot old, long start) {
+            this.full = full;
+            this.old = old;
+            this.start = start;
+            this.fileFmt = new SimpleDateFormat(fileTimeFmt);
+            this.fileFmt.setTimeZone(TimeZone.getTimeZone("UTC"));
+            this.dirModified = full ? new HashMap<String, Long>() : new HashMap<>(RadarFileIndex.this.dirModified);
+            this.dirIndex = full ? new HashMap<String, Integer>() : RadarFileIndex.this.dirIndex;
+            this.dirList = full ? new ArrayList<String>() : RadarFileIndex.this.dirList;
+        }
+
+        int getDirIndex(String dir) {
+            Integer idx = dirIndex.get(dir);
+            if (idx == null) {
+                idx = dirList.size();
+                dirList.add(dir);
+                dirIndex.put(dir, idx);
+            }
+            return idx;
+        }
+    }
+
+    private void crawl(Path dir, int level, String[] keyParts, Crawl crawl) {
+        if (level == structure.size()) {
+            scanFiles(dir, keyParts, crawl);
+            return;
+        }
+
+        RadarDataInventory.DirType type = structure.getType(level);
+        RadarDataInventory.DirectoryStructure.DirectoryDateMatcher matcher = matchers[level];
+        long cutoff = Long.MIN_VALUE;
+        if (type == RadarDataInventory.DirType.Date && !crawl.full)
+            cutoff = truncate(matcher.getFormat(), newestTime(crawl.old, keyParts));
+
+        try (DirectoryStream<Path> dirStream = Files.newDirectoryStream(dir)) {
+            for (Path sub : dirStream) {
+                if (!Files.isDirectory(sub)) continue;
+                crawl.ndirs++;
+                if (type == RadarDataInventory.DirType.Date) {
+                    Date d = matcher.getDate(sub);
+                    if (d == null || d.getTime() < cutoff) continue;
+                    crawl(sub, level + 1, keyParts, crawl);
+                } else {
+                    String[] parts = keyParts.clone();
+                    parts[keyPos[level]] = sub.getFileName().toString();
+                    crawl(sub, level + 1, parts, crawl);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Error reading directory " + dir, e);
+        }
+    }
+
+    private void scanFiles(Path dir, String[] keyParts, Crawl crawl) {
+        String rel = structure.getBase().relativize(dir).toString();
+        long modified = -1;
+        try {
+            modified = Files.getLastModifiedTime(dir).toMillis();
+        } catch (IOException e) {
+            // rescan every time
+        }
+        if (!crawl.full) {
+            Long last = crawl.dirModified.get(rel);
+            if (last != null && last == modified) return;
+        }
+
+        List<Entry> entries = null;
+        int dirno = -1;
+        try (DirectoryStream<Path> dirStream = Files.newDirectoryStream(dir)) {
+            for (Path f : dirStream) {
+                Matcher regexMatcher = fileTimeRegex.matcher(f.toString());
+                if (!regexMatcher.find()) continue;
+                Date d;
+                try {
+                    d = crawl.fileFmt.parse(regexMatcher.group());
+                } catch (ParseException e) {
+                    continue; // Ignore file
+                }
+                if (entries == null) {
+                    entries = crawl.found.get(makeKey(keyParts));
+                    if (entries == null) {
+                        entries = new ArrayList<>();
+                        crawl.found.put(makeKey(keyParts), entries);
+                    }
+                    dirno = crawl.getDirIndex(rel);
+                }
+                entries.add(new Entry(d.getTime(), dirno, f.getFileName().toString()));
+                crawl.nfiles++;
+            }
+        } catch (IOException e) {
+            logger.warn("Error getting files for " + dir, e);
+            return;
+        }
+
+        // everything in this directory was seen, so indexed files that weren't are gone
+        if (!crawl.full) {
+            Integer idx = crawl.dirIndex.get(rel);
+            if (idx != null) crawl.rescanned.set(idx);
+        }
+
+        // a file written in the same clock tick as our listing would not change the time
+        if (modified >= 0 && modified < crawl.start - modifiedSlopMsec)
+            crawl.dirModified.put(rel, modified);
+    }
+
+    // newest indexed time for all keys matching the known parts
+    private long newestTime(Snapshot old, String[] keyParts) {
+        if (!Arrays.asList(keyParts).contains(null)) {
+            Series s = old.series.get(makeKey(keyParts));
+            return (s == null || s.size() == 0) ? Long.MIN_VALUE : s.getTime(s.size() - 1);
+        }
+
+        long newest = Long.MIN_VALUE;
+        for (Map.Entry<String, Series> ent : old.series.entrySet()) {
+            String[] parts = splitKey(ent.getKey());
+            boolean match = parts.length == keyParts.length;
+            for (int i = 0; match && i < parts.length; i++)
+                if (keyParts[i] != null && !keyParts[i].equals(parts[i])) match = false;
+            if (match && ent.getValue().size() > 0)
+                newest = Math.max(newest, ent.getValue().getTime(ent.getValue().size() - 1));
+        }
+        return newest;
+    }
+
+    // truncate to the resolution of the directory date format
+    static private long truncate(SimpleDateFormat fmt, long time) {
+        if (time == Long.MIN_VALUE) return time;
+        try {
+            return fmt.parse(fmt.format(new Date(time))).getTime();
+        } catch (ParseException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////
+    // persistence
+
+    private boolean readIndex() {
+        if (indexFile == null || !Files.exists(indexFile)) return false;
+        long start = System.currentTimeMillis();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (!MAGIC.equals(in.readUTF()) || in.readInt() != VERSION || !signature.equals(in.readUTF())) {
+                logger.info("Index {} is out of date; rebuilding", indexFile);
+                return false;
+            }
+            long fullScan = in.readLong();
+
+            int ndirs = in.readInt();
+            List<String> dirs = new ArrayList<>(ndirs);
+            Map<String, Long> modified = new HashMap<>(2 * ndirs);
+            for (int i = 0; i < ndirs; i++) {
+                String dir = in.readUTF();
+                long mod = in.readLong();
+                dirs.add(dir);
+                if (mod >= 0) modified.put(dir, mod);
+            }
+
+            Map<String, Series> series = new TreeMap<>();
+            int nkeys = in.readInt();
+            for (int k = 0; k < nkeys; k++) {
+                String key = in.readUTF();
+                series.put(key, Series.read(in));
+            }
+
+            dirList.clear();
+            dirList.addAll(dirs);
+            dirIndex.clear();
+            for (int i = 0; i < dirs.size(); i++)
+                dirIndex.put(dirs.get(i), i);
+            dirModified = modified;
+            lastFullScan = fullScan;
+            lastWrite = System.currentTimeMillis();
+            needsWrite = false;
+
+            // the saved index is a starting point; catch up with whatever arrived since
+            snapshot = new Snapshot(Collections.unmodifiableMap(series), dirs.toArray(new String[dirs.size()]), 0);
+            update(false);
+            logger.debug("Read index {} in {} msecs", indexFile, System.currentTimeMillis() - start);
+            return true;
+
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Failed to read index " + indexFile + "; rebuilding", e);
+            snapshot = null;
+            return false;
+        }
+    }
+
+    /**
+     * Write the index file, if there is one and the index changed.
+     * @param force write now, even if the last write was recent
+     */
+    void writeIndex(boolean force) {
+        if (indexFile == null || !needsWrite) return;
+        if (!force && System.currentTimeMillis() - lastWrite < writeIntervalMsec) return;
+
+        lock.lock();
+        try {
+            Snapshot s = snapshot;
+            Path parent = indexFile.toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent);
+            Path tmp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeUTF(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(signature);
+                out.writeLong(lastFullScan);
+
+                out.writeInt(s.dirs.length);
+                for (String dir : s.dirs) {
+                    out.writeUTF(dir);
+                    Long mod = dirModified.get(dir);
+                    out.writeLong(mod == null ? -1 : mod);
+                }
+
+                out.writeInt(s.series.size());
+                for (Map.Entry<String, Series> ent : s.series.entrySet()) {
+                    out.writeUTF(ent.getKey());
+                    ent.getValue().write(out);
+                }
+            }
+            Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING);
+            lastWrite = System.currentTimeMillis();
+            needsWrite = false;
+
+        } catch (IOException e) {
+            logger.warn("Failed to write index " + indexFile, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////
+
+    /**
+     * A file found by a query
+     */
+    @Immutable
+    static class Item {
+        final Path file;
+        final long time;
+
+        Item(Path file, long time) {
+            this.file = file;
+            this.time = time;
+        }
+    }
+
+    @Immutable
+    static private class Snapshot {
+        final Map<String, Series> series;
+        final String[] dirs;    // relative to the collection dir
+        final long updated;
+
+        Snapshot(Map<String, Series> series, String[] dirs, long updated) {
+            this.series = series;
+            this.dirs = dirs;
+            this.updated = updated;
+        }
+    }
+
+    static private class Entry implements Comparable<Entry> {
+        final long time;
+        final int dir;
+        final byte[] name;
+
+        Entry(long time, int dir, String name) {
+            this.time = time;
+            this.dir = dir;
+            this.name = name.getBytes(CDM.utf8Charset);
+        }
+
+        Entry(long time, int dir, byte[] name) {
+            this.time = time;
+            this.dir = dir;
+            this.name = name;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            int c = Long.compare(time, o.time);
+            if (c != 0) return c;
+            c = Integer.compare(dir, o.dir);
+            if (c != 0) return c;
+            return compareBytes(name, 0, name.length, o.name, 0, o.name.length);
+        }
+    }
+
+    static private int compareBytes(byte[] a, int astart, int alen, byte[] b, int bstart, int blen) {
+        int n = Math.min(alen, blen);
+        for (int i = 0; i < n; i++) {
+            int c = Byte.compare(a[astart + i], b[bstart + i]);
+            if (c != 0) return c;
+        }
+        return Integer.compare(alen, blen);
+    }
+
+    /**
+     * The files for one key, sorted by time. File names are packed into one byte array.
+     * Appending in time order writes into spare capacity past the end and returns a new
+     * Series sharing the arrays, so readers of an older Series are unaffected.
+     * Only the newest Series for a key may be appended to.
+     */
+    @Immutable
+    static private class Series {
+        private final long[] times;
+        private final int[] dirs;
+        private final int[] nameEnd;
+        private final byte[] names;
+        private final int n;
+
+        private Series(long[] times, int[] dirs, int[] nameEnd, byte[] names, int n) {
+            this.times = times;
+            this.dirs = dirs;
+            this.nameEnd = nameEnd;
+            this.names = names;
+            this.n = n;
+        }
+
+        int size() {
+            return n;
+        }
+
+        long getTime(int i) {
+            return times[i];
+        }
+
+        private int nameStart(int i) {
+            return i == 0 ? 0 : nameEnd[i - 1];
+        }
+
+        Entry getEntry(int i) {
+            int start = nameStart(i);
+            return new Entry(times[i], dirs[i], Arrays.copyOfRange(names, start, nameEnd[i]));
+        }
+
+        Item getItem(int i, String[] dirTable, Path base) {
+            int start = nameStart(i);
+            String name = new String(names, start, nameEnd[i] - start, CDM.utf8Charset);
+            return new Item(base.resolve(dirTable[dirs[i]]).resolve(name), times[i]);
+        }
+
+        // first index with time >= t
+        int lowerBound(long t) {
+            int lo = 0, hi = n;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (times[mid] < t) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        // first index with time > t
+        int upperBound(long t) {
+            int lo = 0, hi = n;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (times[mid] <= t) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        boolean contains(Entry e) {
+            for (int i = lowerBound(e.time); i < n && times[i] == e.time; i++) {
+                int start = nameStart(i);
+                if (dirs[i] == e.dir && compareBytes(names, start, nameEnd[i] - start, e.name, 0, e.name.length) == 0)
+                    return true;
+            }
+            return false;
+        }
+
+        // drop the files in the rescanned directories that were not found again; return prev if there are none
+        static Series removeMissing(Series prev, BitSet rescanned, List<Entry> found) {
+            Collections.sort(found);
+            BitSet missing = new BitSet(prev.n);
+            for (int i = 0; i < prev.n; i++) {
+                if (!rescanned.get(prev.dirs[i])) continue;
+                if (Collections.binarySearch(found, prev.getEntry(i)) < 0) missing.set(i);
+            }
+            if (missing.isEmpty()) return prev;
+
+            List<Entry> keep = new ArrayList<>(prev.n - missing.cardinality());
+            for (int i = 0; i < prev.n; i++)
+                if (!missing.get(i)) keep.add(prev.getEntry(i));
+            if (keep.isEmpty()) return new Series(new long[0], new int[0], new int[0], new byte[0], 0);
+            return add(null, keep);
+        }
+
+        // return prev if nothing was added
+        static Series add(Series prev, List<Entry> entries) {
+            Collections.sort(entries);
+            List<Entry> fresh = new ArrayList<>(entries.size());
+            for (Entry e : entries) {
+                if (prev != null && prev.contains(e)) continue;
+                if (!fresh.isEmpty() && fresh.get(fresh.size() - 1).compareTo(e) == 0) continue;
+                fresh.add(e);
+            }
+            if (fresh.isEmpty()) return prev;
+
+            int oldn = prev == null ? 0 : prev.n;
+            int oldBytes = prev == null ? 0 : prev.nameStart(oldn);
+            int newBytes = 0;
+            for (Entry e : fresh)
+                newBytes += e.name.length;
+            int n = oldn + fresh.size();
+
+            boolean inOrder = prev == null || oldn == 0 || fresh.get(0).time >= prev.times[oldn - 1];
+            if (inOrder && prev != null && prev.times.length >= n && prev.names.length >= oldBytes + newBytes) {
+                fill(prev.times, prev.dirs, prev.nameEnd, prev.names, oldn, oldBytes, fresh);
+                return new Series(prev.times, prev.dirs, prev.nameEnd, prev.names, n);
+            }
+
+            // leave room to grow
+            int cap = n + n / 4 + 8;
+            int byteCap = oldBytes + newBytes + (oldBytes + newBytes) / 4 + 256;
+            long[] times = new long[cap];
+            int[] dirs = new int[cap];
+            int[] nameEnd = new int[cap];
+            byte[] names = new byte[byteCap];
+
+            if (inOrder) {
+                if (prev != null) {
+                    System.arraycopy(prev.times, 0, times, 0, oldn);
+                    System.arraycopy(prev.dirs, 0, dirs, 0, oldn);
+                    System.arraycopy(prev.nameEnd, 0, nameEnd, 0, oldn);
+                    System.arraycopy(prev.names, 0, names, 0, oldBytes);
+                }
+                fill(times, dirs, nameEnd, names, oldn, oldBytes, fresh);
+
+            } else {
+                List<Entry> all = new ArrayList<>(n);
+                for (int i = 0; i < oldn; i++)
+                    all.add(prev.getEntry(i));
+                all.addAll(fresh);
+                Collections.sort(all);
+                fill(times, dirs, nameEnd, names, 0, 0, all);
+            }
+            return new Series(times, dirs, nameEnd, names, n);
+        }
+
+        static private void fill(long[] times, int[] dirs, int[] nameEnd, byte[] names, int pos, int bytePos, List<Entry> entries) {
+            for (Entry e : entries) {
+                times[pos] = e.time;
+                dirs[pos] = e.dir;
+                System.arraycopy(e.name, 0, names, bytePos, e.name.length);
+                bytePos += e.name.length;
+                nameEnd[pos] = bytePos;
+                pos++;
+            }
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(n);
+            int nbytes = nameStart(n);
+            out.writeInt(nbytes);
+            for (int i = 0; i < n; i++) {
+                out.writeLong(times[i]);
+                out.writeInt(dirs[i]);
+                out.writeInt(nameEnd[i]);
+            }
+            out.write(names, 0, nbytes);
+        }
+
+        static Series read(DataInputStream in) throws IOException {
+            int n = in.readInt();
+            int nbytes = in.readInt();
+            long[] times = new long[n];
+            int[] dirs = new int[n];
+            int[] nameEnd = new int[n];
+            for (int i = 0; i < n; i++) {
+                times[i] = in.readLong();
+                dirs[i] = in.readInt();
+                nameEnd[i] = in.readInt();
+            }
+            byte[] names = new byte[nbytes];
+            in.readFully(names);
+            return new Series(times, dirs, nameEnd, names, n);
+        }
+    }
+}
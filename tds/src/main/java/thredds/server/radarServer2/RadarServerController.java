@@ -43,6 +43,7 @@ import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
@@ -127,6 +128,9 @@ public class RadarServerController {
                         }
                         e.pw.printf("Collection Dir: %s%n", di.getCollectionDir().toString());
                         e.pw.printf("Last Update: %s%n", di.getLastUpdate());
+                        Formatter f = new Formatter();
+                        di.showIndex(f);
+                        e.pw.printf("Index: %s", f);
                         e.pw.println("Dates:");
                         for (String item : di.listItems(RadarDataInventory.DirType.Date)) {
                             e.pw.println("\t" + item);
@@ -158,6 +162,8 @@ public class RadarServerController {
         data = new TreeMap<>();
         vars = new TreeMap<>();
         String contentPath = tdsContext.getThreddsDirectory().getPath();
+        File indexDir = new File(ThreddsConfig.get("RadarServer.indexDir",
+                new File(tdsContext.getThreddsDirectory(), "cache/radarServer/").getPath()));
         List<RadarServerConfig.RadarConfigEntry> configs = RadarServerConfig.readXML(contentPath + "/radar/radarCollections.xml");
         for (RadarServerConfig.RadarConfigEntry conf : configs) {
             RadarDataInventory di = new RadarDataInventory(conf.dataPath,
@@ -180,6 +186,7 @@ public class RadarServerController {
 
             di.addFileTime(conf.dateParseRegex, conf.dateFmt);
             di.setNearestWindow(CalendarPeriod.of(1, CalendarPeriod.Field.Hour));
+            di.setIndexFile(new File(indexDir, conf.urlPath.replace('/', '_') + ".index").toPath());
 
             // TODO: These needs to come from files instead
             di.setDataFormat(conf.dataFormat);
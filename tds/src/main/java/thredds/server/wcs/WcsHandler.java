@@ -47,6 +47,7 @@ import java.net.URISyntaxException;
 import java.util.Collections;
 
 import ucar.nc2.constants.CDM;
+import ucar.nc2.ft2.coverage.GeoReferencedArray;
 import ucar.nc2.util.DiskCache2;
 
 /**
@@ -106,6 +107,18 @@ public class WcsHandler {
         ((thredds.server.wcs.v1_0_0_1.DescribeCoverage) request).writeDescribeCoverageDoc(pw);
         pw.flush();
 
+      } else if (request.getOperation().equals(Request.Operation.GetCoverage) && ((thredds.server.wcs.v1_0_0_1.GetCoverage) request).isTiledGeoTiff()) {
+        // tiled GeoTIFF is written straight to the response, no temporary file
+        thredds.server.wcs.v1_0_0_1.GetCoverage getCoverage = (thredds.server.wcs.v1_0_0_1.GetCoverage) request;
+        GeoReferencedArray array = getCoverage.readCoverageData();
+        String resultFilename = request.getWcsDataset().getDatasetName(); // this is name browser will show
+        if (!resultFilename.endsWith(".tif"))
+          resultFilename = resultFilename + ".tif";
+        res.setContentType(getCoverage.getFormat().getMimeType());
+        res.setHeader("Content-Disposition", "attachment; filename=\"" + resultFilename + "\"");
+        res.setStatus(HttpServletResponse.SC_OK);
+        getCoverage.writeGeoTiff(array, res.getOutputStream());
+
       } else if (request.getOperation().equals(Request.Operation.GetCoverage)) {
         File covFile = ((thredds.server.wcs.v1_0_0_1.GetCoverage) request).writeCoverageDataToFile();
         if (covFile != null && covFile.exists()) {
@@ -39,6 +39,8 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import ucar.nc2.ft2.coverage.*;
+import ucar.nc2.ft2.coverage.writer.TargetGrid;
+import ucar.nc2.geotiff.GeotiffWriter;
 import ucar.nc2.time.CalendarDate;
 import ucar.nc2.time.CalendarDateRange;
 
@@ -140,6 +142,12 @@ public class WcsRequestParser {
         // ToDo The name of this parameter is dependent on the coverage (see WcsCoverage.getRangeSetAxisName()).
         String parameter = ServletUtil.getParameterIgnoreCase(req, "Vertical");
         String formatString = ServletUtil.getParameterIgnoreCase(req, "FORMAT");
+        String width = ServletUtil.getParameterIgnoreCase(req, "WIDTH");
+        String height = ServletUtil.getParameterIgnoreCase(req, "HEIGHT");
+        String interpolation = ServletUtil.getParameterIgnoreCase(req, "INTERPOLATION");
+        // vendor parameters: asking for a COMPRESSION gets a tiled GeoTIFF instead of strips
+        String compressionString = ServletUtil.getParameterIgnoreCase(req, "COMPRESSION");
+        String predictorString = ServletUtil.getParameterIgnoreCase(req, "PREDICTOR");
 
         // Assign and validate PARAMETER ("Vertical") parameter.
         thredds.server.wcs.v1_0_0_1.WcsCoverage.VerticalRange verticalRange = parseRangeSetAxisValues(parameter);
@@ -156,12 +164,26 @@ public class WcsRequestParser {
           throw new thredds.server.wcs.v1_0_0_1.WcsException(thredds.server.wcs.v1_0_0_1.WcsException.Code.InvalidParameterValue, "FORMAT", msg);
         }
 
+        // Assign and validate WIDTH and HEIGHT parameters.
+        Integer widthSize = parseSize(width, "WIDTH");
+        Integer heightSize = parseSize(height, "HEIGHT");
+        if (widthSize != null && heightSize != null && !TargetGrid.isValidSize(widthSize, heightSize)) {
+          String msg = "WIDTH*HEIGHT [" + width + "*" + height + "] exceeds maximum of " + TargetGrid.MAX_POINTS + ".";
+          log.debug("parseRequest(): " + msg);
+          throw new thredds.server.wcs.v1_0_0_1.WcsException(thredds.server.wcs.v1_0_0_1.WcsException.Code.InvalidParameterValue, "WIDTH", msg);
+        }
+
+        GeotiffWriter.Compression compression = parseCompression(compressionString);
+        boolean predictor = predictorString != null && Boolean.parseBoolean(predictorString.trim());
+
         // Return GetCoverage request.
         return new thredds.server.wcs.v1_0_0_1.GetCoverage(operation, version, wcsDataset, coverageId,
                 crs, responseCRS, parseBoundingBox(bbox),
                 parseTime(time),
                 verticalRange,
-                format);
+                format,
+                widthSize, heightSize, interpolation,
+                compression, predictor);
       } else {
         log.debug("parseRequest(): Invalid request operation [" + requestParam + "].");
       }
@@ -176,6 +198,33 @@ public class WcsRequestParser {
   }
 
 
+  private static Integer parseSize(String sizeString, String paramName)
+          throws thredds.server.wcs.v1_0_0_1.WcsException {
+    if (sizeString == null)
+      return null;
+    try {
+      int size = Integer.parseInt(sizeString.trim());
+      if (size > 0)
+        return size;
+    } catch (NumberFormatException e) {
+      // fall through
+    }
+    throw new thredds.server.wcs.v1_0_0_1.WcsException(thredds.server.wcs.v1_0_0_1.WcsException.Code.InvalidParameterValue, paramName,
+            "Invalid " + paramName + " parameter value [" + sizeString + "].");
+  }
+
+  private static GeotiffWriter.Compression parseCompression(String compressionString)
+          throws thredds.server.wcs.v1_0_0_1.WcsException {
+    if (compressionString == null)
+      return null;
+    for (GeotiffWriter.Compression curCompression : GeotiffWriter.Compression.values())
+      if (curCompression.toString().equalsIgnoreCase(compressionString.trim()))
+        return curCompression;
+
+    throw new thredds.server.wcs.v1_0_0_1.WcsException(thredds.server.wcs.v1_0_0_1.WcsException.Code.InvalidParameterValue, "COMPRESSION",
+            "Invalid COMPRESSION parameter value [" + compressionString + "].");
+  }
+
   private static Request.Operation parseOperation(String operationString) {
     Request.Operation[] ops = Request.Operation.values();
     for (Request.Operation curOp : ops)
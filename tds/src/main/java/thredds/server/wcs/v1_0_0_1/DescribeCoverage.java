@@ -400,7 +400,7 @@ public class DescribeCoverage extends WcsRequest {
     // supportedCRSs/responseCRSs@codeSpace [0..1] (URI)
     supportedCRSsElem.addContent(
             new Element("responseCRSs", wcsNS)
-                    .addContent(coverage.getNativeCrs()));
+                    .addContent(coverage.getResponseCrsList()));
 
     return supportedCRSsElem;
   }
@@ -430,6 +430,13 @@ public class DescribeCoverage extends WcsRequest {
     supportedInterpolationsElem.addContent(
             new Element("interpolationMethod", wcsNS)
                     .addContent("none"));
+    // only used when the response CRS is not the native CRS
+    supportedInterpolationsElem.addContent(
+            new Element("interpolationMethod", wcsNS)
+                    .addContent("nearest neighbor"));
+    supportedInterpolationsElem.addContent(
+            new Element("interpolationMethod", wcsNS)
+                    .addContent("bilinear"));
 
     return supportedInterpolationsElem;
   }
@@ -34,11 +34,16 @@ package thredds.server.wcs.v1_0_0_1;
 
 import thredds.server.wcs.Request;
 import ucar.nc2.ft2.coverage.*;
+import ucar.nc2.ft2.coverage.writer.Regridder;
+import ucar.nc2.ft2.coverage.writer.TargetGrid;
+import ucar.nc2.geotiff.GeotiffWriter;
 import ucar.nc2.time.CalendarDateRange;
 import ucar.unidata.geoloc.LatLonPointImpl;
 import ucar.unidata.geoloc.LatLonRect;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 
 public class GetCoverage extends WcsRequest {
   private static org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(GetCoverage.class);
@@ -47,8 +52,12 @@ public class GetCoverage extends WcsRequest {
   private LatLonRect bboxLatLonRect = null;
   private CalendarDateRange timeRange;
   private WcsCoverage.VerticalRange verticalRange;
+  private TargetGrid regrid;  // null unless the response CRS is not the native CRS
+  private Regridder.Method regridMethod;
 
   private Request.Format format;
+  private GeotiffWriter.Compression compression; // null means the default GeoTIFF strips
+  private boolean predictor;
   // GeoTIFF only supported for requests for a single time and a single vertical level.
   private boolean isSingleTimeRequest = false;
   private boolean isSingleVerticalRequest = false;
@@ -57,7 +66,9 @@ public class GetCoverage extends WcsRequest {
   public GetCoverage(Request.Operation operation, String version, WcsDataset dataset,
                      String coverageId, String crs, String responseCRS,
                      Request.BoundingBox bbox, CalendarDateRange timeRange,
-                     WcsCoverage.VerticalRange verticalRange, Request.Format format)
+                     WcsCoverage.VerticalRange verticalRange, Request.Format format,
+                     Integer width, Integer height, String interpolation,
+                     GeotiffWriter.Compression compression, boolean predictor)
           throws WcsException {
 
     super(operation, version, dataset);
@@ -80,10 +91,19 @@ public class GetCoverage extends WcsRequest {
       throw new WcsException(WcsException.Code.InvalidParameterValue, "CRS", "Request CRS [" + crs + "] not allowed [" + this.coverage.getDefaultRequestCrs() + "].");
 
     // Response CRS not required if data is in latLon ("OGC:CRS84"). Default is request CRS.
+    // Other than the native CRS, the data is regridded onto a WIDTH x HEIGHT grid covering the BBOX.
+    boolean needsRegrid = false;
     if (responseCRS == null) {
       responseCRS = this.coverage.getNativeCrs();
-    } else if (!responseCRS.equalsIgnoreCase(this.coverage.getNativeCrs()))
-      throw new WcsException(WcsException.Code.InvalidParameterValue, "response_CRS", "Response CRS [" + responseCRS + "] not the supported CRS [" + this.coverage.getNativeCrs() + "].");
+    } else if (!responseCRS.equalsIgnoreCase(this.coverage.getNativeCrs())) {
+      if (!TargetGrid.isSupportedCrs(responseCRS))
+        throw new WcsException(WcsException.Code.InvalidParameterValue, "response_CRS", "Response CRS [" + responseCRS + "] not a supported CRS [" + this.coverage.getResponseCrsList() + "].");
+      if (bbox == null)
+        throw new WcsException(WcsException.Code.MissingParameterValue, "BBOX", "BBOX required for Response CRS [" + responseCRS + "].");
+      if (width == null || height == null)
+        throw new WcsException(WcsException.Code.MissingParameterValue, "WIDTH", "WIDTH and HEIGHT required for Response CRS [" + responseCRS + "].");
+      needsRegrid = true;
+    }
 
     // Assign and validate BBOX and TIME parameters.
 // -----
@@ -97,6 +117,11 @@ public class GetCoverage extends WcsRequest {
     if (bbox != null)
       bboxLatLonRect = convertBoundingBox(bbox, coverage.getCoordinateSystem());
 
+    if (needsRegrid) {
+      this.regrid = TargetGrid.factory(responseCRS, bboxLatLonRect, width, height);
+      this.regridMethod = Regridder.Method.fromString(interpolation);
+    }
+
     CoverageCoordSys gcs = this.coverage.getCoordinateSystem();
     CoverageCoordAxis timeCoord = gcs.getTimeAxis();
     this.timeRange = timeRange;
@@ -105,8 +130,8 @@ public class GetCoverage extends WcsRequest {
     else
       this.isSingleTimeRequest = (null == timeCoord);
 
-    // WIDTH, HEIGHT, DEPTH parameters not needed since the only interpolation method is "NONE".
-    // RESX, RESY, RESZ parameters not needed since the only interpolation method is "NONE".
+    // WIDTH, HEIGHT are only used when regridding to a different response CRS. DEPTH is not supported.
+    // RESX, RESY, RESZ parameters not supported.
 
     // Assign and validate PARAMETER ("Vertical") parameter.
     CoverageCoordAxis vertCoord = gcs.getZAxis();
@@ -128,6 +153,8 @@ public class GetCoverage extends WcsRequest {
       throw new WcsException(WcsException.Code.InvalidParameterValue, "FORMAT", msg);
     }
     this.format = format;
+    this.compression = compression;
+    this.predictor = predictor;
 
     if (this.format == Request.Format.GeoTIFF || this.format == Request.Format.GeoTIFF_Float) {
       // Check that request is for one time and one vertical level
@@ -151,11 +178,30 @@ public class GetCoverage extends WcsRequest {
     return format;
   }
 
+  /**
+   * A GeoTIFF request that asked for a COMPRESSION is written tiled, straight to the response.
+   */
+  public boolean isTiledGeoTiff() {
+    return this.compression != null && (this.format == Request.Format.GeoTIFF || this.format == Request.Format.GeoTIFF_Float);
+  }
+
+  /**
+   * For GeoTIFF, read the data before the response is started, so errors can still be reported.
+   */
+  public GeoReferencedArray readCoverageData() throws WcsException {
+    return this.coverage.readCoverageData(this.bboxLatLonRect, this.verticalRange, this.timeRange, this.regrid, this.regridMethod);
+  }
+
+  public void writeGeoTiff(GeoReferencedArray array, OutputStream out) throws IOException {
+    this.coverage.writeGeoTiff(this.format, array, out, this.compression, this.predictor);
+  }
+
   public File writeCoverageDataToFile() throws WcsException {
     return this.coverage.writeCoverageDataToFile(this.format,
             this.bboxLatLonRect,
             this.verticalRange,
-            this.timeRange);
+            this.timeRange,
+            this.regrid, this.regridMethod);
   }
 
   private LatLonRect convertBoundingBox(Request.BoundingBox bbox, CoverageCoordSys gcs) throws WcsException {
@@ -34,6 +34,7 @@ package thredds.server.wcs.v1_0_0_1;
 
 import thredds.server.wcs.Request;
 import ucar.nc2.ft2.coverage.CoverageCollection;
+import ucar.nc2.geotiff.GeotiffWriter;
 import ucar.nc2.time.CalendarDateRange;
 
 public class GetCoverageBuilder extends WcsRequestBuilder {
@@ -49,6 +50,10 @@ public class GetCoverageBuilder extends WcsRequestBuilder {
   private CalendarDateRange timeRange;
   private WcsCoverage.VerticalRange verticalRange;  // parameter
   private Request.Format format;
+  private Integer width, height;
+  private String interpolation;
+  private GeotiffWriter.Compression compression;
+  private boolean predictor;
 
   public String getCoverageId() {
     return coverageId;
@@ -113,6 +118,51 @@ public class GetCoverageBuilder extends WcsRequestBuilder {
     return this;
   }
 
+  public Integer getWidth() {
+    return width;
+  }
+
+  public GetCoverageBuilder setWidth(Integer width) {
+    this.width = width;
+    return this;
+  }
+
+  public Integer getHeight() {
+    return height;
+  }
+
+  public GetCoverageBuilder setHeight(Integer height) {
+    this.height = height;
+    return this;
+  }
+
+  public String getInterpolation() {
+    return interpolation;
+  }
+
+  public GetCoverageBuilder setInterpolation(String interpolation) {
+    this.interpolation = interpolation;
+    return this;
+  }
+
+  public GeotiffWriter.Compression getCompression() {
+    return compression;
+  }
+
+  public GetCoverageBuilder setCompression(GeotiffWriter.Compression compression) {
+    this.compression = compression;
+    return this;
+  }
+
+  public boolean isPredictor() {
+    return predictor;
+  }
+
+  public GetCoverageBuilder setPredictor(boolean predictor) {
+    this.predictor = predictor;
+    return this;
+  }
+
   public GetCoverage buildGetCoverage() throws WcsException {
     return new GetCoverage(this.getOperation(),
             this.getVersionString(),
@@ -120,7 +170,8 @@ public class GetCoverageBuilder extends WcsRequestBuilder {
             coverageId,
             crs, responseCRS,
             bbox, timeRange, verticalRange,
-            format);
+            format, width, height, interpolation,
+            compression, predictor);
   }
 
 }
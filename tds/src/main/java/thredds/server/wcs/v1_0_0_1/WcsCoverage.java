@@ -37,6 +37,8 @@ import ucar.ma2.InvalidRangeException;
 import ucar.nc2.NetcdfFileWriter;
 import ucar.nc2.ft2.coverage.*;
 import ucar.nc2.ft2.coverage.writer.CFGridCoverageWriter2;
+import ucar.nc2.ft2.coverage.writer.Regridder;
+import ucar.nc2.ft2.coverage.writer.TargetGrid;
 import ucar.nc2.geotiff.GeotiffWriter;
 import ucar.nc2.time.CalendarDateRange;
 import ucar.nc2.util.DiskCache2;
@@ -49,6 +51,7 @@ import ucar.unidata.geoloc.ogc.EPSG_OGC_CF_Helper;
 import javax.annotation.Nonnull;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -129,6 +132,16 @@ public class WcsCoverage {
     return nativeCRS;
   }
 
+  /**
+   * The native CRS, and the CRSs we can regrid onto, space separated.
+   */
+  public String getResponseCrsList() {
+    StringBuilder sb = new StringBuilder(nativeCRS);
+    for (String crs : new String[] {"EPSG:4326", "EPSG:3857"})
+      if (!crs.equalsIgnoreCase(nativeCRS)) sb.append(" ").append(crs);
+    return sb.toString();
+  }
+
   public List<Request.Format> getSupportedCoverageFormatList() {
     return supportedCoverageFormatList;
   }
@@ -177,7 +190,8 @@ public class WcsCoverage {
     return diskCache;
   }
 
-  public File writeCoverageDataToFile(Request.Format format, LatLonRect bboxLatLonRect, VerticalRange verticalRange, CalendarDateRange timeRange) throws WcsException {
+  public File writeCoverageDataToFile(Request.Format format, LatLonRect bboxLatLonRect, VerticalRange verticalRange, CalendarDateRange timeRange,
+                                      TargetGrid regrid, Regridder.Method regridMethod) throws WcsException {
 
     SubsetParams params = new SubsetParams();
     if (bboxLatLonRect != null)
@@ -197,9 +211,7 @@ public class WcsCoverage {
         if (log.isDebugEnabled())
           log.debug("writeCoverageDataToFile(): tifFile=" + tifFile.getPath());
 
-        //GridCoverage subset = this.coverage.makeSubset(tRange, zRange, bboxLatLonRect, 1, 1, 1);  // LOOK do you need to subset it?
-        GeoReferencedArray array = coverage.readData(params);
-
+        GeoReferencedArray array = readCoverageData(bboxLatLonRect, verticalRange, timeRange, regrid, regridMethod);
         try (GeotiffWriter writer = new GeotiffWriter(tifFile.getPath())) {
           writer.writeGrid(array, format == Request.Format.GeoTIFF);
 
@@ -216,6 +228,11 @@ public class WcsCoverage {
         if (log.isDebugEnabled())
           log.debug("writeCoverageDataToFile(): ncFile=" + outFile.getPath());
 
+        if (regrid != null) {
+          params.set(SubsetParams.regrid, regrid);
+          params.set(SubsetParams.regridMethod, regridMethod.toString());
+        }
+
         NetcdfFileWriter writer = NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3, outFile.getAbsolutePath());
         // LOOK could test file size
         Optional<Long> opt = CFGridCoverageWriter2.writeOrTestSize(this.wcsDataset.getDataset(),
@@ -241,6 +258,50 @@ public class WcsCoverage {
     }
   }
 
+  /**
+   * Read the data for a GeoTIFF response.
+   */
+  public GeoReferencedArray readCoverageData(LatLonRect bboxLatLonRect, VerticalRange verticalRange, CalendarDateRange timeRange,
+                                             TargetGrid regrid, Regridder.Method regridMethod) throws WcsException {
+    SubsetParams params = new SubsetParams();
+    if (bboxLatLonRect != null)
+      params.set(SubsetParams.latlonBB, bboxLatLonRect);
+    if (timeRange != null)
+      params.set(SubsetParams.timeRange, timeRange);
+    if (verticalRange != null) {
+      double[] vr = new double[] {verticalRange.min, verticalRange.max};
+      params.set(SubsetParams.vertRange, vr);
+    }
+
+    try {
+      if (regrid == null)
+        return coverage.readData(params);
+      GeoReferencedArray array = coverage.readData(Regridder.makeSourceParams(params, regrid, coordSys.getHorizCoordSys()));
+      return Regridder.regrid(array, regrid, regridMethod);
+
+    } catch (InvalidRangeException e) {
+      log.error("readCoverageData(): Failed to subset coverage <" + this.coverage.getName() + ">: " + e.getMessage());
+      throw new WcsException(WcsException.Code.CoverageNotDefined, "", "Failed to subset coverage [" + this.coverage.getName() + "].");
+    } catch (IOException e) {
+      log.error("readCoverageData(): Failed to read requested coverage <" + this.coverage.getName() + ">: " + e.getMessage());
+      throw new WcsException(WcsException.Code.UNKNOWN, "", "Problem reading coverage [" + this.coverage.getName() + "].");
+    }
+  }
+
+  /**
+   * Write a tiled GeoTIFF. GeoTIFF writes 8 bit greyscale, GeoTIFF_Float writes the float values.
+   * Only used when the request asks for a compression; otherwise writeCoverageDataToFile() writes strips.
+   *
+   * @param out may be the servlet output stream; not closed
+   */
+  public void writeGeoTiff(Request.Format format, GeoReferencedArray array, OutputStream out,
+                           GeotiffWriter.Compression compression, boolean predictor) throws IOException {
+    try (GeotiffWriter writer = new GeotiffWriter(out)) {
+      writer.writeGridTiled(array, format == Request.Format.GeoTIFF, compression, predictor,
+              GeotiffWriter.DEFAULT_TILE_SIZE);
+    }
+  }
+
   public static class VerticalRange {
     private double min, max;
     private int stride;
@@ -0,0 +1,295 @@
+/*
+ * Copyright 1998-2015 John Caron and University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package thredds.server.wms;
+
+import com.google.common.cache.*;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import thredds.core.DataRootManager;
+import thredds.inventory.CollectionUpdateEvent;
+import thredds.server.admin.DebugCommands;
+import thredds.server.config.ThreddsConfig;
+import uk.ac.rdg.resc.edal.exceptions.EdalException;
+import uk.ac.rdg.resc.edal.feature.DiscreteFeature;
+import uk.ac.rdg.resc.edal.geometry.BoundingBox;
+import uk.ac.rdg.resc.edal.graphics.utils.PlottingDomainParams;
+import uk.ac.rdg.resc.edal.wms.WmsCatalogue.FeaturesAndMemberName;
+
+import java.util.Formatter;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Server-wide caches for the WMS: one ThreddsWmsCatalogue per dataset, and the features extracted for GetMap requests.
+ * Catalogues are keyed by request path and file modification time, features by catalogue, layer and plotting domain.
+ * Everything from a feature collection is dropped when the collection is updated.
+ * A catalogue is closed when it has left the cache and the last request using it has released it.
+ * Sizes are set in threddsConfig.xml with WMS.catalogueCacheSize and WMS.featureCacheSize (bytes).
+ *
+ * @since 10/19/2016
+ */
+@Component
+public class ThreddsWmsCache implements InitializingBean {
+  static private final Logger logger = LoggerFactory.getLogger(ThreddsWmsCache.class);
+
+  @Autowired
+  @Qualifier("fcTriggerEventBus")
+  private EventBus eventBus;
+
+  @Autowired
+  private DataRootManager dataRootManager;
+
+  @Autowired
+  private DebugCommands debugCommands;
+
+  private Cache<DatasetKey, ThreddsWmsCatalogue> catalogues;
+  private Cache<FeatureKey, FeaturesAndMemberName> features;
+
+  @Override
+  public void afterPropertiesSet() {
+    eventBus.register(this);
+
+    DebugCommands.Category debugHandler = debugCommands.findCategory("Caches");
+    debugHandler.addAction(new DebugCommands.Action("showWmsCaches", "Show WMS Caches") {
+      public void doAction(DebugCommands.Event e) {
+        Formatter f = new Formatter(e.pw);
+        showCache(f);
+        e.pw.flush();
+      }
+    });
+    debugHandler.addAction(new DebugCommands.Action("clearWmsCaches", "Clear WMS Caches") {
+      public void doAction(DebugCommands.Event e) {
+        invalidateAll();
+        e.pw.println("  WMS caches cleared");
+      }
+    });
+  }
+
+  // made on first use, after threddsConfig.xml has been read
+  private synchronized void init() {
+    if (catalogues != null) return;
+
+    features = CacheBuilder.newBuilder()
+            .maximumWeight(ThreddsConfig.getBytes("WMS.featureCacheSize", 100 * 1000 * 1000))
+            .weigher((FeatureKey key, FeaturesAndMemberName value) -> weigh(value))
+            .recordStats()
+            .build();
+
+    catalogues = CacheBuilder.newBuilder()
+            .maximumSize(ThreddsConfig.getInt("WMS.catalogueCacheSize", 100))
+            .recordStats()
+            .removalListener((RemovalNotification<DatasetKey, ThreddsWmsCatalogue> removal) -> {
+              DatasetKey key = removal.getKey();
+              features.asMap().keySet().removeIf(k -> k.dataset.equals(key));
+              ThreddsWmsCatalogue catalogue = removal.getValue();
+              if (catalogue != null) catalogue.close();
+            })
+            .build();
+  }
+
+  /**
+   * Get the catalogue for a dataset, making it if needed.
+   * The caller must call ThreddsWmsCatalogue.release() when done with it.
+   *
+   * @param path         request path of the dataset
+   * @param lastModified of the dataset's file, or -1 if not a file
+   * @param maker        makes the catalogue on a cache miss
+   */
+  public ThreddsWmsCatalogue getCatalogue(String path, long lastModified, Callable<ThreddsWmsCatalogue> maker) throws Exception {
+    init();
+    DatasetKey key = new DatasetKey(path, lastModified, findCollectionName(path));
+    if (!catalogues.asMap().containsKey(key))
+      catalogues.asMap().keySet().removeIf(k -> k.path.equals(path));  // the file changed, if there was one
+    while (true) {
+      ThreddsWmsCatalogue catalogue;
+      try {
+        catalogue = catalogues.get(key, maker);
+      } catch (ExecutionException | UncheckedExecutionException e) {
+        Throwable c = e.getCause();
+        if (c instanceof Exception) throw (Exception) c;
+        throw e;
+      }
+      if (catalogue.acquire())
+        return catalogue;
+      catalogues.asMap().remove(key, catalogue);  // closed after it was evicted, try again
+    }
+  }
+
+  /**
+   * The part of the feature cache used by the catalogue of one dataset.
+   */
+  FeatureCache getFeatureCache(String path, long lastModified) {
+    init();
+    return new FeatureCache(new DatasetKey(path, lastModified, findCollectionName(path)));
+  }
+
+  String findCollectionName(String path) {
+    DataRootManager.DataRootMatch match = dataRootManager.findDataRootMatch(path);
+    if (match == null || match.dataRoot.getFeatureCollection() == null) return null;
+    return match.dataRoot.getFeatureCollection().getCollectionName();
+  }
+
+  // called by eventBus when a feature collection changes
+  @Subscribe
+  public void processEvent(CollectionUpdateEvent event) {
+    if (catalogues == null) return;
+    String collectionName = event.getCollectionName();
+    catalogues.asMap().keySet().removeIf(k -> collectionName.equals(k.collectionName));  // also removes their features
+    logger.debug("WMS caches invalidated for collection {}", collectionName);
+  }
+
+  public void invalidateAll() {
+    if (catalogues == null) return;
+    catalogues.invalidateAll();
+    features.invalidateAll();
+  }
+
+  public CacheStats getCatalogueStats() {
+    return (catalogues == null) ? new CacheStats(0, 0, 0, 0, 0, 0) : catalogues.stats();
+  }
+
+  public CacheStats getFeatureStats() {
+    return (features == null) ? new CacheStats(0, 0, 0, 0, 0, 0) : features.stats();
+  }
+
+  public void showCache(Formatter f) {
+    f.format("WMS catalogue cache: %d entries%n  %s%n", catalogues == null ? 0 : catalogues.size(), getCatalogueStats());
+    f.format("WMS feature cache: %d entries%n  %s%n", features == null ? 0 : features.size(), getFeatureStats());
+  }
+
+  // approximate bytes held by the extracted features
+  private static int weigh(FeaturesAndMemberName value) {
+    long bytes = 1000;
+    for (DiscreteFeature<?, ?> feature : value.getFeatures())
+      bytes += 1000 + 8L * feature.getDomain().size() * Math.max(1, feature.getParameterIds().size());
+    return (int) Math.min(bytes, Integer.MAX_VALUE);
+  }
+
+  ////////////////////////////////////////////////////////////////////////
+
+  class FeatureCache {
+    private final DatasetKey dataset;
+
+    private FeatureCache(DatasetKey dataset) {
+      this.dataset = dataset;
+    }
+
+    FeaturesAndMemberName get(String layerName, PlottingDomainParams params, Callable<FeaturesAndMemberName> extract) throws EdalException {
+      try {
+        return features.get(new FeatureKey(dataset, layerName, params), extract);
+      } catch (ExecutionException | UncheckedExecutionException e) {
+        Throwable c = e.getCause();
+        if (c instanceof EdalException) throw (EdalException) c;
+        if (c instanceof RuntimeException) throw (RuntimeException) c;
+        throw new EdalException("Failed to extract features for " + layerName, c);
+      }
+    }
+  }
+
+  private static class DatasetKey {
+    final String path;
+    final long lastModified;
+    final String collectionName;  // null if not in a feature collection
+
+    DatasetKey(String path, long lastModified, String collectionName) {
+      this.path = path;
+      this.lastModified = lastModified;
+      this.collectionName = collectionName;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      DatasetKey that = (DatasetKey) o;
+      return lastModified == that.lastModified && path.equals(that.path) && Objects.equals(collectionName, that.collectionName);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(path, lastModified, collectionName);
+    }
+  }
+
+  // PlottingDomainParams has no equals(), so use the values that go into the extracted features
+  private static class FeatureKey {
+    final DatasetKey dataset;
+    final String layerName;
+    final double minx, miny, maxx, maxy;
+    final String crs;
+    final int width, height;
+    final Double targetZ;
+    final DateTime targetT;
+
+    FeatureKey(DatasetKey dataset, String layerName, PlottingDomainParams params) {
+      this.dataset = dataset;
+      this.layerName = layerName;
+      BoundingBox bbox = params.getBbox();
+      this.minx = bbox.getMinX();
+      this.miny = bbox.getMinY();
+      this.maxx = bbox.getMaxX();
+      this.maxy = bbox.getMaxY();
+      this.crs = (bbox.getCoordinateReferenceSystem() == null) ? null : bbox.getCoordinateReferenceSystem().getName().getCode();
+      this.width = params.getWidth();
+      this.height = params.getHeight();
+      this.targetZ = params.getTargetZ();
+      this.targetT = params.getTargetT();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      FeatureKey that = (FeatureKey) o;
+      return width == that.width && height == that.height &&
+              Double.compare(minx, that.minx) == 0 && Double.compare(miny, that.miny) == 0 &&
+              Double.compare(maxx, that.maxx) == 0 && Double.compare(maxy, that.maxy) == 0 &&
+              dataset.equals(that.dataset) && layerName.equals(that.layerName) && Objects.equals(crs, that.crs) &&
+              Objects.equals(targetZ, that.targetZ) && Objects.equals(targetT, that.targetT);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(dataset, layerName, minx, miny, maxx, maxy, crs, width, height, targetZ, targetT);
+    }
+  }
+}
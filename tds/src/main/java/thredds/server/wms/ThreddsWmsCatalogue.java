@@ -56,6 +56,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import ucar.nc2.Attribute;
 import ucar.nc2.dataset.NetcdfDataset;
@@ -70,13 +71,11 @@ import ucar.nc2.dataset.NetcdfDataset;
  * This {@link WmsCatalogue} provides access to a SINGLE dataset. As such, each
  * different dataset requested will have a new instance of this class.
  *
- * NB - No caching is implemented in this {@link WmsCatalogue}. I would
- * recommend a cache which is shared amongst all {@link WmsCatalogue}s, passed
- * in on object construction, and which performs the caching/retrieval in the
+ * Extracted features are cached in a {@link ThreddsWmsCache} which is shared
+ * amongst all {@link WmsCatalogue}s and passed in on object construction. The
+ * caching/retrieval is done in the
  * {@link WmsCatalogue#getFeaturesForLayer(String, PlottingDomainParams)}
- * method. The cache keys will be a pair of the layerName and the
- * {@link PlottingDomainParams}, and the cached values will be
- * {@link Collection}s of {@link DiscreteFeature}s.
+ * method, keyed by the layerName and the {@link PlottingDomainParams}.
  *
  * @author Guy Griffiths
  */
@@ -117,13 +116,28 @@ public class ThreddsWmsCatalogue implements WmsCatalogue {
 
     private String datasetTitle;
 
+    private final NetcdfDataset ncd;
+
+    /*
+     * Cache of extracted features, may be null
+     */
+    private final ThreddsWmsCache.FeatureCache featureCache;
+
     public ThreddsWmsCatalogue(NetcdfDataset ncd, String id) throws IOException, EdalException {
+        this(ncd, id, null);
+    }
+
+    public ThreddsWmsCatalogue(NetcdfDataset ncd, String id, ThreddsWmsCache.FeatureCache featureCache)
+            throws IOException, EdalException {
+        this.ncd = ncd;
+        this.featureCache = featureCache;
+
         // in the TDS, we already have a NetcdfFile object, so let's use it to create
         // the edal-java related dataset. To do so, we use our own TdsWmsDatasetFactory, which
         // overrides the getNetcdfDatasetFromLocation method from CdmGridDatasetFactory to take
         // the NetcdfDataset directly. However, createDataset's signature does not take a NetcdfDataset,
         // so we need to make it available to TdsWmsDatasetFactory to use.
-        datasetFactory.setNetcdfDataset(ncd);
+        // The factory is shared, and catalogues can be made by several requests at once.
 
         // set dataset title
         Attribute datasetTitleAttr;
@@ -136,18 +150,72 @@ public class ThreddsWmsCatalogue implements WmsCatalogue {
         }
 
         String location = ncd.getLocation();
-        dataset = datasetFactory.createDataset(id, location);
+        synchronized (datasetFactory) {
+            datasetFactory.setNetcdfDataset(ncd);
+            dataset = datasetFactory.createDataset(id, location);
+        }
+    }
+
+    /*
+     * References held by the cache and by requests using this catalogue. The
+     * dataset is closed when the last one is released
+     */
+    private final AtomicInteger refCount = new AtomicInteger(1);
+
+    /**
+     * Take a reference to this catalogue for the duration of a request.
+     * 
+     * @return false if the catalogue has already been closed
+     */
+    boolean acquire() {
+        while (true) {
+            int count = refCount.get();
+            if (count <= 0)
+                return false;
+            if (refCount.compareAndSet(count, count + 1))
+                return true;
+        }
+    }
+
+    /**
+     * Give back a reference taken with {@link #acquire()}, closing the
+     * underlying dataset if it was the last one
+     */
+    void release() {
+        if (refCount.decrementAndGet() == 0) {
+            try {
+                ncd.close();
+            } catch (IOException e) {
+                // nothing to be done about it
+            }
+        }
+    }
+
+    /**
+     * Release the underlying dataset, when this catalogue is no longer cached.
+     * Requests still using it keep it open until they are done
+     */
+    public void close() {
+        release();
     }
 
     @Override
     public FeaturesAndMemberName getFeaturesForLayer(String layerName, PlottingDomainParams params)
             throws EdalException {
+        /*
+         * Individual features (i.e. 2d plottable map features) are cached, so
+         * that tiles of the same map are only extracted once.
+         */
+        if (featureCache != null)
+            return featureCache.get(layerName, params, () -> extractFeatures(layerName, params));
+        return extractFeatures(layerName, params);
+    }
+
+    private FeaturesAndMemberName extractFeatures(String layerName, PlottingDomainParams params)
+            throws EdalException {
         /*
          * This uses the method on GriddedDataset to extract the appropriate
          * features.
-         * 
-         * Caching of individual features (i.e. 2d plottable map features) can
-         * go here if caching is desired for the TDS WMS.
          */
         MapDomain mapDomain = new MapDomain(params.getBbox(), params.getWidth(), params.getHeight(),
                 params.getTargetZ(), null);
@@ -33,30 +33,52 @@ import uk.ac.rdg.resc.edal.wms.RequestParams;
 import uk.ac.rdg.resc.edal.wms.WmsCatalogue;
 import uk.ac.rdg.resc.edal.wms.WmsServlet;
 
-import java.util.HashMap;
-import java.util.Map;
-
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
 
 import thredds.core.TdsRequestedDataset;
 import ucar.nc2.NetcdfFile;
 import ucar.nc2.dataset.NetcdfDataset;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.context.support.WebApplicationContextUtils;
 
 /**
  * An example {@link WmsServlet} which uses the THREDDS catalogue to supply
  * data.
  * 
  * This is example is well commented and demonstrates how to properly integrate
- * the EDAL WMS into the THREDDS catalogue. It doesn't show how to implement
- * caching, or WMS-specific configuration, but these things are recommended in
- * the final version.
+ * the EDAL WMS into the THREDDS catalogue. Catalogues and extracted features
+ * are cached server-wide in the {@link ThreddsWmsCache} bean, and rendered
+ * tiles of standard tile grids in the {@link ThreddsWmsTileCache} bean.
  *
  * @author Guy Griffiths
  */
 @SuppressWarnings("serial")
 public class ThreddsWmsServlet extends WmsServlet {
-    private Map<String, WmsCatalogue> catalogueCache = new HashMap<>();
+    private ThreddsWmsCache wmsCache;
+    private ThreddsWmsTileCache tileCache;
+
+    @Override
+    public void init(ServletConfig config) throws ServletException {
+        super.init(config);
+        /*
+         * This servlet is made by the container, not by Spring, so get the
+         * shared cache from the application context
+         */
+        WebApplicationContext context = WebApplicationContextUtils
+                .getRequiredWebApplicationContext(config.getServletContext());
+        wmsCache = context.getBean(ThreddsWmsCache.class);
+        tileCache = context.getBean(ThreddsWmsTileCache.class);
+    }
 
     @Override
     protected void dispatchWmsRequest(String request, RequestParams params,
@@ -66,9 +88,9 @@ public class ThreddsWmsServlet extends WmsServlet {
          * The super implementation of this gets called with a servlet-wide
          * catalogue, which "should" have been injected with the
          * WmsServlet.setCatalogue() method. Since we want one catalogue per
-         * dataset, we never call setCatalogue(), but instead we generate a
-         * WmsCatalogue (or more likely in a final version, retrieve a cached
-         * one) on each request, and pass that to the super implementation.
+         * dataset, we never call setCatalogue(), but instead we retrieve a
+         * cached WmsCatalogue (or generate one) on each request, and pass that
+         * to the super implementation.
          */
 
         /*
@@ -77,41 +99,151 @@ public class ThreddsWmsServlet extends WmsServlet {
         // Look - is setting this to null the right thing to do??
         String removePrefix = null;
         TdsRequestedDataset tdsDataset = new TdsRequestedDataset(httpServletRequest, removePrefix);
-        if(catalogueCache.containsKey(tdsDataset.getPath())) {
-            catalogue = catalogueCache.get(tdsDataset.getPath());
-        } else {
-            NetcdfFile ncf = tdsDataset.getNetcdfFile(httpServletRequest, httpServletResponse,
-                    tdsDataset.getPath());
+        String path = tdsDataset.getPath();
 
-            NetcdfDataset ncd = new NetcdfDataset(ncf, true);
+        /*
+         * Cached catalogues skip opening the dataset, so check access here
+         */
+        if (!TdsRequestedDataset.resourceControlOk(httpServletRequest, httpServletResponse, path))
+            return;
 
-            String netcdfFilePath = ncf.getLocation();
-    
-            /*
-             * Generate a new catalogue for the given dataset
-             * 
-             * In the full system, we should keep a cache of these
-             * ThreddsWmsCatalogues, but in this example we just create each new one
-             * on the fly.
-             * 
-             * If a feature cache is required on the WMS (a Good Idea), I recommend
-             * a single cache in this servlet which gets passed to each WmsCatalogue
-             * upon construction (i.e. HERE). That's a TDS implementation detail
-             * though, hence not in this example.
-             */
-            if (netcdfFilePath == null) {
+        /*
+         * Catalogues are cached by path and modification time. Datasets which
+         * are not files (-1) are kept until their feature collection is updated
+         */
+        long lastModified = TdsRequestedDataset.getLastModified(path);
+
+        /*
+         * A GetMap for one tile of a standard tile grid can be answered from
+         * the tile cache, without needing the catalogue
+         */
+        ThreddsWmsTileCache.TileKey tileKey = tileCache.makeKey(path, lastModified, httpServletRequest);
+        if (tileKey != null) {
+            ThreddsWmsTileCache.Tile tile = tileCache.get(tileKey);
+            if (tile != null) {
+                tile.send(lastModified, httpServletRequest, httpServletResponse);
+                return;
+            }
+        }
+
+        ThreddsWmsCatalogue threddsCatalogue = wmsCache.getCatalogue(path, lastModified, () -> {
+            NetcdfFile ncf = TdsRequestedDataset.getNetcdfFile(httpServletRequest, httpServletResponse, path);
+            if (ncf == null || ncf.getLocation() == null) {
                 throw new EdalLayerNotFoundException(
                         "The requested dataset is not available on this server");
             }
-            catalogue = new ThreddsWmsCatalogue(ncd, tdsDataset.getPath());
-            catalogueCache.put(tdsDataset.getPath(), catalogue);
+
+            /*
+             * Generate a new catalogue for the given dataset, with its part of
+             * the feature cache
+             */
+            NetcdfDataset ncd = new NetcdfDataset(ncf, true);
+            return new ThreddsWmsCatalogue(ncd, path, wmsCache.getFeatureCache(path, lastModified));
+        });
+
+        /*
+         * The catalogue may be evicted from the cache while this request is
+         * using it, so hold a reference until we're done
+         */
+        try {
+            dispatchToCatalogue(request, params, httpServletRequest, httpServletResponse,
+                    threddsCatalogue, tileKey, lastModified);
+        } finally {
+            threddsCatalogue.release();
         }
+    }
 
+    private void dispatchToCatalogue(String request, RequestParams params,
+            HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse,
+            ThreddsWmsCatalogue catalogue, ThreddsWmsTileCache.TileKey tileKey, long lastModified)
+            throws Exception {
         /*
          * Now that we've got a WmsCatalogue, we can pass this request to the
          * super implementation which will handle things from here.
          */
-        super.dispatchWmsRequest(request, params, httpServletRequest, httpServletResponse,
-                catalogue);
+        if (tileKey == null) {
+            super.dispatchWmsRequest(request, params, httpServletRequest, httpServletResponse,
+                    catalogue);
+            return;
+        }
+
+        /*
+         * Render the tile into memory, and keep it if it's an image
+         */
+        BufferedResponse buffered = new BufferedResponse(httpServletResponse);
+        super.dispatchWmsRequest(request, params, httpServletRequest, buffered, catalogue);
+        byte[] bytes = buffered.toByteArray();
+        String contentType = buffered.getContentType();
+        if (buffered.getStatus() != HttpServletResponse.SC_OK || contentType == null
+                || !contentType.startsWith("image/")) {
+            httpServletResponse.getOutputStream().write(bytes);
+            return;
+        }
+        tileCache.put(tileKey, contentType, bytes).send(lastModified, httpServletRequest,
+                httpServletResponse);
+    }
+
+    /**
+     * Response wrapper that keeps the body in memory. Headers and status go
+     * to the wrapped response.
+     */
+    private static class BufferedResponse extends HttpServletResponseWrapper {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 * 1024);
+        private final ServletOutputStream out = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                bytes.write(b);
+            }
+
+            @Override
+            public void write(byte buf[], int offset, int len) {
+                bytes.write(buf, offset, len);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                throw new UnsupportedOperationException("BufferedResponse does not support setWriteListener");
+            }
+        };
+        private PrintWriter writer;
+
+        BufferedResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return out;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws UnsupportedEncodingException {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(out, getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        @Override
+        public void setContentLength(int len) {
+            // the length is set when the body is sent
+        }
+
+        @Override
+        public void flushBuffer() {
+            // don't commit the wrapped response
+        }
+
+        byte[] toByteArray() {
+            if (writer != null) {
+                writer.flush();
+            }
+            return bytes.toByteArray();
+        }
     }
 }
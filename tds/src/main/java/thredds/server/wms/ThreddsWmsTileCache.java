@@ -0,0 +1,468 @@
+/*
+ * Copyright 1998-2015 John Caron and University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+package thredds.server.wms;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import thredds.inventory.CollectionUpdateEvent;
+import thredds.server.admin.DebugCommands;
+import thredds.server.config.ThreddsConfig;
+import ucar.nc2.util.DiskCache2;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Formatter;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of rendered GetMap images, for requests of one tile of a standard tile grid:
+ * the EPSG:3857 pyramid, or the EPSG:4326 / CRS:84 pyramid which has two 180 degree tiles at zoom 0.
+ * Tiles are kept in memory, and also on disk if WMS.tileCacheDir is set.
+ * Keys include the dataset's modification time, so a changed file is never served old tiles,
+ * and the tiles of a feature collection are purged when the collection is updated.
+ * Set in threddsConfig.xml with WMS.tileCacheSize (bytes, 0 turns tile caching off), WMS.tileCacheDir and WMS.tileCacheMaxAge.
+ *
+ * @since 10/19/2016
+ */
+@Component
+public class ThreddsWmsTileCache implements InitializingBean {
+  static private final Logger logger = LoggerFactory.getLogger(ThreddsWmsTileCache.class);
+
+  // these don't change the image, or are replaced by the tile index
+  static private final Set<String> ignoreParams = ImmutableSet.of("service", "request", "version", "bbox", "crs", "srs");
+  static private final double mercatorHalfWorld = 20037508.342789244;
+  static private final int maxTileSize = 1024;
+
+  @Autowired
+  @Qualifier("fcTriggerEventBus")
+  private EventBus eventBus;
+
+  @Autowired
+  private ThreddsWmsCache wmsCache;
+
+  @Autowired
+  private DebugCommands debugCommands;
+
+  private volatile boolean initDone;
+  private Cache<TileKey, Tile> tiles;     // null if tile caching is off
+  private DiskCache2 diskCache;           // null if memory only
+
+  // bumped on each update of a collection, so tiles rendered during an update are not kept
+  private final ConcurrentMap<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+  @Override
+  public void afterPropertiesSet() {
+    eventBus.register(this);
+
+    DebugCommands.Category debugHandler = debugCommands.findCategory("Caches");
+    debugHandler.addAction(new DebugCommands.Action("showWmsTileCache", "Show WMS Tile Cache") {
+      public void doAction(DebugCommands.Event e) {
+        Formatter f = new Formatter(e.pw);
+        showCache(f);
+        e.pw.flush();
+      }
+    });
+    debugHandler.addAction(new DebugCommands.Action("clearWmsTileCache", "Clear WMS Tile Cache") {
+      public void doAction(DebugCommands.Event e) {
+        invalidateAll();
+        e.pw.println("  WMS tile cache cleared");
+      }
+    });
+  }
+
+  // made on first use, after threddsConfig.xml has been read
+  private void init() {
+    if (initDone) return;
+    synchronized (this) {
+      if (initDone) return;
+
+      long maxBytes = ThreddsConfig.getBytes("WMS.tileCacheSize", 0);
+      if (maxBytes > 0) {
+        tiles = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((TileKey key, Tile tile) -> tile.bytes.length + 200)
+                .recordStats()
+                .build();
+
+        String dir = ThreddsConfig.get("WMS.tileCacheDir", null);
+        if (dir != null) {
+          int maxAgeSecs = ThreddsConfig.getSeconds("WMS.tileCacheMaxAge", 24 * 60 * 60);
+          int scourSecs = ThreddsConfig.getSeconds("WMS.tileCacheScour", 60 * 60);
+          diskCache = new DiskCache2(dir, false, maxAgeSecs / 60, scourSecs / 60);
+        }
+        logger.info("WMS tile cache: maxBytes = {} dir = {}", maxBytes, dir);
+      }
+      initDone = true;
+    }
+  }
+
+  public boolean isEnabled() {
+    init();
+    return tiles != null;
+  }
+
+  /**
+   * Make the cache key for a GetMap request.
+   *
+   * @param path         request path of the dataset
+   * @param lastModified of the dataset's file, or -1 if not a file
+   * @return null if tile caching is off, or the request is not for one tile of a standard grid
+   */
+  TileKey makeKey(String path, long lastModified, HttpServletRequest req) {
+    if (!isEnabled()) return null;
+
+    Map<String, String> params = new TreeMap<>();
+    for (Map.Entry<String, String[]> entry : req.getParameterMap().entrySet()) {
+      if (entry.getValue().length > 0)
+        params.put(entry.getKey().toLowerCase(), entry.getValue()[0]);
+    }
+    if (!"GetMap".equalsIgnoreCase(params.get("request"))) return null;
+    String tile = findTile(params);
+    if (tile == null) return null;
+
+    StringBuilder sb = new StringBuilder(tile);
+    for (Map.Entry<String, String> entry : params.entrySet()) {
+      if (!ignoreParams.contains(entry.getKey()))
+        sb.append('&').append(entry.getKey()).append('=').append(entry.getValue());
+    }
+
+    String collectionName = wmsCache.findCollectionName(path);
+    long generation = (collectionName == null) ? 0 : getGeneration(collectionName).get();
+    return new TileKey(path, lastModified, collectionName, generation, sb.toString());
+  }
+
+  /**
+   * Find the tile of a standard grid that a GetMap request asks for.
+   *
+   * @param params request parameters, with lower case names
+   * @return "crs/z/x/y" with y counted down from the top, or null if not a tile of a standard grid
+   */
+  static String findTile(Map<String, String> params) {
+    String crs = params.containsKey("crs") ? params.get("crs") : params.get("srs");
+    String bboxs = params.get("bbox");
+    if (crs == null || bboxs == null) return null;
+
+    int width, height;
+    double[] bbox = new double[4];
+    try {
+      width = Integer.parseInt(params.get("width"));
+      height = Integer.parseInt(params.get("height"));
+      String[] parts = bboxs.split(",");
+      if (parts.length != 4) return null;
+      for (int i = 0; i < 4; i++)
+        bbox[i] = Double.parseDouble(parts[i].trim());
+    } catch (NumberFormatException e) {
+      return null;
+    }
+    if (width != height || width <= 0 || width > maxTileSize) return null;
+
+    switch (crs.toUpperCase()) {
+      case "EPSG:3857":
+      case "EPSG:900913":
+        return findTile("EPSG:3857", bbox, -mercatorHalfWorld, mercatorHalfWorld, 2 * mercatorHalfWorld, 1);
+      case "EPSG:4326":
+        if ("1.3.0".equals(params.get("version")))  // lat/lon axis order
+          bbox = new double[]{bbox[1], bbox[0], bbox[3], bbox[2]};
+        return findTile("CRS:84", bbox, -180, 90, 180, 2);
+      case "CRS:84":
+        return findTile("CRS:84", bbox, -180, 90, 180, 2);
+      default:
+        return null;
+    }
+  }
+
+  /*
+   * left, top: upper left corner of the grid
+   * span0: width and height of a tile at zoom 0
+   * ncols0: number of tiles across at zoom 0, there is always one tile down
+   */
+  private static String findTile(String crs, double[] bbox, double left, double top, double span0, int ncols0) {
+    double span = bbox[2] - bbox[0];
+    if (!(span > 0) || !isClose(bbox[3] - bbox[1], span, span)) return null;
+
+    long n = Math.round(span0 / span);  // number of tiles down at this zoom
+    if (n < 1 || Long.bitCount(n) != 1) return null;
+    double tileSpan = span0 / n;
+    if (!isClose(tileSpan, span, span)) return null;
+
+    long x = Math.round((bbox[0] - left) / tileSpan);
+    long y = Math.round((top - bbox[3]) / tileSpan);
+    if (x < 0 || x >= ncols0 * n || y < 0 || y >= n) return null;
+    if (!isClose(left + x * tileSpan, bbox[0], span) || !isClose(top - y * tileSpan, bbox[3], span)) return null;
+
+    return crs + "/" + Long.numberOfTrailingZeros(n) + "/" + x + "/" + y;
+  }
+
+  // clients write the bbox with limited precision; this is far less than a pixel
+  private static boolean isClose(double a, double b, double span) {
+    return Math.abs(a - b) <= 1.0e-5 * span;
+  }
+
+  private AtomicLong getGeneration(String collectionName) {
+    return generations.computeIfAbsent(collectionName, k -> new AtomicLong());
+  }
+
+  /**
+   * Get a tile from memory, or from disk.
+   *
+   * @return null if not cached
+   */
+  Tile get(TileKey key) {
+    Tile tile = tiles.getIfPresent(key);
+    if (tile == null && diskCache != null) {
+      tile = readTile(key);
+      if (tile != null) tiles.put(key, tile);
+    }
+    return tile;
+  }
+
+  /**
+   * Add a rendered tile.
+   *
+   * @return the cached tile
+   */
+  Tile put(TileKey key, String contentType, byte[] bytes) {
+    Tile tile = new Tile(contentType, bytes);
+    if (key.collectionName != null && getGeneration(key.collectionName).get() != key.generation)
+      return tile;  // collection was updated while rendering
+
+    tiles.put(key, tile);
+    if (diskCache != null) writeTile(key, tile);
+    return tile;
+  }
+
+  // called by eventBus when a feature collection changes
+  @Subscribe
+  public void processEvent(CollectionUpdateEvent event) {
+    if (tiles == null) return;
+    String collectionName = event.getCollectionName();
+    getGeneration(collectionName).incrementAndGet();
+    tiles.asMap().keySet().removeIf(k -> collectionName.equals(k.collectionName));
+    if (diskCache != null)
+      deleteFiles(new File(diskCache.getRootDirectory(), getDiskDirectory(collectionName)));
+    logger.debug("WMS tile cache invalidated for collection {}", collectionName);
+  }
+
+  public void invalidateAll() {
+    if (tiles == null) return;
+    for (AtomicLong generation : generations.values())
+      generation.incrementAndGet();
+    tiles.invalidateAll();
+    if (diskCache != null)
+      deleteFiles(new File(diskCache.getRootDirectory()));
+  }
+
+  public CacheStats getStats() {
+    return (tiles == null) ? new CacheStats(0, 0, 0, 0, 0, 0) : tiles.stats();
+  }
+
+  public void showCache(Formatter f) {
+    if (tiles == null) {
+      f.format("WMS tile cache is off (WMS.tileCacheSize = 0)%n");
+      return;
+    }
+    f.format("WMS tile cache: %d entries%n  %s%n", tiles.size(), getStats());
+    if (diskCache != null)
+      f.format("  disk cache = %s%n", diskCache);
+  }
+
+  ////////////////////////////////////////////////////////////////////////
+  // disk tier: one directory per feature collection, so an update can delete them all
+
+  private static String getDiskDirectory(String collectionName) {
+    return (collectionName == null) ? "files" : "fc-" + Hashing.sha1().hashString(collectionName, StandardCharsets.UTF_8);
+  }
+
+  private File getDiskFile(TileKey key) {
+    String name = Hashing.sha1().hashString(key.path + "|" + key.lastModified + "|" + key.request, StandardCharsets.UTF_8) + ".tile";
+    return new File(diskCache.getRootDirectory(), getDiskDirectory(key.collectionName) + "/" + name);
+  }
+
+  private Tile readTile(TileKey key) {
+    File file = getDiskFile(key);
+    if (!file.exists()) return null;
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (!key.request.equals(in.readUTF())) return null;
+      String contentType = in.readUTF();
+      String etag = in.readUTF();
+      byte[] bytes = new byte[in.readInt()];
+      in.readFully(bytes);
+      if (!file.setLastModified(System.currentTimeMillis()))  // keep it from being scoured
+        logger.debug("Failed to touch {}", file);
+      return new Tile(contentType, etag, bytes);
+
+    } catch (IOException e) {
+      logger.debug("Failed to read tile {}: {}", file, e.getMessage());
+      return null;
+    }
+  }
+
+  private void writeTile(TileKey key, Tile tile) {
+    File file = getDiskFile(key);
+    File dir = file.getParentFile();
+    if (!dir.exists() && !dir.mkdirs()) {
+      logger.warn("Failed to make tile cache directory {}", dir);
+      return;
+    }
+
+    // write to a temporary file, so readers never see part of a tile
+    File tmp = new File(dir, file.getName() + "." + Thread.currentThread().getId() + ".tmp");
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+        out.writeUTF(key.request);
+        out.writeUTF(tile.contentType);
+        out.writeUTF(tile.etag);
+        out.writeInt(tile.bytes.length);
+        out.write(tile.bytes);
+      }
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+    } catch (IOException e) {
+      logger.warn("Failed to write tile {}: {}", file, e.getMessage());
+      if (tmp.exists() && !tmp.delete())
+        logger.debug("Failed to delete {}", tmp);
+    }
+  }
+
+  private static void deleteFiles(File dir) {
+    File[] files = dir.listFiles();
+    if (files == null) return;
+    for (File file : files) {
+      if (file.isDirectory()) deleteFiles(file);
+      if (!file.delete())
+        logger.debug("Failed to delete {}", file);
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////////
+
+  /**
+   * A rendered image, with an ETag made from its contents.
+   */
+  static class Tile {
+    final String contentType;
+    final String etag;
+    final byte[] bytes;
+
+    Tile(String contentType, byte[] bytes) {
+      this(contentType, "\"" + Hashing.murmur3_128().hashBytes(bytes) + "\"", bytes);
+    }
+
+    private Tile(String contentType, String etag, byte[] bytes) {
+      this.contentType = contentType;
+      this.etag = etag;
+      this.bytes = bytes;
+    }
+
+    /**
+     * Send the tile, or 304 if the client already has it.
+     *
+     * @param lastModified of the dataset's file, or -1 if not a file
+     */
+    void send(long lastModified, HttpServletRequest req, HttpServletResponse res) throws IOException {
+      res.setHeader("ETag", etag);
+      if (lastModified > 0)
+        res.setDateHeader("Last-Modified", lastModified);
+
+      if (matches(req.getHeader("If-None-Match"))) {
+        res.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        return;
+      }
+
+      res.setContentType(contentType);
+      res.setContentLength(bytes.length);
+      res.getOutputStream().write(bytes);
+    }
+
+    private boolean matches(String ifNoneMatch) {
+      if (ifNoneMatch == null) return false;
+      for (String tag : ifNoneMatch.split(",")) {
+        tag = tag.trim();
+        if (tag.startsWith("W/")) tag = tag.substring(2);  // weak comparison
+        if (tag.equals("*") || tag.equals(etag)) return true;
+      }
+      return false;
+    }
+  }
+
+  static class TileKey {
+    final String path;
+    final long lastModified;
+    final String collectionName;  // null if not in a feature collection
+    final long generation;
+    final String request;         // tile index and the other parameters that change the image
+
+    private TileKey(String path, long lastModified, String collectionName, long generation, String request) {
+      this.path = path;
+      this.lastModified = lastModified;
+      this.collectionName = collectionName;
+      this.generation = generation;
+      this.request = request;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      TileKey that = (TileKey) o;
+      return lastModified == that.lastModified && generation == that.generation && path.equals(that.path) &&
+              request.equals(that.request) && Objects.equals(collectionName, that.collectionName);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(path, lastModified, collectionName, generation, request);
+    }
+  }
+}
@@ -0,0 +1,139 @@
+package thredds.server.ncss.view.dsg;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+import ucar.ma2.DataType;
+import ucar.ma2.StructureDataScalar;
+import ucar.nc2.ft.PointFeature;
+import ucar.nc2.ft.PointFeatureBlock;
+import ucar.nc2.ft.point.PointIteratorAbstract;
+import ucar.nc2.time.CalendarDateFormatter;
+import ucar.nc2.time.CalendarDateUnit;
+import ucar.unidata.util.Format;
+
+public class PointBlockPipelineTest {
+    private static final CalendarDateUnit timeUnit = CalendarDateUnit.of(null, "hours since 1970-01-01");
+
+    @Test
+    public void testAllBlocksInOrder() throws IOException {
+        CountingIterator iter = new CountingIterator(1003, null);
+        int count = 0;
+        try (PointBlockPipeline pipeline = new PointBlockPipeline(iter, Collections.<String>emptyList(), 10, 2)) {
+            PointFeatureBlock block;
+            while ((block = pipeline.next()) != null) {
+                Assert.assertTrue(block.getCount() > 0);
+                for (int row = 0; row < block.getCount(); row++)
+                    Assert.assertEquals(count++, block.getObservationTimes()[row], 0);
+            }
+            Assert.assertNull(pipeline.next());
+        }
+        Assert.assertEquals(1003, count);
+        Assert.assertTrue(iter.closed);
+    }
+
+    @Test
+    public void testCloseEarly() throws IOException {
+        CountingIterator iter = new CountingIterator(Integer.MAX_VALUE, null);
+        try (PointBlockPipeline pipeline = new PointBlockPipeline(iter, Collections.<String>emptyList(), 10, 2)) {
+            Assert.assertNotNull(pipeline.next());
+        }
+        Assert.assertTrue(iter.closed);
+        // the reader can't get more than the number of blocks ahead
+        Assert.assertTrue(iter.blocksRead.get() <= 3);
+    }
+
+    @Test
+    public void testReaderFails() throws IOException {
+        CountingIterator iter = new CountingIterator(100, new IOException("bad read"));
+        int nblocks = 0;
+        try (PointBlockPipeline pipeline = new PointBlockPipeline(iter, Collections.<String>emptyList(), 10, 2)) {
+            while (pipeline.next() != null)
+                nblocks++;
+            Assert.fail("expected IOException");
+        } catch (IOException e) {
+            Assert.assertEquals("bad read", e.getMessage());
+        }
+        Assert.assertEquals(1, nblocks);
+        Assert.assertTrue(iter.closed);
+    }
+
+    @Test
+    public void testFormatter() throws IOException {
+        PointFeatureBlock block = new PointFeatureBlock(4, Arrays.asList("temp", "count", "name"));
+        block.setTimeUnit(timeUnit);
+        double[] lats = {40.0, 40.0, -12.3456789, 0.0001};
+        for (int i = 0; i < 4; i++) {
+            StructureDataScalar sdata = new StructureDataScalar("obs");
+            sdata.addMember("temp", null, "K", DataType.FLOAT, 273.15f + i);
+            sdata.addMember("count", null, null, DataType.INT, -i);
+            sdata.addMemberString("name", null, null, " stn" + i + " ", 8);
+            block.add(i / 2, i / 2, lats[i], -lats[i], i * 10.5, sdata);
+        }
+
+        PointBlockFormatter formatter = new PointBlockFormatter();
+        StringBuilder sb = new StringBuilder();
+        for (int row = 0; row < 4; row++) {
+            Assert.assertEquals(CalendarDateFormatter.toDateTimeStringISO(block.getObservationTimeAsCalendarDate(row)),
+                    formatter.formatTime(block, row));
+            Assert.assertEquals(Format.dfrac(lats[row], 3), formatter.formatLatitude(block, row));
+            Assert.assertEquals(Format.dfrac(-lats[row], 3), formatter.formatLongitude(block, row));
+            Assert.assertEquals(Format.dfrac(row * 10.5, 0), formatter.formatAltitude(block, row));
+
+            for (String member : block.getMemberNames()) {
+                sb.setLength(0);
+                Assert.assertTrue(formatter.appendData(sb, block, member, row));
+                Assert.assertEquals(block.getData(member, row).toString().trim(), sb.toString());
+            }
+        }
+        Assert.assertFalse(formatter.appendData(sb, block, "nope", 0));
+    }
+
+    // readBlock() makes rows with obs time 0, 1, 2...
+    private static class CountingIterator extends PointIteratorAbstract {
+        private final int total;
+        private final IOException failAfterFirst;
+        private final AtomicInteger blocksRead = new AtomicInteger();
+        private int next;
+        private volatile boolean closed;
+
+        CountingIterator(int total, IOException failAfterFirst) {
+            this.total = total;
+            this.failAfterFirst = failAfterFirst;
+        }
+
+        @Override
+        public int readBlock(PointFeatureBlock block) throws IOException {
+            if (failAfterFirst != null && blocksRead.get() > 0)
+                throw failAfterFirst;
+            blocksRead.incrementAndGet();
+
+            block.clear();
+            block.setTimeUnit(timeUnit);
+            while (!block.isFull() && next < total) {
+                block.add(next, next, 40.0, -105.0, Double.NaN, null);
+                next++;
+            }
+            return block.getCount();
+        }
+
+        @Override
+        public boolean hasNext() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public PointFeature next() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
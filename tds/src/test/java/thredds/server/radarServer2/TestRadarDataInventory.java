@@ -0,0 +1,179 @@
+/*
+ * Copyright 1998-2015 John Caron and University Corporation for Atmospheric Research/Unidata
+ *
+ *  Portions of this software were developed by the Unidata Program at the
+ *  University Corporation for Atmospheric Research.
+ *
+ *  Access and use of this software shall impose the following obligations
+ *  and understandings on the user. The user is granted the right, without
+ *  any fee or cost, to use, copy, modify, alter, enhance and distribute
+ *  this software, and any derivative works thereof, and its supporting
+ *  documentation for any purpose whatsoever, provided that this entire
+ *  notice appears in all copies of the software, derivative works and
+ *  supporting documentation.  Further, UCAR requests that the user credit
+ *  UCAR/Unidata in any publications that result from the use of this
+ *  software or in any product that includes this software. The names UCAR
+ *  and/or Unidata, however, may not be used in any advertising or publicity
+ *  to endorse or promote any products or commercial entity unless specific
+ *  written permission is obtained from UCAR/Unidata. The user also
+ *  understands that UCAR/Unidata is not obligated to provide the user with
+ *  any support, consulting, training or assistance of any kind with regard
+ *  to the use, operation and performance of this software nor to provide
+ *  the user with any updates, revisions, new versions or "bug fixes."
+ *
+ *  THIS SOFTWARE IS PROVIDED BY UCAR/UNIDATA "AS IS" AND ANY EXPRESS OR
+ *  IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ *  WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ *  DISCLAIMED. IN NO EVENT SHALL UCAR/UNIDATA BE LIABLE FOR ANY SPECIAL,
+ *  INDIRECT OR CONSEQUENTIAL DAMAGES OR ANY DAMAGES WHATSOEVER RESULTING
+ *  FROM LOSS OF USE, DATA OR PROFITS, WHETHER IN AN ACTION OF CONTRACT,
+ *  NEGLIGENCE OR OTHER TORTIOUS ACTION, ARISING OUT OF OR IN CONNECTION
+ *  WITH THE ACCESS, USE OR PERFORMANCE OF THIS SOFTWARE.
+ */
+
+package thredds.server.radarServer2;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.nc2.time.CalendarDate;
+import ucar.nc2.time.CalendarDateRange;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Compare the indexed RadarDataInventory against crawling the directories
+ *
+ * @since 10/19/2016
+ */
+public class TestRadarDataInventory {
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private Path root;
+
+  @Before
+  public void makeCollection() throws IOException {
+    root = tempFolder.newFolder("level2").toPath();
+    for (String stn : new String[]{"KFTG", "KTLX", "KDGX"}) {
+      for (int day = 3; day <= 5; day++) {
+        for (int hour = 0; hour < 24; hour += 3) {
+          addFile(stn, day, hour, 0);
+        }
+      }
+    }
+  }
+
+  private Path addFile(String stn, int day, int hour, int minute) throws IOException {
+    String date = String.format("201406%02d", day);
+    Path dir = root.resolve(stn).resolve(date);
+    Files.createDirectories(dir);
+    return Files.createFile(dir.resolve(String.format("Level2_%s_%s_%02d%02d.ar2v", stn, date, hour, minute)));
+  }
+
+  private RadarDataInventory makeInventory(boolean useIndex) {
+    RadarDataInventory di = new RadarDataInventory(root, 5);
+    di.addStationDir();
+    di.addDateDir("yyyyMMdd");
+    di.addFileTime("\\d{8}_\\d{4}", "yyyyMMdd_HHmm");
+    di.setUseIndex(useIndex);
+    if (useIndex)
+      di.getIndex().setUpdateInterval(0);
+    return di;
+  }
+
+  private Set<String> query(RadarDataInventory di, CalendarDateRange range, String... stns) {
+    RadarDataInventory.Query q = di.newQuery();
+    for (String stn : stns)
+      q.addStation(stn);
+    q.addDateRange(range);
+    Set<String> result = new TreeSet<>();
+    for (RadarDataInventory.Query.QueryResultItem item : q.results())
+      result.add(root.relativize(item.file) + " " + item.time);
+    return result;
+  }
+
+  private void compare(RadarDataInventory indexed, RadarDataInventory crawled, CalendarDateRange range, String... stns) {
+    Set<String> want = query(crawled, range, stns);
+    Set<String> got = query(indexed, range, stns);
+    Assert.assertEquals(range + " " + Arrays.toString(stns), want, got);
+  }
+
+  @Test
+  public void testQueries() throws IOException {
+    RadarDataInventory indexed = makeInventory(true);
+    RadarDataInventory crawled = makeInventory(false);
+
+    CalendarDate start = CalendarDate.parseISOformat(null, "2014-06-03T10:00:00Z");
+    CalendarDate end = CalendarDate.parseISOformat(null, "2014-06-04T12:00:00Z");
+    CalendarDate point = CalendarDate.parseISOformat(null, "2014-06-04T12:40:00Z");
+
+    compare(indexed, crawled, CalendarDateRange.of(start, end), "KFTG");
+    compare(indexed, crawled, CalendarDateRange.of(start, end), "KFTG", "KTLX", "KXXX");
+    compare(indexed, crawled, CalendarDateRange.of(point, point), "KFTG", "KDGX");
+    Assert.assertEquals(2, query(indexed, CalendarDateRange.of(point, point), "KFTG", "KDGX").size());
+    compare(indexed, crawled, null, "KTLX");
+    Assert.assertEquals(9, query(indexed, CalendarDateRange.of(start, end), "KFTG").size());
+
+    // no file within the nearest window
+    CalendarDate far = CalendarDate.parseISOformat(null, "2014-06-10T00:00:00Z");
+    Assert.assertEquals(0, query(indexed, CalendarDateRange.of(far, far), "KFTG").size());
+
+    // new data in the newest directory and in a new one
+    addFile("KFTG", 5, 22, 30);
+    addFile("KFTG", 6, 1, 0);
+    addFile("KSOX", 6, 1, 0);
+    CalendarDate last = CalendarDate.parseISOformat(null, "2014-06-06T01:00:00Z");
+    CalendarDateRange recent = CalendarDateRange.of(CalendarDate.parseISOformat(null, "2014-06-05T20:00:00Z"), last);
+    compare(indexed, crawled, recent, "KFTG", "KSOX");
+    Assert.assertEquals(4, query(indexed, recent, "KFTG", "KSOX").size());
+  }
+
+  @Test
+  public void testDeletedFiles() throws IOException {
+    RadarDataInventory indexed = makeInventory(true);
+    RadarDataInventory crawled = makeInventory(false);
+    CalendarDateRange range = CalendarDateRange.of(CalendarDate.parseISOformat(null, "2014-06-05T00:00:00Z"),
+            CalendarDate.parseISOformat(null, "2014-06-06T00:00:00Z"));
+    Assert.assertEquals(8, query(indexed, range, "KFTG").size());
+
+    // files removed from the newest directory, which the incremental scan lists again
+    Path added = addFile("KFTG", 5, 22, 30);
+    Assert.assertEquals(9, query(indexed, range, "KFTG").size());
+    Files.delete(added);
+    Files.delete(root.resolve("KFTG/20140605/Level2_KFTG_20140605_0300.ar2v"));
+    compare(indexed, crawled, range, "KFTG");
+    Assert.assertEquals(7, query(indexed, range, "KFTG").size());
+
+    // all files of a station removed
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(root.resolve("KDGX/20140605"))) {
+      for (Path f : files)
+        Files.delete(f);
+    }
+    compare(indexed, crawled, range, "KDGX", "KTLX");
+    Assert.assertEquals(0, query(indexed, range, "KDGX").size());
+  }
+
+  @Test
+  public void testIndexFile() throws IOException {
+    Path indexFile = tempFolder.getRoot().toPath().resolve("radar.index");
+    RadarDataInventory first = makeInventory(true);
+    first.setIndexFile(indexFile);
+    CalendarDateRange range = CalendarDateRange.of(CalendarDate.parseISOformat(null, "2014-06-03T00:00:00Z"),
+            CalendarDate.parseISOformat(null, "2014-06-06T00:00:00Z"));
+    Set<String> want = query(first, range, "KFTG", "KTLX", "KDGX");
+    first.getIndex().writeIndex(true);
+    Assert.assertTrue(Files.exists(indexFile));
+
+    RadarDataInventory second = makeInventory(true);
+    second.setIndexFile(indexFile);
+    Assert.assertEquals(want, query(second, range, "KFTG", "KTLX", "KDGX"));
+    Assert.assertEquals(72, want.size());
+  }
+}
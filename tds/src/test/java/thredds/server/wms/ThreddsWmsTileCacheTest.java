@@ -0,0 +1,59 @@
+package thredds.server.wms;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ThreddsWmsTileCacheTest {
+
+  private static Map<String, String> params(String crs, String bbox, int size) {
+    Map<String, String> params = new HashMap<>();
+    params.put("crs", crs);
+    params.put("bbox", bbox);
+    params.put("width", Integer.toString(size));
+    params.put("height", Integer.toString(size));
+    return params;
+  }
+
+  @Test
+  public void testMercatorTiles() {
+    assertEquals("EPSG:3857/0/0/0", ThreddsWmsTileCache.findTile(params("EPSG:3857",
+            "-20037508.342789244,-20037508.342789244,20037508.342789244,20037508.342789244", 256)));
+    assertEquals("EPSG:3857/1/1/0", ThreddsWmsTileCache.findTile(params("EPSG:900913",
+            "0,0,20037508.342789244,20037508.342789244", 256)));
+    // printed with less precision
+    assertEquals("EPSG:3857/2/1/2", ThreddsWmsTileCache.findTile(params("EPSG:3857",
+            "-10018754.17139,-10018754.17139,0,0", 512)));
+  }
+
+  @Test
+  public void testGeographicTiles() {
+    assertEquals("CRS:84/0/1/0", ThreddsWmsTileCache.findTile(params("CRS:84", "0,-90,180,90", 256)));
+    assertEquals("CRS:84/1/3/1", ThreddsWmsTileCache.findTile(params("CRS:84", "90,-90,180,0", 256)));
+
+    // WMS 1.3.0 has lat/lon axis order for EPSG:4326
+    Map<String, String> params = params("EPSG:4326", "-90,90,0,180", 256);
+    params.put("version", "1.3.0");
+    assertEquals("CRS:84/1/3/1", ThreddsWmsTileCache.findTile(params));
+    params.put("version", "1.1.1");
+    assertNull(ThreddsWmsTileCache.findTile(params));
+  }
+
+  @Test
+  public void testNotTiles() {
+    assertNull(ThreddsWmsTileCache.findTile(params("CRS:84", "0,-90,180,90", 0)));
+    assertNull(ThreddsWmsTileCache.findTile(params("CRS:84", "10,-90,190,90", 256)));   // not aligned
+    assertNull(ThreddsWmsTileCache.findTile(params("CRS:84", "0,-90,120,30", 256)));    // not a power of 2
+    assertNull(ThreddsWmsTileCache.findTile(params("CRS:84", "0,-90,180,0", 256)));     // not square
+    assertNull(ThreddsWmsTileCache.findTile(params("EPSG:27700", "0,0,1000,1000", 256)));
+
+    Map<String, String> params = params("CRS:84", "0,-90,180,90", 256);
+    params.put("height", "128");
+    assertNull(ThreddsWmsTileCache.findTile(params));
+    params.put("height", "x");
+    assertNull(ThreddsWmsTileCache.findTile(params));
+  }
+}